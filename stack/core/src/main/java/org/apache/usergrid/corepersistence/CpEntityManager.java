@@ -48,6 +48,7 @@ import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntitySet;
 import org.apache.usergrid.persistence.collection.FieldSet;
 import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.entities.*;
@@ -57,7 +58,9 @@ import org.apache.usergrid.persistence.exceptions.RequiredPropertyNotFoundExcept
 import org.apache.usergrid.persistence.exceptions.UnexpectedEntityTypeException;
 import org.apache.usergrid.persistence.graph.GraphManager;
 import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.SearchByEdgeType;
 import org.apache.usergrid.persistence.graph.SearchEdgeType;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdgeType;
 import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.index.query.CounterResolution;
 import org.apache.usergrid.persistence.index.query.Identifier;
@@ -75,6 +78,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 import java.nio.ByteBuffer;
 import java.time.Instant;
@@ -113,6 +117,7 @@ public class CpEntityManager implements EntityManager {
     private final UUID applicationId;
     private final EntityManagerFig entityManagerFig;
     private final ActorSystemFig actorSystemFig;
+    private final SerializationFig serializationFig;
 
     private Application application;
 
@@ -127,6 +132,8 @@ public class CpEntityManager implements EntityManager {
 
     private final CounterUtils counterUtils;
 
+    private final AggregateCounterPipeline aggregateCounterPipeline;
+
     private final AsyncEventService indexService;
 
     private final CollectionService collectionService;
@@ -140,6 +147,7 @@ public class CpEntityManager implements EntityManager {
     private Timer aggCounterTimer;
     private Timer entCreateTimer;
     private Timer entCreateBatchTimer;
+    private Timer entCreateAllTimer;
     private Timer esDeletePropertyTimer;
     private Timer entAddDictionaryTimer;
     private Timer entAddDictionarySetTimer;
@@ -171,17 +179,20 @@ public class CpEntityManager implements EntityManager {
      * Fugly, make this part of DI
      * @param cass
      * @param counterUtils
+     * @param aggregateCounterPipeline
      * @param managerCache
      * @param metricsFactory
      * @param applicationId
      */
     public CpEntityManager( final CassandraService cass,
                             final CounterUtils counterUtils,
+                            final AggregateCounterPipeline aggregateCounterPipeline,
                             final AsyncEventService indexService,
                             final ManagerCache managerCache,
                             final MetricsFactory metricsFactory,
                             final ActorSystemFig actorSystemFig,
                             final EntityManagerFig entityManagerFig,
+                            final SerializationFig serializationFig,
                             final GraphManagerFactory graphManagerFactory,
                             final CollectionService collectionService,
                             final ConnectionService connectionService,
@@ -191,9 +202,11 @@ public class CpEntityManager implements EntityManager {
 
         this.entityManagerFig = entityManagerFig;
         this.actorSystemFig = actorSystemFig;
+        this.serializationFig = serializationFig;
 
         Preconditions.checkNotNull( cass, "cass must not be null" );
         Preconditions.checkNotNull( counterUtils, "counterUtils must not be null" );
+        Preconditions.checkNotNull( aggregateCounterPipeline, "aggregateCounterPipeline must not be null" );
         Preconditions.checkNotNull( managerCache, "managerCache must not be null" );
         Preconditions.checkNotNull( applicationId, "applicationId must not be null" );
         Preconditions.checkNotNull( indexService, "indexService must not be null" );
@@ -219,6 +232,7 @@ public class CpEntityManager implements EntityManager {
 
         this.cass = cass;
         this.counterUtils = counterUtils;
+        this.aggregateCounterPipeline = aggregateCounterPipeline;
 
         //Timer Setup
         this.metricsFactory = metricsFactory;
@@ -231,6 +245,7 @@ public class CpEntityManager implements EntityManager {
         this.updateEntityTimer = this.metricsFactory.getTimer(CpEntityManager.class, "entity.update");
 
         this.entCreateBatchTimer = this.metricsFactory.getTimer(CpEntityManager.class, "batch.create");
+        this.entCreateAllTimer = this.metricsFactory.getTimer(CpEntityManager.class, "entity.create.all");
 
         this.esDeletePropertyTimer = this.metricsFactory.getTimer(CpEntityManager.class, "es_property.delete");
         this.entAddDictionaryTimer = this.metricsFactory.getTimer(CpEntityManager.class, "dictionary.add");
@@ -338,6 +353,143 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public List<Entity> createAll( String entityType, List<Map<String, Object>> properties ) throws Exception {
+        return createAll( entityType, properties, Collections.nCopies( properties.size(), ( UUID ) null ) );
+    }
+
+
+    @Override
+    public List<Entity> createAll( String entityType, Map<UUID, Map<String, Object>> properties )
+            throws Exception {
+        return createAll( entityType, new ArrayList<>( properties.values() ), new ArrayList<>( properties.keySet() ) );
+    }
+
+
+    /**
+     * Creates the entities of a type, writing them with bulk writes of the collection manager and adding them to the
+     * collection of their type together.  The entities are created in batches of the write batch size, each batch is
+     * in its collection before the next one is written, so a failure leaves the batches before it created.
+     *
+     * @param importIds the existing external UUID of each entity, or null to create it with a new id
+     */
+    private List<Entity> createAll( String entityType, List<Map<String, Object>> properties, List<UUID> importIds )
+            throws Exception {
+
+        if ( ( entityType != null ) && ( entityType.startsWith( TYPE_ENTITY ) || entityType
+                .startsWith( "entities" ) ) ) {
+            throw new IllegalArgumentException( "Invalid entity type" );
+        }
+
+        String eType = Schema.normalizeEntityType( entityType );
+
+        // these are not written to a collection of the application, see batchCreate
+        if ( TYPE_APPLICATION.equals( eType ) || Event.ENTITY_TYPE.equals( eType ) ) {
+            throw new IllegalArgumentException( "Entities of type " + eType + " must be created one at a time" );
+        }
+
+        if ( ( applicationId == null ) || applicationId.equals( UUIDUtils.ZERO_UUID ) ) {
+            return Collections.emptyList();
+        }
+
+        Timer.Context timeCassCreation = entCreateAllTimer.time();
+
+        try {
+
+            final List<Entity> entities = new ArrayList<>( properties.size() );
+            final List<Long> timestamps = new ArrayList<>( properties.size() );
+            final List<org.apache.usergrid.persistence.model.entity.Entity> cpEntities =
+                new ArrayList<>( properties.size() );
+
+            for ( int i = 0; i < properties.size(); i++ ) {
+
+                final UUID importId = importIds.get( i );
+
+                Map<String, Object> entityProperties = properties.get( i );
+                if ( entityProperties == null ) {
+                    entityProperties = new TreeMap<>( CASE_INSENSITIVE_ORDER );
+                }
+
+                final long timestamp = getCreateTimestamp( importId, entityProperties );
+                final UUID itemId = importId != null ? importId : UUIDGenerator.newTimeUUID();
+
+                final Entity entity = newEntity( entityType, null, entityProperties, itemId, importId, timestamp );
+
+                if ( entity == null ) {
+                    continue;
+                }
+
+                entities.add( entity );
+                timestamps.add( timestamp );
+                cpEntities.add( entityToCpEntity( entity, importId ) );
+            }
+
+            if ( entities.isEmpty() ) {
+                return entities;
+            }
+
+            final int batchSize = serializationFig.getWriteBatchSize();
+
+            for ( int start = 0; start < entities.size(); start += batchSize ) {
+                final int end = Math.min( start + batchSize, entities.size() );
+
+                createBatch( eType, entities.subList( start, end ), timestamps.subList( start, end ),
+                    cpEntities.subList( start, end ) );
+            }
+
+            return entities;
+        }
+        finally {
+            timeCassCreation.stop();
+        }
+    }
+
+
+    /**
+     * Writes one batch of new entities of a type, then adds them to the collection of their type, counts them and
+     * adds them to the types map.
+     */
+    private void createBatch( String eType, List<Entity> entities, List<Long> timestamps,
+                              List<org.apache.usergrid.persistence.model.entity.Entity> cpEntities )
+            throws Exception {
+
+        final List<org.apache.usergrid.persistence.model.entity.Entity> written;
+
+        try {
+            written = ecm.write( cpEntities, lookupAuthoritativeRegionForType( eType ) ).toList().toBlocking().last();
+        }
+        catch ( WriteUniqueVerifyException wuve ) {
+            handleWriteUniqueVerifyException( entities.get( 0 ), wuve );
+            throw wuve;
+        }
+
+        // reflect changes in the legacy Entities
+        for ( int i = 0; i < entities.size(); i++ ) {
+            final Entity entity = entities.get( i );
+            final org.apache.usergrid.persistence.model.entity.Entity cpEntity = written.get( i );
+
+            entity.setSize( cpEntity.getSize() );
+            entity.setUuid( cpEntity.getId().getUuid() );
+            entity.setProperties( cpEntity );
+        }
+
+        // add to and index in collection of the application
+        String collectionName = Schema.defaultCollectionName( eType );
+        CpRelationManager cpr = ( CpRelationManager ) getRelationManager( getApplication() );
+        cpr.addToCollection( collectionName, written );
+
+        for ( Long timestamp : timestamps ) {
+            incrementEntityCollection( collectionName, timestamp );
+        }
+
+        //write to our types map
+        MapManager mm = getMapManagerForTypes();
+        Observable.from( entities ).flatMap( entity -> Observable.just( entity )
+            .doOnNext( e -> mm.putString( e.getUuid().toString(), e.getType() ) )
+            .subscribeOn( Schedulers.io() ) ).toBlocking().lastOrDefault( null );
+    }
+
+
     /**
      * Creates a new entity.
      *
@@ -1483,6 +1635,29 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public List<EntityRef> getCollectionRefs( List<EntityRef> entityRefs, String collectionName ) {
+
+        final GraphManager gm = managerCache.getGraphManager( applicationScope );
+        final String edgeType = getEdgeTypeFromCollectionName( collectionName );
+
+        return Observable.from( entityRefs ).flatMap( entityRef -> gm.loadEdgesFromSource(
+            new SimpleSearchByEdgeType( new SimpleId( entityRef.getUuid(), entityRef.getType() ), edgeType,
+                Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING, Optional.absent() ) )
+            .subscribeOn( Schedulers.io() )
+            // one owner failing to load must not lose the collections of the others
+            .onErrorResumeNext( t -> {
+                logger.error( "Unable to load collection {} of {}:{}", collectionName, entityRef.getType(),
+                    entityRef.getUuid(), t );
+                return Observable.empty();
+            } ) )
+            // older versions of an edge may not be removed yet
+            .map( edge -> edge.getTargetNode() ).distinct()
+            .map( id -> ( EntityRef ) new SimpleEntityRef( id.getType(), id.getUuid() ) )
+            .toList().toBlocking().last();
+    }
+
+
     @Override
     public Entity addToCollection( EntityRef entityRef, String collectionName, EntityRef itemRef ) throws Exception {
 
@@ -2173,14 +2348,10 @@ public class CpEntityManager implements EntityManager {
 
         // TODO short circuit
         if ( !skipAggregateCounters ) {
-            Mutator<ByteBuffer> m = createMutator( cass.getApplicationKeyspace( applicationId ), be );
-
-            counterUtils.batchIncrementAggregateCounters( m, applicationId, userId, groupId, null,
-                    category, counterName, value, cassandraTimestamp / 1000, cassandraTimestamp );
-
             //Adding graphite metrics
             Timer.Context timeIncrementAggregateCounters = entIncrementAggregateCountersTimer.time();
-            CassandraPersistenceUtils.batchExecute( m, CassandraService.RETRY_COUNT );
+            aggregateCounterPipeline.increment( applicationId, userId, groupId, category, counterName, value,
+                    cassandraTimestamp );
             timeIncrementAggregateCounters.stop();
         }
     }
@@ -2438,13 +2609,10 @@ public class CpEntityManager implements EntityManager {
         // TODO shortcircuit
         if ( !skipAggregateCounters ) {
             long timestamp = cass.createTimestamp();
-            Mutator<ByteBuffer> m = createMutator( cass.getApplicationKeyspace( applicationId ), be );
-            counterUtils.batchIncrementAggregateCounters(
-                m, applicationId, userId, groupId, null, category, counters, timestamp );
 
             //Adding graphite metrics
             Timer.Context timeIncrementCounters =entIncrementAggregateCountersTimer.time();
-            CassandraPersistenceUtils.batchExecute( m, CassandraService.RETRY_COUNT );
+            aggregateCounterPipeline.increment( applicationId, userId, groupId, category, counters, timestamp );
             timeIncrementCounters.stop();
         }
     }
@@ -2685,8 +2853,6 @@ public class CpEntityManager implements EntityManager {
 
         String eType = Schema.normalizeEntityType( entityType );
 
-        Schema schema = Schema.getDefaultSchema();
-
         boolean is_application = TYPE_APPLICATION.equals( eType );
 
         if ( ( ( applicationId == null ) || applicationId.equals( UUIDUtils.ZERO_UUID ) ) && !is_application ) {
@@ -2694,23 +2860,7 @@ public class CpEntityManager implements EntityManager {
         }
 
 
-        long timestamp = UUIDUtils.getTimestampInMicros( UUIDUtils.newTimeUUID() );
-
-        // if the entity UUID is provided, attempt to get a time from the UUID or from it's created property
-        if ( importId != null ) {
-            long timestampFromImport = -1L;
-            if ( UUIDUtils.isTimeBased( importId ) ) {
-                timestampFromImport = UUIDUtils.getTimestampInMicros( importId );
-            }
-            else if ( properties.get( PROPERTY_CREATED ) != null ) {
-                // the entity property would be stored as milliseconds
-                timestampFromImport = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
-
-            }
-            if (timestampFromImport >= 0){
-                timestamp = timestampFromImport;
-            }
-        }
+        long timestamp = getCreateTimestamp( importId, properties );
 
         UUID itemId = UUIDGenerator.newTimeUUID();
 
@@ -2724,76 +2874,12 @@ public class CpEntityManager implements EntityManager {
             properties = new TreeMap<>( CASE_INSENSITIVE_ORDER );
         }
 
+        A entity = newEntity( entityType, entityClass, properties, itemId, importId, timestamp );
 
-
-        if ( entityClass == null ) {
-            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
-        }
-
-        Set<String> required = schema.getRequiredProperties( entityType );
-
-        if ( required != null ) {
-            for ( String p : required ) {
-                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
-                        && !PROPERTY_MODIFIED.equals( p ) ) {
-                    Object v = properties.get( p );
-                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
-                        if ( v == null ) {
-                            properties.put( p, timestamp / 1000 );
-                        }
-                        else {
-                            long ts = getLong( v );
-                            if ( ts <= 0 ) {
-                                properties.put( p, timestamp / 1000 );
-                            }
-                        }
-                        continue;
-                    }
-                    if ( v == null ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                }
-            }
-        }
-
-        if ( properties.isEmpty() ) {
+        if ( entity == null ) {
             return null;
         }
 
-        properties.put( PROPERTY_UUID, itemId );
-        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
-
-        if ( importId != null ) {
-            if ( properties.get( PROPERTY_CREATED ) == null ) {
-                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            }
-
-            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
-                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-        else {
-            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-        }
-
-        // special case timestamp and published newSettings
-        // and dictionary their timestamp values if not set
-        // this is sure to break something for someone someday
-
-        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
-            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
-            if ( ts <= 0 ) {
-                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-
-        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
-        entity.addProperties( properties );
-
         //        logger.info( "Entity created of type {}", entity.getClass().getName() );
 
         if ( Event.ENTITY_TYPE.equals( eType ) ) {
@@ -2874,6 +2960,118 @@ public class CpEntityManager implements EntityManager {
         return entity;
     }
 
+    /**
+     * Get the timestamp an entity is created with.  An imported entity keeps the time of its UUID or of its created
+     * property, any other entity is created now.
+     */
+    private long getCreateTimestamp( UUID importId, Map<String, Object> properties ) {
+
+        long timestamp = UUIDUtils.getTimestampInMicros( UUIDUtils.newTimeUUID() );
+
+        // if the entity UUID is provided, attempt to get a time from the UUID or from it's created property
+        if ( importId != null ) {
+            long timestampFromImport = -1L;
+            if ( UUIDUtils.isTimeBased( importId ) ) {
+                timestampFromImport = UUIDUtils.getTimestampInMicros( importId );
+            }
+            else if ( properties.get( PROPERTY_CREATED ) != null ) {
+                // the entity property would be stored as milliseconds
+                timestampFromImport = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
+
+            }
+            if (timestampFromImport >= 0){
+                timestamp = timestampFromImport;
+            }
+        }
+
+        return timestamp;
+    }
+
+
+    /**
+     * Create the legacy entity with the given id from its properties, checking the required properties of the type
+     * and setting the system properties.
+     *
+     * @return The entity, or null if there are no properties to create it with
+     */
+    private <A extends Entity> A newEntity( String entityType, Class<A> entityClass, Map<String, Object> properties,
+                                            UUID itemId, UUID importId, long timestamp ) throws Exception {
+
+        String eType = Schema.normalizeEntityType( entityType );
+
+        Schema schema = Schema.getDefaultSchema();
+
+        if ( entityClass == null ) {
+            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
+        }
+
+        Set<String> required = schema.getRequiredProperties( entityType );
+
+        if ( required != null ) {
+            for ( String p : required ) {
+                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
+                        && !PROPERTY_MODIFIED.equals( p ) ) {
+                    Object v = properties.get( p );
+                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
+                        if ( v == null ) {
+                            properties.put( p, timestamp / 1000 );
+                        }
+                        else {
+                            long ts = getLong( v );
+                            if ( ts <= 0 ) {
+                                properties.put( p, timestamp / 1000 );
+                            }
+                        }
+                        continue;
+                    }
+                    if ( v == null ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                }
+            }
+        }
+
+        if ( properties.isEmpty() ) {
+            return null;
+        }
+
+        properties.put( PROPERTY_UUID, itemId );
+        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
+
+        if ( importId != null ) {
+            if ( properties.get( PROPERTY_CREATED ) == null ) {
+                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            }
+
+            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
+                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+        else {
+            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+        }
+
+        // special case timestamp and published newSettings
+        // and dictionary their timestamp values if not set
+        // this is sure to break something for someone someday
+
+        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
+            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
+            if ( ts <= 0 ) {
+                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+
+        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
+        entity.addProperties( properties );
+
+        return entity;
+    }
+
     private <A extends Entity> void updateIndexForEntity(String eType, A entity, long timestamp) throws Exception {
         String collectionName = Schema.defaultCollectionName( eType );
         CpRelationManager cpr = ( CpRelationManager ) getRelationManager( getApplication() );
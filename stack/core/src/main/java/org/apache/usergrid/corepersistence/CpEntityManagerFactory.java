@@ -38,12 +38,16 @@ import org.apache.usergrid.mq.QueueManagerFactory;
 import org.apache.usergrid.persistence.*;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemFig;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.cassandra.AggregateCounterPipeline;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.CounterUtils;
 import org.apache.usergrid.persistence.cassandra.Setup;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.collection.cache.EntityCache;
+import org.apache.usergrid.persistence.token.cache.TokenCache;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesService;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
@@ -56,6 +60,7 @@ import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsE
 import org.apache.usergrid.persistence.exceptions.EntityNotFoundException;
 import org.apache.usergrid.persistence.graph.*;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdgeType;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.NodeShardCache;
 import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
@@ -90,6 +95,7 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
 
     private final EntityManagerFig entityManagerFig;
     private final ActorSystemFig actorSystemFig;
+    private final SerializationFig serializationFig;
 
     private ApplicationContext applicationContext;
 
@@ -109,6 +115,7 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
 
     private CassandraService cassandraService;
     private CounterUtils counterUtils;
+    private final AggregateCounterPipeline aggregateCounterPipeline;
     private Injector injector;
     private final ReIndexService reIndexService;
     private final MetricsFactory metricsFactory;
@@ -136,6 +143,7 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
         this.reIndexService             = injector.getInstance(ReIndexService.class);
         this.entityManagerFig           = injector.getInstance(EntityManagerFig.class);
         this.actorSystemFig             = injector.getInstance( ActorSystemFig.class );
+        this.serializationFig           = injector.getInstance( SerializationFig.class );
         this.managerCache               = injector.getInstance( ManagerCache.class );
         this.metricsFactory             = injector.getInstance( MetricsFactory.class );
         this.indexService               = injector.getInstance( AsyncEventService.class );
@@ -144,6 +152,9 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
         this.connectionService          = injector.getInstance( ConnectionService.class );
         this.collectionSettingsFactory  = injector.getInstance( CollectionSettingsFactory.class );
 
+        this.aggregateCounterPipeline =
+            new AggregateCounterPipeline( cassandraService, counterUtils, entityManagerFig, metricsFactory );
+
         Properties properties = cassandraService.getProperties();
         this.entityManagers = createEntityManagerCache( properties );
 
@@ -158,6 +169,9 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
                 this.actorSystemManager = injector.getInstance( ActorSystemManager.class );
 
                 actorSystemManager.registerRouterProducer( injector.getInstance( UniqueValuesService.class ) );
+                actorSystemManager.registerRouterProducer( injector.getInstance( EntityCache.class ) );
+                actorSystemManager.registerRouterProducer( injector.getInstance( TokenCache.class ) );
+                actorSystemManager.registerRouterProducer( injector.getInstance( NodeShardCache.class ) );
                 actorSystemManager.registerRouterProducer( injector.getInstance( QueueActorRouterProducer.class ) );
                 actorSystemManager.registerRouterProducer( injector.getInstance( QueueWriterRouterProducer.class ) );
                 actorSystemManager.registerRouterProducer( injector.getInstance( QueueSenderRouterProducer.class ) );
@@ -382,11 +396,13 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
         EntityManager em = new CpEntityManager(
             cassandraService,
             counterUtils,
+            aggregateCounterPipeline,
             indexService,
             managerCache,
             metricsFactory,
             actorSystemFig,
             entityManagerFig,
+            serializationFig,
             graphManagerFactory,
             collectionService,
             connectionService,
@@ -862,6 +878,18 @@ public class CpEntityManagerFactory implements EntityManagerFactory, Application
     }
 
 
+    /**
+     * Write the aggregate counters and queue audit logs still pending before the application stops
+     */
+    public void destroy() {
+        aggregateCounterPipeline.close();
+
+        if ( actorSystemFig.getEnabled() ) {
+            injector.getInstance( DistributedQueueService.class ).shutdown();
+        }
+    }
+
+
     @Override
     public long performEntityCount() {
         //TODO, this really needs to be a task that writes this data somewhere since this will get
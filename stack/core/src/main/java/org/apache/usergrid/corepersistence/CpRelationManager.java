@@ -56,6 +56,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 import java.util.*;
 
@@ -430,6 +431,66 @@ public class CpRelationManager implements RelationManager {
     }
 
 
+    /**
+     * Add entities that were just written together to a named collection of the head entity.  The edges are written
+     * concurrently, and the entities are indexed as written with one index operation for all of them.
+     */
+    void addToCollection( String collectionName,
+                          List<org.apache.usergrid.persistence.model.entity.Entity> memberEntities )
+        throws Exception {
+
+        CollectionInfo collection = getDefaultSchema().getCollection( headEntity.getType(), collectionName );
+
+        // the reverse edges of a linked collection index the head entity, add those one at a time
+        if ( collection != null && collection.getLinkedCollection() != null ) {
+            for ( org.apache.usergrid.persistence.model.entity.Entity memberEntity : memberEntities ) {
+                addToCollection( collectionName,
+                    new SimpleEntityRef( memberEntity.getId().getType(), memberEntity.getId().getUuid() ) );
+            }
+            return;
+        }
+
+        final Map<Id, org.apache.usergrid.persistence.model.entity.Entity> entities = new HashMap<>();
+        final Map<String, List<Edge>> edgesByType = new HashMap<>();
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity memberEntity : memberEntities ) {
+
+            final String entityType = memberEntity.getId().getType();
+
+            if ( collection != null && collection.getType() != null && !collection.getType().equals( entityType ) ) {
+                continue;
+            }
+
+            entities.put( memberEntity.getId(), memberEntity );
+            edgesByType.computeIfAbsent( entityType, type -> new ArrayList<>() )
+                       .add( createCollectionEdge( cpHeadEntity.getId(), collectionName, memberEntity.getId() ) );
+        }
+
+        final GraphManager gm = managerCache.getGraphManager( applicationScope );
+
+        Observable.from( edgesByType.values() ).flatMap( Observable::from ).flatMap(
+            edge -> gm.writeEdge( edge ).doOnNext( writtenEdge -> {
+                if ( logger.isDebugEnabled() ) {
+                    logger.debug( "Wrote edge {}", writtenEdge );
+                }
+
+                // remove any duplicate edges (keeps the duplicate edge with same timestamp)
+                removeDuplicateEdgesAsync( gm, edge );
+            } ).subscribeOn( Schedulers.io() ) ).toBlocking().lastOrDefault( null );
+
+        for ( Map.Entry<String, List<Edge>> typeEdges : edgesByType.entrySet() ) {
+            if ( !skipIndexingForType( typeEdges.getKey() ) ) {
+                QueueIndexingStrategy queueIndexingStrategy = getIndexingStrategyForType( typeEdges.getKey() );
+                indexService.queueNewEdges( applicationScope, typeEdges.getValue(), entities, queueIndexingStrategy );
+            }
+        }
+
+        if ( logger.isDebugEnabled() ) {
+            logger.debug( "Added {} entities to collection {}", entities.size(), collectionName );
+        }
+    }
+
+
     @Override
     public Entity createItemInCollection( String collectionName, String itemType, Map<String, Object> properties )
         throws Exception {
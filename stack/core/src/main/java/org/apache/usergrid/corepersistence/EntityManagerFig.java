@@ -54,4 +54,25 @@ public interface EntityManagerFig extends GuicyFig {
     @Default("us-east-1")
     String getRegionList();
 
+    /**
+     * How often pending aggregate counter increments are written, in milliseconds.  0 writes them synchronously.
+     */
+    @Key( "usergrid.counter.aggregate.flush.interval.ms" )
+    @Default( "1000" )
+    long getAggregateCounterFlushInterval();
+
+    /**
+     * The max number of pre-aggregated counter increments written in a single mutation
+     */
+    @Key( "usergrid.counter.aggregate.flush.size" )
+    @Default( "500" )
+    int getAggregateCounterFlushSize();
+
+    /**
+     * The max number of distinct pending counter increments before the caller flushes inline
+     */
+    @Key( "usergrid.counter.aggregate.max.pending" )
+    @Default( "100000" )
+    int getAggregateCounterMaxPending();
+
 }
@@ -29,6 +29,8 @@ import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.queue.settings.QueueIndexingStrategy;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -70,6 +72,19 @@ public interface AsyncEventService extends ReIndexAction, CollectionDeleteAction
      */
     void queueNewEdge(final ApplicationScope applicationScope, final Id entityId, final Edge newEdge, QueueIndexingStrategy queueIndexingStrategy);
 
+    /**
+     * Fired when new edges are added to entities that were just written together, such as a batch of entities
+     * created in a collection.  The entities are indexed as written instead of being loaded again, and the index
+     * operations of all of them are queued as a single message.
+     *
+     * @param applicationScope
+     * @param newEdges The new edges, each edge indexes the entity of its target node
+     * @param entities The written entities by their ids
+     * @param queueIndexingStrategy
+     */
+    void queueNewEdges(final ApplicationScope applicationScope, final Collection<Edge> newEdges,
+                       final Map<Id, Entity> entities, QueueIndexingStrategy queueIndexingStrategy);
+
     /**
      * Queue the deletion of an edge
      * @param applicationScope
@@ -34,9 +34,11 @@ import org.apache.usergrid.corepersistence.index.*;
 import org.apache.usergrid.corepersistence.rx.impl.EdgeScope;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.corepersistence.util.ObjectJsonSerializer;
+import org.apache.usergrid.corepersistence.util.ObjectSmileSerializer;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.rx.RxTaskScheduler;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
@@ -68,10 +70,13 @@ import rx.schedulers.Schedulers;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 
 /**
@@ -128,6 +133,7 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     private final Object mutex = new Object();
 
     private final Counter indexErrorCounter;
+    private final Counter inlineIndexMessageCounter;
     private final AtomicLong counter = new AtomicLong();
     private final AtomicLong counterUtility = new AtomicLong();
     private final AtomicLong counterDelete = new AtomicLong();
@@ -137,6 +143,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     private final AtomicLong inFlight = new AtomicLong();
     private final Histogram messageCycle;
     private final MapManager esMapPersistence;
+    private final MetricsFactory metricsFactory;
+
+    /**
+     * Runs the lanes of a batch, when every thread is busy the consumer thread runs the lane itself
+     */
+    private final ExecutorService eventHandlerExecutor;
+
+    /**
+     * Queue wait and handler latency per event type
+     */
+    private final Map<String, Histogram> stageHistograms = new ConcurrentHashMap<>();
 
     //the actively running subscription
     private List<Subscription> subscriptions = new ArrayList<>();
@@ -200,7 +217,14 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         this.readTimer = metricsFactory.getTimer(AsyncEventServiceImpl.class, "async_event.read");
         this.ackTimer = metricsFactory.getTimer(AsyncEventServiceImpl.class, "async_event.ack");
         this.indexErrorCounter = metricsFactory.getCounter(AsyncEventServiceImpl.class, "async_event.error");
+        this.inlineIndexMessageCounter =
+            metricsFactory.getCounter(AsyncEventServiceImpl.class, "async_event.index_message.inline");
         this.messageCycle = metricsFactory.getHistogram(AsyncEventServiceImpl.class, "async_event.message_cycle");
+        this.metricsFactory = metricsFactory;
+
+        this.eventHandlerExecutor = TaskExecutorFactory
+            .createTaskExecutor( "AsyncEventHandler", indexProcessorFig.getEventHandlerThreads(), 0,
+                TaskExecutorFactory.RejectionAction.CALLERRUNS );
 
 
         //wire up the gauge of inflight message
@@ -309,11 +333,16 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
 
     private void offerTopic(final Serializable operation, AsyncEventQueueType queueType) {
+        offerTopic(operation, queueType, null);
+    }
+
+
+    private void offerTopic(final Serializable operation, AsyncEventQueueType queueType, Boolean async) {
         final Timer.Context timer = this.writeTimer.time();
 
         try {
             //signal to SQS
-            getQueue(queueType).sendMessageToAllRegions(operation,null);
+            getQueue(queueType).sendMessageToAllRegions(operation, async);
 
         }
         catch ( IOException e ) {
@@ -368,14 +397,12 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
         try {
 
-            for ( LegacyQueueMessage legacyQueueMessage : messages ) {
-                try {
-                    indexQueue.commitMessage( legacyQueueMessage );
-                    inFlight.decrementAndGet();
+            try {
+                indexQueue.commitMessages( messages );
+                inFlight.addAndGet( -messages.size() );
 
-                } catch ( Throwable t ) {
-                    logger.error("Continuing after error acking message: " + legacyQueueMessage.getMessageId() );
-                }
+            } catch ( Throwable t ) {
+                logger.error("Continuing after error acking " + messages.size() + " messages", t );
             }
 
         } catch (Exception e) {
@@ -411,119 +438,260 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             logger.debug("callEventHandlers with {} message(s)", messages.size());
         }
 
-        Stream<IndexEventResult> indexEventResults = messages.stream().map(message ->
+        final IndexEventResult[] results = new IndexEventResult[messages.size()];
 
-        {
-            if(logger.isDebugEnabled()){
-                logger.debug("Queue message with ID {} has been received {} time(s)",
-                    message.getMessageId(),
-                    message.getReceiveCount() );
-            }
+        // duplicate entity index events in this batch do the same work, only handle the first one
+        final Map<String, Integer> firstEntityIndexEvent = new HashMap<>();
+        final Map<Integer, Integer> duplicates = new HashMap<>();
 
-            AsyncEvent event = null;
-            try {
-                event = (AsyncEvent) message.getBody();
+        final int laneCount = Math.max( 1, Math.min( indexProcessorFig.getEventHandlerConcurrency(), messages.size() ) );
+        final List<List<Integer>> lanes = new ArrayList<>( laneCount );
+
+        for ( int i = 0; i < laneCount; i++ ) {
+            lanes.add( new ArrayList<>() );
+        }
+
+        for ( int i = 0; i < messages.size(); i++ ) {
 
-            } catch (ClassCastException cce) {
-                logger.error("Failed to deserialize message body", cce);
-                return new IndexEventResult(Optional.absent(), Optional.absent(), System.currentTimeMillis());
+            final LegacyQueueMessage message = messages.get( i );
+            final Object body = message.getBody();
+
+            if ( body instanceof EntityIndexEvent ) {
+                final Integer first = firstEntityIndexEvent.putIfAbsent( getCoalesceKey( ( EntityIndexEvent ) body ), i );
+
+                if ( first != null ) {
+                    duplicates.put( i, first );
+                    continue;
+                }
             }
 
-            if (event == null) {
-                logger.error("AsyncEvent type or event is null!");
-                return new IndexEventResult(Optional.absent(), Optional.absent(), System.currentTimeMillis());
+            // events for the same entity always land in the same lane, and a lane runs in queue order
+            lanes.get( Math.abs( getOrderingKey( message ).hashCode() % laneCount ) ).add( i );
+        }
+
+
+        final List<Future<?>> futures = new ArrayList<>( laneCount );
+
+        for ( final List<Integer> lane : lanes ) {
+
+            if ( lane.isEmpty() ) {
+                continue;
             }
 
-            final AsyncEvent thisEvent = event;
+            final Runnable runLane = () -> {
+                for ( final Integer index : lane ) {
+                    results[index] = handleMessage( messages.get( index ) );
+                }
+            };
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("Processing event with type {}", event.getClass().getSimpleName());
+            // no need to hand off a single lane, run it on this thread
+            if ( laneCount == 1 ) {
+                runLane.run();
+            }
+            else {
+                futures.add( eventHandlerExecutor.submit( runLane ) );
             }
+        }
 
+        for ( final Future<?> future : futures ) {
             try {
+                future.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while handling events", e );
+            }
+            catch ( ExecutionException e ) {
+                throw new RuntimeException( "Unable to handle events", e.getCause() );
+            }
+        }
 
-                IndexOperationMessage single = new IndexOperationMessage();
 
-                // normal indexing event for an entity
-                if ( event instanceof  EntityIndexEvent ){
+        // a duplicate is done when the event it was coalesced into succeeded, otherwise it is retried as well
+        for ( final Map.Entry<Integer, Integer> duplicate : duplicates.entrySet() ) {
 
-                     single = handleEntityIndexUpdate( message );
+            final LegacyQueueMessage message = messages.get( duplicate.getKey() );
+            final long creationTime = ( ( AsyncEvent ) message.getBody() ).getCreationTime();
 
-                }
-                // normal indexing event for an edge
-                else if ( event instanceof EdgeIndexEvent ){
+            if ( results[duplicate.getValue()].getQueueMessage().isPresent() ) {
+                results[duplicate.getKey()] =
+                    new IndexEventResult( Optional.of( new IndexOperationMessage() ), Optional.of( message ),
+                        creationTime );
+            }
+            else {
+                results[duplicate.getKey()] = new IndexEventResult( Optional.absent(), Optional.absent(), creationTime );
+            }
+        }
 
-                    single = handleEdgeIndex( message );
+        if ( logger.isDebugEnabled() && !duplicates.isEmpty() ) {
+            logger.debug( "Coalesced {} duplicate entity index event(s)", duplicates.size() );
+        }
 
-                }
-                // deletes are 2-part, actual IO to delete data, then queue up a de-index
-                else if ( event instanceof EdgeDeleteEvent ) {
+        return Arrays.asList( results );
+    }
 
-                    single = handleEdgeDelete( message );
-                }
-                // deletes are 2-part, actual IO to delete data, then queue up a de-index
-                else if ( event instanceof EntityDeleteEvent ) {
 
-                    single = handleEntityDelete( message );
-                }
-                // initialization has special logic, therefore a special event type and no index operation message
-                else if ( event instanceof InitializeApplicationIndexEvent ) {
+    /**
+     * Handle a single message, returning a result without the queue message if it should not be ack'd
+     */
+    private IndexEventResult handleMessage( final LegacyQueueMessage message ) {
 
-                    handleInitializeApplicationIndex(event, message);
-                }
-                // this is the main event that pulls the index doc from map persistence and hands to the index producer
-                else if (event instanceof ElasticsearchIndexEvent) {
+        if(logger.isDebugEnabled()){
+            logger.debug("Queue message with ID {} has been received {} time(s)",
+                message.getMessageId(),
+                message.getReceiveCount() );
+        }
 
-                    handleIndexOperation((ElasticsearchIndexEvent) event);
+        AsyncEvent event = null;
+        try {
+            event = (AsyncEvent) message.getBody();
 
-                } else if (event instanceof DeIndexOldVersionsEvent) {
+        } catch (ClassCastException cce) {
+            logger.error("Failed to deserialize message body", cce);
+            return new IndexEventResult(Optional.absent(), Optional.absent(), System.currentTimeMillis());
+        }
 
-                    single = handleDeIndexOldVersionEvent((DeIndexOldVersionsEvent) event);
+        if (event == null) {
+            logger.error("AsyncEvent type or event is null!");
+            return new IndexEventResult(Optional.absent(), Optional.absent(), System.currentTimeMillis());
+        }
 
-                } else {
+        final AsyncEvent thisEvent = event;
 
-                    throw new Exception("Unknown EventType for message: "+ message.getStringBody().trim());
-                }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Processing event with type {}", event.getClass().getSimpleName());
+        }
 
+        // time from the event being created and queued until a handler picks it up, including time in the queue
+        final long handlerStart = System.currentTimeMillis();
+        getStageHistogram( event, "queue_wait" ).update( handlerStart - event.getCreationTime() );
 
-                if( !(event instanceof ElasticsearchIndexEvent)
-                    && !(event instanceof InitializeApplicationIndexEvent)
-                      && single.isEmpty() ){
-                        logger.warn("No index operation messages came back from event processing for eventType: {}, msgId: {}, msgBody: {}",
-                            event.getClass().getSimpleName(), message.getMessageId(), message.getStringBody());
-                }
+        try {
 
+            IndexOperationMessage single = new IndexOperationMessage();
 
-                // if no exception happens and the QueueMessage is returned in these results, it will get ack'd
-                return new IndexEventResult(Optional.of(single), Optional.of(message), thisEvent.getCreationTime());
+            // normal indexing event for an entity
+            if ( event instanceof  EntityIndexEvent ){
 
-            } catch (IndexDocNotFoundException e){
+                 single = handleEntityIndexUpdate( message );
 
-                // this exception is throw when we wait before trying quorum read on map persistence.
-                // return empty event result so the event's message doesn't get ack'd
-                if(logger.isDebugEnabled()){
-                    logger.debug(e.getMessage());
-                }
-                return new IndexEventResult(Optional.absent(), Optional.absent(), thisEvent.getCreationTime());
+            }
+            // normal indexing event for an edge
+            else if ( event instanceof EdgeIndexEvent ){
 
-            } catch (Exception e) {
+                single = handleEdgeIndex( message );
 
-                // NPEs don't have a detail message, so add something for our log statement to identify better
-                final String errorMessage;
-                if( e instanceof NullPointerException ) {
-                    errorMessage = "NullPointerException";
-                }else{
-                    errorMessage = e.getMessage();
-                }
+            }
+            // deletes are 2-part, actual IO to delete data, then queue up a de-index
+            else if ( event instanceof EdgeDeleteEvent ) {
 
-                // if the event fails to process, log and return empty message result so it doesn't get ack'd
-                logger.error("{}. Failed to process message: {}", errorMessage, message.getStringBody().trim() );
-                return new IndexEventResult(Optional.absent(), Optional.absent(), thisEvent.getCreationTime());
+                single = handleEdgeDelete( message );
             }
-        });
+            // deletes are 2-part, actual IO to delete data, then queue up a de-index
+            else if ( event instanceof EntityDeleteEvent ) {
+
+                single = handleEntityDelete( message );
+            }
+            // initialization has special logic, therefore a special event type and no index operation message
+            else if ( event instanceof InitializeApplicationIndexEvent ) {
+
+                handleInitializeApplicationIndex(event, message);
+            }
+            // this is the main event that pulls the index doc from map persistence and hands to the index producer
+            else if (event instanceof ElasticsearchIndexEvent) {
+
+                handleIndexOperation((ElasticsearchIndexEvent) event);
+
+            } else if (event instanceof DeIndexOldVersionsEvent) {
+
+                single = handleDeIndexOldVersionEvent((DeIndexOldVersionsEvent) event);
+
+            } else {
+
+                throw new Exception("Unknown EventType for message: "+ message.getStringBody().trim());
+            }
+
+
+            if( !(event instanceof ElasticsearchIndexEvent)
+                && !(event instanceof InitializeApplicationIndexEvent)
+                  && single.isEmpty() ){
+                    logger.warn("No index operation messages came back from event processing for eventType: {}, msgId: {}, msgBody: {}",
+                        event.getClass().getSimpleName(), message.getMessageId(), message.getStringBody());
+            }
+
+
+            // if no exception happens and the QueueMessage is returned in these results, it will get ack'd
+            return new IndexEventResult(Optional.of(single), Optional.of(message), thisEvent.getCreationTime());
+
+        } catch (IndexDocNotFoundException e){
+
+            // this exception is throw when we wait before trying quorum read on map persistence.
+            // return empty event result so the event's message doesn't get ack'd
+            if(logger.isDebugEnabled()){
+                logger.debug(e.getMessage());
+            }
+            return new IndexEventResult(Optional.absent(), Optional.absent(), thisEvent.getCreationTime());
+
+        } catch (Exception e) {
+
+            // NPEs don't have a detail message, so add something for our log statement to identify better
+            final String errorMessage;
+            if( e instanceof NullPointerException ) {
+                errorMessage = "NullPointerException";
+            }else{
+                errorMessage = e.getMessage();
+            }
+
+            // if the event fails to process, log and return empty message result so it doesn't get ack'd
+            logger.error("{}. Failed to process message: {}", errorMessage, message.getStringBody().trim() );
+            return new IndexEventResult(Optional.absent(), Optional.absent(), thisEvent.getCreationTime());
+
+        } finally {
+            getStageHistogram( thisEvent, "handler_latency" ).update( System.currentTimeMillis() - handlerStart );
+        }
+    }
+
+
+    /**
+     * Events that touch the same entity must be handled in queue order
+     */
+    private Object getOrderingKey( final LegacyQueueMessage message ) {
+
+        final Object body = message.getBody();
 
+        if ( body instanceof EntityIndexEvent ) {
+            return ( ( EntityIndexEvent ) body ).getEntityIdScope().getId();
+        }
+        if ( body instanceof EdgeIndexEvent ) {
+            return ( ( EdgeIndexEvent ) body ).getEntityId();
+        }
+        if ( body instanceof EdgeDeleteEvent ) {
+            return ( ( EdgeDeleteEvent ) body ).getEdge().getSourceNode();
+        }
+        if ( body instanceof EntityDeleteEvent ) {
+            return ( ( EntityDeleteEvent ) body ).getEntityIdScope().getId();
+        }
+        if ( body instanceof DeIndexOldVersionsEvent ) {
+            return ( ( DeIndexOldVersionsEvent ) body ).getEntityIdScope().getId();
+        }
 
-        return indexEventResults.collect(Collectors.toList());
+        // everything else is independent
+        return message.getMessageId();
+    }
+
+
+    private String getCoalesceKey( final EntityIndexEvent event ) {
+
+        final EntityIdScope entityIdScope = event.getEntityIdScope();
+
+        return entityIdScope.getApplicationScope().getApplication().getUuid() + ":"
+            + entityIdScope.getId().getUuid() + ":" + event.getUpdatedAfter();
+    }
+
+
+    private Histogram getStageHistogram( final AsyncEvent event, final String metric ) {
+        return stageHistograms.computeIfAbsent( event.getClass().getSimpleName() + "." + metric,
+            name -> metricsFactory.getHistogram( AsyncEventServiceImpl.class, "async_event." + name ) );
     }
 
 
@@ -607,6 +775,35 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
     }
 
+    @Override
+    public void queueNewEdges(final ApplicationScope applicationScope,
+                              final Collection<Edge> newEdges,
+                              final Map<Id, Entity> entities,
+                              QueueIndexingStrategy queueIndexingStrategy) {
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("Offering index operations of {} new edges", newEdges.size());
+        }
+
+        queueIndexOperationMessage( buildNewEdges( applicationScope, newEdges, entities ),
+            AsyncEventQueueType.REGULAR, queueIndexingStrategy );
+    }
+
+    /**
+     * Build the index operations of new edges to written entities, combined into one message
+     */
+    protected IndexOperationMessage buildNewEdges(final ApplicationScope applicationScope,
+                                                  final Collection<Edge> newEdges,
+                                                  final Map<Id, Entity> entities) {
+
+        return Observable.from( newEdges )
+            .filter( newEdge -> entities.containsKey( newEdge.getTargetNode() ) )
+            .flatMap( newEdge ->
+                eventBuilder.buildNewEdge( applicationScope, entities.get( newEdge.getTargetNode() ), newEdge ) )
+            .collect( () -> new IndexOperationMessage(), ( combined, single ) -> combined.ingest( single ) )
+            .toBlocking().last();
+    }
+
     private IndexOperationMessage handleEdgeIndex(final LegacyQueueMessage message) {
 
         Preconditions.checkNotNull( message, "Queue Message cannot be null for handleEdgeIndex" );
@@ -677,42 +874,59 @@ public class AsyncEventServiceImpl implements AsyncEventService {
      * @param queueType
      */
     public void queueIndexOperationMessage(final IndexOperationMessage indexOperationMessage, AsyncEventQueueType queueType) {
+        queueIndexOperationMessage(indexOperationMessage, queueType, null);
+    }
+
+
+    /**
+     * Queue the index operations to all regions.  With an indexing strategy they are sent asynchronously only for
+     * ASYNC, as an offer is, without one the queue decides.
+     */
+    protected void queueIndexOperationMessage(final IndexOperationMessage indexOperationMessage,
+                                              AsyncEventQueueType queueType,
+                                              QueueIndexingStrategy queueIndexingStrategy) {
 
         // don't try to produce something with nothing
         if(indexOperationMessage == null || indexOperationMessage.isEmpty()){
             return;
         }
 
-        final String jsonValue = ObjectJsonSerializer.INSTANCE.toString( indexOperationMessage );
-
-        final UUID newMessageId = UUIDGenerator.newTimeUUID();
-
-        final int expirationTimeInSeconds =
-            ( int ) TimeUnit.MILLISECONDS.toSeconds( indexProcessorFig.getIndexMessageTtl() );
-
-        //write to the map in ES
-        esMapPersistence.putString( newMessageId.toString(), jsonValue, expirationTimeInSeconds );
-
         //now queue up the index message
-
-        final ElasticsearchIndexEvent elasticsearchIndexEvent =
-            new ElasticsearchIndexEvent(queueFig.getPrimaryRegion(), newMessageId );
+        final ElasticsearchIndexEvent elasticsearchIndexEvent = getESIndexEvent( indexOperationMessage );
 
         //send to the topic so all regions index the batch
 
         if (logger.isTraceEnabled()) {
-            logger.trace("Offering ElasticsearchIndexEvent for message {}", newMessageId);
+            logger.trace("Offering ElasticsearchIndexEvent for message {}", elasticsearchIndexEvent.getIndexBatchId());
         }
 
-        offerTopic( elasticsearchIndexEvent, queueType );
+        final Boolean async =
+            queueIndexingStrategy == null ? null : queueIndexingStrategy == QueueIndexingStrategy.ASYNC;
+
+        offerTopic( elasticsearchIndexEvent, queueType, async );
     }
 
+    /**
+     * Small batches travel inside the event, larger ones are written to map persistence and only the id is sent
+     */
     protected ElasticsearchIndexEvent getESIndexEvent(final IndexOperationMessage indexOperationMessage) {
 
-        final String jsonValue = ObjectJsonSerializer.INSTANCE.toString( indexOperationMessage );
-
         final UUID newMessageId = UUIDGenerator.newTimeUUID();
 
+        final int inlineMaxBytes = indexProcessorFig.getIndexMessageInlineMaxBytes();
+
+        if ( inlineMaxBytes > 0 ) {
+
+            final byte[] payload = ObjectSmileSerializer.INSTANCE.toBytes( indexOperationMessage );
+
+            if ( payload.length <= inlineMaxBytes ) {
+                inlineIndexMessageCounter.inc();
+                return new ElasticsearchIndexEvent( queueFig.getPrimaryRegion(), newMessageId, payload );
+            }
+        }
+
+        final String jsonValue = ObjectJsonSerializer.INSTANCE.toString( indexOperationMessage );
+
         final int expirationTimeInSeconds =
             ( int ) TimeUnit.MILLISECONDS.toSeconds( indexProcessorFig.getIndexMessageTtl() );
 
@@ -733,49 +947,30 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         Preconditions.checkNotNull( messageId, "messageId must not be null" );
 
 
-        final String message = esMapPersistence.getString( messageId.toString() );
-
-
         final IndexOperationMessage indexOperationMessage;
-        if(message == null) {
 
-            // provide some time back pressure before performing a quorum read
-            if ( queueFig.getQuorumFallback() && System.currentTimeMillis() >
-                elasticsearchIndexEvent.getCreationTime() + queueFig.getLocalQuorumTimeout() ) {
+        final byte[] payload = elasticsearchIndexEvent.getPayload();
 
-                if(logger.isDebugEnabled()){
-                    logger.debug("ES batch with id {} not found, reading with strong consistency", messageId);
-                }
+        if ( payload != null ) {
 
-                final String highConsistency = esMapPersistence.getStringHighConsistency(messageId.toString());
-                if (highConsistency == null) {
+            // the batch came with the event, nothing to read from map persistence
+            indexOperationMessage = ObjectSmileSerializer.INSTANCE.fromBytes( payload, IndexOperationMessage.class );
 
-                   throw new RuntimeException("ES batch with id " +
-                       messageId+" not found when reading with strong consistency");
-               }
+        } else {
 
-               indexOperationMessage =
-                   ObjectJsonSerializer.INSTANCE.fromString(highConsistency, IndexOperationMessage.class);
+            indexOperationMessage = readIndexOperationMessage( elasticsearchIndexEvent );
 
-           } else if (System.currentTimeMillis() > elasticsearchIndexEvent.getCreationTime() + queueFig.getMapMessageTimeout()) {
-                // if esMapPersistence message hasn't been received yet, log and return (will be acked)
-                logger.error("ES map message never received, removing message from queue. indexBatchId={}", messageId);
+            // never received, the message will be acked
+            if ( indexOperationMessage == null ) {
                 return;
-           } else {
-                logger.warn("ES map message not received yet. indexBatchId={} elapsedTimeMsec={}", messageId, System.currentTimeMillis() - elasticsearchIndexEvent.getCreationTime());
-                throw new IndexDocNotFoundException(elasticsearchIndexEvent.getIndexBatchId());
-           }
-
-        } else {
-
-            indexOperationMessage = ObjectJsonSerializer.INSTANCE.fromString( message, IndexOperationMessage.class );
+            }
         }
 
 
         // don't let this continue if there's nothing to index
         if (indexOperationMessage == null ||  indexOperationMessage.isEmpty()){
             throw new RuntimeException(
-                "IndexOperationMessage cannot be null or empty after retrieving from map persistence");
+                "IndexOperationMessage cannot be null or empty after retrieving from map persistence or payload");
         }
 
 
@@ -788,6 +983,50 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     }
 
 
+    /**
+     * Read the index operation message stored in map persistence for the event
+     *
+     * @return The message, or null if it was never received and the event should be dropped
+     */
+    private IndexOperationMessage readIndexOperationMessage( final ElasticsearchIndexEvent elasticsearchIndexEvent )
+        throws IndexDocNotFoundException {
+
+        final UUID messageId = elasticsearchIndexEvent.getIndexBatchId();
+
+        final String message = esMapPersistence.getString( messageId.toString() );
+
+        if ( message != null ) {
+            return ObjectJsonSerializer.INSTANCE.fromString( message, IndexOperationMessage.class );
+        }
+
+        // provide some time back pressure before performing a quorum read
+        if ( queueFig.getQuorumFallback() && System.currentTimeMillis() >
+            elasticsearchIndexEvent.getCreationTime() + queueFig.getLocalQuorumTimeout() ) {
+
+            if(logger.isDebugEnabled()){
+                logger.debug("ES batch with id {} not found, reading with strong consistency", messageId);
+            }
+
+            final String highConsistency = esMapPersistence.getStringHighConsistency(messageId.toString());
+            if (highConsistency == null) {
+
+                throw new RuntimeException("ES batch with id " +
+                    messageId+" not found when reading with strong consistency");
+            }
+
+            return ObjectJsonSerializer.INSTANCE.fromString(highConsistency, IndexOperationMessage.class);
+
+        } else if (System.currentTimeMillis() > elasticsearchIndexEvent.getCreationTime() + queueFig.getMapMessageTimeout()) {
+            // if esMapPersistence message hasn't been received yet, log and return (will be acked)
+            logger.error("ES map message never received, removing message from queue. indexBatchId={}", messageId);
+            return null;
+        } else {
+            logger.warn("ES map message not received yet. indexBatchId={} elapsedTimeMsec={}", messageId, System.currentTimeMillis() - elasticsearchIndexEvent.getCreationTime());
+            throw new IndexDocNotFoundException(elasticsearchIndexEvent.getIndexBatchId());
+        }
+    }
+
+
     @Override
     public void queueDeIndexOldVersion(final ApplicationScope applicationScope, final Id entityId, UUID markedVersion) {
 
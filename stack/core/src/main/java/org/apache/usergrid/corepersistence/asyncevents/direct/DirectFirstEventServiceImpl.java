@@ -18,6 +18,7 @@
  */
 package org.apache.usergrid.corepersistence.asyncevents.direct;
 
+import org.apache.usergrid.corepersistence.asyncevents.AsyncEventQueueType;
 import org.apache.usergrid.corepersistence.asyncevents.AsyncEventServiceImpl;
 import org.apache.usergrid.corepersistence.asyncevents.EventBuilder;
 import org.apache.usergrid.corepersistence.asyncevents.model.ElasticsearchIndexEvent;
@@ -27,10 +28,14 @@ import org.apache.usergrid.corepersistence.util.CpCollectionUtils;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.rx.RxTaskScheduler;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.Edge;
 import org.apache.usergrid.persistence.index.EntityIndexFactory;
 import org.apache.usergrid.persistence.index.impl.IndexOperationMessage;
 import org.apache.usergrid.persistence.index.impl.IndexProducer;
 import org.apache.usergrid.persistence.map.MapManagerFactory;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.queue.LegacyQueueFig;
 import org.apache.usergrid.persistence.queue.LegacyQueueManagerFactory;
 import org.apache.usergrid.persistence.queue.LegacyQueueMessage;
@@ -40,7 +45,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -142,6 +149,39 @@ public class DirectFirstEventServiceImpl extends AsyncEventServiceImpl {
     }
 
 
+    /**
+     * Index the new edges of entities written together with one message, directly to ES and/or through the queue
+     * like a single new edge
+     */
+    @Override
+    public void queueNewEdges(final ApplicationScope applicationScope, final Collection<Edge> newEdges,
+                              final Map<Id, Entity> entities, QueueIndexingStrategy queueIndexingStrategy) {
+
+        queueIndexingStrategy = resolveIndexingStrategy(queueIndexingStrategy);
+
+        final IndexOperationMessage combined = buildNewEdges(applicationScope, newEdges, entities);
+
+        if (combined.isEmpty()) {
+            return;
+        }
+
+        if (queueIndexingStrategy.shouldSendDirectToES()) {
+            try {
+                handleIndexOperation(getESIndexEvent(combined));
+            } catch (Exception e) {
+                // failed to dispatch, make sure the queue gets it
+                logger.warn("Failed to send index operations of {} new edges to ES", newEdges.size(), e);
+                queueIndexOperationMessage(combined, AsyncEventQueueType.REGULAR, queueIndexingStrategy);
+                return;
+            }
+        }
+
+        if (queueIndexingStrategy.shouldSendToAWS()) {
+            queueIndexOperationMessage(combined, AsyncEventQueueType.REGULAR, queueIndexingStrategy);
+        }
+    }
+
+
     protected List<LegacyQueueMessage> submitToIndex(List<IndexEventResult> indexEventResults, boolean forUtilityQueue) {
 
         // if nothing came back then return empty list
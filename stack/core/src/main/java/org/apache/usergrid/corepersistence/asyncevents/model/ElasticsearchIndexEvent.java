@@ -32,6 +32,13 @@ public final class ElasticsearchIndexEvent extends AsyncEvent {
     @JsonProperty
     protected UUID indexBatchId;
 
+    /**
+     * The smile encoded index operation message when it is small enough to travel with the event, otherwise null and
+     * the batch is stored in map persistence under the batch id
+     */
+    @JsonProperty
+    protected byte[] payload;
+
     public ElasticsearchIndexEvent() {
     }
 
@@ -40,6 +47,11 @@ public final class ElasticsearchIndexEvent extends AsyncEvent {
         this.indexBatchId = indexBatchId;
     }
 
+    public ElasticsearchIndexEvent(String sourceRegion, UUID indexBatchId, byte[] payload) {
+        this(sourceRegion, indexBatchId);
+        this.payload = payload;
+    }
+
 
     /**
      * Get the unique message id of the
@@ -48,4 +60,12 @@ public final class ElasticsearchIndexEvent extends AsyncEvent {
     public UUID getIndexBatchId() {
         return indexBatchId;
     }
+
+
+    /**
+     * Get the inline index operation message, null if it must be read from map persistence
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
 }
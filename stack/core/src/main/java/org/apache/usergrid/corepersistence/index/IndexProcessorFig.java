@@ -50,6 +50,12 @@ public interface IndexProcessorFig extends GuicyFig {
 
     String EVENT_CONCURRENCY_FACTOR = "event.concurrency.factor";
 
+    String EVENT_HANDLER_CONCURRENCY = "event.handler.concurrency";
+
+    String EVENT_HANDLER_THREADS = "event.handler.threads";
+
+    String INDEX_MESSAGE_INLINE_MAX_BYTES = "elasticsearch.index_message.inline_max_bytes";
+
     String ELASTICSEARCH_QUEUE_IMPL = "elasticsearch.queue_impl";
 
     String INDEX_QUEUE_VISIBILITY_TIMEOUT = "elasticsearch.queue_visibility_timeout";
@@ -94,6 +100,30 @@ public interface IndexProcessorFig extends GuicyFig {
     @Key( EVENT_CONCURRENCY_FACTOR )
     int getEventConcurrencyFactor();
 
+    /**
+     * The max number of messages from a single batch handled concurrently.  Messages for the same entity are
+     * always handled in order
+     */
+    @Default( "4" )
+    @Key( EVENT_HANDLER_CONCURRENCY )
+    int getEventHandlerConcurrency();
+
+    /**
+     * The number of threads shared by all batches for concurrent message handling
+     */
+    @Default( "40" )
+    @Key( EVENT_HANDLER_THREADS )
+    int getEventHandlerThreads();
+
+    /**
+     * Index batches that encode to at most this many bytes are sent inside the queue message instead of being stored
+     * in map persistence.  0 always uses map persistence.  Nodes that predate inline messages only read map
+     * persistence, so leave this off until every node in the cluster has been upgraded, then set it (e.g. 32768)
+     */
+    @Default( "0" )
+    @Key( INDEX_MESSAGE_INLINE_MAX_BYTES )
+    int getIndexMessageInlineMaxBytes();
+
 
 
     /**
@@ -24,6 +24,7 @@ import org.apache.usergrid.corepersistence.pipeline.cursor.RequestCursor;
 import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.ValidationUtils;
+import org.apache.usergrid.persistence.index.query.ParsedQuery;
 import org.apache.usergrid.persistence.model.entity.Id;
 
 import com.google.common.base.Optional;
@@ -52,6 +53,7 @@ public class Pipeline<InputType> {
     private int limit;
     private boolean keepStaleEntries;
     private String query;
+    private ParsedQuery parsedQuery;
 
     //Generics hell, intentionally without a generic, we check at the filter level
     private Observable currentObservable;
@@ -60,7 +62,8 @@ public class Pipeline<InputType> {
     /**
      * Create our filter pipeline
      */
-    public Pipeline( final ApplicationScope applicationScope, final Optional<String> cursor, final int limit, boolean keepStaleEntries, String query) {
+    public Pipeline( final ApplicationScope applicationScope, final Optional<String> cursor, final int limit, boolean keepStaleEntries, String query,
+                     final ParsedQuery parsedQuery ) {
 
 
         ValidationUtils.validateApplicationScope( applicationScope );
@@ -83,6 +86,7 @@ public class Pipeline<InputType> {
 
         this.keepStaleEntries = keepStaleEntries;
         this.query = query;
+        this.parsedQuery = parsedQuery;
     }
 
 
@@ -91,7 +95,7 @@ public class Pipeline<InputType> {
 
 
 
-        final PipelineContext context = new PipelineContext( applicationScope, requestCursor, limit, idCount, keepStaleEntries, query );
+        final PipelineContext context = new PipelineContext( applicationScope, requestCursor, limit, idCount, keepStaleEntries, query, parsedQuery );
 
         filter.setContext( context );
 
@@ -29,7 +29,6 @@ import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 
 import com.google.common.base.Optional;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
-import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
 
 import static org.apache.usergrid.persistence.Query.MAX_LIMIT;
 
@@ -50,13 +49,14 @@ public class PipelineContext {
     private ParsedQuery parsedQuery;
 
 
-    public PipelineContext( final ApplicationScope applicationScope, final RequestCursor requestCursor, final int limit, final int id, boolean keepStaleEntries, String query ) {
+    public PipelineContext( final ApplicationScope applicationScope, final RequestCursor requestCursor, final int limit, final int id, boolean keepStaleEntries, String query,
+                            final ParsedQuery parsedQuery ) {
 
         this.applicationScope = applicationScope;
         this.id = id;
         this.keepStaleEntries = keepStaleEntries;
         this.query = query;
-        this.parsedQuery = ParsedQueryBuilder.build(query);
+        this.parsedQuery = parsedQuery;
         if (parsedQuery != null && parsedQuery.isDirectQuery()) {
             // for direct query, use no limit or cursor
             this.limit = MAX_LIMIT + 1;
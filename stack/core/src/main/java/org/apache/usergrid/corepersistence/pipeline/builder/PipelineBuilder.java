@@ -24,6 +24,7 @@ import org.apache.usergrid.corepersistence.pipeline.read.FilterFactory;
 import org.apache.usergrid.corepersistence.pipeline.Pipeline;
 import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
 import org.apache.usergrid.persistence.model.entity.Id;
 
 import com.google.common.base.Optional;
@@ -44,6 +45,7 @@ public class PipelineBuilder {
     private Optional<String> cursor = Optional.absent();
     private int limit = 10;
     private final FilterFactory filterFactory;
+    private final QueryPlanCache queryPlanCache;
     private boolean keepStaleEntries = false;
     private String query = "";
 
@@ -51,10 +53,13 @@ public class PipelineBuilder {
     /**
      * Create an instance of our I/O operations
      * @param filterFactory
+     * @param queryPlanCache
      */
     @Inject
-    public PipelineBuilder( final FilterFactory filterFactory, @Assisted final ApplicationScope applicationScope ) {
+    public PipelineBuilder( final FilterFactory filterFactory, final QueryPlanCache queryPlanCache,
+                            @Assisted final ApplicationScope applicationScope ) {
         this.filterFactory = filterFactory;
+        this.queryPlanCache = queryPlanCache;
         this.applicationScope = applicationScope;
     }
 
@@ -108,7 +113,8 @@ public class PipelineBuilder {
      */
     @Deprecated
     public IdBuilder fromId(final Id entityId){
-        Pipeline<FilterResult<Id>> pipeline =  new Pipeline( applicationScope, this.cursor,limit,keepStaleEntries,query ).withFilter(  filterFactory.getEntityIdFilter( entityId ) );
+        Pipeline<FilterResult<Id>> pipeline =  new Pipeline( applicationScope, this.cursor,limit,keepStaleEntries,query,
+            queryPlanCache.getParsedQuery( query ) ).withFilter(  filterFactory.getEntityIdFilter( entityId ) );
 
         return new IdBuilder( pipeline, filterFactory );
     }
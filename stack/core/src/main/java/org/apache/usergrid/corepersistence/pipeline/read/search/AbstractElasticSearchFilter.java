@@ -48,7 +48,7 @@ import java.util.Map;
 /**
  * Command for reading graph edges
  */
-public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id, Candidate, Integer> {
+public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id, Candidate, ElasticsearchCursor> {
 
     private static final Logger logger = LoggerFactory.getLogger( AbstractElasticSearchFilter.class );
 
@@ -116,12 +116,17 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
                 //our offset to our start value.  This will be set the first time we emit
                 //after we receive new ids, we want to reset this to 0
                 //set our our constant state
-                final Optional<Integer> startFromCursor = getSeekValue();
+                final Optional<ElasticsearchCursor> startFromCursor = getSeekValue();
 
-                final int startOffset = startFromCursor.or( 0 );
+                final int startOffset = startFromCursor.isPresent() ? startFromCursor.get().getOffset() : 0;
 
                 int currentOffSet = startOffset;
 
+                //when the cursor has a sort position, seek past it instead of skipping by offset.  Old cursors only
+                //have an offset
+                Optional<SortPosition> searchAfter =
+                    startFromCursor.isPresent() ? startFromCursor.get().getSortPosition() : Optional.absent();
+
                 subscriber.onStart();
 
                 //emit while we have values from ES and someone is subscribed
@@ -130,7 +135,7 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
                     try {
                         final CandidateResults candidateResults =
                             applicationEntityIndex.search( searchEdge, searchTypes, pipelineContext.getParsedQuery(), limit, currentOffSet,
-                                propertiesWithType, analyzeOnly, returnQuery);
+                                searchAfter, propertiesWithType, analyzeOnly, returnQuery);
 
 
                         Collection<SelectFieldMapping> fieldMappingCollection = candidateResults.getGetFieldMappings();
@@ -145,12 +150,16 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
 
                             final Candidate candidate = new Candidate( candidateResult, searchEdge, fieldMappingCollection );
 
-                            final FilterResult<Candidate>
-                                result = createFilterResult( candidate, currentOffSet, idFilterResult.getPath() );
+                            final Optional<SortPosition> sortPosition = candidateResult.getSortPosition();
+
+                            final FilterResult<Candidate> result =
+                                createFilterResult( candidate, new ElasticsearchCursor( currentOffSet, sortPosition ),
+                                    idFilterResult.getPath() );
 
                             subscriber.onNext( result );
 
                             currentOffSet++;
+                            searchAfter = sortPosition;
                         }
 
                         /**
@@ -183,7 +192,7 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
 
 
     @Override
-    protected CursorSerializer<Integer> getCursorSerializer() {
+    protected CursorSerializer<ElasticsearchCursor> getCursorSerializer() {
         return ElasticsearchCursorSerializer.INSTANCE;
     }
 
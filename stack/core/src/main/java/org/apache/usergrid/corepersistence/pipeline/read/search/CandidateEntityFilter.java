@@ -30,10 +30,8 @@ import org.apache.usergrid.persistence.index.impl.IndexProducer;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.field.DistanceField;
-import org.apache.usergrid.persistence.model.field.EntityObjectField;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.field.StringField;
-import org.apache.usergrid.persistence.model.field.value.EntityObject;
 import org.apache.usergrid.utils.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +42,7 @@ import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldProjection;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
@@ -126,10 +125,15 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
                 //load the ids
                 final Observable<FilterResult<Entity>> entitySetObservable =
                     candidates.flatMap(candidatesList -> {
-                        Collection<SelectFieldMapping> mappings = candidatesList.get(0).getFields();
+                        final Collection<SelectFieldMapping> mappings = candidatesList.get(0).getFields();
+
+                        //compile the select once per page, so we only read the selected fields from storage
+                        final FieldProjection projection = mappings.size() > 0 ? getProjection( mappings ) : null;
+
                         Observable<EntitySet> entitySets = Observable.from(candidatesList)
                             .map(candidateEntry -> candidateEntry.getCandidateResult().getId()).toList()
-                            .flatMap(idList -> entityCollectionManager.load(idList));
+                            .flatMap(idList -> projection == null ? entityCollectionManager.load(idList) :
+                                entityCollectionManager.load(idList, projection));
                         //now we have a collection, validate our candidate set is correct.
                         return entitySets.map(
                             entitySet -> new EntityVerifier(
@@ -139,31 +143,9 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
                                 isDirectQuery))
                             .flatMap(entityCollector -> Observable.from(entityCollector.getResults()))
                             .map(entityFilterResult -> {
-                                final Entity entity = entityFilterResult.getValue();
-                                if (mappings.size() > 0) {
-                                    Map<String,Field> fieldMap = new HashMap<String, Field>(mappings.size());
-                                    rx.Observable.from(mappings)
-
-                                        .filter(mapping -> {
-                                            if ( entity.getFieldMap().containsKey(mapping.getSourceFieldName())) {
-                                                return true;
-                                            }
-                                            String[] parts = mapping.getSourceFieldName().split("\\.");
-                                            return nestedFieldCheck( parts, entity.getFieldMap() );
-                                        })
-
-                                        .doOnNext(mapping -> {
-                                            Field field = entity.getField(mapping.getSourceFieldName());
-                                            if ( field != null ) {
-                                                field.setName( mapping.getTargetFieldName() );
-                                                fieldMap.put( mapping.getTargetFieldName(), field );
-                                            } else {
-                                                String[] parts = mapping.getSourceFieldName().split("\\.");
-                                                nestedFieldSet( fieldMap, parts, entity.getFieldMap() );
-                                            }
-                                        }).toBlocking().lastOrDefault(null);
-
-                                    entity.setFieldMap(fieldMap);
+                                if ( projection != null ) {
+                                    final Entity entity = entityFilterResult.getValue();
+                                    entity.setFieldMap( selectFields( projection, mappings, entity ) );
                                 }
                                 return entityFilterResult;
                             });
@@ -179,58 +161,47 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
 
 
     /**
-     * Sets field in result map with support for nested fields via recursion.
-     *
-     * @param result The result map of filtered fields
-     * @param parts The parts of the field name (more than one if field is nested)
-     * @param fieldMap Map of fields of the object
+     * Compile the source fields of the select into a projection
      */
-    private void nestedFieldSet( Map<String, Field> result, String[] parts, Map<String, Field> fieldMap) {
-        if ( parts.length > 0 ) {
-
-            if ( fieldMap.containsKey( parts[0] )) {
-                Field field = fieldMap.get( parts[0] );
-                if ( field instanceof EntityObjectField ) {
-                    EntityObjectField eof = (EntityObjectField)field;
-                    result.putIfAbsent( parts[0], new EntityObjectField( parts[0], new EntityObject() ) );
-
-                    // recursion
-                    nestedFieldSet(
-                        ((EntityObjectField)result.get( parts[0] )).getValue().getFieldMap(),
-                        Arrays.copyOfRange(parts, 1, parts.length),
-                        eof.getValue().getFieldMap());
+    private FieldProjection getProjection( final Collection<SelectFieldMapping> mappings ) {
+        final List<String> paths = new ArrayList<>( mappings.size() );
 
-                } else {
-                    result.put( parts[0], field );
-                }
-            }
+        for ( final SelectFieldMapping mapping : mappings ) {
+            paths.add( mapping.getSourceFieldName() );
         }
+
+        return FieldProjection.fromPaths( paths );
     }
 
 
     /**
-     * Check to see if field should be included in filtered result with support for nested fields via recursion.
-     *
-     * @param parts The parts of the field name (more than one if field is nested)
-     * @param fieldMap Map of fields of the object
+     * Get the selected fields of the entity.  Top level fields are copied under their target name, nested fields keep
+     * their structure.  The fields of the entity are never renamed, they may be shared with the entity cache.
      */
-    private boolean nestedFieldCheck( String[] parts, Map<String, Field> fieldMap) {
-        if ( parts.length > 0 ) {
+    private Map<String, Field> selectFields( final FieldProjection projection,
+                                             final Collection<SelectFieldMapping> mappings, final Entity entity ) {
 
-            if ( fieldMap.containsKey( parts[0] )) {
-                Field field = fieldMap.get( parts[0] );
-                if ( field instanceof EntityObjectField ) {
-                    EntityObjectField eof = (EntityObjectField)field;
+        final Map<String, Field> fieldMap = projection.project( entity.getFieldMap() );
 
-                    // recursion
-                    return nestedFieldCheck( Arrays.copyOfRange(parts, 1, parts.length), eof.getValue().getFieldMap());
+        final List<Field> renamed = new ArrayList<>();
 
-                } else {
-                    return true;
-                }
+        for ( final SelectFieldMapping mapping : mappings ) {
+            if ( mapping.getSourceFieldName().equals( mapping.getTargetFieldName() ) ) {
+                continue;
+            }
+
+            final Field field = fieldMap.remove( mapping.getSourceFieldName() );
+
+            if ( field != null ) {
+                renamed.add( field.copy( mapping.getTargetFieldName() ) );
             }
         }
-        return false;
+
+        for ( final Field field : renamed ) {
+            fieldMap.put( field.getName(), field );
+        }
+
+        return fieldMap;
     }
 
 
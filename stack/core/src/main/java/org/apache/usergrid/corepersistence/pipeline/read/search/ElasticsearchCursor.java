@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import java.io.Serializable;
+
+import org.apache.usergrid.persistence.index.SortPosition;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.base.Optional;
+
+
+/**
+ * The cursor value of an elasticsearch search.  Holds the offset of the candidate, and when the search is sorted by
+ * the default sort, the sort values of the candidate so the next page can seek directly past it
+ */
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class ElasticsearchCursor implements Serializable {
+
+    private int offset;
+    private Long edgeTimestamp;
+    private String entityId;
+    private String entityVersion;
+
+
+    /**
+     * Used by jackson
+     */
+    public ElasticsearchCursor() {
+    }
+
+
+    public ElasticsearchCursor( final int offset, final Optional<SortPosition> sortPosition ) {
+        this.offset = offset;
+
+        if ( sortPosition.isPresent() ) {
+            this.edgeTimestamp = sortPosition.get().getEdgeTimestamp();
+            this.entityId = sortPosition.get().getEntityId();
+            this.entityVersion = sortPosition.get().getEntityVersion();
+        }
+    }
+
+
+    /**
+     * Get the position to seek past, absent if this cursor can only be resumed by offset
+     */
+    @JsonIgnore
+    public Optional<SortPosition> getSortPosition() {
+        if ( edgeTimestamp == null || entityId == null || entityVersion == null ) {
+            return Optional.absent();
+        }
+
+        return Optional.of( new SortPosition( edgeTimestamp, entityId, entityVersion ) );
+    }
+
+
+    public int getOffset() {
+        return offset;
+    }
+
+
+    public void setOffset( final int offset ) {
+        this.offset = offset;
+    }
+
+
+    public Long getEdgeTimestamp() {
+        return edgeTimestamp;
+    }
+
+
+    public void setEdgeTimestamp( final Long edgeTimestamp ) {
+        this.edgeTimestamp = edgeTimestamp;
+    }
+
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+
+    public void setEntityId( final String entityId ) {
+        this.entityId = entityId;
+    }
+
+
+    public String getEntityVersion() {
+        return entityVersion;
+    }
+
+
+    public void setEntityVersion( final String entityVersion ) {
+        this.entityVersion = entityVersion;
+    }
+}
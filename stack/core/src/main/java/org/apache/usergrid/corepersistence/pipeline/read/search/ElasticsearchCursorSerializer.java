@@ -22,18 +22,34 @@ package org.apache.usergrid.corepersistence.pipeline.read.search;
 
 import org.apache.usergrid.corepersistence.pipeline.cursor.AbstractCursorSerializer;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+
 
 /**
- * ElasticSearch cursor serializer
+ * ElasticSearch cursor serializer.  Cursors written before sort positions were added are a single offset, these are
+ * still accepted and resume by offset
  */
-public class ElasticsearchCursorSerializer extends AbstractCursorSerializer<Integer> {
+public class ElasticsearchCursorSerializer extends AbstractCursorSerializer<ElasticsearchCursor> {
 
 
     public static final ElasticsearchCursorSerializer INSTANCE = new ElasticsearchCursorSerializer();
 
+
+    @Override
+    public ElasticsearchCursor fromJsonNode( final JsonNode node, final ObjectMapper objectMapper ) {
+        if ( node.isNumber() ) {
+            return new ElasticsearchCursor( node.asInt(), Optional.absent() );
+        }
+
+        return super.fromJsonNode( node, objectMapper );
+    }
+
+
     @Override
-    protected Class<Integer> getType() {
-        return Integer.class;
+    protected Class<ElasticsearchCursor> getType() {
+        return ElasticsearchCursor.class;
     }
 
 
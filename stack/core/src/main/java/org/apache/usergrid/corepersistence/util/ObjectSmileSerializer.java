@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.usergrid.corepersistence.util;
+
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.base.Preconditions;
+
+
+/**
+ * An utility class to serialize and de-serialize objects as smile (binary json).  Considerably smaller on the wire
+ * than {@link ObjectJsonSerializer}.  Uses the default jackson mappings, the lenient backslash escaping enabled in
+ * {@link ObjectJsonSerializer} only matters for textual json arriving from SNS, which never reaches this serializer
+ */
+public final class ObjectSmileSerializer {
+
+
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper( SMILE_FACTORY );
+
+
+    /**
+     * Singleton instance of our serializer, instantiating it and configuring the mapper is expensive.
+     */
+    public static final ObjectSmileSerializer INSTANCE = new ObjectSmileSerializer();
+
+
+    private ObjectSmileSerializer() {
+
+    }
+
+
+    public <T extends Serializable> byte[] toBytes( final T toSerialize ) {
+
+        Preconditions.checkNotNull( toSerialize, "toSerialize must not be null" );
+
+        try {
+            return MAPPER.writeValueAsBytes( toSerialize );
+        }
+        catch ( JsonProcessingException jpe ) {
+            throw new RuntimeException( "Unable to serialize", jpe );
+        }
+    }
+
+
+    public <T extends Serializable> T fromBytes( final byte[] value, final Class<T> toSerialize ) {
+
+        Preconditions.checkNotNull( value, "value must not be null" );
+
+        try {
+            return MAPPER.readValue( value, toSerialize );
+        }
+        catch ( IOException e ) {
+            throw new RuntimeException( "Unable to deserialize", e );
+        }
+    }
+}
@@ -18,22 +18,22 @@ package org.apache.usergrid.count;
 
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.count.common.Count;
+import com.google.common.base.Objects;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Counter;
 import com.yammer.metrics.core.Timer;
@@ -43,6 +43,12 @@ import com.yammer.metrics.core.TimerContext;
 /**
  * Base batcher implementation, handles concurrency and locking throughput throttling.
  *
+ * Counts are coalesced as they are added: every distinct counter (table, row and column) gets a single striped
+ * accumulator, so memory grows with the number of distinct counters rather than the rate of increments, and every
+ * flush submits exactly one {@link Count} per distinct counter.  When a batch holds <code>batchSize</code> distinct
+ * counters the adding thread flushes it, waiting for the previous submission to complete first, so callers are
+ * slowed down instead of having their counts dropped.
+ *
  * @author zznate
  */
 public abstract class AbstractBatcher implements Batcher {
@@ -54,12 +60,25 @@ public abstract class AbstractBatcher implements Batcher {
     private final AtomicLong opCount = new AtomicLong();
     private final Timer addTimer =
             Metrics.newTimer( AbstractBatcher.class, "add_invocation", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
+    private final Timer flushWaitTimer =
+            Metrics.newTimer( AbstractBatcher.class, "flush_wait", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
     protected final Counter invocationCounter = Metrics.newCounter( AbstractBatcher.class, "batch_add_invocations" );
-    // TODO add batchCount, remove shouldSubmit, impl submit, change simpleBatcher to just be an extension
+    protected final Counter flushedCounter = Metrics.newCounter( AbstractBatcher.class, "batch_flushed_counters" );
     protected int batchSize = 500;
     protected int batchIntervalSeconds = 10;
     private final AtomicLong batchSubmissionCount = new AtomicLong();
 
+    /**
+     * Adders share the read lock while incrementing, a flush takes the write lock only to swap in a new batch, so no
+     * increment can land in a batch after it has been summed
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * The last submission, guarded by this.  Waited on before the next submit so at most one batch is in flight
+     */
+    private Future<?> lastSubmission;
+
     /**
      * Create our scheduler to fire our execution
      */
@@ -74,6 +93,11 @@ public abstract class AbstractBatcher implements Batcher {
        this.batchIntervalSeconds  = batchIntervalSeconds;
     }
 
+
+    /**
+     * Set the number of distinct counters a batch may hold before it is flushed.  A size of 1 writes every count
+     * through before {@link #add(Count)} returns
+     */
     public void setBatchSize( int batchSize ) {
         this.batchSize = batchSize;
     }
@@ -97,13 +121,26 @@ public abstract class AbstractBatcher implements Batcher {
     /** Add a count object to this batcher */
     public void add( Count count ) throws CounterProcessingUnavailableException {
         invocationCounter.inc();
+        opCount.incrementAndGet();
         final TimerContext context = addTimer.time();
-        if ( batchSize == 1 ) {
-            getBatch().addSerial( count );
+
+        final boolean full;
+
+        swapLock.readLock().lock();
+        try {
+            full = getBatch().add( count );
+        }
+        finally {
+            swapLock.readLock().unlock();
         }
-        else {
-            getBatch().add( count );
+
+        if ( batchSize <= 1 ) {
+            flush( true );
         }
+        else if ( full ) {
+            flushIfFull();
+        }
+
         context.stop();
     }
 
@@ -124,34 +161,92 @@ public abstract class AbstractBatcher implements Batcher {
             }
         }
 
-        //we want to flush, and we have no capacity left, perform a flush
-        if ( batchSize > 1 && active.getCapacity() == 0 ) {
-            synchronized ( this ) {
-                if ( active.getCapacity() == 0 ) {
-                    active.flush();
-                }
-            }
+        return active;
+    }
+
+
+    /**
+     * Another thread may have flushed while we waited for the monitor, only flush if the current batch is still full
+     */
+    private synchronized void flushIfFull() {
+        if ( batch.size() >= batchSize ) {
+            flush( false );
         }
+    }
 
-        return active;
+
+    /**
+     * Swap in an empty batch and submit the coalesced counts of the old one
+     *
+     * @param await True to wait for this submission to complete before returning
+     */
+    private synchronized void flush( final boolean await ) {
+
+        final Batch flushing;
+
+        swapLock.writeLock().lock();
+        try {
+            flushing = getBatch();
+            batch = new Batch();
+        }
+        finally {
+            swapLock.writeLock().unlock();
+        }
+
+        final Collection<Count> counts = flushing.getCounts();
+
+        if ( counts.isEmpty() ) {
+            return;
+        }
+
+        //apply backpressure, don't pile up batches behind a slow submitter
+        waitFor( lastSubmission );
+
+        lastSubmission = batchSubmitter.submit( counts );
+        batchSubmissionCount.incrementAndGet();
+        flushedCounter.inc( counts.size() );
+
+        if ( await ) {
+            waitFor( lastSubmission );
+        }
     }
 
-    private void flush(){
-        synchronized(this) {
-            getBatch().flush();
+
+    private void waitFor( final Future<?> submission ) {
+        if ( submission == null ) {
+            return;
+        }
+
+        final TimerContext context = flushWaitTimer.time();
+        try {
+            submission.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        catch ( Exception ex ) {
+            logger.error( "Batch submission failed", ex );
+        }
+        finally {
+            context.stop();
         }
     }
 
 
     /**
-     * Runnable that will flush the batch every 30 seconds
+     * Runnable that will flush the batch every batch interval
      */
     private final class BatchFlusher implements Runnable {
 
         @Override
         public void run() {
             //explicitly flush the batch
-            AbstractBatcher.this.flush();
+            try {
+                AbstractBatcher.this.flush( false );
+            }
+            catch ( Exception e ) {
+                logger.error( "Unable to flush counter batch", e );
+            }
         }
     }
 
@@ -161,56 +256,115 @@ public abstract class AbstractBatcher implements Batcher {
     }
 
 
+    /**
+     * The counts added since the last flush, one striped accumulator per distinct counter
+     */
     class Batch {
-        private BlockingQueue<Count> counts;
-        private final AtomicInteger localCallCounter = new AtomicInteger();
+        private final ConcurrentHashMap<CounterKey, CounterCell> cells = new ConcurrentHashMap<>();
+
+
+        /**
+         * Add the count to the accumulator for its counter
+         *
+         * @return true if this count created a new counter and the batch now holds batchSize distinct counters
+         */
+        boolean add( final Count count ) {
+            final CounterKey key = new CounterKey( count );
+
+            CounterCell cell = cells.get( key );
+
+            if ( cell == null ) {
+                final CounterCell created = new CounterCell( count );
+                cell = cells.putIfAbsent( key, created );
 
+                if ( cell == null ) {
+                    created.value.add( count.getValue() );
+                    return cells.mappingCount() >= batchSize;
+                }
+            }
 
-        Batch() {
-            counts = new ArrayBlockingQueue<>( batchSize );
+            cell.value.add( count.getValue() );
+            return false;
         }
 
 
-        int getCapacity() {
-            return counts.remainingCapacity();
+        long size() {
+            return cells.mappingCount();
         }
 
 
+        /**
+         * Only call once the batch has been swapped out, otherwise increments may be missed
+         */
+        Collection<Count> getCounts() {
+            final Collection<Count> counts = new ArrayList<>( cells.size() );
+
+            for ( CounterCell cell : cells.values() ) {
+                final long sum = cell.value.sum();
 
+                if ( sum != 0 ) {
+                    counts.add( new Count( cell.prototype.getTableName(), cell.prototype.getKeyName(),
+                        cell.prototype.getColumnName(), sum ) );
+                }
+            }
 
-        void flush() {
-            ArrayList<Count> flushed = new ArrayList<Count>( batchSize );
-            counts.drainTo( flushed );
-            batchSubmitter.submit( flushed );
-            batchSubmissionCount.incrementAndGet();
-            opCount.incrementAndGet();
-            localCallCounter.incrementAndGet();
+            return counts;
         }
+    }
 
 
-        void add( Count count ) {
-            try {
-                counts.offer( count, 500, TimeUnit.MILLISECONDS );
-            }
-            catch ( Exception ex ) {
-                logger.error( "Unable to add count, dropping count {}", count, ex );
-            }
+    /**
+     * The first count seen for a counter, and the sum of all counts for it
+     */
+    private static final class CounterCell {
+        private final Count prototype;
+        private final LongAdder value = new LongAdder();
+
+
+        private CounterCell( final Count prototype ) {
+            this.prototype = prototype;
         }
+    }
 
 
-        void addSerial( Count count ) {
-            Future f = batchSubmitter.submit( Arrays.asList( count ) );
-            try {
-                f.get();
+    /**
+     * Identifies a counter by table, row and column without serializing them the way
+     * {@link Count#getCounterName()} does
+     */
+    private static final class CounterKey {
+        private final String tableName;
+        private final Object keyName;
+        private final Object columnName;
+        private final int hashCode;
+
+
+        private CounterKey( final Count count ) {
+            this.tableName = count.getTableName();
+            this.keyName = count.getKeyName();
+            this.columnName = count.getColumnName();
+            this.hashCode = Objects.hashCode( tableName, keyName, columnName );
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
             }
-            catch ( Exception ex ) {
-                logger.error( "Unable to add count, dropping count {}", count, ex );
+            if ( !( o instanceof CounterKey ) ) {
+                return false;
             }
-            batchSubmissionCount.incrementAndGet();
-            opCount.incrementAndGet();
-            localCallCounter.incrementAndGet();
+
+            final CounterKey that = ( CounterKey ) o;
+
+            return hashCode == that.hashCode && Objects.equal( tableName, that.tableName ) && Objects
+                .equal( keyName, that.keyName ) && Objects.equal( columnName, that.columnName );
         }
 
 
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
@@ -100,6 +100,31 @@ public interface EntityManager {
      */
     public Entity create(Id id, Map<String, Object> properties )
         throws Exception;
+
+    /**
+     * Creates several entities of the specified type together.  The entities are written in batches of the collection
+     * write batch size, and each batch is added to the collection of the type and indexed as one before the next is
+     * written.  Unique properties of every entity are verified before any entity of the batch is written, so when one
+     * of them fails none of that batch is created, while the batches before it stay created.  Callers that retry the
+     * entities of a failure should pass at most one batch.
+     *
+     * @param entityType the type of the entities to create, events and applications must be created one at a time.
+     * @param properties property values of each entity to create.
+     *
+     * @return the newly created entity objects, in the order of their properties.
+     */
+    public List<Entity> createAll( String entityType, List<Map<String, Object>> properties ) throws Exception;
+
+    /**
+     * Creates several imported entities of the specified type together, see {@link #createAll(String, List)}.
+     *
+     * @param entityType the type of the entities to create.
+     * @param properties property values of each entity to create, by the UUID to assign to the imported entity.
+     *
+     * @return the newly created entity objects, in the order of their properties.
+     */
+    public List<Entity> createAll( String entityType, Map<UUID, Map<String, Object>> properties ) throws Exception;
+
     public void createApplicationCollection( String entityType ) throws Exception;
 
     public EntityRef getAlias( String aliasType, String alias ) throws Exception;
@@ -372,6 +397,18 @@ public interface EntityManager {
     public Results getCollection( UUID entityId, String collectionName, Query query, Level resultsLevel )
             throws Exception;
 
+    /**
+     * Gets references to the entities in the specified collection of each of several entities.  The collections are
+     * read from the graph concurrently, without loading or searching for the owning entities.  An owner whose
+     * collection can't be read is logged and contributes no references.
+     *
+     * @param entityRefs references to the entities owning the collections
+     * @param collectionName the collection name.
+     *
+     * @return references to the entities in the collections, each entity once.
+     */
+    public List<EntityRef> getCollectionRefs( List<EntityRef> entityRefs, String collectionName );
+
     /**
      * Adds an entity to the specified collection belonging to the specified entity entity.
      *
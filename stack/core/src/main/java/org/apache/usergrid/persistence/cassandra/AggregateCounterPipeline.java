@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.EntityManagerFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.query.CounterResolution;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import static me.prettyprint.hector.api.factory.HFactory.createMutator;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+
+
+/**
+ * Collects aggregate counter increments from every entity manager and writes them in the background.
+ *
+ * Increments for the same application, user, group, category and counter name within the same minute are summed in
+ * memory, every coarser {@link CounterResolution} rounds a minute to the same column, so a single pending increment
+ * expands to the same rows for every resolution at flush time.  Pending increments are flushed every
+ * {@link EntityManagerFig#getAggregateCounterFlushInterval()} milliseconds, one mutator per application, executed
+ * every {@link EntityManagerFig#getAggregateCounterFlushSize()} increments.  If the number of pending increments
+ * reaches {@link EntityManagerFig#getAggregateCounterMaxPending()} the caller flushes inline.  An interval of 0
+ * writes every increment synchronously, as does a pipeline that has been closed.
+ */
+public class AggregateCounterPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger( AggregateCounterPipeline.class );
+
+    private final CassandraService cass;
+    private final CounterUtils counterUtils;
+    private final EntityManagerFig entityManagerFig;
+
+    private final Timer flushTimer;
+    private final Timer syncTimer;
+    private final Histogram flushSizeHistogram;
+    private final Histogram lagHistogram;
+    private final Meter failureMeter;
+
+    /**
+     * Adders share the read lock, a flush takes the write lock only to swap in an empty map
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private volatile ConcurrentHashMap<PendingKey, PendingIncrement> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+
+    private volatile boolean closed;
+
+
+    public AggregateCounterPipeline( final CassandraService cass, final CounterUtils counterUtils,
+                                     final EntityManagerFig entityManagerFig, final MetricsFactory metricsFactory ) {
+        this.cass = cass;
+        this.counterUtils = counterUtils;
+        this.entityManagerFig = entityManagerFig;
+
+        this.flushTimer = metricsFactory.getTimer( AggregateCounterPipeline.class, "aggregate_counters.flush" );
+        this.syncTimer = metricsFactory.getTimer( AggregateCounterPipeline.class, "aggregate_counters.sync" );
+        this.flushSizeHistogram =
+            metricsFactory.getHistogram( AggregateCounterPipeline.class, "aggregate_counters.flush.size" );
+        this.lagHistogram = metricsFactory.getHistogram( AggregateCounterPipeline.class, "aggregate_counters.lag" );
+        this.failureMeter = metricsFactory.getMeter( AggregateCounterPipeline.class, "aggregate_counters.failed" );
+
+        final long interval = entityManagerFig.getAggregateCounterFlushInterval();
+
+        if ( interval > 0 ) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "aggregate-counter-flusher-%d" )
+                                          .build() );
+
+            flusher.scheduleWithFixedDelay( () -> {
+                try {
+                    flush();
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to flush aggregate counters", t );
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS );
+        }
+        else {
+            this.flusher = null;
+        }
+    }
+
+
+    /**
+     * Increment the aggregate counters for a single counter name
+     *
+     * @param cassandraTimestamp The cassandra timestamp of the increment, in microseconds
+     */
+    public void increment( final UUID applicationId, final UUID userId, final UUID groupId, final String category,
+                           final String name, final long value, final long cassandraTimestamp ) {
+
+        if ( flusher == null || closed ) {
+            final Mutator<ByteBuffer> m = createMutator( cass.getApplicationKeyspace( applicationId ), be );
+            counterUtils.batchIncrementAggregateCounters( m, applicationId, userId, groupId, null, category, name,
+                value, cassandraTimestamp / 1000, cassandraTimestamp );
+
+            final Timer.Context timer = syncTimer.time();
+            CassandraPersistenceUtils.batchExecute( m, CassandraService.RETRY_COUNT );
+            timer.stop();
+            return;
+        }
+
+        final PendingKey key = new PendingKey( applicationId, userId, groupId, category, name,
+            CounterResolution.MINUTE.round( cassandraTimestamp / 1000 ) );
+
+        final boolean full;
+
+        swapLock.readLock().lock();
+        try {
+            final ConcurrentHashMap<PendingKey, PendingIncrement> current = pending;
+
+            PendingIncrement increment = current.get( key );
+
+            if ( increment == null ) {
+                final PendingIncrement created = new PendingIncrement();
+                increment = current.putIfAbsent( key, created );
+
+                if ( increment == null ) {
+                    increment = created;
+                }
+            }
+
+            increment.add( value, cassandraTimestamp );
+
+            full = current.mappingCount() >= entityManagerFig.getAggregateCounterMaxPending();
+        }
+        finally {
+            swapLock.readLock().unlock();
+        }
+
+        //apply backpressure rather than growing without bound
+        if ( full ) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Increment the aggregate counters for every entry in the map, names are lower cased
+     */
+    public void increment( final UUID applicationId, final UUID userId, final UUID groupId, final String category,
+                           final Map<String, Long> counters, final long cassandraTimestamp ) {
+
+        if ( counters == null ) {
+            return;
+        }
+
+        for ( Map.Entry<String, Long> counter : counters.entrySet() ) {
+            increment( applicationId, userId, groupId, category, counter.getKey().toLowerCase(), counter.getValue(),
+                cassandraTimestamp );
+        }
+    }
+
+
+    /**
+     * Write all pending increments.  Synchronized so only one flush writes at a time, callers that fill the buffer
+     * wait here
+     */
+    public synchronized void flush() {
+
+        final ConcurrentHashMap<PendingKey, PendingIncrement> flushing;
+
+        swapLock.writeLock().lock();
+        try {
+            flushing = pending;
+
+            if ( flushing.isEmpty() ) {
+                return;
+            }
+
+            pending = new ConcurrentHashMap<>();
+        }
+        finally {
+            swapLock.writeLock().unlock();
+        }
+
+        final Timer.Context timer = flushTimer.time();
+
+        final Map<UUID, List<Map.Entry<PendingKey, PendingIncrement>>> byApplication = new HashMap<>();
+
+        long oldest = Long.MAX_VALUE;
+
+        for ( Map.Entry<PendingKey, PendingIncrement> entry : flushing.entrySet() ) {
+            byApplication.computeIfAbsent( entry.getKey().applicationId, id -> new ArrayList<>() ).add( entry );
+            oldest = Math.min( oldest, entry.getValue().created );
+        }
+
+        final int flushSize = entityManagerFig.getAggregateCounterFlushSize();
+
+        for ( Map.Entry<UUID, List<Map.Entry<PendingKey, PendingIncrement>>> application : byApplication
+            .entrySet() ) {
+
+            final UUID applicationId = application.getKey();
+
+            Mutator<ByteBuffer> m = null;
+            int size = 0;
+
+            for ( Map.Entry<PendingKey, PendingIncrement> entry : application.getValue() ) {
+
+                final long value = entry.getValue().value.sum();
+
+                if ( value == 0 ) {
+                    continue;
+                }
+
+                if ( m == null ) {
+                    m = createMutator( cass.getApplicationKeyspace( applicationId ), be );
+                }
+
+                final PendingKey key = entry.getKey();
+
+                counterUtils.batchIncrementAggregateCounters( m, applicationId, key.userId, key.groupId, null,
+                    key.category, key.name, value, key.minute, entry.getValue().cassandraTimestamp.get() );
+
+                if ( ++size >= flushSize ) {
+                    execute( applicationId, m, size );
+                    m = null;
+                    size = 0;
+                }
+            }
+
+            if ( m != null ) {
+                execute( applicationId, m, size );
+            }
+        }
+
+        lagHistogram.update( System.currentTimeMillis() - oldest );
+        timer.stop();
+    }
+
+
+    /**
+     * Stop the background flusher and write the increments still pending.  Increments made after this are written
+     * synchronously.
+     */
+    public void close() {
+
+        closed = true;
+
+        if ( flusher == null ) {
+            return;
+        }
+
+        flusher.shutdown();
+
+        try {
+            if ( !flusher.awaitTermination( entityManagerFig.getAggregateCounterFlushInterval(),
+                TimeUnit.MILLISECONDS ) ) {
+                logger.warn( "Aggregate counter flusher did not stop, flushing anyway" );
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        //increments made while we closed are still pending
+        flush();
+    }
+
+
+    private void execute( final UUID applicationId, final Mutator<ByteBuffer> m, final int size ) {
+        try {
+            CassandraPersistenceUtils.batchExecute( m, CassandraService.RETRY_COUNT );
+            flushSizeHistogram.update( size );
+        }
+        catch ( Exception e ) {
+            failureMeter.mark( size );
+            logger.error( "Unable to write {} aggregate counter increments for application {}", size,
+                applicationId, e );
+        }
+    }
+
+
+    /**
+     * The sum of all increments for a key and the latest cassandra timestamp seen for it
+     */
+    private static final class PendingIncrement {
+        private final LongAdder value = new LongAdder();
+        private final AtomicLong cassandraTimestamp = new AtomicLong();
+        private final long created = System.currentTimeMillis();
+
+
+        private void add( final long value, final long cassandraTimestamp ) {
+            this.value.add( value );
+
+            long current = this.cassandraTimestamp.get();
+            while ( cassandraTimestamp > current && !this.cassandraTimestamp
+                .compareAndSet( current, cassandraTimestamp ) ) {
+                current = this.cassandraTimestamp.get();
+            }
+        }
+    }
+
+
+    /**
+     * Everything that determines the rows and columns an increment is written to
+     */
+    private static final class PendingKey {
+        private final UUID applicationId;
+        private final UUID userId;
+        private final UUID groupId;
+        private final String category;
+        private final String name;
+        private final long minute;
+        private final int hashCode;
+
+
+        private PendingKey( final UUID applicationId, final UUID userId, final UUID groupId, final String category,
+                            final String name, final long minute ) {
+            this.applicationId = applicationId;
+            this.userId = userId;
+            this.groupId = groupId;
+            this.category = category;
+            this.name = name;
+            this.minute = minute;
+            this.hashCode = Objects.hashCode( applicationId, userId, groupId, category, name, minute );
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof PendingKey ) ) {
+                return false;
+            }
+
+            final PendingKey that = ( PendingKey ) o;
+
+            return hashCode == that.hashCode && minute == that.minute && Objects
+                .equal( applicationId, that.applicationId ) && Objects.equal( name, that.name ) && Objects
+                .equal( userId, that.userId ) && Objects.equal( groupId, that.groupId ) && Objects
+                .equal( category, that.category );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import org.apache.usergrid.corepersistence.asyncevents.AsyncEventServiceImpl.IndexEventResult;
+import org.apache.usergrid.corepersistence.asyncevents.model.AsyncEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.DeIndexOldVersionsEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.ElasticsearchIndexEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EntityIndexEvent;
+import org.apache.usergrid.corepersistence.index.EntityIndexOperation;
+import org.apache.usergrid.corepersistence.index.IndexLocationStrategyFactory;
+import org.apache.usergrid.corepersistence.index.IndexProcessorFig;
+import org.apache.usergrid.corepersistence.util.ObjectJsonSerializer;
+import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
+import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.rx.RxTaskScheduler;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.SearchEdge;
+import org.apache.usergrid.persistence.index.impl.IndexOperation;
+import org.apache.usergrid.persistence.index.impl.IndexOperationMessage;
+import org.apache.usergrid.persistence.index.impl.IndexProducer;
+import org.apache.usergrid.persistence.index.impl.IndexingUtils;
+import org.apache.usergrid.persistence.index.impl.SearchEdgeImpl;
+import org.apache.usergrid.persistence.map.MapManager;
+import org.apache.usergrid.persistence.map.MapManagerFactory;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+import org.apache.usergrid.persistence.queue.LegacyQueueFig;
+import org.apache.usergrid.persistence.queue.LegacyQueueManager;
+import org.apache.usergrid.persistence.queue.LegacyQueueManagerFactory;
+import org.apache.usergrid.persistence.queue.LegacyQueueMessage;
+import org.apache.usergrid.persistence.queue.LegacyQueueScope;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableMap;
+
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the event handling of {@link AsyncEventServiceImpl} without queue workers, cassandra or elasticsearch
+ */
+public class AsyncEventServiceImplUnitTest {
+
+    private IndexProcessorFig indexProcessorFig;
+    private IndexProducer indexProducer;
+    private MapManager esMapPersistence;
+    private EventBuilder eventBuilder;
+    private ApplicationScope applicationScope;
+
+
+    @Before
+    public void setup() {
+
+        indexProcessorFig = mock( IndexProcessorFig.class );
+        // worker counts are left at 0 so no queue workers start, the tests drive the handlers directly
+        when( indexProcessorFig.getEventHandlerThreads() ).thenReturn( 4 );
+        when( indexProcessorFig.getEventHandlerConcurrency() ).thenReturn( 4 );
+        when( indexProcessorFig.getIndexMessageTtl() ).thenReturn( 60000 );
+
+        indexProducer = mock( IndexProducer.class );
+        when( indexProducer.put( any( IndexOperationMessage.class ) ) )
+            .thenAnswer( invocation -> Observable.just( invocation.getArguments()[0] ) );
+
+        esMapPersistence = mock( MapManager.class );
+        eventBuilder = mock( EventBuilder.class );
+        applicationScope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+    }
+
+
+    @Test
+    public void smallBatchTravelsWithEvent() throws Exception {
+
+        when( indexProcessorFig.getIndexMessageInlineMaxBytes() ).thenReturn( 32768 );
+
+        final AsyncEventServiceImpl service = createService();
+        final IndexOperationMessage message = createIndexOperationMessage();
+
+        final ElasticsearchIndexEvent event = service.getESIndexEvent( message );
+
+        assertNotNull( "batch is inline", event.getPayload() );
+        verify( esMapPersistence, never() ).putString( anyString(), anyString(), anyInt() );
+
+        // the event goes through the queue as json
+        final ElasticsearchIndexEvent received = ( ElasticsearchIndexEvent ) ObjectJsonSerializer.INSTANCE
+            .fromString( ObjectJsonSerializer.INSTANCE.toString( event ), AsyncEvent.class );
+
+        service.handleIndexOperation( received );
+
+        verify( esMapPersistence, never() ).getString( anyString() );
+
+        final ArgumentCaptor<IndexOperationMessage> indexed = ArgumentCaptor.forClass( IndexOperationMessage.class );
+        verify( indexProducer ).put( indexed.capture() );
+        assertEquals( message, indexed.getValue() );
+    }
+
+
+    @Test
+    public void largeBatchUsesMapPersistence() throws Exception {
+
+        // too small for any batch
+        when( indexProcessorFig.getIndexMessageInlineMaxBytes() ).thenReturn( 1 );
+
+        final AsyncEventServiceImpl service = createService();
+        final IndexOperationMessage message = createIndexOperationMessage();
+
+        final ElasticsearchIndexEvent event = service.getESIndexEvent( message );
+
+        assertNull( "batch is not inline", event.getPayload() );
+
+        final String key = event.getIndexBatchId().toString();
+        final ArgumentCaptor<String> stored = ArgumentCaptor.forClass( String.class );
+        verify( esMapPersistence ).putString( eq( key ), stored.capture(), eq( 60 ) );
+
+        when( esMapPersistence.getString( key ) ).thenReturn( stored.getValue() );
+
+        service.handleIndexOperation( event );
+
+        final ArgumentCaptor<IndexOperationMessage> indexed = ArgumentCaptor.forClass( IndexOperationMessage.class );
+        verify( indexProducer ).put( indexed.capture() );
+        assertEquals( message, indexed.getValue() );
+    }
+
+
+    @Test
+    public void entityEventsHandledInQueueOrder() {
+
+        final List<Id> entityIds = Arrays.asList( new SimpleId( "thing" ), new SimpleId( "thing" ),
+            new SimpleId( "thing" ) );
+
+        // the versions each handler sees, and the threads that handle each entity
+        final Map<Id, List<UUID>> handled = new HashMap<>();
+        final Map<Id, Set<String>> threads = new HashMap<>();
+
+        when( eventBuilder.deIndexOldVersions( any(), any(), any() ) ).thenAnswer( invocation -> {
+            final Id entityId = ( Id ) invocation.getArguments()[1];
+            final UUID version = ( UUID ) invocation.getArguments()[2];
+
+            final boolean first;
+            synchronized ( handled ) {
+                first = !handled.containsKey( entityId );
+            }
+
+            // make the first event of an entity the slowest, so a later one would overtake it in another lane
+            if ( first ) {
+                Thread.sleep( 50 );
+            }
+
+            synchronized ( handled ) {
+                handled.computeIfAbsent( entityId, id -> new ArrayList<>() ).add( version );
+                threads.computeIfAbsent( entityId, id -> new HashSet<>() ).add( Thread.currentThread().getName() );
+            }
+            return Observable.just( new IndexOperationMessage() );
+        } );
+
+        final AsyncEventServiceImpl service = createService();
+
+        // interleave the events of the entities
+        final Map<Id, List<UUID>> queued = new HashMap<>();
+        final List<LegacyQueueMessage> messages = new ArrayList<>();
+
+        for ( int i = 0; i < 4; i++ ) {
+            for ( final Id entityId : entityIds ) {
+                final UUID version = UUIDGenerator.newTimeUUID();
+                queued.computeIfAbsent( entityId, id -> new ArrayList<>() ).add( version );
+                messages.add( createMessage( new DeIndexOldVersionsEvent( null,
+                    new EntityIdScope( applicationScope, entityId ), version ) ) );
+            }
+        }
+
+        final List<IndexEventResult> results = service.callEventHandlers( messages );
+
+        assertEquals( queued, handled );
+
+        for ( final Id entityId : entityIds ) {
+            assertEquals( "one lane per entity", 1, threads.get( entityId ).size() );
+        }
+
+        for ( final IndexEventResult result : results ) {
+            assertTrue( result.getQueueMessage().isPresent() );
+        }
+    }
+
+
+    @Test
+    public void coalescedEventsAckEveryMessage() {
+
+        when( eventBuilder.buildEntityIndex( any( EntityIndexOperation.class ) ) )
+            .thenReturn( Observable.just( createIndexOperationMessage() ) );
+
+        final AsyncEventServiceImpl service = createService();
+
+        final EntityIdScope entityIdScope = new EntityIdScope( applicationScope, new SimpleId( "thing" ) );
+
+        // three updates of the same version, and one of a later version
+        final List<LegacyQueueMessage> messages = Arrays.asList(
+            createMessage( new EntityIndexEvent( null, entityIdScope, 0 ) ),
+            createMessage( new EntityIndexEvent( null, entityIdScope, 0 ) ),
+            createMessage( new EntityIndexEvent( null, entityIdScope, 1000 ) ),
+            createMessage( new EntityIndexEvent( null, entityIdScope, 0 ) ) );
+
+        final List<IndexEventResult> results = service.callEventHandlers( messages );
+
+        verify( eventBuilder, times( 2 ) ).buildEntityIndex( any( EntityIndexOperation.class ) );
+
+        assertEquals( messages.size(), results.size() );
+
+        for ( int i = 0; i < messages.size(); i++ ) {
+            assertSame( messages.get( i ), results.get( i ).getQueueMessage().get() );
+        }
+    }
+
+
+    @Test
+    public void failedLaneDoesNotAffectOthers() {
+
+        final Id failing = new SimpleId( "thing" );
+
+        when( eventBuilder.buildEntityIndex( any( EntityIndexOperation.class ) ) ).thenAnswer( invocation -> {
+            if ( failing.equals( ( ( EntityIndexOperation ) invocation.getArguments()[0] ).getId() ) ) {
+                throw new RuntimeException( "Test failure" );
+            }
+            return Observable.just( createIndexOperationMessage() );
+        } );
+
+        final AsyncEventServiceImpl service = createService();
+
+        final EntityIdScope failingScope = new EntityIdScope( applicationScope, failing );
+
+        // the failed event and its coalesced duplicate must both be retried
+        final List<LegacyQueueMessage> messages = Arrays.asList(
+            createMessage( new EntityIndexEvent( null, failingScope, 0 ) ),
+            createMessage( new EntityIndexEvent( null, new EntityIdScope( applicationScope, new SimpleId( "thing" ) ),
+                0 ) ),
+            createMessage( new EntityIndexEvent( null, failingScope, 0 ) ),
+            createMessage( new EntityIndexEvent( null, new EntityIdScope( applicationScope, new SimpleId( "thing" ) ),
+                0 ) ),
+            createMessage( new EntityIndexEvent( null, new EntityIdScope( applicationScope, new SimpleId( "thing" ) ),
+                0 ) ) );
+
+        final List<IndexEventResult> results = service.callEventHandlers( messages );
+
+        assertFalse( results.get( 0 ).getQueueMessage().isPresent() );
+        assertFalse( results.get( 2 ).getQueueMessage().isPresent() );
+
+        assertSame( messages.get( 1 ), results.get( 1 ).getQueueMessage().get() );
+        assertSame( messages.get( 3 ), results.get( 3 ).getQueueMessage().get() );
+        assertSame( messages.get( 4 ), results.get( 4 ).getQueueMessage().get() );
+    }
+
+
+    private LegacyQueueMessage createMessage( final AsyncEvent event ) {
+
+        final LegacyQueueMessage message =
+            new LegacyQueueMessage( UUIDGenerator.newTimeUUID().toString(), null, event, null );
+        message.setStringBody( ObjectJsonSerializer.INSTANCE.toString( event ) );
+        return message;
+    }
+
+
+    private AsyncEventServiceImpl createService() {
+
+        final LegacyQueueManagerFactory queueManagerFactory = mock( LegacyQueueManagerFactory.class );
+        when( queueManagerFactory.getQueueManager( any( LegacyQueueScope.class ) ) )
+            .thenReturn( mock( LegacyQueueManager.class ) );
+
+        final MapManagerFactory mapManagerFactory = mock( MapManagerFactory.class );
+        when( mapManagerFactory.createMapManager( any() ) ).thenReturn( esMapPersistence );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) ).thenReturn( mock( Histogram.class ) );
+
+        return new AsyncEventServiceImpl( queueManagerFactory, indexProcessorFig, indexProducer, metricsFactory,
+            mock( EntityCollectionManagerFactory.class ), mock( IndexLocationStrategyFactory.class ),
+            mock( EntityIndexFactory.class ), eventBuilder, mapManagerFactory,
+            mock( LegacyQueueFig.class ), mock( RxTaskScheduler.class ) );
+    }
+
+
+    private IndexOperationMessage createIndexOperationMessage() {
+
+        final Id entityId = new SimpleId( "thing" );
+        final SearchEdge searchEdge = new SearchEdgeImpl( applicationScope.getApplication(), "things",
+            SearchEdge.NodeType.TARGET );
+
+        final IndexOperationMessage message = new IndexOperationMessage();
+        message.addIndexRequest( new IndexOperation( "alias_write",
+            IndexingUtils.createIndexDocId( applicationScope, entityId, UUIDGenerator.newTimeUUID(), searchEdge ),
+            ImmutableMap.<String, Object>of( "name", "thing" ) ) );
+
+        return message;
+    }
+}
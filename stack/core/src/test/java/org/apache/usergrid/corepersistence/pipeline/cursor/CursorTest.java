@@ -25,12 +25,14 @@ package org.apache.usergrid.corepersistence.pipeline.cursor;
 import org.junit.Test;
 
 import org.apache.usergrid.corepersistence.pipeline.read.EdgePath;
+import org.apache.usergrid.corepersistence.pipeline.read.search.ElasticsearchCursor;
 import org.apache.usergrid.corepersistence.pipeline.read.search.ElasticsearchCursorSerializer;
 import org.apache.usergrid.corepersistence.pipeline.read.traverse.EdgeCursorSerializer;
 import org.apache.usergrid.persistence.graph.Edge;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
 import org.apache.usergrid.persistence.graph.impl.SimpleEdge;
 import org.apache.usergrid.persistence.graph.impl.SimpleMarkedEdge;
+import org.apache.usergrid.persistence.index.SortPosition;
 
 import com.google.common.base.Optional;
 
@@ -51,18 +53,19 @@ public class CursorTest {
 
 
 
-        final Integer query1 = 10;
+        final ElasticsearchCursor query1 = new ElasticsearchCursor( 10, Optional.absent() );
 
-        final Integer query2 = 20;
+        final ElasticsearchCursor query2 = new ElasticsearchCursor( 20,
+            Optional.of( new SortPosition( 120, "entityId(uuid,type)", "version" ) ) );
 
 
 
-        final EdgePath<Integer> filter3Path = new EdgePath<>( 3, query2, ElasticsearchCursorSerializer.INSTANCE, Optional.absent() );
+        final EdgePath<ElasticsearchCursor> filter3Path = new EdgePath<>( 3, query2, ElasticsearchCursorSerializer.INSTANCE, Optional.absent() );
 
         final EdgePath<MarkedEdge> filter2Path =
             new EdgePath<>( 2, edge2, EdgeCursorSerializer.INSTANCE, Optional.of( filter3Path ) );
 
-        final EdgePath<Integer> filter1Path = new EdgePath<>( 1, query1, ElasticsearchCursorSerializer.INSTANCE, Optional.of(filter2Path) );
+        final EdgePath<ElasticsearchCursor> filter1Path = new EdgePath<>( 1, query1, ElasticsearchCursorSerializer.INSTANCE, Optional.of(filter2Path) );
 
         final EdgePath<MarkedEdge> filter0Path = new EdgePath<>( 0, edge1, EdgeCursorSerializer.INSTANCE, Optional.of( filter1Path ) );
 
@@ -83,17 +86,19 @@ public class CursorTest {
 
 
 
-        final Integer parsedQuery2 = requestCursor.getCursor( 3, ElasticsearchCursorSerializer.INSTANCE );
+        final ElasticsearchCursor parsedQuery2 = requestCursor.getCursor( 3, ElasticsearchCursorSerializer.INSTANCE );
 
-        assertEquals(query2, parsedQuery2);
+        assertEquals( query2.getOffset(), parsedQuery2.getOffset() );
+        assertEquals( query2.getSortPosition(), parsedQuery2.getSortPosition() );
 
         final MarkedEdge parsedEdge2 = requestCursor.getCursor( 2, EdgeCursorSerializer.INSTANCE );
 
         assertEquals( edge2, parsedEdge2 );
 
-        final Integer parsedQuery1 = requestCursor.getCursor( 1, ElasticsearchCursorSerializer.INSTANCE );
+        final ElasticsearchCursor parsedQuery1 = requestCursor.getCursor( 1, ElasticsearchCursorSerializer.INSTANCE );
 
-        assertEquals( query1, parsedQuery1 );
+        assertEquals( query1.getOffset(), parsedQuery1.getOffset() );
+        assertFalse( parsedQuery1.getSortPosition().isPresent() );
 
 
         final MarkedEdge parsedEdge1 = requestCursor.getCursor( 0, EdgeCursorSerializer.INSTANCE );
@@ -102,4 +107,28 @@ public class CursorTest {
 
     }
 
+
+
+    @Test
+    public void testOffsetCursorsAccepted(){
+
+        //cursors written before sort positions were added only hold the offset
+        final CursorSerializer<Integer> offsetSerializer = new AbstractCursorSerializer<Integer>() {
+            @Override
+            protected Class<Integer> getType() {
+                return Integer.class;
+            }
+        };
+
+        final EdgePath<Integer> offsetPath = new EdgePath<>( 0, 30, offsetSerializer, Optional.absent() );
+
+        final Optional<String> cursor = new ResponseCursor( Optional.of( offsetPath ) ).encodeAsString();
+
+        final ElasticsearchCursor parsed =
+            new RequestCursor( cursor ).getCursor( 0, ElasticsearchCursorSerializer.INSTANCE );
+
+        assertEquals( 30, parsed.getOffset() );
+        assertFalse( parsed.getSortPosition().isPresent() );
+    }
+
 }
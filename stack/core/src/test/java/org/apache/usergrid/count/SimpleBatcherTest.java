@@ -17,6 +17,11 @@
 package org.apache.usergrid.count;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -45,8 +50,54 @@ public class SimpleBatcherTest {
         simpleBatcher.add( new Count( "Counter", "k1", "c3", 1 ) );
         simpleBatcher.add( new Count( "Counter", "k1", "c3", 1 ) );
 
+        // only 3 distinct counters so far
+        assertEquals( 0, simpleBatcher.getBatchSubmissionCount() );
+        simpleBatcher.add( new Count( "Counter", "k1", "c4", 1 ) );
         assertEquals( 1, simpleBatcher.getBatchSubmissionCount() );
         simpleBatcher.add( new Count( "Counter", "k1", "c4", 1 ) );
         assertEquals( 1, simpleBatcher.getBatchSubmissionCount() );
+        assertEquals( 7, simpleBatcher.getOpCount() );
+    }
+
+
+    @Test
+    public void testCountsCoalesced() {
+        final List<Count> submitted = new ArrayList<Count>();
+
+        SimpleBatcher simpleBatcher = new SimpleBatcher();
+        simpleBatcher.setBatchSubmitter( new BatchSubmitter() {
+            @Override
+            public Future<?> submit( final Collection<Count> counts ) {
+                submitted.addAll( counts );
+                return null;
+            }
+
+
+            @Override
+            public void shutdown() {
+            }
+        } );
+        simpleBatcher.setBatchSize( 2 );
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 1 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 2 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c1", 3 ) );
+        simpleBatcher.add( new Count( "Counter", "k1", "c2", 5 ) );
+
+        assertEquals( 1, simpleBatcher.getBatchSubmissionCount() );
+        assertEquals( 2, submitted.size() );
+
+        long c1 = 0;
+        long c2 = 0;
+        for ( Count count : submitted ) {
+            if ( "c1".equals( count.getColumnName() ) ) {
+                c1 = count.getValue();
+            }
+            else {
+                c2 = count.getValue();
+            }
+        }
+
+        assertEquals( 6, c1 );
+        assertEquals( 5, c2 );
     }
 }
@@ -198,6 +198,44 @@ public class CollectionIT extends AbstractCoreIT {
         assertEquals( 1, r.size() );
     }
 
+
+    @Test
+    public void getCollectionRefs() throws Exception {
+        logger.debug( "getCollectionRefs" );
+
+        EntityManager em = app.getEntityManager();
+
+        app.put( "username", "refsuser1" );
+        Entity user1 = app.create( "user" );
+        app.put( "username", "refsuser2" );
+        Entity user2 = app.create( "user" );
+        app.put( "username", "refsuser3" );
+        Entity user3 = app.create( "user" );
+
+        app.put( "name", "refsdevice1" );
+        Entity device1 = app.create( "device" );
+        app.put( "name", "refsdevice2" );
+        Entity device2 = app.create( "device" );
+
+        // device2 is in two of the collections, user3 has no devices
+        em.addToCollection( user1, "devices", device1 );
+        em.addToCollection( user1, "devices", device2 );
+        em.addToCollection( user2, "devices", device2 );
+
+        List<EntityRef> refs = em.getCollectionRefs( Arrays.<EntityRef>asList( user1, user2, user3 ), "devices" );
+
+        assertEquals( 2, refs.size() );
+        Set<UUID> deviceIds = new HashSet<>();
+        for ( EntityRef ref : refs ) {
+            assertEquals( "device", ref.getType() );
+            deviceIds.add( ref.getUuid() );
+        }
+        assertTrue( deviceIds.contains( device1.getUuid() ) );
+        assertTrue( deviceIds.contains( device2.getUuid() ) );
+
+        assertTrue( em.getCollectionRefs( Collections.<EntityRef>singletonList( user3 ), "devices" ).isEmpty() );
+    }
+
     @Test
     public void containsTest() throws Exception {
         logger.debug("testCollection");
@@ -1490,6 +1528,40 @@ public class CollectionIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testRedefineTermsDoesNotChangeEntity() throws Exception {
+        logger.debug( "testRedefineTermsDoesNotChangeEntity" );
+
+        EntityManager em = app.getEntityManager();
+        assertNotNull( em );
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "username", "aliased" );
+        properties.put( "email", "aliased@anuff.com" );
+
+        Entity user = em.create( "user", properties );
+
+        app.waitForQueueDrainAndRefreshIndex();
+
+        // read it once so later reads may come from the entity cache
+        assertEquals( "aliased", em.get( user ).getProperty( "username" ) );
+
+        // select twice, the second select sees whatever the first one left behind
+        for ( int i = 0; i < 2; i++ ) {
+            Query query = Query.fromQL( "select {name: username} where username = 'aliased'" );
+
+            Results r = em.searchCollection( em.getApplicationRef(), "users", query );
+            assertEquals( 1, r.size() );
+            assertEquals( "aliased", r.getEntity().getProperty( "name" ) );
+        }
+
+        Entity read = em.get( user );
+
+        assertEquals( "aliased", read.getProperty( "username" ) );
+        assertEquals( "aliased@anuff.com", read.getProperty( "email" ) );
+    }
+
+
     @Test
     public void testSelectEmailViaConnection() throws Exception {
         logger.debug( "testSelectEmailViaConnection" );
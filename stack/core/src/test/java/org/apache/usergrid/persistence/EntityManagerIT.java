@@ -43,6 +43,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class EntityManagerIT extends AbstractCoreIT {
@@ -467,6 +468,81 @@ public class EntityManagerIT extends AbstractCoreIT {
     }
 
 
+    @Test
+    public void testCreateAllAndList() throws Exception {
+
+        EntityManager em = app.getEntityManager();
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+        for ( int i = 0; i < 3; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", "test.thing" + UUIDUtils.newTimeUUID() + i );
+            properties.put( "foo", "batch" );
+            batch.add( properties );
+        }
+
+        List<Entity> created = em.createAll( "thing", batch );
+
+        assertEquals( 3, created.size() );
+
+        for ( int i = 0; i < 3; i++ ) {
+            assertNotNull( created.get( i ).getUuid() );
+            assertEquals( batch.get( i ).get( "name" ), created.get( i ).getName() );
+
+            Entity loaded = em.get( new SimpleEntityRef( "thing", created.get( i ).getUuid() ) );
+            assertEquals( "batch", loaded.getProperty( "foo" ) );
+        }
+
+        app.waitForQueueDrainAndRefreshIndex();
+
+        // the entities are in the collection of their type and indexed
+        EntityRef appRef = em.get( new SimpleEntityRef( "application", app.getId() ) );
+
+        Results r = em.getCollection( appRef, "things", null, 10, Level.ALL_PROPERTIES, false );
+
+        assertEquals( 3, r.size() );
+
+        Query query = Query.fromQL( "select * where foo = 'batch'" );
+        r = em.searchCollection( em.getApplicationRef(), "things", query );
+
+        assertEquals( 3, r.size() );
+    }
+
+
+    @Test
+    public void testCreateAllWithDuplicateInBatch() throws Exception {
+
+        EntityManager em = app.getEntityManager();
+
+        String name = "test.thing" + UUIDUtils.newTimeUUID();
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+        for ( int i = 0; i < 2; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", name );
+            batch.add( properties );
+        }
+
+        try {
+            em.createAll( "thing", batch );
+            fail( "Batch with a duplicate name should not be created" );
+        }
+        catch ( Exception e ) {
+            // expected
+        }
+
+        app.waitForQueueDrainAndRefreshIndex();
+
+        EntityRef appRef = em.get( new SimpleEntityRef( "application", app.getId() ) );
+
+        Results r = em.getCollection( appRef, "things", null, 10, Level.ALL_PROPERTIES, false );
+
+        assertEquals( 0, r.size() );
+    }
+
+
     @Test
     public void testCorrectType() throws Exception {
 
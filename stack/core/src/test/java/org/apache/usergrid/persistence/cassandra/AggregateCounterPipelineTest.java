@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cassandra;
+
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.EntityManagerFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.query.CounterResolution;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import me.prettyprint.cassandra.model.ExecutingKeyspace;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class AggregateCounterPipelineTest {
+
+
+    @Test
+    public void incrementsCoalescedUntilFlush() {
+
+        final UUID applicationId = UUID.randomUUID();
+
+        final CassandraService cass = mock( CassandraService.class );
+        when( cass.getApplicationKeyspace( applicationId ) ).thenReturn( mock( ExecutingKeyspace.class ) );
+
+        final CounterUtils counterUtils = mock( CounterUtils.class );
+
+        final EntityManagerFig fig = mock( EntityManagerFig.class );
+        when( fig.getAggregateCounterFlushInterval() ).thenReturn( 60000L );
+        when( fig.getAggregateCounterFlushSize() ).thenReturn( 500 );
+        when( fig.getAggregateCounterMaxPending() ).thenReturn( 1000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) ).thenReturn( mock( Histogram.class ) );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        final AggregateCounterPipeline pipeline =
+            new AggregateCounterPipeline( cass, counterUtils, fig, metricsFactory );
+
+        // same minute, the cassandra timestamp is in microseconds
+        final long timestamp = 1500000000000L * 1000;
+
+        pipeline.increment( applicationId, null, null, null, "application.entities", 1, timestamp );
+        pipeline.increment( applicationId, null, null, null, "application.entities", 2, timestamp + 1000 );
+        pipeline.increment( applicationId, null, null, null, "application.collection.users", 1, timestamp );
+
+        verify( counterUtils, never() )
+            .batchIncrementAggregateCounters( any(), any(), any(), any(), any(), any(), anyString(), anyLong(),
+                anyLong(), anyLong() );
+
+        pipeline.flush();
+
+        verify( counterUtils, times( 1 ) )
+            .batchIncrementAggregateCounters( any(), eq( applicationId ), any(), any(), any(), any(),
+                eq( "application.entities" ), eq( 3L ), eq( CounterResolution.MINUTE.round( timestamp / 1000 ) ),
+                eq( timestamp + 1000 ) );
+        verify( counterUtils, times( 1 ) )
+            .batchIncrementAggregateCounters( any(), eq( applicationId ), any(), any(), any(), any(),
+                eq( "application.collection.users" ), eq( 1L ), anyLong(), eq( timestamp ) );
+    }
+
+
+    @Test
+    public void closeFlushesPending() {
+
+        final UUID applicationId = UUID.randomUUID();
+
+        final CassandraService cass = mock( CassandraService.class );
+        when( cass.getApplicationKeyspace( applicationId ) ).thenReturn( mock( ExecutingKeyspace.class ) );
+
+        final CounterUtils counterUtils = mock( CounterUtils.class );
+
+        final EntityManagerFig fig = mock( EntityManagerFig.class );
+        when( fig.getAggregateCounterFlushInterval() ).thenReturn( 60000L );
+        when( fig.getAggregateCounterFlushSize() ).thenReturn( 500 );
+        when( fig.getAggregateCounterMaxPending() ).thenReturn( 1000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) ).thenReturn( mock( Histogram.class ) );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        final AggregateCounterPipeline pipeline =
+            new AggregateCounterPipeline( cass, counterUtils, fig, metricsFactory );
+
+        final long timestamp = 1500000000000L * 1000;
+
+        pipeline.increment( applicationId, null, null, null, "application.entities", 1, timestamp );
+
+        pipeline.close();
+
+        verify( counterUtils, times( 1 ) )
+            .batchIncrementAggregateCounters( any(), eq( applicationId ), any(), any(), any(), any(),
+                eq( "application.entities" ), eq( 1L ), anyLong(), eq( timestamp ) );
+
+        // once closed increments are written right away
+        pipeline.increment( applicationId, null, null, null, "application.collection.users", 1, timestamp );
+
+        verify( counterUtils, times( 1 ) )
+            .batchIncrementAggregateCounters( any(), eq( applicationId ), any(), any(), any(), any(),
+                eq( "application.collection.users" ), eq( 1L ), anyLong(), eq( timestamp ) );
+    }
+}
@@ -19,6 +19,9 @@ package org.apache.usergrid.persistence.cache;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Cache divided into scopes which can be individually invalidated.
  */
@@ -30,6 +33,12 @@ public interface ScopedCache<K,V> {
     /** Get value from scope */
     V get( K key, TypeReference typeRef );
 
+    /** Get several values of the same type from scope, missing keys are absent from the result */
+    Map<K, V> getAll( Collection<K> keys, TypeReference typeRef );
+
+    /** Get several values from scope, each read with its own type */
+    Map<K, V> getAll( Map<K, TypeReference> keys );
+
     /** Delete a specific cached item */
     void remove( K key );
 
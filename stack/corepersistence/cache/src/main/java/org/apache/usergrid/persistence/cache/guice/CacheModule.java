@@ -24,7 +24,7 @@ import com.google.inject.multibindings.Multibinder;
 import org.apache.usergrid.persistence.cache.CacheFactory;
 import org.apache.usergrid.persistence.cache.impl.CacheFactoryImpl;
 import org.apache.usergrid.persistence.cache.impl.ScopedCacheSerialization;
-import org.apache.usergrid.persistence.cache.impl.ScopedCacheSerializationImpl;
+import org.apache.usergrid.persistence.cache.impl.ScopedCacheSerializationV2Impl;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
 
 import java.util.Map;
@@ -40,7 +40,7 @@ public class CacheModule extends AbstractModule {
 
         bind( CacheFactory.class ).to( CacheFactoryImpl.class );
 
-        bind( ScopedCacheSerialization.class ).to( ScopedCacheSerializationImpl.class );
+        bind( ScopedCacheSerialization.class ).to( ScopedCacheSerializationV2Impl.class );
 
         Multibinder<Migration> migrationBinding = Multibinder.newSetBinder( binder(), Migration.class );
         migrationBinding.addBinding().to(Key.get(ScopedCacheSerialization.class));
@@ -21,6 +21,10 @@ import com.google.inject.Inject;
 import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.cache.ScopedCache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 
 /**
  * Cache divided into scopes which can be individually invalidated.
@@ -46,6 +50,20 @@ public class ScopedCacheImpl<K,V> implements ScopedCache<K,V> {
         return serializer.readValue( scope, key, typeRef );
     }
 
+    @Override
+    public Map<K, V> getAll( Collection<K> keys, TypeReference typeRef ) {
+        Map<K, TypeReference> keyTypes = new HashMap<>( keys.size() );
+        for ( K key : keys ) {
+            keyTypes.put( key, typeRef );
+        }
+        return serializer.readValues( scope, keyTypes );
+    }
+
+    @Override
+    public Map<K, V> getAll( Map<K, TypeReference> keys ) {
+        return serializer.readValues( scope, keys );
+    }
+
     public void remove( K key ) {
         serializer.removeValue( scope, key );
     }
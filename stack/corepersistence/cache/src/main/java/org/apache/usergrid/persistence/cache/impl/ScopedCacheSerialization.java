@@ -21,6 +21,8 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
 
+import java.util.Map;
+
 
 /**
  * Serialize cache to/from Cassandra.
@@ -29,6 +31,9 @@ public interface ScopedCacheSerialization<K,V> extends Migration {
 
     V readValue( CacheScope scope, K key, TypeReference typeRef );
 
+    /** Read several values, each with its own type, keys not found are absent from the result */
+    Map<K, V> readValues( CacheScope scope, Map<K, TypeReference> keys );
+
     V writeValue( CacheScope scope, K key, V value, Integer ttl );
 
     void removeValue( CacheScope scope, K key );
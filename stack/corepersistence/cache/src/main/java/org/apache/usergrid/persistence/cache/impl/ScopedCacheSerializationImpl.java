@@ -46,7 +46,10 @@ import java.util.*;
 
 /**
  * Serialize cache to Cassandra.
+ *
+ * @deprecated all keys of an application share one partition, use {@link ScopedCacheSerializationV2Impl}
  */
+@Deprecated
 public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerialization<K,V> {
 
     public static final Logger logger = LoggerFactory.getLogger(ScopedCacheSerializationImpl.class);
@@ -107,6 +110,21 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
     }
 
 
+    @Override
+    public Map<K, V> readValues( CacheScope scope, Map<K, TypeReference> keys ) {
+
+        // all keys of a scope are in one row, nothing to gain from batching
+        final Map<K, V> results = new HashMap<>( keys.size() );
+        for ( Map.Entry<K, TypeReference> key : keys.entrySet() ) {
+            final V value = readValueCQL( scope, key.getKey(), key.getValue() );
+            if ( value != null ) {
+                results.put( key.getKey(), value );
+            }
+        }
+        return results;
+    }
+
+
     private V readValueCQL(CacheScope scope, K key, TypeReference typeRef){
 
         Preconditions.checkNotNull(scope, "scope is required");
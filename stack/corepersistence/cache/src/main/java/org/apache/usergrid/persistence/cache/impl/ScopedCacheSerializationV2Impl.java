@@ -0,0 +1,410 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.cache.impl;
+
+
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.querybuilder.Clause;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Using;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnel;
+import com.google.inject.Inject;
+import org.apache.usergrid.persistence.cache.CacheScope;
+import org.apache.usergrid.persistence.core.CassandraConfig;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+import org.apache.usergrid.persistence.core.datastax.CQLUtils;
+import org.apache.usergrid.persistence.core.datastax.TableDefinition;
+import org.apache.usergrid.persistence.core.datastax.impl.TableDefinitionImpl;
+import org.apache.usergrid.persistence.core.shard.ExpandingShardLocator;
+import org.apache.usergrid.persistence.core.shard.StringHashUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * Serialize cache to Cassandra, version 2.
+ *
+ * Version 1 put every key of an application into one partition, so large applications had a single hot partition
+ * and invalidating the scope was a delete of a very wide row.  Here keys are hashed across buckets, and every value
+ * is stamped with the generation of its scope.  Invalidating a scope writes a new generation, after which all
+ * previously written values are ignored and left to expire with their TTL.
+ */
+public class ScopedCacheSerializationV2Impl<K,V> implements ScopedCacheSerialization<K,V> {
+
+    public static final Logger logger = LoggerFactory.getLogger(ScopedCacheSerializationV2Impl.class);
+
+    // row-keys are (app UUID, application type, consistent hash int of column name as bucket, app UUID as string)
+    // column names are K key toString()
+    // column values are 8 byte generation followed by serialization of V value
+
+    private static final String SCOPED_CACHE_TABLE = CQLUtils.quote("SCOPED_CACHE_V2");
+    private static final Collection<String> SCOPED_CACHE_PARTITION_KEYS = Collections.singletonList("key");
+    private static final Collection<String> SCOPED_CACHE_COLUMN_KEYS = Collections.singletonList("column1");
+    private static final Map<String, DataType.Name> SCOPED_CACHE_COLUMNS =
+        new HashMap<String, DataType.Name>() {{
+            put( "key", DataType.Name.BLOB );
+            put( "column1", DataType.Name.BLOB );
+            put( "value", DataType.Name.BLOB ); }};
+    private static final Map<String, String> SCOPED_CACHE_CLUSTERING_ORDER =
+        new HashMap<String, String>(){{ put( "column1", "ASC" ); }};
+
+
+    // row-keys are (app UUID, application type, 0, app UUID as string)
+    // single column GENERATION_COLUMN, value is the current 8 byte generation of the scope
+
+    private static final String SCOPED_CACHE_GENERATION_TABLE = CQLUtils.quote("SCOPED_CACHE_GENERATION");
+
+    private static final ByteBuffer GENERATION_COLUMN =
+        DataType.text().serialize( "generation", ProtocolVersion.NEWEST_SUPPORTED );
+
+    /** Generation of a scope that has never been invalidated */
+    private static final long INITIAL_GENERATION = 0L;
+
+    private static final int GENERATION_LENGTH = 8;
+
+
+    /** Number of buckets to hash across */
+    private static final int[] NUM_BUCKETS = {100};
+
+    /** How to funnel keys for buckets */
+    private static final Funnel<String> MAP_KEY_FUNNEL =
+        (Funnel<String>) (key, into) -> into.putString(key, StringHashUtils.UTF8);
+
+    /** Locator to get us all buckets */
+    private static final ExpandingShardLocator<String>
+        BUCKET_LOCATOR = new ExpandingShardLocator<>(MAP_KEY_FUNNEL, NUM_BUCKETS);
+
+
+    private final Session session;
+    private final CassandraConfig cassandraConfig;
+    private final ObjectMapper MAPPER = new ObjectMapper();
+
+
+    @Inject
+    public ScopedCacheSerializationV2Impl( final Session session,
+                                           final CassandraConfig cassandraConfig ) {
+        this.session = session;
+        this.cassandraConfig = cassandraConfig;
+
+        MAPPER.enableDefaultTyping();
+        MAPPER.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        MAPPER.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+    }
+
+
+    @Override
+    public V readValue( CacheScope scope, K key, TypeReference typeRef ) {
+
+        Preconditions.checkNotNull(key, "key is required");
+
+        return readValues( scope, Collections.singletonMap( key, typeRef ) ).get( key );
+    }
+
+
+    @Override
+    public Map<K, V> readValues( CacheScope scope, Map<K, TypeReference> keys ) {
+
+        Preconditions.checkNotNull(scope, "scope is required");
+        Preconditions.checkNotNull(keys, "keys are required");
+
+        if ( keys.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+
+        // group the column names by bucket, one query per partition
+        final Map<Integer, List<ByteBuffer>> columnsByBucket = new HashMap<>();
+        final Map<String, K> keysByColumnName = new HashMap<>( keys.size() );
+
+        for ( K key : keys.keySet() ) {
+
+            final String columnName = key.toString();
+            final int bucket = BUCKET_LOCATOR.getCurrentBucket( columnName );
+
+            columnsByBucket.computeIfAbsent( bucket, b -> new ArrayList<>() )
+                .add( DataType.text().serialize( columnName, ProtocolVersion.NEWEST_SUPPORTED ) );
+            keysByColumnName.put( columnName, key );
+        }
+
+        // issue the generation read and all the bucket reads concurrently
+        final ResultSetFuture generationFuture = session.executeAsync( getGenerationStatement( scope ) );
+
+        final List<ResultSetFuture> bucketFutures = new ArrayList<>( columnsByBucket.size() );
+
+        for ( Map.Entry<Integer, List<ByteBuffer>> bucketColumns : columnsByBucket.entrySet() ) {
+
+            final Clause inKey = QueryBuilder.eq("key", getPartitionKey(scope, bucketColumns.getKey()) );
+            final Clause inColumn = QueryBuilder.in("column1", bucketColumns.getValue() );
+
+            final Statement statement = QueryBuilder.select().all().from(SCOPED_CACHE_TABLE)
+                .where(inKey)
+                .and(inColumn)
+                .setConsistencyLevel(cassandraConfig.getDataStaxReadCl());
+
+            bucketFutures.add( session.executeAsync( statement ) );
+        }
+
+        final long generation = parseGeneration( generationFuture.getUninterruptibly().one() );
+
+        final Map<K, V> results = new HashMap<>( keys.size() );
+
+        for ( ResultSetFuture bucketFuture : bucketFutures ) {
+
+            for ( Row row : bucketFuture.getUninterruptibly() ) {
+
+                final String columnName =
+                    (String) DataType.text().deserialize( row.getBytes("column1"), ProtocolVersion.NEWEST_SUPPORTED );
+                final K key = keysByColumnName.get( columnName );
+
+                final ByteBuffer value = row.getBytes("value");
+
+                // written before the scope was last invalidated
+                if ( value.remaining() < GENERATION_LENGTH || value.getLong( value.position() ) != generation ) {
+                    continue;
+                }
+
+                final byte[] valueBytes = new byte[value.remaining() - GENERATION_LENGTH];
+                ( ( ByteBuffer ) value.duplicate().position( value.position() + GENERATION_LENGTH ) ).get( valueBytes );
+
+                try {
+
+                    results.put( key, MAPPER.readValue( valueBytes, keys.get( key ) ) );
+
+                } catch (IOException ioe) {
+                    logger.error("Unable to read cached value", ioe);
+                    throw new RuntimeException("Unable to read cached value", ioe);
+                }
+            }
+        }
+
+        if ( logger.isDebugEnabled() && results.size() < keys.size() ) {
+            logger.debug( "Cache values found for {} of {} keys", results.size(), keys.size() );
+        }
+
+        return results;
+    }
+
+
+    @Override
+    public V writeValue(CacheScope scope, K key, V value, Integer ttl) {
+
+        Preconditions.checkNotNull( scope, "scope is required");
+        Preconditions.checkNotNull( key, "key is required" );
+        Preconditions.checkNotNull( value, "value is required");
+        Preconditions.checkNotNull( ttl, "ttl is required");
+
+        // determine column name based on K key to string
+        final String columnName = key.toString();
+        final int bucket = BUCKET_LOCATOR.getCurrentBucket( columnName );
+
+        // serialize cache item
+        byte[] cacheBytes;
+        try {
+            cacheBytes = MAPPER.writeValueAsBytes(value);
+        } catch (JsonProcessingException jpe) {
+            throw new RuntimeException("Unable to serialize cache value", jpe);
+        }
+
+        final long generation = parseGeneration( session.execute( getGenerationStatement( scope ) ).one() );
+
+        // convert to ByteBuffer for the blob DataType in Cassandra, stamped with the scope generation
+        final ByteBuffer bb = ByteBuffer.allocate(GENERATION_LENGTH + cacheBytes.length);
+        bb.putLong(generation);
+        bb.put(cacheBytes);
+        bb.flip();
+
+        final Using timeToLive = QueryBuilder.ttl(ttl);
+
+        final Statement cacheEntry = QueryBuilder.insertInto(SCOPED_CACHE_TABLE)
+            .using(timeToLive)
+            .value("key", getPartitionKey(scope, bucket))
+            .value("column1", DataType.text().serialize(columnName, ProtocolVersion.NEWEST_SUPPORTED))
+            .value("value", bb);
+
+        session.execute(cacheEntry);
+
+        logger.debug("Wrote cache item to scope {} generation {}\n   key/value types {}/{}\n   key:value: {}:{}",
+            scope.getApplication().getUuid(),
+            generation,
+            key.getClass().getSimpleName(),
+            value.getClass().getSimpleName(),
+            key,
+            value);
+
+        return value;
+    }
+
+
+    @Override
+    public void removeValue(CacheScope scope, K key) {
+
+        Preconditions.checkNotNull( scope, "scope is required");
+        Preconditions.checkNotNull( key, "key is required" );
+
+        // determine column name based on K key to string
+        final String columnName = key.toString();
+        final int bucket = BUCKET_LOCATOR.getCurrentBucket( columnName );
+
+        final Clause inKey = QueryBuilder.eq("key", getPartitionKey(scope, bucket) );
+        final Clause inColumn = QueryBuilder.eq("column1", DataType.text().serialize(columnName, ProtocolVersion.NEWEST_SUPPORTED) );
+
+        final Statement statement = QueryBuilder.delete().from(SCOPED_CACHE_TABLE)
+            .where(inKey)
+            .and(inColumn);
+
+        session.execute(statement);
+    }
+
+
+    @Override
+    public void invalidate(CacheScope scope) {
+
+        Preconditions.checkNotNull(scope, "scope is required");
+
+        // any value other than the current one orphans every value written so far
+        long generation = ThreadLocalRandom.current().nextLong();
+        if ( generation == INITIAL_GENERATION ) {
+            generation++;
+        }
+
+        final ByteBuffer bb = ByteBuffer.allocate(GENERATION_LENGTH);
+        bb.putLong(generation);
+        bb.flip();
+
+        final Statement statement = QueryBuilder.insertInto(SCOPED_CACHE_GENERATION_TABLE)
+            .value("key", getPartitionKey(scope, 0))
+            .value("column1", GENERATION_COLUMN)
+            .value("value", bb);
+
+        session.execute(statement);
+
+        logger.debug("Invalidated scope {}, new generation {}", scope.getApplication().getUuid(), generation);
+    }
+
+
+    @Override
+    public Collection<MultiTenantColumnFamilyDefinition> getColumnFamilies() {
+
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public Collection<TableDefinition> getTables() {
+
+        final TableDefinition scopedCache =
+            new TableDefinitionImpl(
+                cassandraConfig.getApplicationKeyspace(),
+                SCOPED_CACHE_TABLE,
+                SCOPED_CACHE_PARTITION_KEYS,
+                SCOPED_CACHE_COLUMN_KEYS,
+                SCOPED_CACHE_COLUMNS,
+                TableDefinitionImpl.CacheOption.KEYS,
+                SCOPED_CACHE_CLUSTERING_ORDER);
+
+        final TableDefinition scopedCacheGeneration =
+            new TableDefinitionImpl(
+                cassandraConfig.getApplicationKeyspace(),
+                SCOPED_CACHE_GENERATION_TABLE,
+                SCOPED_CACHE_PARTITION_KEYS,
+                SCOPED_CACHE_COLUMN_KEYS,
+                SCOPED_CACHE_COLUMNS,
+                TableDefinitionImpl.CacheOption.ALL,
+                SCOPED_CACHE_CLUSTERING_ORDER);
+
+        return Arrays.asList(scopedCache, scopedCacheGeneration);
+    }
+
+
+    private Statement getGenerationStatement( CacheScope scope ) {
+
+        return QueryBuilder.select().all().from(SCOPED_CACHE_GENERATION_TABLE)
+            .where(QueryBuilder.eq("key", getPartitionKey(scope, 0)))
+            .and(QueryBuilder.eq("column1", GENERATION_COLUMN))
+            .setConsistencyLevel(cassandraConfig.getDataStaxReadCl());
+    }
+
+
+    private static long parseGeneration( Row row ) {
+
+        if ( row == null ) {
+            return INITIAL_GENERATION;
+        }
+
+        final ByteBuffer value = row.getBytes("value");
+        return value.getLong( value.position() );
+    }
+
+
+    private ByteBuffer getPartitionKey(CacheScope scope, int bucketNumber){
+
+        return serializeKeys(scope.getApplication().getUuid(),
+            scope.getApplication().getType(), bucketNumber, scope.getApplication().getUuid().toString());
+
+    }
+
+    private static ByteBuffer serializeKeys(UUID ownerUUID, String ownerType, int bucketNumber, String rowKeyString ){
+
+        List<Object> keys = new ArrayList<>(4);
+        keys.add(0, ownerUUID);
+        keys.add(1, ownerType);
+        keys.add(2, bucketNumber);
+        keys.add(3, rowKeyString);
+
+        // UUIDs are 16 bytes, allocate the buffer accordingly
+        int size = 16+ownerType.getBytes().length+rowKeyString.getBytes().length;
+
+        // ints are 4 bytes, add for the bucket
+        size += 4;
+
+
+        // we always need to add length for the 2 byte short and 1 byte equality
+        size += keys.size()*3;
+
+        ByteBuffer stuff = ByteBuffer.allocate(size);
+
+        for (Object key : keys) {
+
+            ByteBuffer kb = DataType.serializeValue(key, ProtocolVersion.NEWEST_SUPPORTED);
+            if (kb == null) {
+                kb = ByteBuffer.allocate(0);
+            }
+
+            stuff.putShort((short) kb.remaining());
+            stuff.put(kb.slice());
+            stuff.put((byte) 0);
+
+
+        }
+        stuff.flip();
+        return stuff;
+
+    }
+
+}
@@ -30,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -175,4 +176,53 @@ public class ScopedCacheTest {
 
         assertNull( cache.get("item", typeRef));
     }
+
+
+    @Test
+    public void testGetAll() {
+
+        CacheScope scope = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache = cf.getScopedCache(scope);
+
+        // enough keys that they land in different buckets
+        for ( int i = 0; i < 10; i++ ) {
+            final int value = i;
+            cache.put( "item" + i, new HashMap<String, Object>() {{
+                put( "field", "value" + value );
+            }}, 60 );
+        }
+
+        Map<String, Map<String, Object>> fetched =
+            cache.getAll( Arrays.asList( "item0", "item5", "item9", "missing" ), typeRef );
+
+        assertEquals( 3, fetched.size() );
+        assertEquals( "value0", fetched.get( "item0" ).get( "field" ) );
+        assertEquals( "value5", fetched.get( "item5" ).get( "field" ) );
+        assertEquals( "value9", fetched.get( "item9" ).get( "field" ) );
+        assertNull( fetched.get( "missing" ) );
+    }
+
+
+    @Test
+    public void testPutAfterInvalidate() {
+
+        CacheScope scope = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache = cf.getScopedCache(scope);
+
+        cache.put("item", new HashMap<String, Object>() {{
+            put("field1", "value1");
+        }}, 60);
+
+        cache.invalidate();
+        assertNull(cache.get("item", typeRef));
+
+        // values written after the invalidation are visible again
+        cache.put("item", new HashMap<String, Object>() {{
+            put("field1", "value2");
+        }}, 60);
+
+        Map<String, Object> retrievedItem = cache.get("item", typeRef);
+        assertNotNull( "should get back item", retrievedItem );
+        assertEquals("value2", retrievedItem.get("field1"));
+    }
 }
@@ -47,6 +47,20 @@ public interface EntityCollectionManager {
     Observable<Entity> write( Entity entity, String region );
 
 
+    /**
+     * Write several entities in the entity collection together.  Entities are written in batches, the writes of a
+     * batch are verified before any of them is committed, and the log entries, data and unique values of the
+     * batch are written together.  If an entity of a batch fails verification none of the batch is committed, and the
+     * observable errors with the exception of that entity.
+     *
+     * @param entities The entities to write, each entity may only be written once
+     * @param region The authoritative region for the entity types or null to use current region.
+     *
+     * @return the Observable with the updated entities, in the order they were given
+     */
+    Observable<Entity> write( Collection<Entity> entities, String region );
+
+
     /**
      * @param entityId MarkCommit the entity as deleted.  Will not actually remove it from cassandra.  This operation will
      * also remove all unique properties for this entity
@@ -101,6 +115,16 @@ public interface EntityCollectionManager {
      */
     Observable<EntitySet> load( Collection<Id> entityIds );
 
+    /**
+     * @param entityIds The entityIds for loading a collection
+     * @param projection The fields of the entities that are required
+     * Load all the entityIds into the observable entity set, only the fields in the projection need to be loaded.
+     * Entities may contain more fields than the projection, callers should project the loaded entities themselves
+     *
+     * @return An EntitySet with the latest data of every entity that could be located
+     */
+    Observable<EntitySet> load( Collection<Id> entityIds, FieldProjection projection );
+
     /**
      * Get all versions of the log entry, from min to max
      * @param entityId
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * A compiled set of field paths to load from an entity, such as the fields of a select.  Paths are split on '.' once
+ * when the projection is created, each node of the tree is either included with all of its children, or only some of
+ * its children are included.  Field names are matched case insensitively, as they are in the entity.
+ */
+public class FieldProjection {
+
+    private final Map<String, FieldProjection> children = new TreeMap<>( EntityObject.INSTANCE );
+    private boolean all;
+
+
+    private FieldProjection() {
+    }
+
+
+    /**
+     * Create a projection from the paths.  A path of 'a.b' includes field b of object a.  A top level field named
+     * 'a.b' is also included, since field names may contain dots.
+     */
+    public static FieldProjection fromPaths( final Collection<String> paths ) {
+        Preconditions.checkNotNull( paths, "paths are required" );
+
+        final FieldProjection root = new FieldProjection();
+
+        for ( final String path : paths ) {
+            root.child( path ).all = true;
+
+            final String[] parts = path.split( "\\." );
+
+            if ( parts.length < 2 ) {
+                continue;
+            }
+
+            FieldProjection current = root;
+
+            for ( final String part : parts ) {
+                //an ancestor is already included entirely
+                if ( current.all ) {
+                    break;
+                }
+
+                current = current.child( part );
+            }
+
+            current.all = true;
+        }
+
+        return root;
+    }
+
+
+    private FieldProjection child( final String name ) {
+        return children.computeIfAbsent( name, key -> new FieldProjection() );
+    }
+
+
+    /**
+     * Get the projection of the child field, null if the field is not included
+     */
+    public FieldProjection getChild( final String name ) {
+        return children.get( name );
+    }
+
+
+    /**
+     * True if the field and all of its children are included
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+
+    /**
+     * Return the included fields of the field map, keyed case insensitively.  Partially included objects are copied
+     * with only their included fields, the fields of the map are not modified.
+     */
+    public Map<String, Field> project( final Map<String, Field> fieldMap ) {
+
+        final Map<String, Field> projected = new TreeMap<>( EntityObject.INSTANCE );
+
+        for ( final Map.Entry<String, FieldProjection> child : children.entrySet() ) {
+
+            final Field field = fieldMap.get( child.getKey() );
+
+            if ( field == null ) {
+                continue;
+            }
+
+            if ( child.getValue().all || !( field instanceof EntityObjectField ) ) {
+                projected.put( field.getName(), field );
+                continue;
+            }
+
+            final EntityObject object = new EntityObject();
+            object.setFieldMap( child.getValue().project( ( ( EntityObjectField ) field ).getValue().getFieldMap() ) );
+
+            projected.put( field.getName(), new EntityObjectField( field.getName(), object ) );
+        }
+
+        return projected;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.actorsystem.RouterProducer;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * Bounded, version aware cache of the latest MvccEntity for an entity id.  Sits in front of the entity
+ * serialization strategy in the collection manager.  Implements RouterProducer so it can subscribe to cluster
+ * invalidations once the actor system is started.
+ */
+public interface EntityCache extends RouterProducer {
+
+    /**
+     * Get a copy of the cached entity, or null if it is not cached
+     */
+    MvccEntity get( ApplicationScope scope, Id entityId );
+
+    /**
+     * Cache the entity that was loaded from storage.  Ignored if a newer version is cached, or if the entity has
+     * been invalidated by a version newer than the one given.
+     */
+    void put( ApplicationScope scope, MvccEntity entity );
+
+    /**
+     * Invalidate the entity on this node and publish the invalidation to the rest of the cluster
+     *
+     * @param version The version that was written or marked
+     */
+    void invalidate( ApplicationScope scope, Id entityId, UUID version );
+
+    /**
+     * Invalidate the entity on this node only
+     */
+    void invalidateLocal( ApplicationScope scope, Id entityId, UUID version );
+
+    /**
+     * Remove all entries
+     */
+    void invalidateAll();
+}
@@ -33,6 +33,13 @@ import org.safehaus.guicyfig.Key;
 public interface EntityCacheFig extends GuicyFig {
 
 
+    /**
+     * When false, every load goes to the entity serialization strategy
+     */
+    @Key( "usergrid.entity_cache_enabled" )
+    @Default( "true" )
+    boolean getCacheEnabled();
+
     @Key( "usergrid.entity_cache_size" )
     @Default( "10000" )
     int getCacheSize();
@@ -41,6 +48,11 @@ public interface EntityCacheFig extends GuicyFig {
     @Default( "500" )
     int getCacheTimeout();
 
-
+    /**
+     * Publish invalidations to the other nodes in the cluster (all regions) when an entity is written or marked
+     */
+    @Key( "usergrid.entity_cache_cluster_invalidation" )
+    @Default( "true" )
+    boolean getClusterInvalidationEnabled();
 
 }
@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.field.Field;
+
+import com.codahale.metrics.Counter;
+import com.fasterxml.uuid.UUIDComparator;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+
+/**
+ * Guava backed entity cache.  Entries expire after the configured timeout.  Every write or mark records the new
+ * version in a tombstone so a load that raced with the write can never put an older version back into the cache.
+ *
+ * Entities are copied on the way in and on the way out, callers are free to mutate what they get back.
+ */
+@Singleton
+public class EntityCacheImpl implements EntityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityCacheImpl.class );
+
+    /**
+     * Pub/sub topic for cluster invalidations
+     */
+    public static final String TOPIC = "entityCache";
+
+
+    private final EntityCacheFig entityCacheFig;
+    private final ActorSystemManager actorSystemManager;
+
+    private final Cache<CacheKey, MvccEntity> entities;
+
+    /**
+     * The last version that was invalidated for a key
+     */
+    private final Cache<CacheKey, UUID> tombstones;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private final Counter invalidationCounter;
+
+
+    @Inject
+    public EntityCacheImpl( final EntityCacheFig entityCacheFig, final ActorSystemManager actorSystemManager,
+                            final MetricsFactory metricsFactory ) {
+
+        this.entityCacheFig = entityCacheFig;
+        this.actorSystemManager = actorSystemManager;
+
+        this.hitCounter = metricsFactory.getCounter( EntityCacheImpl.class, "entity.cache.hit" );
+        this.missCounter = metricsFactory.getCounter( EntityCacheImpl.class, "entity.cache.miss" );
+        this.evictionCounter = metricsFactory.getCounter( EntityCacheImpl.class, "entity.cache.eviction" );
+        this.invalidationCounter = metricsFactory.getCounter( EntityCacheImpl.class, "entity.cache.invalidation" );
+
+        this.entities = CacheBuilder.newBuilder()
+            .maximumSize( entityCacheFig.getCacheSize() )
+            .expireAfterWrite( entityCacheFig.getCacheTimeout(), TimeUnit.MILLISECONDS )
+            .removalListener( notification -> {
+                if ( notification.getCause() == RemovalCause.SIZE ) {
+                    evictionCounter.inc();
+                }
+            } )
+            .build();
+
+        this.tombstones = CacheBuilder.newBuilder()
+            .maximumSize( entityCacheFig.getCacheSize() )
+            .expireAfterWrite( entityCacheFig.getCacheTimeout(), TimeUnit.MILLISECONDS )
+            .build();
+
+        metricsFactory.addGauge( EntityCacheImpl.class, "entity.cache.size", () -> entities.size() );
+    }
+
+
+    @Override
+    public MvccEntity get( final ApplicationScope scope, final Id entityId ) {
+
+        if ( !entityCacheFig.getCacheEnabled() ) {
+            return null;
+        }
+
+        final MvccEntity cached = entities.getIfPresent( new CacheKey( scope, entityId ) );
+
+        if ( cached == null ) {
+            missCounter.inc();
+            return null;
+        }
+
+        hitCounter.inc();
+        return copy( cached );
+    }
+
+
+    @Override
+    public void put( final ApplicationScope scope, final MvccEntity entity ) {
+
+        if ( !entityCacheFig.getCacheEnabled() ) {
+            return;
+        }
+
+        final CacheKey key = new CacheKey( scope, entity.getId() );
+
+        // asMap().compute is atomic per key, so concurrent puts and invalidations for the same entity serialize
+        entities.asMap().compute( key, ( k, existing ) -> {
+
+            final UUID invalidated = tombstones.getIfPresent( k );
+
+            // a write or mark has happened since this load started, don't cache a stale version
+            if ( invalidated != null && UUIDComparator.staticCompare( entity.getVersion(), invalidated ) < 0 ) {
+                return existing;
+            }
+
+            if ( existing != null && UUIDComparator.staticCompare( entity.getVersion(), existing.getVersion() ) < 0 ) {
+                return existing;
+            }
+
+            return copy( entity );
+        } );
+    }
+
+
+    @Override
+    public void invalidate( final ApplicationScope scope, final Id entityId, final UUID version ) {
+
+        invalidateLocal( scope, entityId, version );
+
+        if ( !entityCacheFig.getCacheEnabled() || !entityCacheFig.getClusterInvalidationEnabled() ) {
+            return;
+        }
+
+        if ( !actorSystemManager.isReady() ) {
+            return;
+        }
+
+        try {
+            actorSystemManager.publishToAllRegions( TOPIC, new EntityCacheInvalidation( scope, entityId, version ),
+                null );
+        }
+        catch ( Exception e ) {
+            // the entry will still expire after the cache timeout
+            logger.warn( "Unable to publish entity cache invalidation for {}", entityId, e );
+        }
+    }
+
+
+    @Override
+    public void invalidateLocal( final ApplicationScope scope, final Id entityId, final UUID version ) {
+
+        final CacheKey key = new CacheKey( scope, entityId );
+
+        entities.asMap().compute( key, ( k, existing ) -> {
+
+            final UUID previous = tombstones.getIfPresent( k );
+
+            if ( version != null && ( previous == null
+                || UUIDComparator.staticCompare( version, previous ) > 0 ) ) {
+                tombstones.put( k, version );
+            }
+
+            return null;
+        } );
+
+        invalidationCounter.inc();
+    }
+
+
+    @Override
+    public void invalidateAll() {
+        entities.invalidateAll();
+    }
+
+
+    /**
+     * Deep copy of the entity's fields, so callers can add, remove or change fields and their nested values without
+     * touching the cache
+     */
+    private MvccEntity copy( final MvccEntity entity ) {
+
+        final Optional<Entity> source = entity.getEntity();
+
+        if ( !source.isPresent() ) {
+            return entity;
+        }
+
+        final Entity copy = new Entity( source.get().getId(), source.get().getVersion() );
+        for ( final Field field : source.get().getFields() ) {
+            copy.setField( field.deepCopy() );
+        }
+        copy.setSize( source.get().getSize() );
+
+        return new MvccEntityImpl( entity.getId(), entity.getVersion(), entity.getStatus(), Optional.of( copy ),
+            entity.getSize() );
+    }
+
+
+    @Override
+    public String getRouterPath() {
+        return "/user/entityCacheSubscriber";
+    }
+
+
+    @Override
+    public Collection<Class> getMessageTypes() {
+        // nothing is routed, invalidations are published to all subscribers
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public void addConfiguration( final Map<String, Object> configMap ) {
+        // no router configuration needed
+    }
+
+
+    @Override
+    public void produceRouter( final ActorSystem system, final String role ) {
+        logger.info( "Starting EntityCacheActor" );
+        system.actorOf( Props.create( EntityCacheActor.class, this ), "entityCacheSubscriber" );
+    }
+
+
+    /**
+     * Entities are cached per application
+     */
+    private static final class CacheKey {
+
+        private final Id applicationId;
+        private final Id entityId;
+
+
+        private CacheKey( final ApplicationScope scope, final Id entityId ) {
+            this.applicationId = scope.getApplication();
+            this.entityId = entityId;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof CacheKey ) ) {
+                return false;
+            }
+
+            final CacheKey cacheKey = ( CacheKey ) o;
+
+            return applicationId.equals( cacheKey.applicationId ) && entityId.equals( cacheKey.entityId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            int result = applicationId.hashCode();
+            result = 31 * result + entityId.hashCode();
+            return result;
+        }
+    }
+}
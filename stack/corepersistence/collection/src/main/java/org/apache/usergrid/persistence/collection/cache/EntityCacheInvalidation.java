@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+
+/**
+ * Message published to all nodes when an entity is written or marked
+ */
+public class EntityCacheInvalidation implements Serializable {
+
+    private final UUID applicationUuid;
+    private final String applicationType;
+    private final UUID entityUuid;
+    private final String entityType;
+    private final UUID version;
+
+
+    public EntityCacheInvalidation( final ApplicationScope scope, final Id entityId, final UUID version ) {
+        this.applicationUuid = scope.getApplication().getUuid();
+        this.applicationType = scope.getApplication().getType();
+        this.entityUuid = entityId.getUuid();
+        this.entityType = entityId.getType();
+        this.version = version;
+    }
+
+
+    public ApplicationScope getApplicationScope() {
+        return new ApplicationScopeImpl( new SimpleId( applicationUuid, applicationType ) );
+    }
+
+
+    public Id getEntityId() {
+        return new SimpleId( entityUuid, entityType );
+    }
+
+
+    public UUID getVersion() {
+        return version;
+    }
+
+
+    @Override
+    public String toString() {
+        return "EntityCacheInvalidation{" +
+            "application=" + applicationUuid +
+            ", entity=" + entityType + ":" + entityUuid +
+            ", version=" + version +
+            '}';
+    }
+}
@@ -23,6 +23,7 @@ package org.apache.usergrid.persistence.collection.impl;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Session;
 import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
@@ -36,6 +37,7 @@ import com.netflix.astyanax.model.CqlResult;
 import com.netflix.astyanax.serializers.StringSerializer;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.collection.*;
+import org.apache.usergrid.persistence.collection.cache.EntityCache;
 import org.apache.usergrid.persistence.collection.mvcc.stage.CollectionIoEvent;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkCommit;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkStart;
@@ -43,6 +45,7 @@ import org.apache.usergrid.persistence.collection.mvcc.stage.delete.UniqueCleanu
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.VersionCompact;
 import org.apache.usergrid.persistence.collection.mvcc.stage.write.*;
 import org.apache.usergrid.persistence.collection.serialization.*;
+import org.apache.usergrid.persistence.collection.serialization.impl.EntitySetImpl;
 import org.apache.usergrid.persistence.collection.serialization.impl.LogEntryIterator;
 import org.apache.usergrid.persistence.collection.serialization.impl.MinMaxLogEntryIterator;
 import org.apache.usergrid.persistence.collection.serialization.impl.MutableFieldSet;
@@ -60,6 +63,7 @@ import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,6 +104,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     private final Keyspace keyspace;
     private final Session session;
     private final Timer writeTimer;
+    private final Timer writeAllTimer;
     private final Timer deleteTimer;
     private final Timer fieldIdTimer;
     private final Timer fieldEntityTimer;
@@ -111,6 +116,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     private final UniqueValuesService uniqueValuesService;
     private final ActorSystemManager actorSystemManager;
+    private final EntityCache entityCache;
 
 
     @Inject
@@ -136,6 +142,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         final ActorSystemManager    actorSystemManager,
         final UniqueValuesService   uniqueValuesService,
         final CassandraConfig       cassandraConfig,
+        final EntityCache           entityCache,
         @Assisted final ApplicationScope applicationScope,
         final Session session ) {
 
@@ -148,6 +155,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
         this.actorSystemManager = actorSystemManager;
         this.uniqueValuesService = uniqueValuesService;
+        this.entityCache = entityCache;
 
         ValidationUtils.validateApplicationScope( applicationScope );
 
@@ -168,6 +176,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         this.applicationScope = applicationScope;
         this.mvccLogEntrySerializationStrategy = mvccLogEntrySerializationStrategy;
         this.writeTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write");
+        this.writeAllTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write.all");
         this.deleteTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.delete");
         this.fieldIdTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldId");
         this.fieldEntityTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldEntity");
@@ -195,7 +204,9 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Observable<CollectionIoEvent<MvccEntity>> observable =  stageRunner( writeData, writeStart );
 
 
-        final Observable<Entity> write = observable.map( writeCommit ).map(ioEvent -> {
+        final Observable<Entity> write = observable.map( writeCommit ).doOnNext( ioEvent ->
+            entityCache.invalidate( applicationScope, entityId, ioEvent.getEvent().getVersion() )
+        ).map(ioEvent -> {
 
             // fire this in the background so we don't block writes
             Observable.just( ioEvent ).compose( uniqueCleanup )
@@ -209,6 +220,63 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     }
 
 
+    @Override
+    public Observable<Entity> write( final Collection<Entity> entities, final String region ) {
+
+        //do our input validation
+        Preconditions.checkNotNull( entities, "Entities are required in the new stage of the mvcc write" );
+
+        for ( final Entity entity : entities ) {
+            Preconditions.checkNotNull( entity, "Entity is required in the new stage of the mvcc write" );
+            ValidationUtils.verifyIdentity( entity.getId() );
+        }
+
+        final Observable<Entity> write = Observable.from( entities ).buffer( serializationFig.getWriteBatchSize() )
+            .concatMap( batch -> Observable.defer( () -> Observable.from( writeBatch( batch, region ) ) ) );
+
+        return ObservableTimer.time( write, writeAllTimer );
+    }
+
+
+    /**
+     * Write a batch of entities.  The writes of all the entities are verified concurrently, then committed together
+     */
+    private List<Entity> writeBatch( final List<Entity> entities, final String region ) {
+
+        final List<CollectionIoEvent<Entity>> writeData = new ArrayList<>( entities.size() );
+
+        for ( final Entity entity : entities ) {
+            writeData.add( new CollectionIoEvent<>( applicationScope, entity, region ) );
+        }
+
+        final List<CollectionIoEvent<MvccEntity>> started = writeStart.startAll( writeData );
+
+        final Scheduler scheduler = rxTaskScheduler.getAsyncIOScheduler();
+
+        // optimistic verification only reads the log of entities written with a version
+        Observable.from( started ).flatMap(
+            ioEvent -> Observable.just( ioEvent ).subscribeOn( scheduler ).doOnNext( writeOptimisticVerify ) )
+            .toBlocking().lastOrDefault( null );
+
+        writeVerifyUnique.verifyAll( started, scheduler );
+
+        final List<CollectionIoEvent<MvccEntity>> committed = writeCommit.commitAll( started );
+
+        final List<Entity> written = new ArrayList<>( committed.size() );
+
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : committed ) {
+            entityCache.invalidate( applicationScope, ioEvent.getEvent().getId(), ioEvent.getEvent().getVersion() );
+            written.add( ioEvent.getEvent().getEntity().get() );
+        }
+
+        // fire this in the background so we don't block writes
+        Observable.from( committed ).compose( uniqueCleanup )
+            .subscribeOn( rxTaskScheduler.getAsyncIOScheduler() ).subscribe();
+
+        return written;
+    }
+
+
     @Override
     public Observable<Id> mark(final Id entityId, String region) {
 
@@ -217,7 +285,10 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Preconditions.checkNotNull( entityId.getType(), "Entity type is required in this stage" );
 
         Observable<Id> o = Observable.just( new CollectionIoEvent<>( applicationScope, entityId, region ) )
-            .map( markStart ).doOnNext( markCommit ).compose( uniqueCleanup ).map(
+            .map( markStart ).doOnNext( markCommit )
+            .doOnNext( markEvent -> entityCache.invalidate( applicationScope, entityId,
+                markEvent.getEvent().getVersion() ) )
+            .compose( uniqueCleanup ).map(
                 entityEvent -> entityEvent.getEvent().getId() );
 
         return ObservableTimer.time( o, deleteTimer );
@@ -251,14 +322,61 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
         Preconditions.checkNotNull( entityIds, "entityIds cannot be null" );
 
+        return load( entityIds, Optional.absent() );
+    }
+
+
+    @Override
+    public Observable<EntitySet> load( final Collection<Id> entityIds, final FieldProjection projection ) {
+
+        Preconditions.checkNotNull( entityIds, "entityIds cannot be null" );
+        Preconditions.checkNotNull( projection, "projection cannot be null" );
+
+        return load( entityIds, Optional.of( projection ) );
+    }
+
+
+    /**
+     * Load the entities, serving them from the entity cache when possible.  Entities loaded with a projection are
+     * partial and are never cached
+     */
+    private Observable<EntitySet> load( final Collection<Id> entityIds, final Optional<FieldProjection> projection ) {
+
         final Observable<EntitySet> entitySetObservable =
             Observable.create( new Observable.OnSubscribe<EntitySet>() {
 
             @Override
             public void call( final Subscriber<? super EntitySet> subscriber ) {
                 try {
-                    final EntitySet results =
-                        entitySerializationStrategy.load( applicationScope, entityIds, UUIDGenerator.newTimeUUID() );
+                    final EntitySetImpl results = new EntitySetImpl( entityIds.size() );
+                    final List<Id> uncached = new ArrayList<>( entityIds.size() );
+
+                    for ( final Id entityId : entityIds ) {
+                        final MvccEntity cached = entityCache.get( applicationScope, entityId );
+
+                        if ( cached != null ) {
+                            results.addEntity( cached );
+                        }
+                        else {
+                            uncached.add( entityId );
+                        }
+                    }
+
+                    if ( !uncached.isEmpty() ) {
+                        final UUID maxVersion = UUIDGenerator.newTimeUUID();
+
+                        final EntitySet loaded = projection.isPresent() ?
+                            entitySerializationStrategy.load( applicationScope, uncached, maxVersion, projection.get() ) :
+                            entitySerializationStrategy.load( applicationScope, uncached, maxVersion );
+
+                        for ( final MvccEntity entity : loaded.getEntities() ) {
+                            if ( !projection.isPresent() ) {
+                                entityCache.put( applicationScope, entity );
+                            }
+
+                            results.addEntity( entity );
+                        }
+                    }
 
                     subscriber.onNext( results );
                     subscriber.onCompleted();
@@ -18,12 +18,15 @@
 package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 
 import org.apache.commons.lang3.StringUtils;
@@ -174,6 +177,120 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
     }
 
 
+    /**
+     * Commit several entities of one application that are written together.  The log entries and data of all the
+     * entities are sent in a single mutation, and the unique values of all of them are confirmed together.
+     */
+    public List<CollectionIoEvent<MvccEntity>> commitAll( final List<CollectionIoEvent<MvccEntity>> ioEvents ) {
+
+        if ( ioEvents.isEmpty() ) {
+            return ioEvents;
+        }
+
+        final ApplicationScope applicationScope = ioEvents.get( 0 ).getEntityCollection();
+        final List<MvccEntity> mvccEntities = new ArrayList<>( ioEvents.size() );
+
+        MutationBatch logMutation = null;
+
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : ioEvents ) {
+
+            final MvccEntity mvccEntity = ioEvent.getEvent();
+            MvccValidationUtils.verifyMvccEntityWithEntity( mvccEntity );
+
+            final UUID version = mvccEntity.getVersion();
+            ValidationUtils.verifyTimeUuid( version ,"version" );
+
+            //set the version into the entity
+            EntityUtils.setVersion( mvccEntity.getEntity().get(), version );
+
+            final MvccLogEntry startEntry =
+                new MvccLogEntryImpl( mvccEntity.getId(), version, Stage.COMMITTED, MvccLogEntry.State.COMPLETE );
+
+            final MutationBatch entryMutation = logEntryStrat.write( applicationScope, startEntry );
+            entryMutation.mergeShallow( entityStrat.write( applicationScope, mvccEntity ) );
+
+            if ( logMutation == null ) {
+                logMutation = entryMutation;
+            }
+            else {
+                logMutation.mergeShallow( entryMutation );
+            }
+
+            mvccEntities.add( mvccEntity );
+        }
+
+        // akkaFig may be null when this is called from JUnit tests
+        final boolean viaCluster =
+            actorSystemFig != null && actorSystemFig.getEnabled() && uniqueValuesFig.getUnqiueValueViaCluster();
+
+        if ( viaCluster ) {
+            String authoritativeRegion = ioEvents.get( 0 ).getAuthoritativeRegion();
+            if ( StringUtils.isEmpty(authoritativeRegion) ) {
+                authoritativeRegion = uniqueValuesFig.getAuthoritativeRegion();
+            }
+            if ( StringUtils.isEmpty(authoritativeRegion) ) {
+                authoritativeRegion = actorSystemFig.getRegionLocal();
+            }
+
+            try {
+                akkaUvService.confirmUniqueValues( applicationScope, mvccEntities, authoritativeRegion );
+            }
+            catch ( UniqueValueException e ) {
+                throw WriteUniqueVerify.violation( applicationScope, mvccEntities, e.getField() );
+            }
+        }
+
+        try {
+            logMutation.execute();
+        }
+        catch ( ConnectionException e ) {
+            logger.error( "Failed to execute write asynchronously ", e );
+            throw new WriteCommitException( mvccEntities.get( 0 ), applicationScope,
+                "Failed to execute write asynchronously ", e );
+        }
+
+        // like a single write, unique values are confirmed once the entities are written
+        if ( !viaCluster ) {
+            confirmUniqueFields( mvccEntities, applicationScope );
+        }
+
+        return ioEvents;
+    }
+
+
+    /**
+     * Re-write the unique values of several entities with no TTL.  The values of each entity are written in a batch
+     * like a single write, and the batches of all the entities are sent at once.
+     */
+    private void confirmUniqueFields( final List<MvccEntity> mvccEntities, final ApplicationScope scope ) {
+
+        final List<ResultSetFuture> futures = new ArrayList<>( mvccEntities.size() );
+
+        for ( final MvccEntity mvccEntity : mvccEntities ) {
+
+            final Entity entity = mvccEntity.getEntity().get();
+            final List<Field> uniqueFields = EntityUtils.getUniqueFields( entity );
+
+            if ( uniqueFields.isEmpty() ) {
+                continue;
+            }
+
+            final BatchStatement uniqueBatch = new BatchStatement();
+
+            for ( final Field field : uniqueFields ) {
+                final UniqueValue written = new UniqueValueImpl( field, entity.getId(), mvccEntity.getVersion() );
+                uniqueBatch.add( uniqueValueStrat.writeCQL( scope, written, -1 ) );
+            }
+
+            futures.add( session.executeAsync( uniqueBatch ) );
+        }
+
+        for ( final ResultSetFuture future : futures ) {
+            future.getUninterruptibly();
+        }
+    }
+
+
     private void confirmUniqueFields(
         MvccEntity mvccEntity, UUID version, ApplicationScope scope, MutationBatch logMutation) {
 
@@ -1,6 +1,8 @@
 package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.slf4j.Logger;
@@ -89,4 +91,61 @@ public class WriteStart implements Func1<CollectionIoEvent<Entity>, CollectionIo
 
             return new CollectionIoEvent<>( applicationScope, nextStage );
     }
+
+
+    /**
+     * Start the writes of several entities together.  The start entries of the entities written with a version are
+     * sent in a single mutation, the region of each write is kept for the later stages.
+     */
+    public List<CollectionIoEvent<MvccEntity>> startAll( final List<CollectionIoEvent<Entity>> ioEvents ) {
+
+        final List<CollectionIoEvent<MvccEntity>> started = new ArrayList<>( ioEvents.size() );
+
+        MutationBatch write = null;
+        CollectionIoEvent<MvccEntity> firstWritten = null;
+
+        for ( final CollectionIoEvent<Entity> ioEvent : ioEvents ) {
+
+            verifyEntityWrite( ioEvent.getEvent() );
+
+            final Entity entity = ioEvent.getEvent();
+            final ApplicationScope applicationScope = ioEvent.getEntityCollection();
+
+            final UUID newVersion = UUIDGenerator.newTimeUUID();
+
+            final CollectionIoEvent<MvccEntity> nextStage = new CollectionIoEvent<>( applicationScope,
+                new MvccEntityImpl( entity.getId(), newVersion, MvccEntity.Status.COMPLETE, entity ),
+                ioEvent.getAuthoritativeRegion() );
+
+            if ( entity.hasVersion() ) {
+                final MvccLogEntry startEntry = new MvccLogEntryImpl( entity.getId(), newVersion,
+                    Stage.ACTIVE, MvccLogEntry.State.COMPLETE );
+
+                final MutationBatch entryWrite = logStrategy.write( applicationScope, startEntry );
+
+                if ( write == null ) {
+                    write = entryWrite;
+                    firstWritten = nextStage;
+                }
+                else {
+                    write.mergeShallow( entryWrite );
+                }
+            }
+
+            started.add( nextStage );
+        }
+
+        if ( write != null ) {
+            try {
+                write.execute();
+            }
+            catch ( ConnectionException e ) {
+                logger.error( "Failed to execute write ", e );
+                throw new WriteStartException( firstWritten.getEvent(), firstWritten.getEntityCollection(),
+                    "Failed to execute write ", e );
+            }
+        }
+
+        return started;
+    }
 }
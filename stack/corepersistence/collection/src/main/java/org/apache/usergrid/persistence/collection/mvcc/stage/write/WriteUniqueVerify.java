@@ -22,17 +22,16 @@ package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Session;
-import com.netflix.hystrix.HystrixCommandProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
-import com.netflix.hystrix.HystrixCommand;
-import com.netflix.hystrix.HystrixCommandGroupKey;
-import com.netflix.hystrix.HystrixThreadPoolProperties;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemFig;
 import org.apache.usergrid.persistence.collection.MvccEntity;
@@ -45,6 +44,7 @@ import org.apache.usergrid.persistence.collection.serialization.UniqueValueSeria
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
 import org.apache.usergrid.persistence.collection.serialization.impl.UniqueValueImpl;
 import org.apache.usergrid.persistence.core.CassandraConfig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValueException;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesFig;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesService;
@@ -54,6 +54,8 @@ import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.util.EntityUtils;
 
+import rx.Observable;
+import rx.Scheduler;
 import rx.functions.Action1;
 
 import java.util.*;
@@ -73,10 +75,6 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
     private final UniqueValueSerializationStrategy uniqueValueStrat;
 
-    private static int uniqueVerifyPoolSize = 100;
-
-    private static int uniqueVerifyTimeoutMillis= 5000;
-
     protected final SerializationFig serializationFig;
 
     protected final Keyspace keyspace;
@@ -85,6 +83,12 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
     private final CassandraConfig cassandraFig;
 
+    private final Timer verifyTimer;
+
+    private final Timer escalatedVerifyTimer;
+
+    private final Meter escalationMeter;
+
 
     @Inject
     public WriteUniqueVerify(final UniqueValueSerializationStrategy uniqueValueSerializiationStrategy,
@@ -94,7 +98,8 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
                              final ActorSystemFig actorSystemFig,
                              final UniqueValuesFig uniqueValuesFig,
                              final UniqueValuesService akkaUvService,
-                             final Session session ) {
+                             final Session session,
+                             final MetricsFactory metricsFactory ) {
 
         this.keyspace = keyspace;
         this.cassandraFig = cassandraFig;
@@ -109,7 +114,9 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         this.uniqueValueStrat = uniqueValueSerializiationStrategy;
         this.serializationFig = serializationFig;
 
-        uniqueVerifyPoolSize = this.serializationFig.getUniqueVerifyPoolSize();
+        this.verifyTimer = metricsFactory.getTimer( WriteUniqueVerify.class, "uniqueverify.read" );
+        this.escalatedVerifyTimer = metricsFactory.getTimer( WriteUniqueVerify.class, "uniqueverify.read.consistent" );
+        this.escalationMeter = metricsFactory.getMeter( WriteUniqueVerify.class, "uniqueverify.escalation" );
     }
 
 
@@ -122,6 +129,77 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         }
     }
 
+
+    /**
+     * Verify the unique values of several entities of one application that are written together.  Through the
+     * unique value cluster the values of all of them are reserved in one request, otherwise the entities are verified
+     * concurrently on the scheduler.  Neither sees the other entities of the batch, so a value used by two of them
+     * is refused first.  The first violation found is thrown, after the values reserved for the other entities of
+     * the batch have been released so the entities can be written again right away.
+     */
+    public void verifyAll( final List<CollectionIoEvent<MvccEntity>> ioevents, final Scheduler scheduler ) {
+        if ( ioevents.isEmpty() ) {
+            return;
+        }
+
+        verifyWithinBatch( ioevents );
+
+        if ( actorSystemFig != null && actorSystemFig.getEnabled() && uniqueValuesFig.getUnqiueValueViaCluster() ) {
+            verifyUniqueFieldsAkka( ioevents );
+        } else {
+            // the entities load their values concurrently, each with one read per partition, so the batch costs
+            // about one read round trip.  A multi-partition read for the batch would only move the fan out to a
+            // single coordinator.
+            //
+            // wait for every verification to finish, so no reservation is written after we release them
+            final List<Throwable> failures = Collections.synchronizedList( new ArrayList<>() );
+
+            Observable.from( ioevents ).flatMap( ioevent -> Observable.just( ioevent ).subscribeOn( scheduler )
+                .doOnNext( this::verifyUniqueFields ).onErrorResumeNext( t -> {
+                    failures.add( t );
+                    return Observable.empty();
+                } ) ).toBlocking().lastOrDefault( null );
+
+            if ( !failures.isEmpty() ) {
+                releaseUniqueFields( ioevents );
+                throw Throwables.propagate( failures.get( 0 ) );
+            }
+        }
+    }
+
+
+    /**
+     * Delete the unique values written with a TTL by {@link #verifyUniqueFields(CollectionIoEvent)} for entities
+     * that will not be committed.  Only the entries of the given entity versions are deleted, never those of the
+     * entities that own a value.
+     */
+    private void releaseUniqueFields( final List<CollectionIoEvent<MvccEntity>> ioevents ) {
+
+        final BatchStatement batch = new BatchStatement();
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+
+            final MvccEntity mvccEntity = ioevent.getEvent();
+
+            for ( final Field field : EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ) ) {
+                batch.add( uniqueValueStrat.deleteCQL( ioevent.getEntityCollection(),
+                    new UniqueValueImpl( field, mvccEntity.getId(), mvccEntity.getVersion() ) ) );
+            }
+        }
+
+        if ( batch.size() == 0 ) {
+            return;
+        }
+
+        try {
+            session.execute( batch );
+        }
+        catch ( RuntimeException e ) {
+            // the reservations expire with their TTL
+            logger.warn( "Unable to release the unique values of {} entities", ioevents.size(), e );
+        }
+    }
+
     private void verifyUniqueFieldsAkka(CollectionIoEvent<MvccEntity> ioevent) {
 
         MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
@@ -132,6 +210,67 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
         final ApplicationScope applicationScope = ioevent.getEntityCollection();
 
+        try {
+            akkaUvService.reserveUniqueValues( applicationScope, entity, mvccEntity.getVersion(),
+                getAuthoritativeRegion( ioevent ) );
+
+        } catch (UniqueValueException e) {
+            Map<String, Field> violations = new HashMap<>();
+            violations.put( e.getField().getName(), e.getField() );
+            throw new WriteUniqueVerifyException( mvccEntity, applicationScope, violations  );
+        }
+    }
+
+    private void verifyWithinBatch( final List<CollectionIoEvent<MvccEntity>> ioevents ) {
+
+        final Map<Field, Id> owners = new HashMap<>();
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+
+            MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
+
+            final Entity entity = ioevent.getEvent().getEntity().get();
+
+            for ( final Field field : EntityUtils.getUniqueFields( entity ) ) {
+                final Id owner = owners.putIfAbsent( field, entity.getId() );
+
+                if ( owner != null && !owner.equals( entity.getId() ) ) {
+                    Map<String, Field> violations = new HashMap<>();
+                    violations.put( field.getName(), field );
+                    throw new WriteUniqueVerifyException( ioevent.getEvent(), ioevent.getEntityCollection(),
+                        violations );
+                }
+            }
+        }
+    }
+
+    private void verifyUniqueFieldsAkka( final List<CollectionIoEvent<MvccEntity>> ioevents ) {
+
+        final List<MvccEntity> mvccEntities = new ArrayList<>( ioevents.size() );
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+            MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
+            mvccEntities.add( ioevent.getEvent() );
+        }
+
+        final ApplicationScope applicationScope = ioevents.get( 0 ).getEntityCollection();
+
+        try {
+            akkaUvService.reserveUniqueValues( applicationScope, mvccEntities,
+                getAuthoritativeRegion( ioevents.get( 0 ) ) );
+
+        } catch (UniqueValueException e) {
+            throw violation( applicationScope, mvccEntities, e.getField() );
+        }
+    }
+
+
+    /**
+     * The region to reserve unique values in, the region of the write, then the configured authoritative region, then
+     * the local region
+     */
+    private String getAuthoritativeRegion( final CollectionIoEvent<MvccEntity> ioevent ) {
+
         String authoritativeRegion = ioevent.getAuthoritativeRegion();
         if ( StringUtils.isEmpty(authoritativeRegion) ) {
             authoritativeRegion = uniqueValuesFig.getAuthoritativeRegion();
@@ -139,14 +278,29 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         if ( StringUtils.isEmpty(authoritativeRegion) ) {
             authoritativeRegion = actorSystemFig.getRegionLocal();
         }
-        try {
-            akkaUvService.reserveUniqueValues( applicationScope, entity, mvccEntity.getVersion(), authoritativeRegion );
+        return authoritativeRegion;
+    }
 
-        } catch (UniqueValueException e) {
-            Map<String, Field> violations = new HashMap<>();
-            violations.put( e.getField().getName(), e.getField() );
-            throw new WriteUniqueVerifyException( mvccEntity, applicationScope, violations  );
+
+    /**
+     * Create the violation of a unique value that was refused for one of several entities, for the entity that owns
+     * the value
+     */
+    static WriteUniqueVerifyException violation( final ApplicationScope scope, final List<MvccEntity> mvccEntities,
+                                                 final Field field ) {
+
+        MvccEntity owner = mvccEntities.get( 0 );
+
+        for ( final MvccEntity mvccEntity : mvccEntities ) {
+            if ( EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ).contains( field ) ) {
+                owner = mvccEntity;
+                break;
+            }
         }
+
+        Map<String, Field> violations = new HashMap<>();
+        violations.put( field.getName(), field );
+        return new WriteUniqueVerifyException( owner, scope, violations );
     }
 
     private void verifyUniqueFields(CollectionIoEvent<MvccEntity> ioevent) {
@@ -159,61 +313,56 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
         final ApplicationScope scope = ioevent.getEntityCollection();
 
-        final BatchStatement batch = new BatchStatement();
-        //allocate our max size, worst case
-        final List<Field> uniqueFields = new ArrayList<>( entity.getFields().size() );
+        final List<Field> candidateFields = EntityUtils.getUniqueFields( entity );
+
+        //short circuit nothing to do
+        if ( candidateFields.isEmpty() ) {
+            return;
+        }
 
         //
-        // Construct all the functions for verifying we're unique
+        // Check all the fields in one read before writing anything, don't use read repair on this pre-write check
         //
 
-        final Map<String, Field> preWriteUniquenessViolations = new HashMap<>( uniqueFields.size() );
+        final UniqueValueSet existing = uniqueValueStrat.load( scope, cassandraFig.getDataStaxReadCl(),
+            entity.getId().getType(), candidateFields, false );
 
-        for ( final Field field : EntityUtils.getUniqueFields(entity)) {
+        final Map<String, Field> preWriteUniquenessViolations = new HashMap<>( candidateFields.size() );
 
-            // if it's unique, create a function to validate it and add it to the list of
-            // concurrent validations
+        final BatchStatement batch = new BatchStatement();
+        final List<Field> uniqueFields = new ArrayList<>( candidateFields.size() );
+
+        for ( final Field field : candidateFields ) {
 
             // use write-first then read strategy
             final UniqueValue written = new UniqueValueImpl( field, mvccEntity.getId(), mvccEntity.getVersion() );
 
+            final UniqueValue uniqueValue = existing.getValue( field.getName() );
 
-            // don't use read repair on this pre-write check
-            UniqueValueSet set = uniqueValueStrat.load(scope, cassandraFig.getDataStaxReadCl(),
-                written.getEntityId().getType(), Collections.singletonList(written.getField()), false);
-
-            set.forEach(uniqueValue -> {
-
-                if(!uniqueValue.getEntityId().getUuid().equals(written.getEntityId().getUuid())){
-
-                    if(logger.isTraceEnabled()){
-                        logger.trace("Pre-write violation detected. Attempted write for unique value [{}={}] and " +
-                            "entity id [{}], entity version [{}] conflicts with already existing entity id [{}], " +
-                            "entity version [{}]",
-                            written.getField().getName(),
-                            written.getField().getValue().toString(),
-                            written.getEntityId().getUuid(),
-                            written.getEntityVersion(),
-                            uniqueValue.getEntityId().getUuid(),
-                            uniqueValue.getEntityVersion());
-                    }
-
-                    preWriteUniquenessViolations.put(field.getName(), field);
+            if ( uniqueValue != null && !uniqueValue.getEntityId().getUuid().equals( written.getEntityId().getUuid() ) ) {
 
+                if(logger.isTraceEnabled()){
+                    logger.trace("Pre-write violation detected. Attempted write for unique value [{}={}] and " +
+                        "entity id [{}], entity version [{}] conflicts with already existing entity id [{}], " +
+                        "entity version [{}]",
+                        written.getField().getName(),
+                        written.getField().getValue().toString(),
+                        written.getEntityId().getUuid(),
+                        written.getEntityVersion(),
+                        uniqueValue.getEntityId().getUuid(),
+                        uniqueValue.getEntityVersion());
                 }
 
-            });
-
-
+                preWriteUniquenessViolations.put(field.getName(), field);
 
-            // only build the batch statement if we don't have a violation for the field
-            if( preWriteUniquenessViolations.get(field.getName()) == null) {
+                // only build the batch statement if we don't have a violation for the field
+                continue;
+            }
 
-                // use TTL in case something goes wrong before entity is finally committed
-                batch.add(uniqueValueStrat.writeCQL(scope, written, serializationFig.getTimeout()));
+            // use TTL in case something goes wrong before entity is finally committed
+            batch.add(uniqueValueStrat.writeCQL(scope, written, serializationFig.getTimeout()));
 
-                uniqueFields.add(field);
-            }
+            uniqueFields.add(field);
         }
 
         if(preWriteUniquenessViolations.size() > 0 ){
@@ -224,22 +373,10 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
             throw new WriteUniqueVerifyException(mvccEntity, scope, preWriteUniquenessViolations );
         }
 
-        //short circuit nothing to do
-        if ( uniqueFields.size() == 0 ) {
-            return  ;
-        }
-
         //perform the write
         session.execute(batch);
 
-
-        // use simple thread pool to verify fields in parallel
-        ConsistentReplayCommand cmd = new ConsistentReplayCommand(
-            uniqueValueStrat,cassandraFig,scope, entity.getId().getType(), uniqueFields,entity);
-
-        Map<String,Field> uniquenessViolations = cmd.execute();
-
-        //do we want to do this?
+        Map<String,Field> uniquenessViolations = verifyWritten( scope, entity, uniqueFields );
 
         //We have violations, throw an exception
         if ( !uniquenessViolations.isEmpty() ) {
@@ -248,91 +385,95 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
     }
 
 
-    private static class ConsistentReplayCommand extends HystrixCommand<Map<String,Field>>{
-
-        private final UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
-        private final CassandraConfig fig;
-        private final ApplicationScope scope;
-        private final String type;
-        private final List<Field> uniqueFields;
-        private final Entity entity;
-
-        public ConsistentReplayCommand( UniqueValueSerializationStrategy uniqueValueSerializationStrategy,
-                                        CassandraConfig fig, ApplicationScope scope, final String type, List<Field>
-                                            uniqueFields, Entity entity ){
-            super(REPLAY_GROUP);
-            this.uniqueValueSerializationStrategy = uniqueValueSerializationStrategy;
-            this.fig = fig;
-            this.scope = scope;
-            this.type = type;
-            this.uniqueFields = uniqueFields;
-            this.entity = entity;
-        }
+    /**
+     * Read back the values we wrote at the normal read consistency.  If that read fails, or finds that somebody else
+     * owns a value, read them again at the consistent read level before giving an answer, since a replica that has
+     * not seen every write yet can give either result.
+     */
+    private Map<String, Field> verifyWritten( final ApplicationScope scope, final Entity entity,
+                                              final List<Field> uniqueFields ) {
 
-        @Override
-        protected Map<String, Field> run() throws Exception {
-            return executeStrategy(fig.getDataStaxReadCl());
-        }
+        final ConsistencyLevel readCl = cassandraFig.getDataStaxReadCl();
+        final ConsistencyLevel consistentCl = cassandraFig.getDataStaxReadConsistentCl();
 
-        @Override
-        protected Map<String, Field> getFallback() {
-            // fallback with same CL as there are many reasons the 1st execution failed, not just due to consistency problems
-            return executeStrategy(fig.getDataStaxReadCl());
+        try {
+            final Map<String, Field> violations;
+
+            final Timer.Context timer = verifyTimer.time();
+            try {
+                violations = verifyWritten( scope, entity, uniqueFields, readCl );
+            }
+            finally {
+                timer.stop();
+            }
 
+            if ( violations.isEmpty() || readCl == consistentCl ) {
+                return violations;
+            }
+
+            logger.debug( "Unique value violations {} found at {}, verifying at {}", violations.keySet(), readCl,
+                consistentCl );
         }
+        catch ( RuntimeException e ) {
+            if ( readCl == consistentCl ) {
+                throw e;
+            }
 
-        public Map<String, Field> executeStrategy(ConsistencyLevel consistencyLevel){
+            logger.debug( "Unable to verify unique values at {}, verifying at {}", readCl, consistentCl, e );
+        }
 
-            final UniqueValueSet uniqueValues;
+        escalationMeter.mark();
 
-            // load ascending for verification to make sure we wrote is the last read back
-            // don't read repair on this read because our write-first strategy will introduce a duplicate
-            uniqueValues =
-                uniqueValueSerializationStrategy.load( scope, consistencyLevel, type,  uniqueFields, false);
+        final Timer.Context timer = escalatedVerifyTimer.time();
+        try {
+            return verifyWritten( scope, entity, uniqueFields, consistentCl );
+        }
+        finally {
+            timer.stop();
+        }
+    }
 
 
+    private Map<String, Field> verifyWritten( final ApplicationScope scope, final Entity entity,
+                                              final List<Field> uniqueFields,
+                                              final ConsistencyLevel consistencyLevel ) {
 
-            final Map<String, Field> uniquenessViolations = new HashMap<>( uniqueFields.size() );
+        // load ascending for verification to make sure we wrote is the last read back
+        // don't read repair on this read because our write-first strategy will introduce a duplicate
+        final UniqueValueSet uniqueValues =
+            uniqueValueStrat.load( scope, consistencyLevel, entity.getId().getType(), uniqueFields, false );
 
-            //loop through each field that was unique
-            for ( final Field field : uniqueFields ) {
+        final Map<String, Field> uniquenessViolations = new HashMap<>( uniqueFields.size() );
 
-                final UniqueValue uniqueValue = uniqueValues.getValue( field.getName() );
+        //loop through each field that was unique
+        for ( final Field field : uniqueFields ) {
 
-                if ( uniqueValue == null ) {
-                    throw new RuntimeException(
-                        String.format( "Could not retrieve unique value for field %s, unable to verify",
-                            field.getName() ) );
-                }
+            final UniqueValue uniqueValue = uniqueValues.getValue( field.getName() );
 
-                final Id returnedEntityId = uniqueValue.getEntityId();
+            if ( uniqueValue == null ) {
+                throw new RuntimeException(
+                    String.format( "Could not retrieve unique value for field %s, unable to verify",
+                        field.getName() ) );
+            }
 
-                if ( !entity.getId().equals(returnedEntityId) ) {
+            final Id returnedEntityId = uniqueValue.getEntityId();
 
-                    if(logger.isTraceEnabled()) {
-                        logger.trace("Violation occurred when verifying unique value [{}={}]. " +
-                            "Returned entity id [{}] does not match expected entity id [{}]",
-                            field.getName(), field.getValue().toString(),
-                            returnedEntityId,
-                            entity.getId()
-                        );
-                    }
+            if ( !entity.getId().equals(returnedEntityId) ) {
 
-                    uniquenessViolations.put( field.getName(), field );
+                if(logger.isTraceEnabled()) {
+                    logger.trace("Violation occurred when verifying unique value [{}={}]. " +
+                        "Returned entity id [{}] does not match expected entity id [{}]",
+                        field.getName(), field.getValue().toString(),
+                        returnedEntityId,
+                        entity.getId()
+                    );
                 }
-            }
 
-            return uniquenessViolations;
+                uniquenessViolations.put( field.getName(), field );
+            }
         }
+
+        return uniquenessViolations;
     }
 
-    /**
-     * Command group used for realtime user commands
-     */
-    private static final HystrixCommand.Setter
-        REPLAY_GROUP = HystrixCommand.Setter.withGroupKey( HystrixCommandGroupKey.Factory.asKey( "uniqueVerify" ) )
-        .andThreadPoolPropertiesDefaults(
-            HystrixThreadPoolProperties.Setter().withCoreSize( uniqueVerifyPoolSize ) )
-        .andCommandPropertiesDefaults(
-            HystrixCommandProperties.Setter().withExecutionTimeoutInMilliseconds(uniqueVerifyTimeoutMillis));
 }
@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldProjection;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.core.migration.data.VersionedData;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
@@ -57,6 +58,18 @@ public interface MvccEntitySerializationStrategy extends Migration, VersionedDat
      */
     EntitySet load( ApplicationScope scope, Collection<Id> entityIds, UUID maxVersion );
 
+
+    /**
+     * Load the entities into the entitySet from the specified Ids.  Loads versions <= the maxVersion.  Only the fields
+     * in the projection are required to be present in the loaded entities, implementations may skip parsing the rest.
+     *
+     * @param scope
+     * @param entityIds
+     * @param projection
+     * @return
+     */
+    EntitySet load( ApplicationScope scope, Collection<Id> entityIds, UUID maxVersion, FieldProjection projection );
+
     /**
      * Load a list, from highest to lowest of the entity with versions <= version up to maxSize elements
      *
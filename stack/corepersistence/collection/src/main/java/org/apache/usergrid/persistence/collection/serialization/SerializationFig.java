@@ -54,7 +54,30 @@ public interface SerializationFig extends GuicyFig {
     @Default( "5000000" )
     int getMaxEntitySize();
 
-    @Key ( "usergrid.uniqueverify.poolsize" )
+    /**
+     * While entities are migrated to a new format, copy entities that are read from the old format to the new one, so
+     * the entities in use are upgraded before the migration reaches them.
+     */
+    @Key( "collection.migration.upgrade.on.read" )
+    @Default( "true" )
+    boolean getUpgradeOnRead();
+
+    /**
+     * The maximum number of entities written in a single batch when several entities are written together.  Keep this
+     * at or below the max load size, so a batch is never larger than a load.
+     */
+    @Key( "collection.write.batch.size" )
+    @Default( "100" )
+    int getWriteBatchSize();
+
+    /**
+     * No longer used.  Unique values are verified on the calling thread instead of a dedicated pool, so this setting
+     * has no effect.
+     *
+     * @deprecated will be removed in a future release, remove it from the configuration
+     */
+    @Deprecated
+    @Key( "usergrid.uniqueverify.poolsize" )
     @Default( "150" )
     int getUniqueVerifyPoolSize();
 
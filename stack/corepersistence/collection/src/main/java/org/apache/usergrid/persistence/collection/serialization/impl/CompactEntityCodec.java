@@ -0,0 +1,792 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.usergrid.persistence.collection.FieldProjection;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityToMapConverter;
+import org.apache.usergrid.persistence.model.field.ArrayField;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.ByteArrayField;
+import org.apache.usergrid.persistence.model.field.DistanceField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.FloatField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.ListField;
+import org.apache.usergrid.persistence.model.field.LocationField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.NullField;
+import org.apache.usergrid.persistence.model.field.SerializedObjectField;
+import org.apache.usergrid.persistence.model.field.SetField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.UUIDField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.field.value.Location;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * Binary encoding of an entity version, written straight from and read straight into the fields of the entity.
+ *
+ * <pre>
+ * header:     format (1 byte), flags (1 byte), version (16 bytes), offset of the dictionary (4 bytes)
+ * object:     field count (varint), then for each field its name (varint index into the dictionary),
+ *             the length of its value (varint) and its value
+ * value:      tag (1 byte, the high bit set for unique fields), then the data of the tag
+ * dictionary: name count (varint), then each name as length (varint) and UTF-8 bytes
+ * </pre>
+ *
+ * Field names and class names are written once in the dictionary, whatever the number of fields or nested objects
+ * that use them.  Integers are zig-zag varints.  Since every field is prefixed with its length, the fields of a
+ * projection are read without decoding the fields that are skipped.  Decoding is not lazy otherwise: a load without
+ * a projection decodes every field into the entity up front.
+ */
+public final class CompactEntityCodec {
+
+    /**
+     * The format of the bytes, in case it has to change
+     */
+    private static final byte FORMAT = 1;
+
+    private static final byte FLAG_ENTITY = 1;
+
+    private static final int HEADER_SIZE = 22;
+
+    private static final int UNIQUE = 0x80;
+
+    private static final int TAG_MASK = 0x7f;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte FALSE = 2;
+    private static final byte TRUE = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte UUID_VALUE = 8;
+    private static final byte LOCATION = 9;
+    private static final byte OBJECT = 10;
+    private static final byte ARRAY = 11;
+    private static final byte LIST = 12;
+    private static final byte SET = 13;
+    private static final byte BYTES = 14;
+    private static final byte SERIALIZED = 15;
+    private static final byte DISTANCE = 16;
+    /**
+     * A field that is an element of a collection, written with its name
+     */
+    private static final byte FIELD = 17;
+    /**
+     * Any other element of a collection, written as json with its class name
+     */
+    private static final byte JSON = 18;
+
+    private static final Map<String, Boolean> CORRUPTED_TYPES = EntityToMapConverter.getCorruptedTypes();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+
+    /**
+     * Encode the version of the entity.  A null entity marks the version as deleted.
+     */
+    public byte[] encode( final UUID version, final EntityObject entity ) {
+
+        final Output out = new Output( entity == null ? HEADER_SIZE : 256 );
+
+        out.writeByte( FORMAT );
+        out.writeByte( entity == null ? 0 : FLAG_ENTITY );
+        out.writeLong( version.getMostSignificantBits() );
+        out.writeLong( version.getLeastSignificantBits() );
+        out.writeInt( 0 );
+
+        if ( entity == null ) {
+            return out.toByteArray();
+        }
+
+        final Dictionary dictionary = new Dictionary();
+
+        writeObject( out, dictionary, entity );
+
+        out.setInt( HEADER_SIZE - 4, out.size() );
+
+        out.writeVarInt( dictionary.names.size() );
+        for ( final String name : dictionary.names ) {
+            out.writeString( name );
+        }
+
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Read the version the bytes were encoded with
+     */
+    public UUID readVersion( final byte[] bytes ) {
+        final Input in = new Input( bytes, 2, bytes.length );
+        return new UUID( in.readLong(), in.readLong() );
+    }
+
+
+    /**
+     * Decode the entity, null if the version is deleted.  Only the fields in the projection are decoded, all of them
+     * when the projection is null
+     */
+    public Entity decode( final byte[] bytes, final FieldProjection projection ) {
+
+        if ( bytes.length < HEADER_SIZE || bytes[0] != FORMAT ) {
+            throw new IllegalArgumentException( "Unknown entity format " + ( bytes.length == 0 ? -1 : bytes[0] ) );
+        }
+
+        if ( ( bytes[1] & FLAG_ENTITY ) == 0 ) {
+            return null;
+        }
+
+        final Input header = new Input( bytes, HEADER_SIZE - 4, HEADER_SIZE );
+        final Input dictionaryIn = new Input( bytes, header.readInt(), bytes.length );
+
+        final String[] names = new String[dictionaryIn.readVarInt()];
+        for ( int i = 0; i < names.length; i++ ) {
+            names[i] = dictionaryIn.readString();
+        }
+
+        final Entity entity = new Entity();
+
+        readObject( new Input( bytes, HEADER_SIZE, bytes.length ), names, projection, entity );
+
+        return entity;
+    }
+
+
+    private void writeObject( final Output out, final Dictionary dictionary, final EntityObject object ) {
+
+        final Collection<Field> fields = object.getFields();
+
+        // fields of corrupted types are not written, count them first
+        int count = 0;
+        for ( final Field field : fields ) {
+            if ( !isCorrupted( field ) ) {
+                count++;
+            }
+        }
+
+        out.writeVarInt( count );
+
+        for ( final Field field : fields ) {
+            if ( isCorrupted( field ) ) {
+                continue;
+            }
+
+            out.writeVarInt( dictionary.indexOf( field.getName() ) );
+
+            final int start = out.size();
+            out.writeByte( 0 );
+
+            writeField( out, dictionary, field );
+
+            out.insertLength( start );
+        }
+    }
+
+
+    private void writeField( final Output out, final Dictionary dictionary, final Field field ) {
+
+        final Object value = field.getValue();
+        final int unique = field.isUnique() ? UNIQUE : 0;
+
+        if ( value == null || field instanceof NullField ) {
+            out.writeByte( NULL | unique );
+        }
+        else if ( field instanceof StringField ) {
+            out.writeByte( STRING | unique );
+            out.writeString( ( String ) value );
+        }
+        else if ( field instanceof BooleanField ) {
+            out.writeByte( ( ( Boolean ) value ? TRUE : FALSE ) | unique );
+        }
+        else if ( field instanceof IntegerField ) {
+            out.writeByte( INTEGER | unique );
+            out.writeVarLong( zigZag( ( Integer ) value ) );
+        }
+        else if ( field instanceof LongField ) {
+            out.writeByte( LONG | unique );
+            out.writeVarLong( zigZag( ( Long ) value ) );
+        }
+        else if ( field instanceof FloatField ) {
+            out.writeByte( FLOAT | unique );
+            out.writeInt( Float.floatToIntBits( ( Float ) value ) );
+        }
+        else if ( field instanceof DistanceField ) {
+            out.writeByte( DISTANCE | unique );
+            out.writeLong( Double.doubleToLongBits( ( Double ) value ) );
+        }
+        else if ( field instanceof DoubleField ) {
+            out.writeByte( DOUBLE | unique );
+            out.writeLong( Double.doubleToLongBits( ( Double ) value ) );
+        }
+        else if ( field instanceof UUIDField ) {
+            out.writeByte( UUID_VALUE | unique );
+            writeUuid( out, ( UUID ) value );
+        }
+        else if ( field instanceof LocationField ) {
+            out.writeByte( LOCATION );
+            out.writeLong( Double.doubleToLongBits( ( ( Location ) value ).getLatitude() ) );
+            out.writeLong( Double.doubleToLongBits( ( ( Location ) value ).getLongitude() ) );
+        }
+        else if ( field instanceof EntityObjectField ) {
+            out.writeByte( OBJECT );
+            writeObject( out, dictionary, ( EntityObject ) value );
+        }
+        else if ( field instanceof ArrayField ) {
+            out.writeByte( ARRAY );
+            writeElements( out, dictionary, ( Collection<?> ) value );
+        }
+        else if ( field instanceof ListField ) {
+            out.writeByte( LIST );
+            writeElements( out, dictionary, ( Collection<?> ) value );
+        }
+        else if ( field instanceof SetField ) {
+            out.writeByte( SET );
+            writeElements( out, dictionary, ( Collection<?> ) value );
+        }
+        else if ( field instanceof ByteArrayField ) {
+            out.writeByte( BYTES );
+            out.writeVarInt( dictionary.indexOf( ( ( ByteArrayField ) field ).getClassinfo().getName() ) );
+            out.writeBytes( ( byte[] ) value );
+        }
+        else if ( field instanceof SerializedObjectField ) {
+            out.writeByte( SERIALIZED );
+            out.writeVarInt( dictionary.indexOf( ( ( SerializedObjectField ) field ).getClassinfo().getName() ) );
+            out.writeString( ( String ) value );
+        }
+        else {
+            throw new IllegalArgumentException( "Unable to serialize field of type " + field.getClass().getName() );
+        }
+    }
+
+
+    private void writeElements( final Output out, final Dictionary dictionary, final Collection<?> elements ) {
+        out.writeVarInt( elements.size() );
+
+        for ( final Object element : elements ) {
+            writeElement( out, dictionary, element );
+        }
+    }
+
+
+    private void writeElement( final Output out, final Dictionary dictionary, final Object element ) {
+
+        if ( element == null ) {
+            out.writeByte( NULL );
+        }
+        else if ( element instanceof String ) {
+            out.writeByte( STRING );
+            out.writeString( ( String ) element );
+        }
+        else if ( element instanceof Boolean ) {
+            out.writeByte( ( Boolean ) element ? TRUE : FALSE );
+        }
+        else if ( element instanceof Integer ) {
+            out.writeByte( INTEGER );
+            out.writeVarLong( zigZag( ( Integer ) element ) );
+        }
+        else if ( element instanceof Long ) {
+            out.writeByte( LONG );
+            out.writeVarLong( zigZag( ( Long ) element ) );
+        }
+        else if ( element instanceof Float ) {
+            out.writeByte( FLOAT );
+            out.writeInt( Float.floatToIntBits( ( Float ) element ) );
+        }
+        else if ( element instanceof Double ) {
+            out.writeByte( DOUBLE );
+            out.writeLong( Double.doubleToLongBits( ( Double ) element ) );
+        }
+        else if ( element instanceof UUID ) {
+            out.writeByte( UUID_VALUE );
+            writeUuid( out, ( UUID ) element );
+        }
+        else if ( element instanceof EntityObject ) {
+            out.writeByte( OBJECT );
+            writeObject( out, dictionary, ( EntityObject ) element );
+        }
+        else if ( element instanceof Field ) {
+            out.writeByte( FIELD );
+            out.writeVarInt( dictionary.indexOf( ( ( Field ) element ).getName() ) );
+            writeField( out, dictionary, ( Field ) element );
+        }
+        else if ( element instanceof Set ) {
+            out.writeByte( SET );
+            writeElements( out, dictionary, ( Collection<?> ) element );
+        }
+        else if ( element instanceof Collection ) {
+            out.writeByte( LIST );
+            writeElements( out, dictionary, ( Collection<?> ) element );
+        }
+        else {
+            out.writeByte( JSON );
+            out.writeVarInt( dictionary.indexOf( element.getClass().getName() ) );
+            try {
+                out.writeBytes( mapper.writeValueAsBytes( element ) );
+            }
+            catch ( IOException e ) {
+                throw new IllegalArgumentException( "Unable to serialize " + element.getClass().getName(), e );
+            }
+        }
+    }
+
+
+    private void readObject( final Input in, final String[] names, final FieldProjection projection,
+                             final EntityObject target ) {
+
+        final int count = in.readVarInt();
+
+        for ( int i = 0; i < count; i++ ) {
+            final String name = names[in.readVarInt()];
+            final int length = in.readVarInt();
+
+            final FieldProjection child = projection == null ? null : projection.getChild( name );
+
+            if ( projection != null && child == null ) {
+                in.skip( length );
+                continue;
+            }
+
+            in.require( length );
+            final int end = in.position + length;
+
+            target.setField( readField( in, names, name, child == null || child.isAll() ? null : child ) );
+
+            in.position = end;
+        }
+    }
+
+
+    private Field readField( final Input in, final String[] names, final String name,
+                             final FieldProjection projection ) {
+
+        final int tag = in.readByte();
+        final boolean unique = ( tag & UNIQUE ) != 0;
+
+        switch ( tag & TAG_MASK ) {
+            case NULL:
+                return new NullField( name, unique );
+            case STRING:
+                return new StringField( name, in.readString(), unique );
+            case FALSE:
+                return new BooleanField( name, false, unique );
+            case TRUE:
+                return new BooleanField( name, true, unique );
+            case INTEGER:
+                return new IntegerField( name, ( int ) unZigZag( in.readVarLong() ), unique );
+            case LONG:
+                return new LongField( name, unZigZag( in.readVarLong() ), unique );
+            case FLOAT:
+                return new FloatField( name, Float.intBitsToFloat( in.readInt() ), unique );
+            case DOUBLE:
+                return new DoubleField( name, Double.longBitsToDouble( in.readLong() ), unique );
+            case DISTANCE:
+                return new DistanceField( Double.longBitsToDouble( in.readLong() ), unique );
+            case UUID_VALUE:
+                return new UUIDField( name, readUuid( in ), unique );
+            case LOCATION:
+                return new LocationField( name, new Location( Double.longBitsToDouble( in.readLong() ),
+                    Double.longBitsToDouble( in.readLong() ) ) );
+            case OBJECT:
+                final Entity object = new Entity();
+                readObject( in, names, projection, object );
+                return new EntityObjectField( name, object );
+            case ARRAY:
+                return new ArrayField<>( name, readList( in, names ) );
+            case LIST:
+                return new ListField<>( name, readList( in, names ) );
+            case SET:
+                return new SetField<>( name, readSet( in, names ) );
+            case BYTES:
+                final Class<?> byteClass = classFor( names[in.readVarInt()] );
+                return new ByteArrayField( name, in.readBytes(), byteClass );
+            case SERIALIZED:
+                final Class<?> serializedClass = classFor( names[in.readVarInt()] );
+                return new SerializedObjectField( name, in.readString(), serializedClass );
+            default:
+                throw new IllegalArgumentException( "Unknown field tag " + tag + " for field " + name );
+        }
+    }
+
+
+    private List<Object> readList( final Input in, final String[] names ) {
+        final int size = in.readVarInt();
+        final List<Object> list = new ArrayList<>( size );
+
+        for ( int i = 0; i < size; i++ ) {
+            list.add( readElement( in, names ) );
+        }
+
+        return list;
+    }
+
+
+    private Set<Object> readSet( final Input in, final String[] names ) {
+        final int size = in.readVarInt();
+        final Set<Object> set = new HashSet<>( size * 2 );
+
+        for ( int i = 0; i < size; i++ ) {
+            set.add( readElement( in, names ) );
+        }
+
+        return set;
+    }
+
+
+    private Object readElement( final Input in, final String[] names ) {
+
+        final int tag = in.readByte();
+
+        switch ( tag ) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readString();
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INTEGER:
+                return ( int ) unZigZag( in.readVarLong() );
+            case LONG:
+                return unZigZag( in.readVarLong() );
+            case FLOAT:
+                return Float.intBitsToFloat( in.readInt() );
+            case DOUBLE:
+                return Double.longBitsToDouble( in.readLong() );
+            case UUID_VALUE:
+                return readUuid( in );
+            case OBJECT:
+                final Entity object = new Entity();
+                readObject( in, names, null, object );
+                return object;
+            case FIELD:
+                final String name = names[in.readVarInt()];
+                return readField( in, names, name, null );
+            case LIST:
+                return readList( in, names );
+            case SET:
+                return readSet( in, names );
+            case JSON:
+                final Class<?> type = classFor( names[in.readVarInt()] );
+                try {
+                    return mapper.readValue( in.readBytes(), type );
+                }
+                catch ( IOException e ) {
+                    throw new IllegalArgumentException( "Unable to read " + type.getName(), e );
+                }
+            default:
+                throw new IllegalArgumentException( "Unknown element tag " + tag );
+        }
+    }
+
+
+    private Class<?> classFor( final String name ) {
+        return classes.computeIfAbsent( name, className -> {
+            try {
+                return Class.forName( className );
+            }
+            catch ( ClassNotFoundException e ) {
+                throw new IllegalArgumentException( "Unable to find class " + className, e );
+            }
+        } );
+    }
+
+
+    private static boolean isCorrupted( final Field field ) {
+        return field instanceof ByteArrayField && CORRUPTED_TYPES
+            .containsKey( ( ( ByteArrayField ) field ).getClassinfo().getName() );
+    }
+
+
+    private static void writeUuid( final Output out, final UUID uuid ) {
+        out.writeLong( uuid.getMostSignificantBits() );
+        out.writeLong( uuid.getLeastSignificantBits() );
+    }
+
+
+    private static UUID readUuid( final Input in ) {
+        return new UUID( in.readLong(), in.readLong() );
+    }
+
+
+    private static long zigZag( final long value ) {
+        return ( value << 1 ) ^ ( value >> 63 );
+    }
+
+
+    private static long unZigZag( final long value ) {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+
+    /**
+     * The names written once at the end of the bytes, in order of first use
+     */
+    private static final class Dictionary {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+
+        private int indexOf( final String name ) {
+            final Integer index = indexes.get( name );
+
+            if ( index != null ) {
+                return index;
+            }
+
+            indexes.put( name, names.size() );
+            names.add( name );
+
+            return names.size() - 1;
+        }
+    }
+
+
+    /**
+     * A growable byte array to write to
+     */
+    private static final class Output {
+
+        private byte[] buffer;
+        private int position;
+
+
+        private Output( final int capacity ) {
+            this.buffer = new byte[capacity];
+        }
+
+
+        private int size() {
+            return position;
+        }
+
+
+        private void ensureCapacity( final int bytes ) {
+            if ( position + bytes > buffer.length ) {
+                final byte[] grown = new byte[Math.max( buffer.length * 2, position + bytes )];
+                System.arraycopy( buffer, 0, grown, 0, position );
+                buffer = grown;
+            }
+        }
+
+
+        private void writeByte( final int value ) {
+            ensureCapacity( 1 );
+            buffer[position++] = ( byte ) value;
+        }
+
+
+        private void writeInt( final int value ) {
+            ensureCapacity( 4 );
+            setInt( position, value );
+            position += 4;
+        }
+
+
+        private void setInt( final int offset, final int value ) {
+            buffer[offset] = ( byte ) ( value >>> 24 );
+            buffer[offset + 1] = ( byte ) ( value >>> 16 );
+            buffer[offset + 2] = ( byte ) ( value >>> 8 );
+            buffer[offset + 3] = ( byte ) value;
+        }
+
+
+        private void writeLong( final long value ) {
+            writeInt( ( int ) ( value >>> 32 ) );
+            writeInt( ( int ) value );
+        }
+
+
+        private void writeVarInt( final int value ) {
+            writeVarLong( value & 0xffffffffL );
+        }
+
+
+        private void writeVarLong( long value ) {
+            ensureCapacity( 10 );
+            while ( ( value & ~0x7fL ) != 0 ) {
+                buffer[position++] = ( byte ) ( ( value & 0x7f ) | 0x80 );
+                value >>>= 7;
+            }
+            buffer[position++] = ( byte ) value;
+        }
+
+
+        private void writeBytes( final byte[] bytes ) {
+            writeVarInt( bytes.length );
+            ensureCapacity( bytes.length );
+            System.arraycopy( bytes, 0, buffer, position, bytes.length );
+            position += bytes.length;
+        }
+
+
+        private void writeString( final String value ) {
+            writeBytes( value.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+
+        /**
+         * Write the length of everything after the byte reserved at start as a varint at start, moving the bytes
+         * after it when the length needs more than the reserved byte
+         */
+        private void insertLength( final int start ) {
+            final int length = position - start - 1;
+
+            int lengthSize = 1;
+            for ( int remaining = length >>> 7; remaining != 0; remaining >>>= 7 ) {
+                lengthSize++;
+            }
+
+            if ( lengthSize > 1 ) {
+                ensureCapacity( lengthSize - 1 );
+                System.arraycopy( buffer, start + 1, buffer, start + lengthSize, length );
+            }
+
+            final int end = position + lengthSize - 1;
+
+            position = start;
+            writeVarInt( length );
+            position = end;
+        }
+
+
+        private byte[] toByteArray() {
+            if ( position == buffer.length ) {
+                return buffer;
+            }
+
+            final byte[] bytes = new byte[position];
+            System.arraycopy( buffer, 0, bytes, 0, position );
+            return bytes;
+        }
+    }
+
+
+    /**
+     * A window of a byte array to read from
+     */
+    private static final class Input {
+
+        private final byte[] buffer;
+        private int position;
+        private final int limit;
+
+
+        private Input( final byte[] buffer, final int position, final int limit ) {
+            this.buffer = buffer;
+            this.position = position;
+            this.limit = limit;
+        }
+
+
+        private void require( final int bytes ) {
+            if ( position + bytes > limit || bytes < 0 ) {
+                throw new IllegalArgumentException( "Unexpected end of entity data" );
+            }
+        }
+
+
+        private int readByte() {
+            require( 1 );
+            return buffer[position++] & 0xff;
+        }
+
+
+        private int readInt() {
+            require( 4 );
+            final int value = ( buffer[position] & 0xff ) << 24 | ( buffer[position + 1] & 0xff ) << 16
+                | ( buffer[position + 2] & 0xff ) << 8 | buffer[position + 3] & 0xff;
+            position += 4;
+            return value;
+        }
+
+
+        private long readLong() {
+            return ( ( long ) readInt() << 32 ) | ( readInt() & 0xffffffffL );
+        }
+
+
+        private int readVarInt() {
+            return ( int ) readVarLong();
+        }
+
+
+        private long readVarLong() {
+            long value = 0;
+            for ( int shift = 0; shift < 64; shift += 7 ) {
+                final int b = readByte();
+                value |= ( long ) ( b & 0x7f ) << shift;
+                if ( ( b & 0x80 ) == 0 ) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException( "Malformed varint in entity data" );
+        }
+
+
+        private byte[] readBytes() {
+            final int length = readVarInt();
+            require( length );
+            final byte[] bytes = new byte[length];
+            System.arraycopy( buffer, position, bytes, 0, length );
+            position += length;
+            return bytes;
+        }
+
+
+        private String readString() {
+            final int length = readVarInt();
+            require( length );
+            final String value = new String( buffer, position, length, StandardCharsets.UTF_8 );
+            position += length;
+            return value;
+        }
+
+
+        private void skip( final int bytes ) {
+            require( bytes );
+            position += bytes;
+        }
+    }
+}
@@ -17,14 +17,21 @@
 package org.apache.usergrid.persistence.collection.serialization.impl;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldProjection;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.CollectionMigrationPlugin;
 import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
 import org.apache.usergrid.persistence.core.datastax.TableDefinition;
@@ -33,36 +40,49 @@ import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship
 import org.apache.usergrid.persistence.core.migration.data.VersionedMigrationSet;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 
 /**
  * Version 4 implementation of entity serialization. This will proxy writes and reads so that during
  * migration data goes to both sources and is read from the old source. After the upgrade completes,
- * it will be available from the new source
+ * it will be available from the new source.
+ *
+ * When the old source only holds the latest version of each entity, reads during migration go to the new source
+ * first, and entities only found in the old source are copied to the new one as they are read.
  */
 @Singleton
 public class MvccEntitySerializationStrategyProxyImpl implements MvccEntitySerializationStrategy {
 
+    private static final Logger logger = LoggerFactory.getLogger( MvccEntitySerializationStrategyProxyImpl.class );
+
 
     protected final Keyspace keyspace;
     private final VersionedMigrationSet<MvccEntitySerializationStrategy> versions;
     private final MigrationInfoCache migrationInfoCache;
+    private final SerializationFig serializationFig;
 
 
     @Inject
     public MvccEntitySerializationStrategyProxyImpl( final Keyspace keyspace,
                                                      final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions,
-                                                     final MigrationInfoCache migrationInfoCache ) {
+                                                     final MigrationInfoCache migrationInfoCache,
+                                                     final SerializationFig serializationFig ) {
 
         this.keyspace = keyspace;
         this.migrationInfoCache = migrationInfoCache;
         this.versions = allVersions;
+        this.serializationFig = serializationFig;
     }
 
 
@@ -84,12 +104,34 @@ public class MvccEntitySerializationStrategyProxyImpl implements MvccEntitySeria
     }
 
 
+    @Override
+    public EntitySet load( final ApplicationScope scope, final Collection<Id> entityIds, final UUID maxVersion,
+                           final FieldProjection projection ) {
+
+        final MigrationRelationship<MvccEntitySerializationStrategy> migration = getMigrationRelationShip();
+
+        if ( migration.needsMigration() ) {
+            if ( upgradesOnRead( migration ) ) {
+                return loadUpgrading( migration, scope, entityIds, maxVersion, projection );
+            }
+
+            return migration.from.load( scope, entityIds, maxVersion, projection );
+        }
+
+        return migration.to.load( scope, entityIds, maxVersion, projection );
+    }
+
+
     @Override
     public EntitySet load( final ApplicationScope scope, final Collection<Id> entityIds, final UUID maxVersion ) {
 
         final MigrationRelationship<MvccEntitySerializationStrategy> migration = getMigrationRelationShip();
 
         if ( migration.needsMigration() ) {
+            if ( upgradesOnRead( migration ) ) {
+                return loadUpgrading( migration, scope, entityIds, maxVersion, null );
+            }
+
             return migration.from.load( scope, entityIds, maxVersion );
         }
 
@@ -131,6 +173,13 @@ public class MvccEntitySerializationStrategyProxyImpl implements MvccEntitySeria
         final MigrationRelationship<MvccEntitySerializationStrategy> migration = getMigrationRelationShip();
 
         if ( migration.needsMigration() ) {
+            if ( upgradesOnRead( migration ) ) {
+                final EntitySet entitySet = loadUpgrading( migration, scope, Collections.singleton( entityId ),
+                    UUIDGenerator.newTimeUUID(), null );
+
+                return Optional.fromNullable( entitySet.getEntity( entityId ) );
+            }
+
             return migration.from.load( scope, entityId );
         }
 
@@ -173,6 +222,92 @@ public class MvccEntitySerializationStrategyProxyImpl implements MvccEntitySeria
         return migration.to.delete( context, entityId, version );
     }
 
+    /**
+     * True if entities can be upgraded as they are read.  This is only the case when the old version holds nothing but
+     * the latest version of each entity, older versions also have to migrate their history, unique values and logs.
+     */
+    private boolean upgradesOnRead( final MigrationRelationship<MvccEntitySerializationStrategy> migration ) {
+        return serializationFig.getUpgradeOnRead()
+            && migration.from.getImplementationVersion() >= CollectionDataVersions.LOG_REMOVAL.getVersion();
+    }
+
+
+    /**
+     * Load from the new version, then load the entities that are missing from the old version.  Entities read in full
+     * from the old version are written to the new one, with the timestamp of their version so newer writes win.
+     */
+    private EntitySet loadUpgrading( final MigrationRelationship<MvccEntitySerializationStrategy> migration,
+                                     final ApplicationScope scope, final Collection<Id> entityIds,
+                                     final UUID maxVersion, final FieldProjection projection ) {
+
+        final EntitySet upgraded = projection == null ? migration.to.load( scope, entityIds, maxVersion ) :
+            migration.to.load( scope, entityIds, maxVersion, projection );
+
+        final List<Id> missing = new ArrayList<>( entityIds.size() - upgraded.size() );
+
+        for ( final Id entityId : entityIds ) {
+            if ( entityId != null && upgraded.getEntity( entityId ) == null ) {
+                missing.add( entityId );
+            }
+        }
+
+        if ( missing.isEmpty() ) {
+            return upgraded;
+        }
+
+        final EntitySet old = projection == null ? migration.from.load( scope, missing, maxVersion ) :
+            migration.from.load( scope, missing, maxVersion, projection );
+
+        final EntitySetImpl merged = new EntitySetImpl( entityIds.size() );
+
+        for ( final MvccEntity entity : upgraded.getEntities() ) {
+            merged.addEntity( entity );
+        }
+
+        final MutationBatch batch = keyspace.prepareMutationBatch();
+
+        for ( final MvccEntity entity : old.getEntities() ) {
+            merged.addEntity( entity );
+
+            //a projection is only part of the entity, it's left for the migration
+            if ( projection == null && entity.getEntity().isPresent() ) {
+                batch.mergeShallow( migration.to.write( scope, entity ) );
+            }
+        }
+
+        if ( !batch.isEmpty() ) {
+            final int size = old.size();
+
+            try {
+                /**
+                 * Log failures of the write, the entities are upgraded again on their next read or by the migration
+                 */
+                Futures.addCallback( batch.executeAsync(), new FutureCallback<OperationResult<Void>>() {
+                    @Override
+                    public void onSuccess( final OperationResult<Void> result ) {
+                        if ( logger.isTraceEnabled() ) {
+                            logger.trace( "Upgraded {} entities on read", size );
+                        }
+                    }
+
+
+                    @Override
+                    public void onFailure( final Throwable t ) {
+                        logger.warn( "Unable to upgrade {} entities on read, they will be upgraded by the migration",
+                            size, t );
+                    }
+                } );
+            }
+            catch ( ConnectionException e ) {
+                logger.warn( "Unable to upgrade {} entities on read, they will be upgraded by the migration",
+                    size, e );
+            }
+        }
+
+        return merged;
+    }
+
+
     /**
      * Return true if we're on an old version
      */
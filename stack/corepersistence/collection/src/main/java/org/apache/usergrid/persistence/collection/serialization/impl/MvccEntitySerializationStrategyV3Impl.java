@@ -1,20 +1,27 @@
 package org.apache.usergrid.persistence.collection.serialization.impl;
 
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.netflix.astyanax.serializers.StringSerializer;
 import org.apache.usergrid.persistence.core.datastax.TableDefinition;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
@@ -25,6 +32,7 @@ import org.apache.cassandra.db.marshal.BooleanType;
 import org.apache.cassandra.db.marshal.BytesType;
 
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldProjection;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
 import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
@@ -82,6 +90,10 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
 
     private static final Boolean COL_VALUE = Boolean.TRUE;
 
+    private static final String ENTITY_MAP_PROPERTY = "entityMap";
+
+    private static final String TYPE_PROPERTY = "@class";
+
 
     private final EntitySerializer entitySerializer;
 
@@ -125,8 +137,25 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
     @Override
     public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
                            final UUID maxVersion ) {
+        return load( applicationScope, entityIds, maxVersion, entitySerializer );
+    }
+
+
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion, final FieldProjection projection ) {
+        Preconditions.checkNotNull( projection, "projection is required" );
+
+        return load( applicationScope, entityIds, maxVersion, new ProjectedEntitySerializer( projection ) );
+    }
 
 
+    /**
+     * Load the entities, parsing each column with the serializer
+     */
+    private EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                            final UUID maxVersion, final AbstractSerializer<EntityWrapper> serializer ) {
+
         Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
         Preconditions.checkNotNull( entityIds, "entityIds is required" );
         Preconditions.checkArgument( entityIds.size() > 0, "entityIds is required" );
@@ -220,7 +249,7 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
                     final Column<Boolean> column = columns.getColumnByIndex( 0 );
 
                     final MvccEntity parsedEntity =
-                        new MvccColumnParser( entityId, entitySerializer ).parseColumn( column );
+                        new MvccColumnParser( entityId, serializer ).parseColumn( column );
 
 
                     entitySet.addEntity( parsedEntity );
@@ -452,6 +481,15 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
 
         @Override
         public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer ) {
+            return fromByteBuffer( byteBuffer, null );
+        }
+
+
+        /**
+         * Read the entity wrapper, only parsing the fields of the entity in the projection.  The entire entity is
+         * read when the projection is null
+         */
+        public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer, final FieldProjection projection ) {
 
             /**
              * We intentionally turn data corruption exceptions when we're unable to de-serialize
@@ -468,7 +506,8 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
                 Timer.Context time = bytesOutTimer.time();
                 byte[] arr = byteBuffer.array();
                 bytesOutHistorgram.update( arr == null ? 0 : arr.length);
-                entityWrapper = MAPPER.readValue(arr, EntityWrapper.class);
+                entityWrapper = projection == null ? MAPPER.readValue(arr, EntityWrapper.class) :
+                    readProjected( arr, projection );
                 entityWrapper.size = arr.length;
                 time.stop();
             }
@@ -489,8 +528,97 @@ public class MvccEntitySerializationStrategyV3Impl implements MvccEntitySerializ
             // it's partial by default
             return entityWrapper;
         }
+
+
+        /**
+         * Stream the wrapper, fields of the entity map that are not in the projection are skipped without
+         * being bound
+         */
+        private EntityWrapper readProjected( final byte[] arr, final FieldProjection projection )
+            throws IOException {
+
+            final ObjectNode wrapperNode = MAPPER.createObjectNode();
+            EntityMap entityMap = null;
+
+            try ( JsonParser parser = MAPPER.getFactory().createParser( arr ) ) {
+
+                if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+                    throw new JsonParseException( "Expected an object", parser.getCurrentLocation() );
+                }
+
+                while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                    final String name = parser.getCurrentName();
+
+                    if ( parser.nextToken() == JsonToken.START_OBJECT && ENTITY_MAP_PROPERTY.equals( name ) ) {
+                        entityMap = new EntityMap();
+                        readProjectedMap( parser, projection, entityMap );
+                    }
+                    else {
+                        wrapperNode.set( name, MAPPER.readTree( parser ) );
+                    }
+                }
+            }
+
+            final EntityWrapper entityWrapper = MAPPER.treeToValue( wrapperNode, EntityWrapper.class );
+            entityWrapper.entityMap = entityMap;
+
+            return entityWrapper;
+        }
+
+
+        /**
+         * Read the fields of the object the parser is positioned on into the target
+         */
+        private void readProjectedMap( final JsonParser parser, final FieldProjection projection,
+                                       final Map<String, Object> target ) throws IOException {
+
+            while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                final String name = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+
+                final FieldProjection child = projection.getChild( name );
+
+                if ( child == null || TYPE_PROPERTY.equals( name ) ) {
+                    parser.skipChildren();
+                }
+                else if ( child.isAll() || value != JsonToken.START_OBJECT ) {
+                    target.put( name, MAPPER.readValue( parser, Object.class ) );
+                }
+                else {
+                    final Map<String, Object> nested = new HashMap<>();
+                    readProjectedMap( parser, child, nested );
+                    target.put( name, nested );
+                }
+            }
+        }
     }
 
+    /**
+     * Parses only the projected fields of the entity, used for loads only
+     */
+    private final class ProjectedEntitySerializer extends AbstractSerializer<EntityWrapper> {
+
+        private final FieldProjection projection;
+
+
+        private ProjectedEntitySerializer( final FieldProjection projection ) {
+            this.projection = projection;
+        }
+
+
+        @Override
+        public ByteBuffer toByteBuffer( final EntityWrapper wrapper ) {
+            throw new UnsupportedOperationException( "Projected entities cannot be written" );
+        }
+
+
+        @Override
+        public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer ) {
+            return entitySerializer.fromByteBuffer( byteBuffer, projection );
+        }
+    }
+
+
     /**
      * Simple bean wrapper for state and entity
      */
@@ -0,0 +1,431 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.marshal.BytesType;
+
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldProjection;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
+import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
+import org.apache.usergrid.persistence.collection.exception.EntityTooLargeException;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.core.CassandraFig;
+import org.apache.usergrid.persistence.core.astyanax.IdRowCompositeSerializer;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.persistence.core.datastax.TableDefinition;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.serializers.BooleanSerializer;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * V4 Serialization Implementation.  Stores only the latest version of each entity like V3, encoded with the
+ * {@link CompactEntityCodec} instead of json of the entity map.
+ */
+public class MvccEntitySerializationStrategyV4Impl implements MvccEntitySerializationStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger( MvccEntitySerializationStrategyV4Impl.class );
+
+    private static final IdRowCompositeSerializer ID_SER = IdRowCompositeSerializer.get();
+
+    private static final ScopedRowKeySerializer<Id> ROW_KEY_SER = new ScopedRowKeySerializer<>( ID_SER );
+
+
+    private static final MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> CF_ENTITY_DATA =
+        new MultiTenantColumnFamily<>( "Entity_Version_Data_V4", ROW_KEY_SER, BooleanSerializer.get() );
+
+
+    private static final Boolean COL_VALUE = Boolean.TRUE;
+
+
+    protected final Keyspace keyspace;
+    protected final SerializationFig serializationFig;
+    protected final CassandraFig cassandraFig;
+
+    private final CompactEntityCodec codec = new CompactEntityCodec();
+
+    private final Histogram bytesInHistogram;
+    private final Histogram bytesOutHistogram;
+    private final Timer bytesOutTimer;
+
+
+    @Inject
+    public MvccEntitySerializationStrategyV4Impl( final Keyspace keyspace, final SerializationFig serializationFig,
+                                                  final CassandraFig cassandraFig,
+                                                  final MetricsFactory metricsFactory ) {
+        this.keyspace = keyspace;
+        this.serializationFig = serializationFig;
+        this.cassandraFig = cassandraFig;
+
+        this.bytesOutHistogram = metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+        this.bytesOutTimer = metricsFactory.getTimer( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+        this.bytesInHistogram = metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.in" );
+    }
+
+
+    @Override
+    public MutationBatch write( final ApplicationScope applicationScope, final MvccEntity entity ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entity, "entity is required" );
+
+        final Id entityId = entity.getId();
+        final UUID version = entity.getVersion();
+
+        final byte[] bytes = toBytes( entity );
+
+        entity.setSize( bytes.length );
+
+        return doWrite( applicationScope, entityId, version, colMutation -> colMutation.putColumn( COL_VALUE, bytes ) );
+    }
+
+
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion ) {
+        return load( applicationScope, entityIds, maxVersion, ( FieldProjection ) null );
+    }
+
+
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion, final FieldProjection projection ) {
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityIds, "entityIds is required" );
+        Preconditions.checkArgument( entityIds.size() > 0, "entityIds is required" );
+        Preconditions.checkNotNull( maxVersion, "version is required" );
+
+
+        if ( entityIds.size() > serializationFig.getMaxLoadSize() ) {
+            throw new IllegalArgumentException(
+                "requested load size cannot be over configured maximum of " + serializationFig.getMaxLoadSize() );
+        }
+
+
+        final Id applicationId = applicationScope.getApplication();
+
+        final List<ScopedRowKey<Id>> rowKeys = new ArrayList<>( entityIds.size() );
+
+
+        for ( final Id entityId : entityIds ) {
+
+            if ( entityId != null ) { // the size of entityIds is checked as preconditions, but the values are not
+                rowKeys.add( ScopedRowKey.fromKey( applicationId, entityId ) );
+            }
+        }
+
+        /**
+         * Our settings may mean we exceed our maximum thrift buffer size. If we do, we have to make multiple
+         * requests, not just one.
+         */
+
+        // convert getMaxEntitySize to a long avoid a numeric overflow and use a double for the result precision
+        final double maxEntityResultSizeInBytes =
+            ( double ) ( ( long ) serializationFig.getMaxEntitySize() * ( long ) entityIds.size() );
+
+        // if we're less than 1, set the number of requests to 1
+        final double numberRequests = Math.max( 1, maxEntityResultSizeInBytes / cassandraFig.getThriftBufferSize() );
+
+        // don't overflow the buffer because of the remainder
+        final double entitiesPerRequest = Math.floor( entityIds.size() / numberRequests );
+
+
+        final Scheduler scheduler;
+
+        //if it's a single request, run it on the same thread
+        if ( numberRequests == 1 ) {
+            scheduler = Schedulers.immediate();
+        }
+        //if it's more than 1 request, run them on the I/O scheduler
+        else {
+            scheduler = Schedulers.io();
+        }
+
+
+        return Observable.from( rowKeys )
+            //buffer our entities per request, then for that buffer, execute the query in parallel (if neccessary)
+            .buffer( ( int ) entitiesPerRequest ).flatMap( listObservable -> Observable.just( listObservable )
+                .map( scopedRowKeys -> {
+                    try {
+                        return keyspace.prepareQuery( CF_ENTITY_DATA ).getKeySlice( scopedRowKeys )
+                            .withColumnSlice( COL_VALUE ).execute().getResult();
+                    }
+                    catch ( ConnectionException e ) {
+                        throw new CollectionRuntimeException( null, applicationScope,
+                            "An error occurred connecting to cassandra", e );
+                    }
+                } ).subscribeOn( scheduler ), 10 )
+            .collect( () -> new EntitySetImpl( entityIds.size() ), ( entitySet, rows ) -> {
+
+                for ( final Row<ScopedRowKey<Id>, Boolean> row : rows ) {
+
+                    final ColumnList<Boolean> columns = row.getColumns();
+
+                    if ( columns.size() == 0 ) {
+                        continue;
+                    }
+
+                    final Id entityId = row.getKey().getKey();
+
+                    entitySet.addEntity( parseColumn( entityId, columns.getColumnByIndex( 0 ), projection ) );
+                }
+            } ).toBlocking().last();
+    }
+
+
+    @Override
+    public Iterator<MvccEntity> loadDescendingHistory( final ApplicationScope applicationScope, final Id entityId,
+                                                       final UUID version, final int fetchSize ) {
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+        Preconditions.checkArgument( fetchSize > 0, "max Size must be greater than 0" );
+
+        throw new UnsupportedOperationException( "This version does not support loading history" );
+    }
+
+
+    @Override
+    public Iterator<MvccEntity> loadAscendingHistory( final ApplicationScope applicationScope, final Id entityId,
+                                                      final UUID version, final int fetchSize ) {
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+        Preconditions.checkArgument( fetchSize > 0, "max Size must be greater than 0" );
+
+        throw new UnsupportedOperationException( "This version does not support loading history" );
+    }
+
+
+    @Override
+    public Optional<MvccEntity> load( final ApplicationScope scope, final Id entityId ) {
+        final EntitySet results = load( scope, Collections.singleton( entityId ), UUIDGenerator.newTimeUUID() );
+
+        return Optional.fromNullable( results.getEntity( entityId ) );
+    }
+
+
+    @Override
+    public MutationBatch mark( final ApplicationScope applicationScope, final Id entityId, final UUID version ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+
+        final byte[] bytes = codec.encode( version, null );
+
+        return doWrite( applicationScope, entityId, version, colMutation -> colMutation.putColumn( COL_VALUE, bytes ) );
+    }
+
+
+    @Override
+    public MutationBatch delete( final ApplicationScope applicationScope, final Id entityId, final UUID version ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+
+        return doWrite( applicationScope, entityId, version, colMutation -> colMutation.deleteColumn( COL_VALUE ) );
+    }
+
+
+    @Override
+    public java.util.Collection getColumnFamilies() {
+
+        MultiTenantColumnFamilyDefinition cf =
+            new MultiTenantColumnFamilyDefinition( CF_ENTITY_DATA, BytesType.class.getSimpleName(),
+                BooleanType.class.getSimpleName(), BytesType.class.getSimpleName(),
+                MultiTenantColumnFamilyDefinition.CacheOption.KEYS );
+
+        return Collections.singleton( cf );
+    }
+
+
+    @Override
+    public Collection<TableDefinition> getTables() {
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public int getImplementationVersion() {
+        return CollectionDataVersions.COMPACT_ENTITY.getVersion();
+    }
+
+
+    /**
+     * Encode the entity, a version without an entity is written as deleted
+     */
+    private byte[] toBytes( final MvccEntity mvccEntity ) {
+
+        final Optional<Entity> entity = mvccEntity.getEntity();
+
+        if ( !entity.isPresent() ) {
+            return codec.encode( mvccEntity.getVersion(), null );
+        }
+
+        //we have an entity but status is not complete don't allow it
+        if ( mvccEntity.getStatus() != MvccEntity.Status.COMPLETE ) {
+            throw new UnsupportedOperationException(
+                "Only states " + MvccEntity.Status.DELETED + " and " + MvccEntity.Status.COMPLETE
+                    + " are supported" );
+        }
+
+        final byte[] bytes = codec.encode( mvccEntity.getVersion(), entity.get() );
+
+        final int maxEntrySize = serializationFig.getMaxEntitySize();
+
+        bytesInHistogram.update( bytes.length );
+
+        if ( bytes.length > maxEntrySize ) {
+            throw new EntityTooLargeException( entity.get(), maxEntrySize, bytes.length,
+                "Your entity cannot exceed " + maxEntrySize + " bytes. The entity you tried to save was "
+                    + bytes.length + " bytes" );
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * Convert the column to the MvccEntity representation, only decoding the fields of the projection if one is given
+     */
+    private MvccEntity parseColumn( final Id id, final Column<Boolean> column, final FieldProjection projection ) {
+
+        final Timer.Context time = bytesOutTimer.time();
+
+        final byte[] bytes = getBytes( column.getByteBufferValue() );
+
+        bytesOutHistogram.update( bytes.length );
+
+        final UUID version;
+        final Entity entity;
+
+        try {
+            version = codec.readVersion( bytes );
+            entity = codec.decode( bytes, projection );
+        }
+        catch ( RuntimeException e ) {
+            final DataCorruptionException corruption =
+                new DataCorruptionException( "Unable to read entity data", e );
+
+            log.error( "DATA CORRUPTION DETECTED when de-serializing entity with Id {}.  This means the"
+                + " write was truncated.", id, corruption );
+
+            //return an empty entity, we can never load this one, and we don't want it to bring the system
+            //to a grinding halt
+            return new MvccEntityImpl( id, UUIDGenerator.newTimeUUID(), MvccEntity.Status.DELETED,
+                Optional.<Entity>absent() );
+        }
+        finally {
+            time.stop();
+        }
+
+        // it's been deleted
+        if ( entity == null ) {
+            return new MvccEntityImpl( id, version, MvccEntity.Status.DELETED, Optional.<Entity>absent(), 0 );
+        }
+
+        entity.setSize( bytes.length );
+        EntityUtils.setId( entity, id );
+        EntityUtils.setVersion( entity, version );
+
+        return new MvccEntityImpl( id, version, MvccEntity.Status.COMPLETE, Optional.of( entity ), bytes.length );
+    }
+
+
+    private static byte[] getBytes( final ByteBuffer byteBuffer ) {
+        if ( byteBuffer.hasArray() && byteBuffer.arrayOffset() == 0 && byteBuffer.position() == 0
+            && byteBuffer.remaining() == byteBuffer.array().length ) {
+            return byteBuffer.array();
+        }
+
+        final byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get( bytes );
+        return bytes;
+    }
+
+
+    /**
+     * Do the write on the correct row for the entity id with the operation
+     */
+    private MutationBatch doWrite( final ApplicationScope applicationScope, final Id entityId, final UUID version,
+                                   final RowOp op ) {
+        final MutationBatch batch = keyspace.prepareMutationBatch();
+
+        final ScopedRowKey<Id> rowKey = ScopedRowKey.fromKey( applicationScope.getApplication(), entityId );
+
+        op.doOp( batch.withRow( CF_ENTITY_DATA, rowKey ).setTimestamp( version.timestamp() ) );
+
+        return batch;
+    }
+
+
+    /**
+     * Simple callback to perform puts and deletes with a common row setup code
+     */
+    private interface RowOp {
+
+        /**
+         * The operation to perform on the row
+         */
+        void doOp( ColumnListMutation<Boolean> colMutation );
+    }
+}
@@ -270,6 +270,9 @@ public abstract class UniqueValueSerializationStrategyImpl<FieldKey, EntityKey>
         final UniqueValueSetImpl uniqueValueSet = new UniqueValueSetImpl( fields.size() );
 
 
+        // read every field's partition at once, then go through the results in field order
+        final List<ResultSetFuture> resultSetFutures = new ArrayList<>( fields.size() );
+
         for ( Field field : fields ) {
 
             //log.info(Bytes.toHexString(getPartitionKey(applicationId, type,
@@ -285,7 +288,14 @@ public abstract class UniqueValueSerializationStrategyImpl<FieldKey, EntityKey>
                 .where(inKey)
                 .setConsistencyLevel(consistencyLevel);
 
-            final ResultSet resultSet = session.execute(statement);
+            resultSetFutures.add( session.executeAsync( statement ) );
+        }
+
+        final Iterator<ResultSetFuture> resultSetIterator = resultSetFutures.iterator();
+
+        for ( Field field : fields ) {
+
+            final ResultSet resultSet = resultSetIterator.next().getUninterruptibly();
 
 
             Iterator<com.datastax.driver.core.Row> results = resultSet.iterator();
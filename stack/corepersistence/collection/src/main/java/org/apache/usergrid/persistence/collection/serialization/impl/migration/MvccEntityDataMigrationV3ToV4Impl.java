@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl.migration;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV4Impl;
+import org.apache.usergrid.persistence.core.migration.data.DataMigration;
+import org.apache.usergrid.persistence.core.migration.data.DataMigrationException;
+import org.apache.usergrid.persistence.core.migration.data.MigrationDataProvider;
+import org.apache.usergrid.persistence.core.migration.data.MigrationRelationship;
+import org.apache.usergrid.persistence.core.migration.data.ProgressObserver;
+import org.apache.usergrid.persistence.core.migration.data.VersionedMigrationSet;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Copies the latest version of every entity from the json format of v3 to the compact format of v4.  Unique values
+ * and log entries did not change, so unlike the migration to v3 only the entity data is rewritten.  Writes made while
+ * this runs go to both formats, and each copy is written with the timestamp of its version, so a newer version
+ * written during the copy is never overwritten.
+ */
+@Singleton
+public class MvccEntityDataMigrationV3ToV4Impl implements DataMigration {
+
+
+    private static final Logger logger = LoggerFactory.getLogger( MvccEntityDataMigrationV3ToV4Impl.class );
+
+    private static final int BATCH_SIZE = 100;
+
+    private final Keyspace keyspace;
+    private final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions;
+    private final MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3;
+    private final MvccEntitySerializationStrategyV4Impl mvccEntitySerializationStrategyV4;
+    private final MigrationDataProvider<EntityIdScope> migrationDataProvider;
+
+
+    @Inject
+    public MvccEntityDataMigrationV3ToV4Impl( final Keyspace keyspace,
+                                              final VersionedMigrationSet<MvccEntitySerializationStrategy> allVersions,
+                                              final MvccEntitySerializationStrategyV3Impl mvccEntitySerializationStrategyV3,
+                                              final MvccEntitySerializationStrategyV4Impl mvccEntitySerializationStrategyV4,
+                                              final MigrationDataProvider<EntityIdScope> migrationDataProvider ) {
+        this.keyspace = keyspace;
+        this.allVersions = allVersions;
+        this.mvccEntitySerializationStrategyV3 = mvccEntitySerializationStrategyV3;
+        this.mvccEntitySerializationStrategyV4 = mvccEntitySerializationStrategyV4;
+        this.migrationDataProvider = migrationDataProvider;
+    }
+
+
+    @Override
+    public boolean supports( final int currentVersion ) {
+        //only v3 can be copied as is, older versions must migrate to v3 first
+        return currentVersion >= mvccEntitySerializationStrategyV3.getImplementationVersion()
+            && currentVersion < mvccEntitySerializationStrategyV4.getImplementationVersion();
+    }
+
+
+    @Override
+    public int getMaxVersion() {
+        return mvccEntitySerializationStrategyV4.getImplementationVersion();
+    }
+
+
+    @Override
+    public int migrate( final int currentVersion, final ProgressObserver observer ) {
+
+        final AtomicLong count = new AtomicLong();
+
+        final MigrationRelationship<MvccEntitySerializationStrategy> migration =
+            allVersions.getMigrationRelationship( currentVersion );
+
+        final int targetVersion = migration.to.getImplementationVersion();
+
+        migrationDataProvider.getData().buffer( BATCH_SIZE ).flatMap(
+            entityIdScopes -> Observable.just( entityIdScopes )
+                .doOnNext( batch -> copy( migration, batch, targetVersion, observer, count ) )
+                .subscribeOn( Schedulers.io() ), 10 ).toBlocking().lastOrDefault( null );
+
+        return targetVersion;
+    }
+
+
+    /**
+     * Copy the entities of the batch, loading them per application
+     */
+    private void copy( final MigrationRelationship<MvccEntitySerializationStrategy> migration,
+                       final List<EntityIdScope> entityIdScopes, final int targetVersion,
+                       final ProgressObserver observer, final AtomicLong count ) {
+
+        final Map<ApplicationScope, List<Id>> idsByScope = new LinkedHashMap<>();
+
+        for ( final EntityIdScope entityIdScope : entityIdScopes ) {
+            idsByScope.computeIfAbsent( entityIdScope.getApplicationScope(), scope -> new ArrayList<>() )
+                      .add( entityIdScope.getId() );
+        }
+
+        final MutationBatch batch = keyspace.prepareMutationBatch();
+
+        for ( final Map.Entry<ApplicationScope, List<Id>> scopeIds : idsByScope.entrySet() ) {
+
+            final ApplicationScope scope = scopeIds.getKey();
+
+            final EntitySet entities = migration.from.load( scope, scopeIds.getValue(), UUIDGenerator.newTimeUUID() );
+
+            for ( final MvccEntity entity : entities.getEntities() ) {
+                try {
+                    if ( entity.getEntity().isPresent() ) {
+                        batch.mergeShallow( migration.to.write( scope, entity ) );
+                    }
+                    else {
+                        batch.mergeShallow( migration.to.mark( scope, entity.getId(), entity.getVersion() ) );
+                    }
+                }
+                catch ( Exception e ) {
+                    logger.error( "Failed to migrate entity {} :: {}", entity.getId().getUuid(),
+                        entity.getId().getType(), e );
+                }
+            }
+
+            count.addAndGet( entities.size() );
+        }
+
+        try {
+            batch.execute();
+
+            observer.update( targetVersion, "Finished copying " + count + " entities to the new format" );
+        }
+        catch ( ConnectionException e ) {
+            observer.failed( targetVersion, "Failed to execute mutation in cassandra" );
+            throw new DataMigrationException( "Unable to migrate batches ", e );
+        }
+    }
+}
@@ -20,12 +20,14 @@ package org.apache.usergrid.persistence.collection.uniquevalues;
 
 
 import org.apache.usergrid.persistence.actorsystem.RouterProducer;
+import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 
+import java.util.Collection;
 import java.util.UUID;
 
 
@@ -47,6 +49,18 @@ public interface UniqueValuesService extends RouterProducer {
     void reserveUniqueValues( ApplicationScope scope, Entity entity, UUID version, String region )
         throws UniqueValueException;
 
+    /**
+     * Check that the unique values of several entities are unique and reserve them for a limited time, with all
+     * reservations sent at once. If any value cannot be reserved, all of them are cancelled.
+     *
+     * @param scope Application scope of entities.
+     * @param entities Entities, with the versions claiming their unique values.
+     * @param region Authoritative Region to be used for these entities or null to use current region.
+     * @throws UniqueValueException if unique values cannot be reserved.
+     */
+    void reserveUniqueValues( ApplicationScope scope, Collection<MvccEntity> entities, String region )
+        throws UniqueValueException;
+
     /**
      * Confirm unique values that were reserved earlier.
      *
@@ -59,6 +73,17 @@ public interface UniqueValuesService extends RouterProducer {
     void confirmUniqueValues( ApplicationScope scope, Entity entity, UUID version , String region )
         throws UniqueValueException;
 
+    /**
+     * Confirm unique values of several entities that were reserved earlier, with all confirmations sent at once.
+     *
+     * @param scope Application scope of entities.
+     * @param entities Entities, with the versions that reserved their unique values.
+     * @param region Authoritative Region to be used for these entities or null to use current region.
+     * @throws UniqueValueException if unique values cannot be confirmed.
+     */
+    void confirmUniqueValues( ApplicationScope scope, Collection<MvccEntity> entities, String region )
+        throws UniqueValueException;
+
     // TODO: is this really necessary? MarkCommit and UniqueCleanup should do the trick
     /**
      * Release unique values held by an entity.
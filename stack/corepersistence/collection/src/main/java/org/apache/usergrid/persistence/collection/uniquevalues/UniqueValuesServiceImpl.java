@@ -27,6 +27,9 @@ import akka.cluster.singleton.ClusterSingletonManager;
 import akka.cluster.singleton.ClusterSingletonManagerSettings;
 import akka.cluster.singleton.ClusterSingletonProxy;
 import akka.cluster.singleton.ClusterSingletonProxySettings;
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.Futures;
+import akka.dispatch.Recover;
 import akka.pattern.Patterns;
 import akka.util.Timeout;
 import com.google.inject.Inject;
@@ -35,6 +38,7 @@ import com.google.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.actorsystem.GuiceActorProducer;
+import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
@@ -42,6 +46,7 @@ import org.apache.usergrid.persistence.model.field.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.concurrent.Await;
+import scala.concurrent.ExecutionContext;
 import scala.concurrent.Future;
 
 import java.util.*;
@@ -52,6 +57,21 @@ import java.util.concurrent.TimeUnit;
 public class UniqueValuesServiceImpl implements UniqueValuesService {
     private static final Logger logger = LoggerFactory.getLogger( UniqueValuesServiceImpl.class );
 
+    /**
+     * Composing replies is cheap, run it on whichever thread completes a future
+     */
+    private static final ExecutionContext DIRECT = ExecutionContexts.fromExecutor( Runnable::run );
+
+    /**
+     * A failed ask becomes its exception so one failure does not fail the composed reply
+     */
+    private static final Recover<Object> RECOVER = new Recover<Object>() {
+        @Override
+        public Object recover( Throwable failure ) {
+            return failure;
+        }
+    };
+
     UniqueValuesFig          uniqueValuesFig;
     ActorSystemManager       actorSystemManager;
     UniqueValuesTable        table;
@@ -92,28 +112,26 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     public void reserveUniqueValues(
         ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
 
-        ready();
+        List<UniqueValueActor.Request> reservations = new ArrayList<>();
+        addUniqueFields( scope, entity, version, reservations, RequestType.RESERVATION );
 
-        try {
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    reserveUniqueField( scope, entity, version, field, region );
-                }
-            }
+        reserve( reservations, region );
+    }
 
-        } catch ( UniqueValueException e ) {
 
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    try {
-                        cancelUniqueField( scope, entity, version, field, region );
-                    } catch (Throwable ignored) {
-                        logger.error( "Error canceling unique field", ignored );
-                    }
-                }
+    @Override
+    public void reserveUniqueValues(
+        ApplicationScope scope, Collection<MvccEntity> entities, String region ) throws UniqueValueException {
+
+        List<UniqueValueActor.Request> reservations = new ArrayList<>();
+        for ( MvccEntity mvccEntity : entities ) {
+            if ( mvccEntity.getEntity().isPresent() ) {
+                addUniqueFields( scope, mvccEntity.getEntity().get(), mvccEntity.getVersion(), reservations,
+                    RequestType.RESERVATION );
             }
-            throw e;
         }
+
+        reserve( reservations, region );
     }
 
 
@@ -121,64 +139,95 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     public void confirmUniqueValues(
         ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
 
-        ready();
+        List<UniqueValueActor.Request> confirmations = new ArrayList<>();
+        addUniqueFields( scope, entity, version, confirmations, RequestType.CONFIRMATION );
 
-        try {
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    confirmUniqueField( scope, entity, version, field, region );
-                }
-            }
+        confirm( confirmations, region );
+    }
 
-        } catch ( UniqueValueException e ) {
 
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    try {
-                        cancelUniqueField( scope, entity, version, field, region );
-                    } catch (Throwable ex ) {
-                        logger.error( "Error canceling unique field", ex );
-                    }
-                }
+    @Override
+    public void confirmUniqueValues(
+        ApplicationScope scope, Collection<MvccEntity> entities, String region ) throws UniqueValueException {
+
+        List<UniqueValueActor.Request> confirmations = new ArrayList<>();
+        for ( MvccEntity mvccEntity : entities ) {
+            if ( mvccEntity.getEntity().isPresent() ) {
+                addUniqueFields( scope, mvccEntity.getEntity().get(), mvccEntity.getVersion(), confirmations,
+                    RequestType.CONFIRMATION );
             }
-            throw e;
         }
 
+        confirm( confirmations, region );
     }
 
 
-    private void reserveUniqueField(
-        ApplicationScope scope, Entity entity, UUID version, Field field, String region ) throws UniqueValueException {
+    private enum RequestType { RESERVATION, CONFIRMATION }
+
 
-        UniqueValueActor.Request request = new UniqueValueActor.Reservation(
-            scope, entity.getId(), version, field );
+    private void addUniqueFields( ApplicationScope scope, Entity entity, UUID version,
+        List<UniqueValueActor.Request> requests, RequestType type ) {
 
-        UniqueValueActor.Reservation res = reservationCache.get( request.getConsistentHashKey() );
-        // if ( res != null ) {
-        //    getCacheCounter().inc();
-        // }
-        if ( res != null && !res.getOwner().equals( request.getOwner() )) {
-            throw new UniqueValueException( "Error property not unique (cache)", field);
+        for ( Field field : entity.getFields() ) {
+            if ( field.isUnique() ) {
+                requests.add( type == RequestType.RESERVATION
+                    ? new UniqueValueActor.Reservation( scope, entity.getId(), version, field )
+                    : new UniqueValueActor.Confirmation( scope, entity.getId(), version, field ) );
+            }
         }
+    }
+
 
-        sendUniqueValueRequest( entity, region, request );
+    private void reserve(
+        List<UniqueValueActor.Request> reservations, String region ) throws UniqueValueException {
+
+        ready();
+
+        try {
+            for ( UniqueValueActor.Request request : reservations ) {
+                UniqueValueActor.Reservation res = reservationCache.get( request.getConsistentHashKey() );
+                // if ( res != null ) {
+                //    getCacheCounter().inc();
+                // }
+                if ( res != null && !res.getOwner().equals( request.getOwner() )) {
+                    throw new UniqueValueException( "Error property not unique (cache)", request.getField() );
+                }
+            }
+
+            sendUniqueValueRequests( reservations, region );
+
+        } catch ( UniqueValueException e ) {
+            cancelUniqueFields( reservations, region );
+            throw e;
+        }
     }
 
 
-    private void confirmUniqueField(
-        ApplicationScope scope, Entity entity, UUID version, Field field, String region) throws UniqueValueException {
+    private void confirm(
+        List<UniqueValueActor.Request> confirmations, String region ) throws UniqueValueException {
+
+        ready();
 
-        UniqueValueActor.Confirmation request = new UniqueValueActor.Confirmation(
-            scope, entity.getId(), version, field );
+        try {
+            sendUniqueValueRequests( confirmations, region );
 
-        sendUniqueValueRequest( entity, region, request );
+        } catch ( UniqueValueException e ) {
+            cancelUniqueFields( confirmations, region );
+            throw e;
+        }
     }
 
 
-    private void cancelUniqueField( ApplicationScope scope,
-        Entity entity, UUID version, Field field, String region ) throws UniqueValueException {
+    private void cancelUniqueFields( List<UniqueValueActor.Request> requests, String region ) {
 
-        cancelUniqueField( scope, entity.getId(), version, field, region );
+        for ( UniqueValueActor.Request request : requests ) {
+            try {
+                cancelUniqueField( request.getApplicationScope(), request.getOwner(), request.getOwnerVersion(),
+                    request.getField(), region );
+            } catch (Throwable ex ) {
+                logger.error( "Error canceling unique field", ex );
+            }
+        }
     }
 
 
@@ -217,70 +266,120 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     }
 
 
-    private void sendUniqueValueRequest(
-        Entity entity, String region, UniqueValueActor.Request request ) throws UniqueValueException {
+    /**
+     * Send all requests at once, each is routed to the actor for its own consistent hash key, and wait for the
+     * replies together so the round trip takes as long as the slowest one.  Only requests without a definite answer
+     * are retried.
+     */
+    private void sendUniqueValueRequests(
+        List<UniqueValueActor.Request> requests, String region ) throws UniqueValueException {
+
+        if ( requests.isEmpty() ) {
+            return;
+        }
 
         int maxRetries = uniqueValuesFig.getRequestRetryCount();
         int retries = 0;
 
-        UniqueValueActor.Response response = null;
-        while ( retries++ < maxRetries ) {
-            try {
-                Timeout t = new Timeout( uniqueValuesFig.getRequestTimeout(), TimeUnit.MILLISECONDS );
+        UniqueValueActor.Response[] responses = new UniqueValueActor.Response[requests.size()];
 
-                Future<Object> fut;
+        List<Integer> pending = new ArrayList<>( requests.size() );
+        for ( int i = 0; i < requests.size(); i++ ) {
+            pending.add( i );
+        }
 
-                if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
+        while ( !pending.isEmpty() && retries++ < maxRetries ) {
 
-                    // sending to current region, use local clientActor
-                    ActorRef clientActor = actorSystemManager.getClientActor();
-                    fut = Patterns.ask( clientActor, request, t );
+            Timeout t = new Timeout( uniqueValuesFig.getRequestTimeout(), TimeUnit.MILLISECONDS );
 
-                } else {
+            List<Future<Object>> futures = new ArrayList<>( pending.size() );
+            for ( int i : pending ) {
+                futures.add( askUniqueValueActor( requests.get( i ), region, t ).recover( RECOVER, DIRECT ) );
+            }
 
-                    // sending to remote region, send via cluster client for that region
-                    ActorRef clusterClient = actorSystemManager.getClusterClient( region );
-                    fut = Patterns.ask( clusterClient, new ClusterClient.Send("/user/clientActor", request), t );
-                }
+            Iterable<Object> replies;
+            try {
+                // every ask times out on its own, this only guards against a reply never being composed
+                replies = Await.result( Futures.sequence( futures, DIRECT ), t.duration().$times( 2 ) );
+
+            } catch ( Exception e ) {
+                logger.error("{} caused retry {} for {} unique value requests",
+                    e.getClass().getSimpleName(), retries, pending.size());
+                continue;
+            }
+
+            List<Integer> retry = new ArrayList<>();
+            Iterator<Object> replyIterator = replies.iterator();
+
+            for ( int i : pending ) {
+                UniqueValueActor.Request request = requests.get( i );
+                Object reply = replyIterator.next();
 
-                // wait (up to timeout) for response
-                response = (UniqueValueActor.Response) Await.result( fut, t.duration() );
+                UniqueValueActor.Response response =
+                    reply instanceof UniqueValueActor.Response ? (UniqueValueActor.Response) reply : null;
+                responses[i] = response;
 
                 if ( response != null && (
                         response.getStatus().equals( UniqueValueActor.Response.Status.IS_UNIQUE )
                                 || response.getStatus().equals( UniqueValueActor.Response.Status.NOT_UNIQUE ))) {
                     if ( retries > 1 ) {
                         logger.debug("IS_UNIQUE after retrying {} for entity {} rowkey {}",
-                                retries, entity.getId().getUuid(), request.getConsistentHashKey());
+                                retries, request.getOwner().getUuid(), request.getConsistentHashKey());
+                    }
+
+                    if ( response.getStatus().equals( UniqueValueActor.Response.Status.NOT_UNIQUE )) {
+
+                        // should result in an HTTP 409 (conflict)
+                        throw new UniqueValueException( "Error property not unique", request.getField() );
                     }
-                    break;
 
                 } else if ( response != null  ) {
                     logger.warn("ERROR status retrying {} entity {} rowkey {}",
-                            retries, entity.getId().getUuid(), request.getConsistentHashKey());
+                            retries, request.getOwner().getUuid(), request.getConsistentHashKey());
+                    retry.add( i );
+
+                } else if ( reply instanceof Throwable ) {
+                    logger.error("{} caused retry {} for entity {} rowkey {}", reply.getClass().getSimpleName(),
+                        retries, request.getOwner().getUuid(), request.getConsistentHashKey());
+                    retry.add( i );
+
                 } else {
-                    logger.warn("Timed-out retrying {} entity {} rowkey",
-                            retries, entity.getId().getUuid(), request.getConsistentHashKey());
+                    logger.warn("Timed-out retrying {} entity {} rowkey {}",
+                            retries, request.getOwner().getUuid(), request.getConsistentHashKey());
+                    retry.add( i );
                 }
-
-            } catch ( Exception e ) {
-                logger.error("{} caused retry {} for entity {} rowkey {}",
-                    e.getClass().getSimpleName(), retries, entity.getId().getUuid(), request.getConsistentHashKey());
             }
+
+            pending = retry;
         }
 
-        if ( response == null || response.getStatus().equals( UniqueValueActor.Response.Status.ERROR )) {
-            logger.debug("ERROR after retrying {} for entity {} rowkey {}",
-                    retries, entity.getId().getUuid(), request.getConsistentHashKey());
+        for ( int i = 0; i < responses.length; i++ ) {
+            UniqueValueActor.Response response = responses[i];
+
+            if ( response == null || response.getStatus().equals( UniqueValueActor.Response.Status.ERROR )) {
+                logger.debug("ERROR after retrying {} for entity {} rowkey {}",
+                        retries, requests.get( i ).getOwner().getUuid(), requests.get( i ).getConsistentHashKey());
 
-            // should result in an HTTP 503
-            throw new RuntimeException( "Error verifying unique value after " + retries + " retries");
+                // should result in an HTTP 503
+                throw new RuntimeException( "Error verifying unique value after " + retries + " retries");
+            }
         }
+    }
 
-        if ( response.getStatus().equals( UniqueValueActor.Response.Status.NOT_UNIQUE )) {
 
-            // should result in an HTTP 409 (conflict)
-            throw new UniqueValueException( "Error property not unique", request.getField() );
+    private Future<Object> askUniqueValueActor( UniqueValueActor.Request request, String region, Timeout t ) {
+
+        if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
+
+            // sending to current region, use local clientActor
+            ActorRef clientActor = actorSystemManager.getClientActor();
+            return Patterns.ask( clientActor, request, t );
+
+        } else {
+
+            // sending to remote region, send via cluster client for that region
+            ActorRef clusterClient = actorSystemManager.getClusterClient( region );
+            return Patterns.ask( clusterClient, new ClusterClient.Send("/user/clientActor", request), t );
         }
     }
 
@@ -149,6 +149,81 @@ public class EntityCollectionManagerIT extends AbstractUniqueValueTest {
     }
 
 
+    @Test
+    public void writeAll() {
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        // more than one write batch
+        final int size = serializationFig.getWriteBatchSize() + 1;
+
+        final List<Entity> entities = new ArrayList<>( size );
+
+        for ( int i = 0; i < size; i++ ) {
+            Entity newEntity = new Entity( new SimpleId( "test" ) );
+            newEntity.setField( new StringField( "name", "writeAll" + UUID.randomUUID(), true ) );
+            newEntity.setField( new IntegerField( "index", i ) );
+            entities.add( newEntity );
+        }
+
+        final List<Entity> returned = manager.write( entities, null ).toList().toBlocking().last();
+
+        assertEquals( size, returned.size() );
+
+        for ( int i = 0; i < size; i++ ) {
+            final Entity written = returned.get( i );
+
+            assertEquals( "Written in order", entities.get( i ).getId(), written.getId() );
+            assertNotNull( "Version exists", written.getVersion() );
+
+            final Entity loaded = manager.load( written.getId() ).toBlocking().last();
+
+            assertEquals( "Same entity loaded", written, loaded );
+            assertEquals( i, loaded.getField( "index" ).getValue() );
+
+            final Id owner =
+                manager.getIdField( "test", written.getField( "name" ) ).toBlocking().lastOrDefault( null );
+
+            assertEquals( "Unique value committed", written.getId(), owner );
+        }
+    }
+
+
+    @Test
+    public void writeAllWithDuplicateInBatch() {
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        final String name = "writeAll" + UUID.randomUUID();
+
+        Entity first = new Entity( new SimpleId( "test" ) );
+        first.setField( new StringField( "name", name, true ) );
+
+        Entity other = new Entity( new SimpleId( "test" ) );
+        other.setField( new StringField( "name", "writeAll" + UUID.randomUUID(), true ) );
+
+        Entity duplicate = new Entity( new SimpleId( "test" ) );
+        duplicate.setField( new StringField( "name", name, true ) );
+
+        try {
+            manager.write( Arrays.asList( first, other, duplicate ), null ).toBlocking().last();
+            fail( "Write should have thrown an exception" );
+        }
+        catch ( WriteUniqueVerifyException e ) {
+            assertTrue( e.getViolations().containsKey( "name" ) );
+        }
+
+        // none of the batch is written
+        assertNull( manager.load( first.getId() ).toBlocking().lastOrDefault( null ) );
+        assertNull( manager.load( other.getId() ).toBlocking().lastOrDefault( null ) );
+        assertNull( manager.getIdField( "test", other.getField( "name" ) ).toBlocking().lastOrDefault( null ) );
+    }
+
+
     @Test
     public void writeAndLoad() {
 
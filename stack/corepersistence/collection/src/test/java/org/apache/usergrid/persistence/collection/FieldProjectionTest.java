@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class FieldProjectionTest {
+
+
+    @Test
+    public void topLevelFields() {
+        final FieldProjection projection = FieldProjection.fromPaths( Arrays.asList( "name", "AGE" ) );
+
+        final Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "name", "fred" ) );
+        entity.setField( new IntegerField( "age", 10 ) );
+        entity.setField( new StringField( "color", "red" ) );
+
+        final Map<String, Field> projected = projection.project( entity.getFieldMap() );
+
+        assertEquals( 2, projected.size() );
+        assertEquals( "fred", projected.get( "name" ).getValue() );
+        assertEquals( 10, projected.get( "age" ).getValue() );
+        assertNull( projection.getChild( "color" ) );
+    }
+
+
+    @Test
+    public void nestedFields() {
+        final FieldProjection projection = FieldProjection.fromPaths( Arrays.asList( "address.city" ) );
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "austin" ) );
+        address.setField( new StringField( "street", "main" ) );
+
+        final Entity entity = new Entity( "test" );
+        entity.setField( new EntityObjectField( "address", address ) );
+        entity.setField( new StringField( "name", "fred" ) );
+
+        final Map<String, Field> projected = projection.project( entity.getFieldMap() );
+
+        assertEquals( 1, projected.size() );
+
+        final EntityObject projectedAddress = ( ( EntityObjectField ) projected.get( "address" ) ).getValue();
+
+        assertEquals( 1, projectedAddress.getFields().size() );
+        assertEquals( "austin", projectedAddress.getField( "city" ).getValue() );
+
+        //the source is not modified
+        assertEquals( 2, address.getFields().size() );
+    }
+
+
+    @Test
+    public void parentIncludesChildren() {
+        final FieldProjection projection =
+            FieldProjection.fromPaths( Arrays.asList( "address.city", "address" ) );
+
+        final FieldProjection address = projection.getChild( "address" );
+
+        assertNotNull( address );
+        assertTrue( address.isAll() );
+    }
+
+
+    @Test
+    public void dottedFieldNames() {
+        final FieldProjection projection = FieldProjection.fromPaths( Arrays.asList( "a.b" ) );
+
+        final Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "a.b", "dotted" ) );
+
+        final Map<String, Field> projected = projection.project( entity.getFieldMap() );
+
+        assertEquals( "dotted", projected.get( "a.b" ).getValue() );
+        assertFalse( projection.getChild( "a" ).isAll() );
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.ListField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Counter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class EntityCacheImplTest {
+
+    private final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+    private ActorSystemManager actorSystemManager;
+    private EntityCache entityCache;
+
+
+    @Before
+    public void setup() {
+
+        final EntityCacheFig fig = mock( EntityCacheFig.class );
+        when( fig.getCacheEnabled() ).thenReturn( true );
+        when( fig.getClusterInvalidationEnabled() ).thenReturn( true );
+        when( fig.getCacheSize() ).thenReturn( 100 );
+        when( fig.getCacheTimeout() ).thenReturn( 60000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+
+        actorSystemManager = mock( ActorSystemManager.class );
+
+        entityCache = new EntityCacheImpl( fig, actorSystemManager, metricsFactory );
+    }
+
+
+    @Test
+    public void putAndGetReturnsCopy() {
+
+        final MvccEntity entity = createEntity( new SimpleId( "test" ), UUIDGenerator.newTimeUUID() );
+
+        entityCache.put( scope, entity );
+
+        final MvccEntity cached = entityCache.get( scope, entity.getId() );
+
+        assertNotNull( cached );
+        assertEquals( entity.getVersion(), cached.getVersion() );
+        assertNotSame( entity.getEntity().get(), cached.getEntity().get() );
+
+        // mutating what we got back must not change the cache
+        cached.getEntity().get().removeField( "name" );
+
+        assertNotNull( entityCache.get( scope, entity.getId() ).getEntity().get().getField( "name" ) );
+    }
+
+
+    @Test
+    public void mutatingFieldsDoesNotChangeCache() {
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "austin" ) );
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+        entity.setField( new StringField( "name", "fred" ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+        entity.setField( new ListField<>( "tags", new ArrayList<>( Arrays.asList( "a", "b" ) ) ) );
+
+        final MvccEntity mvccEntity =
+            new MvccEntityImpl( entity.getId(), UUIDGenerator.newTimeUUID(), MvccEntity.Status.COMPLETE, entity );
+
+        entityCache.put( scope, mvccEntity );
+
+        // changes to the entity that was put, and to what we got back, must not reach the cache
+        entity.getField( "name" ).setName( "renamed" );
+
+        final Entity cached = entityCache.get( scope, entity.getId() ).getEntity().get();
+        cached.getField( "name" ).setName( "alias" );
+        ( ( EntityObject ) cached.getField( "address" ).getValue() ).setField( new StringField( "city", "boston" ) );
+        ( ( List<String> ) cached.getField( "tags" ).getValue() ).add( "c" );
+
+        final Entity read = entityCache.get( scope, entity.getId() ).getEntity().get();
+
+        assertEquals( "name", read.getField( "name" ).getName() );
+        assertEquals( "austin",
+            ( ( EntityObject ) read.getField( "address" ).getValue() ).getField( "city" ).getValue() );
+        assertEquals( Arrays.asList( "a", "b" ), read.getField( "tags" ).getValue() );
+    }
+
+
+    @Test
+    public void scopedByApplication() {
+
+        final MvccEntity entity = createEntity( new SimpleId( "test" ), UUIDGenerator.newTimeUUID() );
+
+        entityCache.put( scope, entity );
+
+        assertNull( entityCache.get( new ApplicationScopeImpl( new SimpleId( "application" ) ), entity.getId() ) );
+    }
+
+
+    @Test
+    public void olderVersionDoesNotReplaceNewer() {
+
+        final Id id = new SimpleId( "test" );
+        final UUID v1 = UUIDGenerator.newTimeUUID();
+        final UUID v2 = UUIDGenerator.newTimeUUID();
+
+        entityCache.put( scope, createEntity( id, v2 ) );
+        entityCache.put( scope, createEntity( id, v1 ) );
+
+        assertEquals( v2, entityCache.get( scope, id ).getVersion() );
+    }
+
+
+    @Test
+    public void staleLoadAfterInvalidationIsIgnored() {
+
+        final Id id = new SimpleId( "test" );
+        final UUID loadedVersion = UUIDGenerator.newTimeUUID();
+        final UUID writtenVersion = UUIDGenerator.newTimeUUID();
+
+        entityCache.put( scope, createEntity( id, loadedVersion ) );
+
+        entityCache.invalidateLocal( scope, id, writtenVersion );
+
+        assertNull( entityCache.get( scope, id ) );
+
+        // a load that started before the write completes after the invalidation
+        entityCache.put( scope, createEntity( id, loadedVersion ) );
+
+        assertNull( entityCache.get( scope, id ) );
+
+        entityCache.put( scope, createEntity( id, writtenVersion ) );
+
+        assertEquals( writtenVersion, entityCache.get( scope, id ).getVersion() );
+    }
+
+
+    @Test
+    public void invalidatePublishesWhenReady() {
+
+        final Id id = new SimpleId( "test" );
+
+        when( actorSystemManager.isReady() ).thenReturn( false );
+        entityCache.invalidate( scope, id, UUIDGenerator.newTimeUUID() );
+        verify( actorSystemManager, never() ).publishToAllRegions( anyString(), any(), any() );
+
+        when( actorSystemManager.isReady() ).thenReturn( true );
+        entityCache.invalidate( scope, id, UUIDGenerator.newTimeUUID() );
+        verify( actorSystemManager ).publishToAllRegions( anyString(), any( EntityCacheInvalidation.class ), any() );
+    }
+
+
+    private MvccEntity createEntity( final Id id, final UUID version ) {
+        final Entity entity = new Entity( id, version );
+        entity.setField( new StringField( "name", "value" ) );
+
+        return new MvccEntityImpl( id, version, MvccEntity.Status.COMPLETE, entity );
+    }
+}
@@ -18,7 +18,11 @@
 package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
+import java.util.Arrays;
+import java.util.List;
+
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.google.inject.Inject;
 import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
 import org.apache.usergrid.persistence.core.test.ITRunner;
@@ -45,7 +49,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -122,6 +128,56 @@ public class WriteCommitTest extends AbstractMvccEntityStageTest {
     }
 
 
+    /** Several entities are committed in one mutation */
+    @Test
+    public void testCommitAll() throws Exception {
+
+        final ApplicationScope context = mock( ApplicationScope.class );
+
+        final Session session = mock( Session.class );
+
+        final MvccLogEntrySerializationStrategy logStrategy = mock( MvccLogEntrySerializationStrategy.class );
+
+        final MutationBatch firstLogMutation = mock( MutationBatch.class );
+        final MutationBatch secondLogMutation = mock( MutationBatch.class );
+
+        when( logStrategy.write( same( context ), any( MvccLogEntry.class ) ) )
+            .thenReturn( firstLogMutation, secondLogMutation );
+
+        final MvccEntitySerializationStrategy mvccEntityStrategy = mock( MvccEntitySerializationStrategy.class );
+
+        final MutationBatch firstEntityMutation = mock( MutationBatch.class );
+        final MutationBatch secondEntityMutation = mock( MutationBatch.class );
+
+        when( mvccEntityStrategy.write( same( context ), any( MvccEntity.class ) ) )
+            .thenReturn( firstEntityMutation, secondEntityMutation );
+
+        final MvccEntity first = TestEntityGenerator.fromEntity( TestEntityGenerator.generateEntity() );
+        final MvccEntity second = TestEntityGenerator.fromEntity( TestEntityGenerator.generateEntity() );
+
+        final WriteCommit newStage =
+            new WriteCommit( logStrategy, mvccEntityStrategy, mock( UniqueValueSerializationStrategy.class ), null,
+                null, null, session );
+
+        final List<CollectionIoEvent<MvccEntity>> result = newStage.commitAll(
+            Arrays.asList( new CollectionIoEvent<>( context, first ), new CollectionIoEvent<>( context, second ) ) );
+
+        assertEquals( 2, result.size() );
+        assertEquals( first.getVersion(), first.getEntity().get().getVersion() );
+        assertEquals( second.getVersion(), second.getEntity().get().getVersion() );
+
+        //everything is merged into the first mutation, which is executed once
+        verify( firstLogMutation ).mergeShallow( firstEntityMutation );
+        verify( secondLogMutation ).mergeShallow( secondEntityMutation );
+        verify( firstLogMutation ).mergeShallow( secondLogMutation );
+        verify( firstLogMutation ).execute();
+        verify( secondLogMutation, never() ).execute();
+
+        //no unique fields to confirm
+        verify( session, never() ).executeAsync( any( Statement.class ) );
+    }
+
+
     @Override
     protected void validateStage( final CollectionIoEvent<MvccEntity> event ) {
         /**
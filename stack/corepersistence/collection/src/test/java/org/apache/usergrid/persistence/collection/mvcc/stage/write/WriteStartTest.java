@@ -18,6 +18,8 @@
 package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import org.junit.Test;
@@ -40,6 +42,7 @@ import com.netflix.astyanax.MutationBatch;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -140,6 +143,48 @@ public class WriteStartTest extends AbstractEntityStageTest {
         assertSame( "Entity correct", entity, created.getEntity().get() );
     }
 
+    /** The start entries of several entities are written in one mutation */
+    @Test
+    public void testStartAll() throws Exception {
+
+        final ApplicationScope context = mock( ApplicationScope.class );
+
+        final MvccLogEntrySerializationStrategy logStrategy = mock( MvccLogEntrySerializationStrategy.class );
+
+        final ArgumentCaptor<MvccLogEntry> logEntry = ArgumentCaptor.forClass( MvccLogEntry.class );
+
+        final MutationBatch mutation1 = mock( MutationBatch.class );
+        final MutationBatch mutation2 = mock( MutationBatch.class );
+
+        when( logStrategy.write( same( context ), logEntry.capture() ) ).thenReturn( mutation1, mutation2 );
+
+        final Entity entity1 = TestEntityGenerator.generateEntity();
+        final Entity entity2 = TestEntityGenerator.generateEntity();
+
+        WriteStart newStage = new WriteStart( logStrategy );
+
+        List<CollectionIoEvent<MvccEntity>> results = newStage.startAll(
+            Arrays.asList( new CollectionIoEvent<Entity>( context, entity1, "region1" ),
+                new CollectionIoEvent<Entity>( context, entity2, "region1" ) ) );
+
+        //the second entry is merged into the first mutation, which is executed once
+        verify( mutation1 ).mergeShallow( mutation2 );
+        verify( mutation1 ).execute();
+        verify( mutation2, never() ).execute();
+
+        assertEquals( 2, logEntry.getAllValues().size() );
+        assertEquals( "id correct", entity1.getId(), logEntry.getAllValues().get( 0 ).getEntityId() );
+        assertEquals( "id correct", entity2.getId(), logEntry.getAllValues().get( 1 ).getEntityId() );
+        assertEquals( "EventStage is correct", Stage.ACTIVE, logEntry.getAllValues().get( 1 ).getStage() );
+
+        //the results are in the order of the entities, with the version of their log entry and their region
+        assertEquals( 2, results.size() );
+        assertSame( "Entity correct", entity1, results.get( 0 ).getEvent().getEntity().get() );
+        assertSame( "Entity correct", entity2, results.get( 1 ).getEvent().getEntity().get() );
+        assertEquals( logEntry.getAllValues().get( 1 ).getVersion(), results.get( 1 ).getEvent().getVersion() );
+        assertEquals( "region1", results.get( 1 ).getAuthoritativeRegion() );
+    }
+
     @Override
     protected void validateStage( final CollectionIoEvent<Entity> event ) {
         final MvccLogEntrySerializationStrategy logStrategy = mock( MvccLogEntrySerializationStrategy.class );
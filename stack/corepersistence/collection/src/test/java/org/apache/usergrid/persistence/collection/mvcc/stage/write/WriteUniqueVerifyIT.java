@@ -46,10 +46,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 
@@ -231,4 +233,70 @@ public class WriteUniqueVerifyIT extends AbstractUniqueValueTest {
 
 
     }
+
+    @Test
+    public void testConflictWithinBatch() {
+
+        final Id appId = new SimpleId("testConflictWithinBatch");
+
+        final ApplicationScope scope = new ApplicationScopeImpl( appId );
+        final EntityCollectionManager entityManager = cmf.createCollectionManager( scope );
+
+        // two entities of one batch that use the same unique value
+        final Entity entity1 = TestEntityGenerator.generateEntity();
+        entity1.setField(new StringField("name", "Lotus Exige", true));
+
+        final Entity entity2 = TestEntityGenerator.generateEntity();
+        entity2.setField(new StringField("name", "Lotus Exige", true));
+
+        try {
+            entityManager.write( Arrays.asList( entity1, entity2 ), null ).toBlocking().last();
+            fail("Write should have thrown an exception");
+
+        } catch ( WriteUniqueVerifyException e ) {
+            assertTrue( e.getViolations().containsKey( "name" ) );
+        }
+
+        // nothing of the batch is written
+        assertNull( entityManager.load( entity1.getId() ).toBlocking().lastOrDefault( null ) );
+        assertNull( entityManager.load( entity2.getId() ).toBlocking().lastOrDefault( null ) );
+    }
+
+    @Test
+    public void testRejectedBatchReleasesUniqueValues() {
+
+        final Id appId = new SimpleId("testRejectedBatchReleasesUniqueValues");
+
+        final ApplicationScope scope = new ApplicationScopeImpl( appId );
+        final EntityCollectionManager entityManager = cmf.createCollectionManager( scope );
+
+        final Entity existing = TestEntityGenerator.generateEntity();
+        existing.setField(new StringField("name", "Ferrari F40", true));
+        entityManager.write( existing, null ).toBlocking().last();
+
+        // a batch with one entity that passes verification and one that uses the value already taken
+        final Entity passing = TestEntityGenerator.generateEntity();
+        passing.setField(new StringField("name", "Ferrari F50", true));
+
+        final Entity duplicate = TestEntityGenerator.generateEntity();
+        duplicate.setField(new StringField("name", "Ferrari F40", true));
+
+        try {
+            entityManager.write( Arrays.asList( passing, duplicate ), null ).toBlocking().last();
+            fail("Write should have thrown an exception");
+
+        } catch ( WriteUniqueVerifyException e ) {
+            assertTrue( e.getViolations().containsKey( "name" ) );
+        }
+
+        // without waiting for the temporary unique value records to time out, another entity can take the value
+        // reserved for the passing entity of the rejected batch
+        final Entity retry = TestEntityGenerator.generateEntity();
+        retry.setField(new StringField("name", "Ferrari F50", true));
+        entityManager.write( retry, null ).toBlocking().last();
+
+        final Id owner = entityManager.getIdField( "test", new StringField("name", "Ferrari F50", true) )
+            .toBlocking().last();
+        assertEquals( retry.getId(), owner );
+    }
 }
@@ -30,6 +30,7 @@ import org.apache.usergrid.persistence.collection.AbstractUniqueValueTest;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 
 import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
 import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
 import org.apache.usergrid.persistence.collection.mvcc.stage.CollectionIoEvent;
 import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
@@ -40,17 +41,25 @@ import org.apache.usergrid.persistence.core.CassandraConfig;
 import org.apache.usergrid.persistence.collection.uniquevalues.UniqueValuesService;
 
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.test.ITRunner;
 import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.field.StringField;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import rx.schedulers.Schedulers;
+
+import java.util.Arrays;
+
 import static org.apache.usergrid.persistence.collection.mvcc.stage.TestEntityGenerator.fromEntity;
 import static org.apache.usergrid.persistence.collection.mvcc.stage.TestEntityGenerator.generateEntity;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 
@@ -77,6 +86,9 @@ public class WriteUniqueVerifyTest extends AbstractUniqueValueTest {
     @Inject
     private CassandraConfig cassandraConfig;
 
+    @Inject
+    private MetricsFactory metricsFactory;
+
     @Inject
     ActorSystemManager actorSystemManager;
 
@@ -106,7 +118,8 @@ public class WriteUniqueVerifyTest extends AbstractUniqueValueTest {
         final MvccEntity mvccEntity = fromEntity( entity );
 
         // run the stage
-        WriteUniqueVerify newStage = new WriteUniqueVerify( uvstrat, fig, keyspace, cassandraConfig, null, null, null, session );
+        WriteUniqueVerify newStage = new WriteUniqueVerify( uvstrat, fig, keyspace, cassandraConfig, null, null, null, session,
+            metricsFactory );
 
 
        newStage.call( new CollectionIoEvent<>( collectionScope, mvccEntity ) ) ;
@@ -116,6 +129,37 @@ public class WriteUniqueVerifyTest extends AbstractUniqueValueTest {
         verify(batch, never()).execute();
     }
 
+
+    @Test
+    public void testDuplicateWithinBatch() {
+
+        final ApplicationScope collectionScope = mock( ApplicationScope.class );
+        final Keyspace keyspace = mock( Keyspace.class );
+        final UniqueValueSerializationStrategy strategy = mock( UniqueValueSerializationStrategy.class );
+        final Session mockSession = mock( Session.class );
+
+        // two entities of one batch with the same unique value
+        final Entity entity1 = generateEntity();
+        entity1.setField( new StringField( "name", "duplicate", true ) );
+
+        final Entity entity2 = generateEntity();
+        entity2.setField( new StringField( "name", "duplicate", true ) );
+
+        WriteUniqueVerify newStage = new WriteUniqueVerify( strategy, fig, keyspace, cassandraConfig, null, null, null,
+            mockSession, metricsFactory );
+
+        try {
+            newStage.verifyAll( Arrays.asList( new CollectionIoEvent<>( collectionScope, fromEntity( entity1 ) ),
+                new CollectionIoEvent<>( collectionScope, fromEntity( entity2 ) ) ), Schedulers.immediate() );
+            fail( "Verification should have thrown an exception" );
+        }
+        catch ( WriteUniqueVerifyException e ) {
+            assertTrue( e.getViolations().containsKey( "name" ) );
+        }
+
+        // refused before anything is read or reserved
+        verifyZeroInteractions( strategy, mockSession );
+    }
 }
 
 
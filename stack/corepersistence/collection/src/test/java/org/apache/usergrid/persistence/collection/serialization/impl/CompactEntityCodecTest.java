@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.collection.FieldProjection;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.core.CassandraFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.ArrayField;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.ByteArrayField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.FloatField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.ListField;
+import org.apache.usergrid.persistence.model.field.LocationField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.NullField;
+import org.apache.usergrid.persistence.model.field.SetField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.UUIDField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.field.value.Location;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class CompactEntityCodecTest {
+
+    private final CompactEntityCodec codec = new CompactEntityCodec();
+
+
+    @Test
+    public void roundTripsEveryFieldType() {
+        final UUID version = UUIDGenerator.newTimeUUID();
+        final Entity entity = testEntity();
+
+        final Entity read = codec.decode( codec.encode( version, entity ), null );
+
+        assertEquals( version, codec.readVersion( codec.encode( version, entity ) ) );
+        assertEquals( entity.getFields().size(), read.getFields().size() );
+
+        for ( final Field field : entity.getFields() ) {
+            final Field readField = read.getField( field.getName() );
+
+            assertEquals( field.getName(), field.getClass(), readField.getClass() );
+            assertEquals( field.getName(), field.isUnique(), readField.isUnique() );
+
+            if ( field instanceof ByteArrayField ) {
+                assertArrayEquals( ( byte[] ) field.getValue(), ( byte[] ) readField.getValue() );
+                assertEquals( ( ( ByteArrayField ) field ).getClassinfo(),
+                    ( ( ByteArrayField ) readField ).getClassinfo() );
+            }
+            else if ( field instanceof EntityObjectField ) {
+                assertEquals( ( ( EntityObject ) field.getValue() ).getFieldMap(),
+                    ( ( EntityObject ) readField.getValue() ).getFieldMap() );
+            }
+            else if ( field instanceof LocationField ) {
+                assertEquals( ( ( Location ) field.getValue() ).getLatitude(),
+                    ( ( Location ) readField.getValue() ).getLatitude(), 0 );
+                assertEquals( ( ( Location ) field.getValue() ).getLongitude(),
+                    ( ( Location ) readField.getValue() ).getLongitude(), 0 );
+            }
+            else if ( !( field instanceof ListField ) ) {
+                assertEquals( field.getName(), field.getValue(), readField.getValue() );
+            }
+        }
+
+        final List<?> elements = ( List<?> ) read.getField( "elements" ).getValue();
+        assertEquals( "a", elements.get( 0 ) );
+        assertEquals( 2, elements.get( 1 ) );
+        assertEquals( Arrays.asList( 1L, 2L ), elements.get( 2 ) );
+        assertEquals( "blue", ( ( EntityObject ) elements.get( 3 ) ).getField( "color" ).getValue() );
+        assertEquals( new BigDecimal( "1.50" ), elements.get( 4 ) );
+        assertNull( elements.get( 5 ) );
+    }
+
+
+    @Test
+    public void deletedVersion() {
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final byte[] bytes = codec.encode( version, null );
+
+        assertNull( codec.decode( bytes, null ) );
+        assertEquals( version, codec.readVersion( bytes ) );
+    }
+
+
+    @Test
+    public void projectedFields() {
+        final Entity read = codec.decode( codec.encode( UUIDGenerator.newTimeUUID(), testEntity() ),
+            FieldProjection.fromPaths( Arrays.asList( "name", "address.city", "tags" ) ) );
+
+        assertEquals( 3, read.getFields().size() );
+        assertEquals( "fred", read.getField( "name" ).getValue() );
+        assertEquals( Arrays.asList( "a", "b" ), read.getField( "tags" ).getValue() );
+
+        final EntityObject address = ( EntityObject ) read.getField( "address" ).getValue();
+        assertEquals( 1, address.getFields().size() );
+        assertEquals( "austin", address.getField( "city" ).getValue() );
+    }
+
+
+    @Test
+    public void longValuesAndNames() {
+        final StringBuilder longValue = new StringBuilder();
+        for ( int i = 0; i < 10000; i++ ) {
+            longValue.append( 'x' );
+        }
+
+        final EntityObject nested = new EntityObject();
+        nested.setField( new StringField( "value", longValue.toString() ) );
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+        for ( int i = 0; i < 300; i++ ) {
+            entity.setField( new LongField( "field" + i, Long.MIN_VALUE + i ) );
+        }
+        entity.setField( new EntityObjectField( "nested", nested ) );
+        entity.setField( new StringField( "after", "after" ) );
+
+        final Entity read = codec.decode( codec.encode( UUIDGenerator.newTimeUUID(), entity ), null );
+
+        assertEquals( 302, read.getFields().size() );
+        assertEquals( Long.MIN_VALUE + 299, read.getField( "field299" ).getValue() );
+        assertEquals( longValue.toString(),
+            ( ( EntityObject ) read.getField( "nested" ).getValue() ).getField( "value" ).getValue() );
+        assertEquals( "after", read.getField( "after" ).getValue() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void truncatedData() {
+        final byte[] bytes = codec.encode( UUIDGenerator.newTimeUUID(), testEntity() );
+
+        codec.decode( Arrays.copyOf( bytes, bytes.length / 2 ), null );
+    }
+
+
+    @Test
+    public void smallerThanJson() {
+        final SerializationFig serializationFig = mock( SerializationFig.class );
+        when( serializationFig.getMaxEntitySize() ).thenReturn( 1024 * 1024 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) )
+            .thenReturn( new Histogram( new ExponentiallyDecayingReservoir() ) );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+
+        final MvccEntitySerializationStrategyV3Impl strategy =
+            new MvccEntitySerializationStrategyV3Impl( null, serializationFig, mock( CassandraFig.class ),
+                metricsFactory );
+
+        final Entity entity = new Entity( new SimpleId( "user" ) );
+        entity.setField( new StringField( "username", "fred", true ) );
+        entity.setField( new StringField( "email", "fred@example.com", true ) );
+        entity.setField( new LongField( "created", System.currentTimeMillis() ) );
+        entity.setField( new LongField( "modified", System.currentTimeMillis() ) );
+        entity.setField( new BooleanField( "activated", true ) );
+        entity.setField( new ArrayField<>( "roles", Arrays.asList( "admin", "default" ) ) );
+
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final ByteBuffer json = strategy.new EntitySerializer( serializationFig, metricsFactory ).toByteBuffer(
+            new MvccEntitySerializationStrategyV3Impl.EntityWrapper( entity.getId(), version,
+                MvccEntity.Status.COMPLETE, EntityMap.fromEntity( entity ), 0 ) );
+
+        final byte[] compact = codec.encode( version, entity );
+
+        assertTrue( compact.length + " >= " + json.remaining(), compact.length * 2 < json.remaining() );
+    }
+
+
+    private static Entity testEntity() {
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "austin" ) );
+        address.setField( new StringField( "street", "main" ) );
+
+        final EntityObject element = new EntityObject();
+        element.setField( new StringField( "color", "blue" ) );
+
+        final List<Object> elements = new ArrayList<>();
+        elements.add( "a" );
+        elements.add( 2 );
+        elements.add( Arrays.asList( 1L, 2L ) );
+        elements.add( element );
+        elements.add( new BigDecimal( "1.50" ) );
+        elements.add( null );
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+        entity.setField( new StringField( "name", "fred", true ) );
+        entity.setField( new StringField( "color", "red" ) );
+        entity.setField( new BooleanField( "active", false ) );
+        entity.setField( new IntegerField( "negative", -42 ) );
+        entity.setField( new LongField( "count", 5L, true ) );
+        entity.setField( new FloatField( "ratio", 0.5f ) );
+        entity.setField( new DoubleField( "score", -1.25 ) );
+        entity.setField( new UUIDField( "ref", UUIDGenerator.newTimeUUID(), true ) );
+        entity.setField( new NullField( "nothing" ) );
+        entity.setField( new LocationField( "location", new Location( 30.27, -97.74 ) ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+        entity.setField( new ListField<>( "tags", Arrays.asList( "a", "b" ) ) );
+        entity.setField( new ArrayField<>( "elements", elements ) );
+        entity.setField( new SetField<>( "set", new HashSet<>( Arrays.asList( 1, 2, 3 ) ) ) );
+        entity.setField( new ByteArrayField( "bytes", new byte[] { 1, 2, 3 }, byte[].class ) );
+        entity.setField( new ArrayField<>( "empty", Collections.emptyList() ) );
+
+        return entity;
+    }
+}
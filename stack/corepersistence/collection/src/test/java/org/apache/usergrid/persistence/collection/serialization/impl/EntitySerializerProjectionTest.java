@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.collection.FieldProjection;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.core.CassandraFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.ListField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests reading only the projected fields of a serialized entity
+ */
+public class EntitySerializerProjectionTest {
+
+    private MvccEntitySerializationStrategyV3Impl.EntitySerializer serializer;
+
+
+    @Before
+    public void setup() {
+        final SerializationFig serializationFig = mock( SerializationFig.class );
+        when( serializationFig.getMaxEntitySize() ).thenReturn( 1024 * 1024 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) )
+            .thenReturn( new Histogram( new ExponentiallyDecayingReservoir() ) );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+
+        final MvccEntitySerializationStrategyV3Impl strategy =
+            new MvccEntitySerializationStrategyV3Impl( null, serializationFig, mock( CassandraFig.class ),
+                metricsFactory );
+
+        serializer = strategy.new EntitySerializer( serializationFig, metricsFactory );
+    }
+
+
+    @Test
+    public void projectedFields() {
+        final Id id = new SimpleId( "test" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "austin" ) );
+        address.setField( new StringField( "street", "main" ) );
+
+        final Entity entity = new Entity( id );
+        entity.setField( new StringField( "name", "fred" ) );
+        entity.setField( new StringField( "color", "red" ) );
+        entity.setField( new LongField( "count", 5L ) );
+        entity.setField( new ListField<>( "tags", Arrays.asList( "a", "b" ) ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+
+        final ByteBuffer buffer = serializer.toByteBuffer(
+            new MvccEntitySerializationStrategyV3Impl.EntityWrapper( id, version, MvccEntity.Status.COMPLETE,
+                EntityMap.fromEntity( entity ), 0 ) );
+
+        final MvccEntitySerializationStrategyV3Impl.EntityWrapper wrapper = serializer.fromByteBuffer( buffer,
+            FieldProjection.fromPaths( Arrays.asList( "NAME", "count", "tags", "address.city" ) ) );
+
+        assertEquals( id, wrapper.getId() );
+        assertEquals( version, wrapper.getVersion() );
+        assertEquals( MvccEntity.Status.COMPLETE, wrapper.getStatus() );
+        assertEquals( buffer.array().length, wrapper.getSize() );
+
+        final Entity projected = wrapper.getOptionalEntity().get();
+
+        assertEquals( "fred", projected.getField( "name" ).getValue() );
+        assertEquals( 5L, projected.getField( "count" ).getValue() );
+        assertEquals( Arrays.asList( "a", "b" ), projected.getField( "tags" ).getValue() );
+        assertNull( projected.getField( "color" ) );
+
+        final EntityObject projectedAddress = ( EntityObject ) projected.getField( "address" ).getValue();
+
+        assertEquals( "austin", projectedAddress.getField( "city" ).getValue() );
+        assertNull( projectedAddress.getField( "street" ) );
+    }
+
+
+    @Test
+    public void projectedDeleted() {
+        final Id id = new SimpleId( "test" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final ByteBuffer buffer = serializer.toByteBuffer(
+            new MvccEntitySerializationStrategyV3Impl.EntityWrapper( id, version, MvccEntity.Status.DELETED, null,
+                0 ) );
+
+        final MvccEntitySerializationStrategyV3Impl.EntityWrapper wrapper =
+            serializer.fromByteBuffer( buffer, FieldProjection.fromPaths( Arrays.asList( "name" ) ) );
+
+        assertEquals( MvccEntity.Status.DELETED, wrapper.getStatus() );
+        assertFalse( wrapper.getOptionalEntity().isPresent() );
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.impl.migration.CollectionMigrationPlugin;
+import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.migration.data.MigrationInfoCache;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Reads and writes through the proxy while the entities are migrated from v3 to v4
+ */
+@RunWith( ITRunner.class )
+@UseModules( TestCollectionModule.class )
+@NotThreadSafe//anything that changes the system version state is not safe to be run concurrently
+public class MvccEntitySerializationStrategyProxyV3_4Test {
+
+    @Inject
+    @Rule
+    public MigrationManagerRule migrationManagerRule;
+
+    @Inject
+    private MvccEntitySerializationStrategy serializationStrategy;
+
+    @Inject
+    private MvccEntitySerializationStrategyV3Impl v3Impl;
+
+    @Inject
+    private MvccEntitySerializationStrategyV4Impl v4Impl;
+
+    @Inject
+    protected MigrationInfoCache migrationInfoCache;
+
+    private int existingVersion;
+
+
+    /**
+     * Put the collections on v3, so the proxy migrates to v4
+     */
+    @Before
+    public void setMigrationVersion() {
+        existingVersion = migrationInfoCache.getVersion( CollectionMigrationPlugin.PLUGIN_NAME );
+
+        migrationInfoCache.setVersion( CollectionMigrationPlugin.PLUGIN_NAME, v3Impl.getImplementationVersion() );
+    }
+
+
+    @After
+    public void reSetMigrationVersion() {
+        migrationInfoCache.setVersion( CollectionMigrationPlugin.PLUGIN_NAME, existingVersion );
+    }
+
+
+    @Test
+    public void writeToBoth() throws ConnectionException {
+
+        final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+        final MvccEntity entity = getEntity( "test" );
+
+        serializationStrategy.write( scope, entity ).execute();
+
+        assertEquals( entity, v3Impl.load( scope, entity.getId() ).get() );
+        assertEquals( entity, v4Impl.load( scope, entity.getId() ).get() );
+    }
+
+
+    @Test
+    public void upgradeOnRead() throws ConnectionException, InterruptedException {
+
+        final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+        final MvccEntity entity = getEntity( "test" );
+
+        //only in the old format, as if written before the migration started
+        v3Impl.write( scope, entity ).execute();
+
+        assertFalse( v4Impl.load( scope, entity.getId() ).isPresent() );
+
+        //reading it through the proxy returns the v3 entity and writes it to v4
+        final Optional<MvccEntity> returned = serializationStrategy.load( scope, entity.getId() );
+
+        assertTrue( returned.isPresent() );
+        assertEquals( entity, returned.get() );
+
+        //the write is asynchronous, wait for it
+        Optional<MvccEntity> upgraded = v4Impl.load( scope, entity.getId() );
+
+        for ( int i = 0; i < 50 && !upgraded.isPresent(); i++ ) {
+            Thread.sleep( 100 );
+            upgraded = v4Impl.load( scope, entity.getId() );
+        }
+
+        assertTrue( "Entity upgraded on read", upgraded.isPresent() );
+        assertEquals( entity, upgraded.get() );
+        assertEquals( entity.getEntity().get().getField( "name" ), upgraded.get().getEntity().get().getField( "name" ) );
+    }
+
+
+    private MvccEntity getEntity( final String type ) {
+
+        final Id entityId = new SimpleId( type );
+        final UUID version = UUIDGenerator.newTimeUUID();
+        final Entity entity = new Entity( entityId );
+        entity.setField( new StringField( "name", "upgrade" + version ) );
+
+        return new MvccEntityImpl( entityId, version, MvccEntity.Status.COMPLETE, entity );
+    }
+}
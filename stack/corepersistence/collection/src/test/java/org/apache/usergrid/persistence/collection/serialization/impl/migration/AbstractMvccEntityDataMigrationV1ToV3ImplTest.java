@@ -35,6 +35,7 @@ import org.apache.usergrid.persistence.collection.serialization.MvccLogEntrySeri
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSerializationStrategy;
 import org.apache.usergrid.persistence.collection.serialization.impl.CollectionDataVersions;
 import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV4Impl;
 import org.apache.usergrid.persistence.core.guice.DataMigrationResetRule;
 import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
 import org.apache.usergrid.persistence.core.migration.data.DataMigrationManager;
@@ -179,8 +180,9 @@ public abstract class AbstractMvccEntityDataMigrationV1ToV3ImplTest
             versions.getMigrationRelationship( newVersion );
 
 
+        //v3 is copied on to the compact format of v4
         assertEquals( "Same instance for from", v3Impl.getClass(), newTuple.from.getClass() );
-        assertEquals( "Same instance for to", v3Impl.getClass(), newTuple.to.getClass() );
+        assertEquals( "Same instance for to", MvccEntitySerializationStrategyV4Impl.class, newTuple.to.getClass() );
     }
 
 
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.uniquevalues;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Sends unique value requests to a local actor standing in for the unique value actors.
+ */
+public class UniqueValuesServiceBatchTest {
+
+    private static final String REGION = "us-east";
+
+    private static final Queue<UniqueValueActor.Request> received = new ConcurrentLinkedQueue<>();
+
+    private ActorSystem system;
+    private UniqueValuesServiceImpl service;
+
+    private final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+
+    @Before
+    public void setup() {
+        received.clear();
+
+        system = ActorSystem.create( "UniqueValuesServiceBatchTest" );
+        ActorRef clientActor = system.actorOf( Props.create( FakeUniqueValueActor.class ) );
+
+        UniqueValuesFig fig = mock( UniqueValuesFig.class );
+        when( fig.getRequestTimeout() ).thenReturn( 5000 );
+        when( fig.getRequestRetryCount() ).thenReturn( 2 );
+        when( fig.getAuthoritativeRegion() ).thenReturn( "" );
+
+        ActorSystemManager actorSystemManager = mock( ActorSystemManager.class );
+        when( actorSystemManager.isReady() ).thenReturn( true );
+        when( actorSystemManager.getCurrentRegion() ).thenReturn( REGION );
+        when( actorSystemManager.getClientActor() ).thenReturn( clientActor );
+
+        service = new UniqueValuesServiceImpl( null, fig, actorSystemManager, mock( UniqueValuesTable.class ) );
+    }
+
+
+    @After
+    public void teardown() {
+        system.terminate();
+    }
+
+
+    @Test
+    public void reservesAllFields() throws Exception {
+
+        Entity entity = entity( "user1", "user1@example.com", "555-0001" );
+
+        service.reserveUniqueValues( scope, entity, UUIDGenerator.newTimeUUID(), REGION );
+
+        assertEquals( 3, count( UniqueValueActor.Reservation.class ) );
+        assertEquals( 0, count( UniqueValueActor.Cancellation.class ) );
+    }
+
+
+    @Test
+    public void cancelsAllFieldsWhenOneIsTaken() throws Exception {
+
+        Entity entity = entity( "user1", "taken", "555-0001" );
+
+        try {
+            service.reserveUniqueValues( scope, entity, UUIDGenerator.newTimeUUID(), REGION );
+            fail( "Taken value should not be reserved" );
+        }
+        catch ( UniqueValueException expected ) {
+            assertEquals( "taken", expected.getField().getValue() );
+        }
+
+        assertEquals( 3, count( UniqueValueActor.Reservation.class ) );
+        assertEquals( 3, awaitCount( UniqueValueActor.Cancellation.class, 3 ) );
+    }
+
+
+    @Test
+    public void reservesAndConfirmsSeveralEntities() throws Exception {
+
+        Entity first = entity( "user1", "user1@example.com", "555-0001" );
+        Entity second = entity( "user2", "user2@example.com", "555-0002" );
+
+        service.reserveUniqueValues( scope, Arrays.asList( mvccEntity( first ), mvccEntity( second ) ), REGION );
+        service.confirmUniqueValues( scope, Arrays.asList( mvccEntity( first ), mvccEntity( second ) ), REGION );
+
+        assertEquals( 6, count( UniqueValueActor.Reservation.class ) );
+        assertEquals( 6, count( UniqueValueActor.Confirmation.class ) );
+    }
+
+
+    private static Entity entity( String username, String email, String phone ) {
+        Entity entity = new Entity( new SimpleId( "user" ) );
+        entity.setField( new StringField( "username", username, true ) );
+        entity.setField( new StringField( "email", email, true ) );
+        entity.setField( new StringField( "phone", phone, true ) );
+        entity.setField( new StringField( "name", "not unique" ) );
+        return entity;
+    }
+
+
+    private static MvccEntity mvccEntity( Entity entity ) {
+        return new MvccEntityImpl( entity.getId(), UUIDGenerator.newTimeUUID(), MvccEntity.Status.COMPLETE, entity );
+    }
+
+
+    /**
+     * Cancellations are not waited for, give the actor a moment to receive them
+     */
+    private static int awaitCount( Class<? extends UniqueValueActor.Request> type, int expected )
+        throws InterruptedException {
+
+        for ( int i = 0; i < 50 && count( type ) < expected; i++ ) {
+            Thread.sleep( 100 );
+        }
+        return count( type );
+    }
+
+
+    private static int count( Class<? extends UniqueValueActor.Request> type ) {
+        int count = 0;
+        for ( UniqueValueActor.Request request : received ) {
+            if ( type.isInstance( request ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Any value "taken" belongs to somebody else, every other value is unique.
+     */
+    public static class FakeUniqueValueActor extends UntypedActor {
+
+        @Override
+        public void onReceive( Object message ) {
+            UniqueValueActor.Request request = ( UniqueValueActor.Request ) message;
+            received.add( request );
+
+            UniqueValueActor.Response.Status status;
+            if ( request instanceof UniqueValueActor.Cancellation ) {
+                status = UniqueValueActor.Response.Status.SUCCESS;
+            }
+            else if ( "taken".equals( request.getField().getValue() ) ) {
+                status = UniqueValueActor.Response.Status.NOT_UNIQUE;
+            }
+            else {
+                status = UniqueValueActor.Response.Status.IS_UNIQUE;
+            }
+
+            getSender().tell( new UniqueValueActor.Response( status, request.getConsistentHashKey() ), getSelf() );
+        }
+    }
+}
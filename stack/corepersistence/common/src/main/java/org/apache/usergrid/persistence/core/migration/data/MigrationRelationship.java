@@ -38,6 +38,7 @@ public class MigrationRelationship<T extends VersionedData> {
 
     private final int fromVersion;
     private final int toVersion;
+    private final boolean needsMigration;
 
 
     public MigrationRelationship( T from, T to ) {
@@ -46,6 +47,24 @@ public class MigrationRelationship<T extends VersionedData> {
 
         fromVersion = from.getImplementationVersion();
         toVersion = to.getImplementationVersion();
+        needsMigration = fromVersion != toVersion;
+    }
+
+
+    /**
+     * Create the current relationship of data that is still current at a higher system version.  This is the case
+     * when the system version is raised by the migration of other data that is versioned by the same plugin.
+     *
+     * @param current The current implementation
+     * @param maxVersion The highest system version this implementation is current for
+     */
+    public MigrationRelationship( T current, int maxVersion ) {
+        this.from = current;
+        this.to = current;
+
+        fromVersion = current.getImplementationVersion();
+        toVersion = maxVersion;
+        needsMigration = false;
     }
 
 
@@ -54,7 +73,7 @@ public class MigrationRelationship<T extends VersionedData> {
      * @return
      */
     public boolean needsMigration(){
-        return fromVersion != toVersion;
+        return needsMigration;
     }
 
 
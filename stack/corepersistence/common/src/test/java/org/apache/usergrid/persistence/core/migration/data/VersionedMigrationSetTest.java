@@ -31,6 +31,7 @@ import org.apache.usergrid.persistence.core.migration.data.VersionedData;
 import org.apache.usergrid.persistence.core.migration.data.VersionedMigrationSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 
@@ -169,6 +170,35 @@ public class VersionedMigrationSetTest {
     }
 
 
+    /**
+     * Data that is still current while other data of the same plugin moves from version 2 to 3
+     */
+    @Test
+    public void currentAtHigherVersion() {
+
+        final MigrationRelationship<TestVersionImpl> relationship1_2 =
+                new MigrationRelationship<>( new TestVersionImpl( 1 ), new TestVersionImpl( 2 ) );
+
+        final MigrationRelationship<TestVersionImpl> current =
+                new MigrationRelationship<>( new TestVersionImpl( 2 ), 3 );
+
+        final VersionedMigrationSet<TestVersionImpl> set = new VersionedMigrationSet<>( relationship1_2, current );
+
+        assertEquals( relationship1_2, set.getMigrationRelationship( 1 ) );
+        assertEquals( current, set.getMigrationRelationship( 2 ) );
+        assertEquals( current, set.getMigrationRelationship( 3 ) );
+        assertFalse( current.needsMigration() );
+
+        try {
+            set.getMigrationRelationship( 4 );
+            fail( "I should throw an exception" );
+        }
+        catch ( IllegalArgumentException iae ) {
+            //swallow, it's outside the range
+        }
+    }
+
+
     @Test( expected = IllegalArgumentException.class )
     public void testNoInput() {
         new VersionedMigrationSet<TestVersionImpl>();
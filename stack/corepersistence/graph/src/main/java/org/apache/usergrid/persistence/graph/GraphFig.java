@@ -80,6 +80,26 @@ public interface GraphFig extends GuicyFig {
     String SHARD_REPAIR_CHANCE = "usergrid.graph.shard.repair.chance";
 
 
+    /**
+     * The number of worker threads used to move edges out of source shards in parallel during compaction
+     */
+    String SHARD_COMPACTION_WORKERS = "usergrid.graph.shard.compaction.worker.count";
+
+
+    /**
+     * The max number of edges per second moved by compaction across all shard groups on this node.  0 is unlimited
+     */
+    String SHARD_COMPACTION_EDGES_PER_SECOND = "usergrid.graph.shard.compaction.edges.per.second";
+
+
+    /**
+     * Time (in millis) to wait after writing edges to the target shard before deleting them from the source shard,
+     * only used when the configured read and write consistency levels do not overlap in every region.  LOCAL_* levels
+     * never skip it
+     */
+    String SHARD_COMPACTION_VISIBILITY_DELAY = "usergrid.graph.shard.compaction.visibility.delay";
+
+
     /**
      * The minimum amount of time than can occur (in millis) between shard allocation and compaction.  Must be at least 2x the cache
      * timeout. Set to 2.5x the cache timeout to be safe
@@ -125,7 +145,7 @@ public interface GraphFig extends GuicyFig {
     @Key(SHARD_CACHE_TIMEOUT)
     long getShardCacheTimeout();
 
-    @Default("false")
+    @Default("true")
     @Key(SHARD_READ_CACHE_ENABLED)
     boolean getShardReadCacheEnabled();
 
@@ -153,6 +173,21 @@ public interface GraphFig extends GuicyFig {
     int getShardAuditWorkerQueueSize();
 
 
+    @Default( "4" )
+    @Key( SHARD_COMPACTION_WORKERS )
+    int getShardCompactionWorkerCount();
+
+
+    @Default( "10000" )
+    @Key( SHARD_COMPACTION_EDGES_PER_SECOND )
+    int getShardCompactionEdgesPerSecond();
+
+
+    @Default( "1000" )
+    @Key( SHARD_COMPACTION_VISIBILITY_DELAY )
+    long getShardCompactionVisibilityDelay();
+
+
     @Default("10000")
     @Key(COUNTER_WRITE_FLUSH_COUNT)
     long getCounterFlushCount();
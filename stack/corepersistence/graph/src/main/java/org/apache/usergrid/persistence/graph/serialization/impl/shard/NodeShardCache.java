@@ -21,6 +21,7 @@ package org.apache.usergrid.persistence.graph.serialization.impl.shard;
 
 import java.util.Iterator;
 
+import org.apache.usergrid.persistence.actorsystem.RouterProducer;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 
 
@@ -28,8 +29,10 @@ import org.apache.usergrid.persistence.core.scope.ApplicationScope;
  *  Cache implementation for returning versions based on the slice.  This shard may be latent.  As a result
  *  the allocation of new shards should be 2*shard timeout in the future.
  *
+ *  Implements RouterProducer so it can subscribe to invalidations from the rest of the cluster once the actor
+ *  system is started.
  */
-public interface NodeShardCache {
+public interface NodeShardCache extends RouterProducer {
 
 
     /**
@@ -52,6 +55,15 @@ public interface NodeShardCache {
     Iterator<ShardEntryGroup> getReadShardGroup( final ApplicationScope scope, final long maxTimestamp, final DirectedEdgeMeta directedEdgeMeta  );
 
 
+    /**
+     * Invalidate the shard groups on this node and publish the invalidation to the rest of the cluster
+     */
     void invalidate( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta );
 
+
+    /**
+     * Invalidate the shard groups on this node only
+     */
+    void invalidateLocal( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta );
+
 }
@@ -26,9 +26,15 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.ValidationUtils;
 import org.apache.usergrid.persistence.graph.GraphFig;
@@ -37,7 +43,10 @@ import org.apache.usergrid.persistence.graph.serialization.impl.shard.*;
 import org.apache.usergrid.persistence.graph.serialization.util.GraphValidation;
 import org.apache.usergrid.persistence.graph.serialization.util.IterableUtil;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -47,34 +56,70 @@ import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
 
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
 
 
 /**
  * Simple implementation of the shard.  Uses a local Guava shard with a timeout.  If a value is not present in the
  * shard, it will need to be searched via cassandra.
+ *
+ * Shard allocation and compaction invalidate the entry on every node through the actor system.  Each entry
+ * remembers the invalidation generation that was current when its load started, so an entry loaded before the
+ * last invalidation seen by this node is never returned, even if the load raced with the invalidation.
  */
 @Singleton
 public class NodeShardCacheImpl implements NodeShardCache {
 
+    private static final Logger logger = LoggerFactory.getLogger( NodeShardCacheImpl.class );
+
+    /**
+     * Pub/sub topic for cluster invalidations
+     */
+    public static final String TOPIC = "graphShardCache";
+
     private final NodeShardAllocation nodeShardAllocation;
     private final GraphFig graphFig;
     private ListeningScheduledExecutorService refreshExecutors;
     private LoadingCache<CacheKey, CacheEntry> graphs;
 
+    /**
+     * The generation of the last invalidation of each key
+     */
+    private Cache<CacheKey, Long> invalidations;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Meter readsSavedMeter;
+    private final Meter shardLoadMeter;
+    private final Counter invalidationCounter;
+
+    /**
+     * Not bound when the graph is used without the actor system, invalidations are then local only
+     */
+    private ActorSystemManager actorSystemManager;
+
 
     /**
      *  @param nodeShardAllocation
      * @param graphFig
+     * @param metricsFactory
      */
     @Inject
-    public NodeShardCacheImpl( final NodeShardAllocation nodeShardAllocation, final GraphFig graphFig) {
+    public NodeShardCacheImpl( final NodeShardAllocation nodeShardAllocation, final GraphFig graphFig,
+                               final MetricsFactory metricsFactory ) {
 
         Preconditions.checkNotNull( nodeShardAllocation, "nodeShardAllocation is required" );
         Preconditions.checkNotNull( graphFig, "consistencyFig is required" );
+        Preconditions.checkNotNull( metricsFactory, "metricsFactory is required" );
 
         this.nodeShardAllocation = nodeShardAllocation;
         this.graphFig = graphFig;
 
+        this.readsSavedMeter = metricsFactory.getMeter( NodeShardCacheImpl.class, "shard.cache.read.saved" );
+        this.shardLoadMeter = metricsFactory.getMeter( NodeShardCacheImpl.class, "shard.cache.load" );
+        this.invalidationCounter = metricsFactory.getCounter( NodeShardCacheImpl.class, "shard.cache.invalidation" );
+
 
         /**
          * Add our listener to reconstruct the shard
@@ -101,6 +146,12 @@ public class NodeShardCacheImpl implements NodeShardCache {
     }
 
 
+    @Inject( optional = true )
+    public void setActorSystemManager( final ActorSystemManager actorSystemManager ) {
+        this.actorSystemManager = actorSystemManager;
+    }
+
+
     @Override
     public ShardEntryGroup getWriteShardGroup( final ApplicationScope scope, final long timestamp,
                                                final DirectedEdgeMeta directedEdgeMeta ) {
@@ -109,14 +160,7 @@ public class NodeShardCacheImpl implements NodeShardCache {
         GraphValidation.validateDirectedEdgeMeta( directedEdgeMeta );
 
         final CacheKey key = new CacheKey( scope, directedEdgeMeta );
-        CacheEntry entry;
-
-        try {
-            entry = this.graphs.get( key );
-        }
-        catch ( ExecutionException e ) {
-            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
-        }
+        final CacheEntry entry = getEntry( key );
 
         final ShardEntryGroup shardId = entry.getShardId( timestamp );
 
@@ -140,15 +184,12 @@ public class NodeShardCacheImpl implements NodeShardCache {
 
         if( graphFig.getShardReadCacheEnabled() ) {
 
-            try {
-                entry = this.graphs.get(key);
-            } catch (ExecutionException e) {
-                throw new GraphRuntimeException("Unable to load shard key for graph", e);
-            }
+            entry = getEntry( key );
 
         } else {
 
-            entry = new CacheEntry(nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta ));
+            shardLoadMeter.mark();
+            entry = new CacheEntry(nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta ), 0L);
 
         }
 
@@ -165,9 +206,97 @@ public class NodeShardCacheImpl implements NodeShardCache {
     @Override
     public void invalidate( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta ){
 
+        invalidateLocal( scope, directedEdgeMeta );
+
+        if ( actorSystemManager == null || !actorSystemManager.isReady() ) {
+            return;
+        }
+
+        try {
+            actorSystemManager.publishToAllRegions( TOPIC, new ShardCacheInvalidation( scope, directedEdgeMeta ),
+                null );
+        }
+        catch ( Exception e ) {
+            // other nodes will still pick up the change when their entry is refreshed
+            logger.warn( "Unable to publish shard cache invalidation for {}", directedEdgeMeta, e );
+        }
+    }
+
+
+    @Override
+    public void invalidateLocal( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta ){
+
         final CacheKey cacheKey = new CacheKey(scope, directedEdgeMeta);
+
+        // record the generation before dropping the entry, a load already in flight will be seen as stale
+        invalidations.put( cacheKey, generation.incrementAndGet() );
         graphs.invalidate(cacheKey);
 
+        invalidationCounter.inc();
+    }
+
+
+    /**
+     * Get the cached entry, reloading it if it was loaded before the last invalidation of the key
+     */
+    private CacheEntry getEntry( final CacheKey key ) {
+
+        try {
+            final CacheEntry cached = graphs.getIfPresent( key );
+
+            if ( cached != null && !isStale( key, cached ) ) {
+                readsSavedMeter.mark();
+                return cached;
+            }
+
+            if ( cached != null ) {
+                graphs.invalidate( key );
+            }
+
+            CacheEntry entry = graphs.get( key );
+
+            // invalidated again while we were loading, go to cassandra directly rather than spin
+            if ( isStale( key, entry ) ) {
+                entry = new ShardCacheLoader().load( key );
+            }
+
+            return entry;
+        }
+        catch ( ExecutionException e ) {
+            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
+        }
+    }
+
+
+    private boolean isStale( final CacheKey key, final CacheEntry entry ) {
+        final Long invalidated = invalidations.getIfPresent( key );
+        return invalidated != null && entry.generation < invalidated;
+    }
+
+
+    @Override
+    public String getRouterPath() {
+        return "/user/graphShardCacheSubscriber";
+    }
+
+
+    @Override
+    public Collection<Class> getMessageTypes() {
+        // nothing is routed, invalidations are published to all subscribers
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public void addConfiguration( final Map<String, Object> configMap ) {
+        // no router configuration needed
+    }
+
+
+    @Override
+    public void produceRouter( final ActorSystem system, final String role ) {
+        logger.info( "Starting NodeShardCacheActor" );
+        system.actorOf( Props.create( NodeShardCacheActor.class, this ), "graphShardCacheSubscriber" );
     }
 
     /**
@@ -196,6 +325,12 @@ public class NodeShardCacheImpl implements NodeShardCache {
             //set our shard loader
             .build( new ShardCacheLoader() );
 
+        //entries older than the cache timeout are refreshed anyway, no need to remember their invalidation longer
+        this.invalidations = CacheBuilder.newBuilder()
+            .expireAfterWrite( graphFig.getShardCacheTimeout(), TimeUnit.MILLISECONDS )
+            .maximumSize(graphFig.getShardCacheSize())
+            .build();
+
     }
 
 
@@ -255,11 +390,17 @@ public class NodeShardCacheImpl implements NodeShardCache {
          */
         private TreeMap<Long, ShardEntryGroup> shards;
 
+        /**
+         * The invalidation generation when the load of this entry started
+         */
+        private final long generation;
 
-        private CacheEntry( final Iterator<ShardEntryGroup> shards ) {
+
+        private CacheEntry( final Iterator<ShardEntryGroup> shards, final long generation ) {
             Preconditions.checkArgument( shards.hasNext(),
                 "More than 1 entry must be present in the shard to load into cache" );
 
+            this.generation = generation;
             this.shards = new TreeMap<>();
             /**
              * TODO, we need to bound this.  While I don't envision more than a thousand groups max,
@@ -314,11 +455,15 @@ public class NodeShardCacheImpl implements NodeShardCache {
         @Override
         public CacheEntry load( final CacheKey key ) {
 
+            //capture before reading so an invalidation during the read marks this entry stale
+            final long loadGeneration = generation.get();
+
+            shardLoadMeter.mark();
 
             final Iterator<ShardEntryGroup> edges =
                 nodeShardAllocation.getShards( key.scope, key.directedEdgeMeta );
 
-            final CacheEntry cacheEntry = new CacheEntry( edges );
+            final CacheEntry cacheEntry = new CacheEntry( edges, loadGeneration );
 
             return cacheEntry;
         }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.graph.serialization.impl.shard.impl;
+
+
+import java.io.Serializable;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.DirectedEdgeMeta;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.NodeType;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+
+/**
+ * Message published to all nodes when the shards of a directed edge meta are allocated or compacted.  Holds the
+ * storage form of the meta so it can be rebuilt on the receiving node.
+ */
+public class ShardCacheInvalidation implements Serializable {
+
+    private final UUID applicationUuid;
+    private final String applicationType;
+
+    private final int metaType;
+    private final UUID[] nodeUuids;
+    private final String[] nodeTypes;
+    private final int[] nodeMetaTypes;
+    private final String[] types;
+
+
+    public ShardCacheInvalidation( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta ) {
+        this.applicationUuid = scope.getApplication().getUuid();
+        this.applicationType = scope.getApplication().getType();
+
+        this.metaType = directedEdgeMeta.getType().getStorageValue();
+
+        final DirectedEdgeMeta.NodeMeta[] nodes = directedEdgeMeta.getNodes();
+
+        this.nodeUuids = new UUID[nodes.length];
+        this.nodeTypes = new String[nodes.length];
+        this.nodeMetaTypes = new int[nodes.length];
+
+        for ( int i = 0; i < nodes.length; i++ ) {
+            nodeUuids[i] = nodes[i].getId().getUuid();
+            nodeTypes[i] = nodes[i].getId().getType();
+            nodeMetaTypes[i] = nodes[i].getNodeType().getStorageValue();
+        }
+
+        this.types = directedEdgeMeta.getTypes();
+    }
+
+
+    public ApplicationScope getApplicationScope() {
+        return new ApplicationScopeImpl( new SimpleId( applicationUuid, applicationType ) );
+    }
+
+
+    public DirectedEdgeMeta getDirectedEdgeMeta() {
+
+        final DirectedEdgeMeta.NodeMeta[] nodes = new DirectedEdgeMeta.NodeMeta[nodeUuids.length];
+
+        for ( int i = 0; i < nodes.length; i++ ) {
+            nodes[i] = new DirectedEdgeMeta.NodeMeta( new SimpleId( nodeUuids[i], nodeTypes[i] ),
+                NodeType.get( nodeMetaTypes[i] ) );
+        }
+
+        return DirectedEdgeMeta.fromStorage( DirectedEdgeMeta.MetaType.fromStorage( metaType ), nodes, types );
+    }
+}
@@ -26,6 +26,7 @@ import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -36,14 +37,21 @@ import org.apache.usergrid.persistence.graph.serialization.impl.shard.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.usergrid.persistence.core.CassandraConfig;
 import org.apache.usergrid.persistence.core.consistency.TimeService;
+import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
 import org.apache.usergrid.persistence.graph.SearchByEdgeType;
+import org.apache.usergrid.persistence.graph.exception.GraphRuntimeException;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
@@ -53,11 +61,14 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.ConsistencyLevel;
 
 
 /**
@@ -89,6 +100,16 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
     private final ShardCompactionTaskTracker shardCompactionTaskTracker;
     private final ShardAuditTaskTracker shardAuditTaskTracker;
     private final NodeShardCache nodeShardCache;
+    private final CassandraConfig cassandraConfig;
+    private final MetricsFactory metricsFactory;
+
+    private final ListeningExecutorService compactionExecutor;
+    private final Timer batchTimer;
+
+    /**
+     * Shared by all compactions on this node, null when unlimited
+     */
+    private volatile RateLimiter rateLimiter;
 
 
     @Inject
@@ -98,7 +119,8 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
                                      final EdgeColumnFamilies edgeColumnFamilies, final Keyspace keyspace,
                                      final EdgeShardSerialization edgeShardSerialization,
                                      final AsyncTaskExecutor asyncTaskExecutor,
-                                     final NodeShardCache nodeShardCache ) {
+                                     final NodeShardCache nodeShardCache, final CassandraConfig cassandraConfig,
+                                     final MetricsFactory metricsFactory ) {
 
         this.timeService = timeService;
         this.countAudits = new AtomicLong();
@@ -116,6 +138,39 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
 
         this.taskExecutor = asyncTaskExecutor.getExecutorService();
         this.nodeShardCache = nodeShardCache;
+        this.cassandraConfig = cassandraConfig;
+        this.metricsFactory = metricsFactory;
+
+        // no queue, when every worker is busy the caller moves the edges itself rather than waiting on a queue
+        this.compactionExecutor = MoreExecutors.listeningDecorator( TaskExecutorFactory
+            .createTaskExecutor( "GraphCompactionExecutor", graphFig.getShardCompactionWorkerCount(), 0,
+                TaskExecutorFactory.RejectionAction.CALLERRUNS ) );
+
+        this.batchTimer = metricsFactory.getTimer( ShardGroupCompactionImpl.class, "shard.compaction.batch" );
+
+        updateRateLimiter();
+
+        this.graphFig.addPropertyChangeListener( evt -> {
+            if ( GraphFig.SHARD_COMPACTION_EDGES_PER_SECOND.equals( evt.getPropertyName() ) ) {
+                updateRateLimiter();
+            }
+        } );
+    }
+
+
+    private void updateRateLimiter() {
+
+        final int edgesPerSecond = graphFig.getShardCompactionEdgesPerSecond();
+
+        if ( edgesPerSecond <= 0 ) {
+            this.rateLimiter = null;
+        }
+        else if ( rateLimiter == null ) {
+            this.rateLimiter = RateLimiter.create( edgesPerSecond );
+        }
+        else {
+            this.rateLimiter.setRate( edgesPerSecond );
+        }
     }
 
 
@@ -153,11 +208,25 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
 
         final UUID timestamp = UUIDGenerator.newTimeUUID();
 
-        final long newShardPivot = targetShard.getShardIndex();
+        final String metaType = edgeMeta.getType().name().toLowerCase();
 
-        final int maxWorkSize = graphFig.getScanPageSize();
+        final Meter movedMeter =
+            metricsFactory.getMeter( ShardGroupCompactionImpl.class, "shard.compaction.moved." + metaType );
+
+        final Histogram compactionHistogram =
+            metricsFactory.getHistogram( ShardGroupCompactionImpl.class, "shard.compaction.edges." + metaType );
 
 
+        /**
+         * Source shards are independent of each other, move them in parallel.  When all workers are busy the
+         * calling thread moves the shard itself
+         */
+        final List<ListenableFuture<Long>> moves = new ArrayList<>( sourceShards.size() );
+
+        for ( final Shard sourceShard : sourceShards ) {
+            moves.add( compactionExecutor.submit(
+                () -> moveEdges( scope, edgeMeta, sourceShard, targetShard, timestamp, movedMeter ) ) );
+        }
 
 
         /**
@@ -165,208 +234,297 @@ public class ShardGroupCompactionImpl implements ShardGroupCompaction {
          */
         long totalEdgeCount = 0;
 
+        try {
+            for ( final Long edgeCount : Futures.allAsList( moves ).get() ) {
+                totalEdgeCount += edgeCount;
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GraphRuntimeException( "Interrupted while compacting shard group " + group, e );
+        }
+        catch ( ExecutionException e ) {
+            throw new GraphRuntimeException( "Unable to compact shard group " + group, e.getCause() );
+        }
 
-        for ( Shard sourceShard : sourceShards ) {
+        compactionHistogram.update( totalEdgeCount );
 
-            final MutationBatch newRowBatch = keyspace.prepareMutationBatch();
-            final MutationBatch deleteRowBatch = keyspace.prepareMutationBatch();
-            final MutationBatch updateShardMetaBatch = keyspace.prepareMutationBatch();
 
-            long edgeCount = 0;
+        if (logger.isTraceEnabled()) {
+            logger.trace("Finished compacting {} shards and moved {} edges", sourceShards, totalEdgeCount);
+        }
 
-            Iterator<MarkedEdge> edges = edgeMeta
-                .loadEdges( shardedEdgeSerialization, edgeColumnFamilies, scope, Collections.singleton( sourceShard ),
-                    Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING );
+        resultBuilder.withCopiedEdges( totalEdgeCount ).withSourceShards( sourceShards ).withTargetShard( targetShard );
 
-            MarkedEdge shardEnd = null;
+        /**
+         * We didn't move anything this pass, mark the shard as compacted.  If we move something,
+         * it means that we missed it on the first pass
+         * or someone is still not writing to the target shard only.
+         */
+        if ( totalEdgeCount == 0 ) {
 
-            while ( edges.hasNext() ) {
-                final MarkedEdge edge = edges.next();
 
-                final long edgeTimestamp = edge.getTimestamp();
+            // now that we've marked our target as compacted, we can successfully remove any shards that are not
+            // compacted themselves in the sources
 
-                shardEnd = edge;
+            final MutationBatch shardRemovalRollup = keyspace.prepareMutationBatch();
 
-                /**
-                 * The edge is within a different shard, break
-                 */
-                if ( edgeTimestamp < newShardPivot ) {
-                    break;
-                }
+            for ( Shard source : sourceShards ) {
 
-                newRowBatch.mergeShallow( edgeMeta
-                        .writeEdge( shardedEdgeSerialization, edgeColumnFamilies, scope, targetShard, edge,
-                            timestamp ) );
+                //if we can't safely delete it, don't do so
+                if ( !group.canBeDeleted( source ) ) {
+                    continue;
+                }
 
-                deleteRowBatch.mergeShallow( edgeMeta
-                        .deleteEdge( shardedEdgeSerialization, edgeColumnFamilies, scope, sourceShard, edge,
-                            timestamp ) );
+                logger.info( "Source shards have been fully drained.  Removing shard {}", source );
 
+                final MutationBatch shardRemoval = edgeShardSerialization.removeShardMeta( scope, source, edgeMeta );
+                shardRemovalRollup.mergeShallow( shardRemoval );
 
-                edgeCount++;
+                resultBuilder.withRemovedShard( source );
+            }
 
 
+            try {
+                shardRemovalRollup.execute();
 
-                // if we're at our count, execute the mutation of writing the edges to the new row, then remove them
-                // from the old rows
-                if ( edgeCount % maxWorkSize == 0 ) {
+                // invalidate the shard cache so we can be sure that all read shards are up to date
+                nodeShardCache.invalidate(scope, edgeMeta);
+            }
+            catch ( ConnectionException e ) {
+                throw new RuntimeException( "Unable to connect to cassandra", e );
+            }
 
+            //Overwrite our shard index with a newly created one that has been marked as compacted
+            Shard compactedShard = new Shard( targetShard.getShardIndex(), timeService.getCurrentTime(), true );
+            compactedShard.setShardEnd(Optional.absent());
 
+            if(logger.isTraceEnabled()) {
+                logger.trace("Shard has been fully compacted.  Marking shard {} as compacted in Cassandra", compactedShard);
+            }
 
-                    try {
+            final MutationBatch updateMark = edgeShardSerialization.writeShardMeta( scope, compactedShard, edgeMeta );
+            try {
+                updateMark.execute();
 
-                        // write the edges into the new shard atomically so we know they all succeed
-                        newRowBatch.withAtomicBatch(true).execute();
+                // invalidate the shard cache so we can be sure that all read shards are up to date
+                nodeShardCache.invalidate(scope, edgeMeta);
+            }
+            catch ( ConnectionException e ) {
+                throw new RuntimeException( "Unable to connect to cassandra", e );
+            }
 
+            resultBuilder.withCompactedShard( compactedShard );
+        }
 
-                        // Update the shard end after each batch so any reads during transition stay as close to current
-                        sourceShard.setShardEnd(
-                            Optional.of(new DirectedEdge(shardEnd.getTargetNode(), shardEnd.getTimestamp()))
-                        );
+        return resultBuilder.build();
+    }
 
-                        if(logger.isTraceEnabled()) {
-                            logger.trace("Updating shard {} during batch removal with shardEnd {}", sourceShard, shardEnd);
-                        }
-                        updateShardMetaBatch.mergeShallow(
-                            edgeShardSerialization.writeShardMeta(scope, sourceShard, edgeMeta));
 
+    /**
+     * Move all edges at or above the target shard's pivot from the source shard to the target shard.  The next page
+     * of edges is read and buffered while the previous batch is being written, at most one batch is in flight.
+     *
+     * @return The number of edges moved
+     */
+    private long moveEdges( final ApplicationScope scope, final DirectedEdgeMeta edgeMeta, final Shard sourceShard,
+                            final Shard targetShard, final UUID timestamp, final Meter movedMeter ) {
 
+        final long newShardPivot = targetShard.getShardIndex();
 
-                        // on purpose block this thread before deleting the old edges to be sure there are no gaps
-                        // duplicates are filtered on graph seeking so this is OK
-                        Thread.sleep(1000);
+        final int maxWorkSize = graphFig.getScanPageSize();
 
-                        if(logger.isTraceEnabled()) {
-                            logger.trace("Deleting batch of {} from old shard", maxWorkSize);
-                        }
-                        deleteRowBatch.withAtomicBatch(true).execute();
+        final Iterator<MarkedEdge> edges = edgeMeta
+            .loadEdges( shardedEdgeSerialization, edgeColumnFamilies, scope, Collections.singleton( sourceShard ),
+                Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING );
 
-                        updateShardMetaBatch.execute();
+        MutationBatch newRowBatch = keyspace.prepareMutationBatch();
+        MutationBatch deleteRowBatch = keyspace.prepareMutationBatch();
 
+        ListenableFuture<Void> inFlight = null;
 
-                    }
-                    catch ( Throwable t ) {
-                        logger.error( "Unable to move edges from shard {} to shard {}", sourceShard, targetShard );
-                    }
+        MarkedEdge shardEnd = null;
 
-                    totalEdgeCount += edgeCount;
-                    edgeCount = 0;
-                }
+        long totalEdgeCount = 0;
+        int edgeCount = 0;
 
+        while ( edges.hasNext() ) {
+            final MarkedEdge edge = edges.next();
 
+            shardEnd = edge;
 
+            /**
+             * The edge is within a different shard, break
+             */
+            if ( edge.getTimestamp() < newShardPivot ) {
+                break;
             }
 
-            totalEdgeCount += edgeCount;
-
-            try {
-
-                // write the edges into the new shard atomically so we know they all succeed
-                newRowBatch.withAtomicBatch(true).execute();
+            newRowBatch.mergeShallow(
+                edgeMeta.writeEdge( shardedEdgeSerialization, edgeColumnFamilies, scope, targetShard, edge,
+                    timestamp ) );
 
-                // on purpose block this thread before deleting the old edges to be sure there are no gaps
-                // duplicates are filtered on graph seeking so this is OK
-                Thread.sleep(1000);
+            deleteRowBatch.mergeShallow(
+                edgeMeta.deleteEdge( shardedEdgeSerialization, edgeColumnFamilies, scope, sourceShard, edge,
+                    timestamp ) );
 
-                if(logger.isTraceEnabled()) {
-                    logger.trace("Deleting remaining {} edges from old shard", edgeCount);
-                }
-                deleteRowBatch.withAtomicBatch(true).execute();
+            edgeCount++;
 
-                if (shardEnd != null){
+            // if we're at our count, wait for the previous batch then hand this one off and keep reading
+            if ( edgeCount == maxWorkSize ) {
 
-                    sourceShard.setShardEnd(
-                        Optional.of(new DirectedEdge(shardEnd.getTargetNode(), shardEnd.getTimestamp()))
-                    );
+                awaitBatch( inFlight );
 
-                    if(logger.isTraceEnabled()) {
-                        logger.trace("Updating for last time shard {} with shardEnd {}", sourceShard, shardEnd);
-                    }
-                    updateShardMetaBatch.mergeShallow( edgeShardSerialization.writeShardMeta(scope, sourceShard, edgeMeta));
-                    updateShardMetaBatch.execute();
-                }
+                inFlight = submitBatch( scope, edgeMeta, sourceShard, targetShard, newRowBatch, deleteRowBatch,
+                    shardEnd, edgeCount, movedMeter );
 
+                newRowBatch = keyspace.prepareMutationBatch();
+                deleteRowBatch = keyspace.prepareMutationBatch();
 
+                totalEdgeCount += edgeCount;
+                edgeCount = 0;
             }
-            catch ( Throwable t ) {
-                logger.error( "Unable to move edges to target shard {}", targetShard );
-            }
+        }
 
+        awaitBatch( inFlight );
 
+        totalEdgeCount += edgeCount;
 
+        // always flush the remainder, this also records the final shard end on the source shard
+        if ( edgeCount > 0 || shardEnd != null ) {
+            moveBatch( scope, edgeMeta, sourceShard, targetShard, newRowBatch, deleteRowBatch, shardEnd, edgeCount,
+                movedMeter );
         }
 
+        return totalEdgeCount;
+    }
 
 
+    /**
+     * Move the batch on another compaction worker, or on this thread if all workers are busy
+     */
+    private ListenableFuture<Void> submitBatch( final ApplicationScope scope, final DirectedEdgeMeta edgeMeta,
+                                                final Shard sourceShard, final Shard targetShard,
+                                                final MutationBatch newRowBatch, final MutationBatch deleteRowBatch,
+                                                final MarkedEdge shardEnd, final int edgeCount,
+                                                final Meter movedMeter ) {
+
+        return compactionExecutor.submit( () -> {
+            moveBatch( scope, edgeMeta, sourceShard, targetShard, newRowBatch, deleteRowBatch, shardEnd, edgeCount,
+                movedMeter );
+            return null;
+        } );
+    }
 
-        if (logger.isTraceEnabled()) {
-            logger.trace("Finished compacting {} shards and moved {} edges", sourceShards, totalEdgeCount);
-        }
 
-        resultBuilder.withCopiedEdges( totalEdgeCount ).withSourceShards( sourceShards ).withTargetShard( targetShard );
+    private void awaitBatch( final ListenableFuture<Void> inFlight ) {
 
-        /**
-         * We didn't move anything this pass, mark the shard as compacted.  If we move something,
-         * it means that we missed it on the first pass
-         * or someone is still not writing to the target shard only.
-         */
-        if ( totalEdgeCount == 0 ) {
+        if ( inFlight == null ) {
+            return;
+        }
 
+        try {
+            inFlight.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new GraphRuntimeException( "Interrupted while moving edges", e );
+        }
+        catch ( ExecutionException e ) {
+            throw new GraphRuntimeException( "Unable to move edges", e.getCause() );
+        }
+    }
 
-            // now that we've marked our target as compacted, we can successfully remove any shards that are not
-            // compacted themselves in the sources
 
-            final MutationBatch shardRemovalRollup = keyspace.prepareMutationBatch();
+    /**
+     * Write the batch to the target shard, wait until those writes are visible to readers, then delete the batch from
+     * the source shard and record how far the source shard has been drained.  If the write fails nothing is deleted,
+     * the edges are picked up again on the next compaction pass
+     */
+    private void moveBatch( final ApplicationScope scope, final DirectedEdgeMeta edgeMeta, final Shard sourceShard,
+                            final Shard targetShard, final MutationBatch newRowBatch,
+                            final MutationBatch deleteRowBatch, final MarkedEdge shardEnd, final int edgeCount,
+                            final Meter movedMeter ) {
 
-            for ( Shard source : sourceShards ) {
+        if ( edgeCount > 0 && rateLimiter != null ) {
+            rateLimiter.acquire( edgeCount );
+        }
 
-                //if we can't safely delete it, don't do so
-                if ( !group.canBeDeleted( source ) ) {
-                    continue;
-                }
+        final Timer.Context timer = batchTimer.time();
 
-                logger.info( "Source shards have been fully drained.  Removing shard {}", source );
+        try {
 
-                final MutationBatch shardRemoval = edgeShardSerialization.removeShardMeta( scope, source, edgeMeta );
-                shardRemovalRollup.mergeShallow( shardRemoval );
+            // write the edges into the new shard atomically so we know they all succeed
+            newRowBatch.withAtomicBatch( true ).execute();
 
-                resultBuilder.withRemovedShard( source );
+            // be sure there are no gaps for readers before deleting the old edges
+            // duplicates are filtered on graph seeking so this is OK
+            awaitWriteVisibility();
+
+            if ( logger.isTraceEnabled() ) {
+                logger.trace( "Deleting batch of {} from old shard", edgeCount );
             }
+            deleteRowBatch.withAtomicBatch( true ).execute();
 
+            movedMeter.mark( edgeCount );
 
-            try {
-                shardRemovalRollup.execute();
+            if ( shardEnd != null ) {
 
-                // invalidate the shard cache so we can be sure that all read shards are up to date
-                nodeShardCache.invalidate(scope, edgeMeta);
-            }
-            catch ( ConnectionException e ) {
-                throw new RuntimeException( "Unable to connect to cassandra", e );
-            }
+                // Update the shard end after each batch so any reads during transition stay as close to current
+                sourceShard.setShardEnd(
+                    Optional.of( new DirectedEdge( shardEnd.getTargetNode(), shardEnd.getTimestamp() ) ) );
 
-            //Overwrite our shard index with a newly created one that has been marked as compacted
-            Shard compactedShard = new Shard( targetShard.getShardIndex(), timeService.getCurrentTime(), true );
-            compactedShard.setShardEnd(Optional.absent());
+                if ( logger.isTraceEnabled() ) {
+                    logger.trace( "Updating shard {} with shardEnd {}", sourceShard, shardEnd );
+                }
 
-            if(logger.isTraceEnabled()) {
-                logger.trace("Shard has been fully compacted.  Marking shard {} as compacted in Cassandra", compactedShard);
+                edgeShardSerialization.writeShardMeta( scope, sourceShard, edgeMeta ).execute();
             }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            logger.error( "Interrupted moving edges from shard {} to shard {}", sourceShard, targetShard );
+        }
+        catch ( Throwable t ) {
+            logger.error( "Unable to move edges from shard {} to shard {}", sourceShard, targetShard, t );
+        }
+        finally {
+            timer.stop();
+        }
+    }
 
-            final MutationBatch updateMark = edgeShardSerialization.writeShardMeta( scope, compactedShard, edgeMeta );
-            try {
-                updateMark.execute();
 
-                // invalidate the shard cache so we can be sure that all read shards are up to date
-                nodeShardCache.invalidate(scope, edgeMeta);
-            }
-            catch ( ConnectionException e ) {
-                throw new RuntimeException( "Unable to connect to cassandra", e );
-            }
+    /**
+     * When the write and read consistency levels overlap, an acknowledged write is already visible to every reader.
+     * Otherwise give replication the configured delay to catch up
+     */
+    private void awaitWriteVisibility() throws InterruptedException {
 
-            resultBuilder.withCompactedShard( compactedShard );
+        if ( isReadYourWrites( cassandraConfig.getWriteCL(), cassandraConfig.getReadCL() ) ) {
+            return;
         }
 
-        return resultBuilder.build();
+        Thread.sleep( graphFig.getShardCompactionVisibilityDelay() );
+    }
+
+
+    /**
+     * True when a write acknowledged at the write consistency level is seen by any read at the read consistency level,
+     * in every region.  LOCAL_* levels only overlap within one data center, readers in other regions could still miss
+     * the copied edges
+     */
+    static boolean isReadYourWrites( final ConsistencyLevel writeCL, final ConsistencyLevel readCL ) {
+
+        if ( writeCL == ConsistencyLevel.CL_ALL || readCL == ConsistencyLevel.CL_ALL ) {
+            return true;
+        }
+
+        return isGlobalQuorum( writeCL ) && isGlobalQuorum( readCL );
+    }
+
+
+    private static boolean isGlobalQuorum( final ConsistencyLevel cl ) {
+        return cl == ConsistencyLevel.CL_QUORUM || cl == ConsistencyLevel.CL_EACH_QUORUM;
     }
 
 
@@ -28,13 +28,18 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.IdGenerator;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.NodeShardCacheImpl;
+import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.ShardCacheInvalidation;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.google.common.base.Optional;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
@@ -43,8 +48,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -87,7 +96,7 @@ public class NodeShardCacheTest {
         final long newTime = 10000l;
 
 
-        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
 
 
         final Optional max = Optional.absent();
@@ -163,7 +172,7 @@ public class NodeShardCacheTest {
          * Set our min mid and max
          */
 
-        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
 
 
         final Shard minShard = new Shard( 0, 0, true );
@@ -300,6 +309,68 @@ public class NodeShardCacheTest {
     }
 
 
+    @Test
+    public void testInvalidateReloads() {
+
+        final GraphFig graphFig = getFigMock();
+        when( graphFig.getShardReadCacheEnabled() ).thenReturn( true );
+
+        final NodeShardAllocation allocation = mock( NodeShardAllocation.class );
+
+        final ActorSystemManager actorSystemManager = mock( ActorSystemManager.class );
+
+        final NodeShardCacheImpl cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
+        cache.setActorSystemManager( actorSystemManager );
+
+        final ShardEntryGroup group = new ShardEntryGroup( 10000 );
+        group.addShard( new Shard( 0, 0, true ) );
+
+        final ShardEntryGroup newGroup = new ShardEntryGroup( 10000 );
+        newGroup.addShard( new Shard( 0, 0, true ) );
+
+        final DirectedEdgeMeta directedEdgeMeta =
+            DirectedEdgeMeta.fromSourceNodeTargetType( IdGenerator.createId( "test" ), "edge", "type" );
+
+        when( allocation.getShards( same( scope ), same( directedEdgeMeta ) ) )
+            .thenAnswer( invocation -> Collections.singletonList( group ).iterator() );
+
+
+        assertSame( group, cache.getReadShardGroup( scope, 0, directedEdgeMeta ).next() );
+        assertSame( group, cache.getWriteShardGroup( scope, 0, directedEdgeMeta ) );
+
+        //served from the cache
+        verify( allocation, times( 1 ) ).getShards( same( scope ), same( directedEdgeMeta ) );
+
+
+        when( allocation.getShards( same( scope ), same( directedEdgeMeta ) ) )
+            .thenAnswer( invocation -> Collections.singletonList( newGroup ).iterator() );
+
+        //not started, only the local cache is invalidated
+        when( actorSystemManager.isReady() ).thenReturn( false );
+        cache.invalidate( scope, directedEdgeMeta );
+
+        verify( actorSystemManager, never() ).publishToAllRegions( anyString(), any(), any() );
+
+        assertSame( newGroup, cache.getReadShardGroup( scope, 0, directedEdgeMeta ).next() );
+        verify( allocation, times( 2 ) ).getShards( same( scope ), same( directedEdgeMeta ) );
+
+
+        when( actorSystemManager.isReady() ).thenReturn( true );
+        cache.invalidate( scope, directedEdgeMeta );
+
+        verify( actorSystemManager ).publishToAllRegions( anyString(), any( ShardCacheInvalidation.class ), any() );
+    }
+
+
+    private MetricsFactory getMetricsMock() {
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+
+        return metricsFactory;
+    }
+
+
     private GraphFig getFigMock() {
         final GraphFig graphFig = mock( GraphFig.class );
         when( graphFig.getShardCacheSize() ).thenReturn( 1000l );
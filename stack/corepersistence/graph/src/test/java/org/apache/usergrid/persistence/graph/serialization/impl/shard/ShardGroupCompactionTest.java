@@ -22,29 +22,49 @@
 package org.apache.usergrid.persistence.graph.serialization.impl.shard;
 
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
+import org.apache.usergrid.persistence.core.CassandraConfig;
 import org.apache.usergrid.persistence.core.consistency.TimeService;
 import org.apache.usergrid.persistence.core.executor.TaskExecutorFactory;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
 import org.apache.usergrid.persistence.core.util.IdGenerator;
 import org.apache.usergrid.persistence.graph.GraphFig;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.impl.SimpleMarkedEdge;
 import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.ShardGroupCompactionImpl;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.model.ConsistencyLevel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -64,6 +84,8 @@ public class ShardGroupCompactionTest {
 
         when( graphFig.getShardAuditWorkerQueueSize() ).thenReturn( 1000 );
 
+        when( graphFig.getShardCompactionWorkerCount() ).thenReturn( 2 );
+
 
 
         listeningExecutorService = MoreExecutors.listeningDecorator( TaskExecutorFactory
@@ -118,7 +140,8 @@ public class ShardGroupCompactionTest {
 
         ShardGroupCompactionImpl compaction =
             new ShardGroupCompactionImpl( timeService, graphFig, nodeShardAllocation, shardedEdgeSerialization,
-                edgeColumnFamilies, keyspace, edgeShardSerialization, asyncTaskExecutor, nodeShardCache );
+                edgeColumnFamilies, keyspace, edgeShardSerialization, asyncTaskExecutor, nodeShardCache,
+                mock( CassandraConfig.class ), mock( MetricsFactory.class ) );
 
         DirectedEdgeMeta directedEdgeMeta = DirectedEdgeMeta.fromSourceNode( IdGenerator.createId( "source" ), "test" );
 
@@ -133,6 +156,106 @@ public class ShardGroupCompactionTest {
     }
 
 
+    /**
+     * Edges are written to the target shard before they are deleted from the source shard, and the source shard's end
+     * is only recorded once they are deleted
+     */
+    @Test
+    public void moveBeforeDelete() throws Exception {
+
+        final TimeService timeService = mock( TimeService.class );
+
+        final NodeShardAllocation nodeShardAllocation = mock( NodeShardAllocation.class );
+
+        final ShardedEdgeSerialization shardedEdgeSerialization = mock( ShardedEdgeSerialization.class );
+
+        final EdgeColumnFamilies edgeColumnFamilies = mock( EdgeColumnFamilies.class );
+
+        final Keyspace keyspace = mock( Keyspace.class );
+
+        final EdgeShardSerialization edgeShardSerialization = mock( EdgeShardSerialization.class );
+
+        final NodeShardCache nodeShardCache = mock( NodeShardCache.class );
+
+        when( graphFig.getScanPageSize() ).thenReturn( 1000 );
+        when( graphFig.getShardCompactionEdgesPerSecond() ).thenReturn( 0 );
+
+        final CassandraConfig cassandraConfig = mock( CassandraConfig.class );
+        when( cassandraConfig.getWriteCL() ).thenReturn( ConsistencyLevel.CL_QUORUM );
+        when( cassandraConfig.getReadCL() ).thenReturn( ConsistencyLevel.CL_QUORUM );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) ).thenReturn( mock( Histogram.class ) );
+
+        final long delta = 10000;
+
+        final long createTime = 20000;
+
+        final long timeNow = createTime + delta + 1;
+
+        final Shard targetShard = new Shard( 2000, createTime, false );
+        final Shard sourceShard = new Shard( 1000, 5000, true );
+
+        ShardEntryGroup group = new ShardEntryGroup( delta );
+        group.addShard( targetShard );
+        group.addShard( sourceShard );
+
+        when( timeService.getCurrentTime() ).thenReturn( timeNow );
+
+        final DirectedEdgeMeta directedEdgeMeta =
+            DirectedEdgeMeta.fromSourceNode( IdGenerator.createId( "source" ), "test" );
+
+        // all three edges are above the target's pivot and move
+        final MarkedEdge edge1 = new SimpleMarkedEdge( IdGenerator.createId( "source" ), "test",
+            IdGenerator.createId( "target" ), 5000, false );
+        final MarkedEdge edge2 = new SimpleMarkedEdge( IdGenerator.createId( "source" ), "test",
+            IdGenerator.createId( "target" ), 4000, false );
+        final MarkedEdge edge3 = new SimpleMarkedEdge( IdGenerator.createId( "source" ), "test",
+            IdGenerator.createId( "target" ), 3000, false );
+
+        final Iterator<MarkedEdge> edges = Arrays.asList( edge1, edge2, edge3 ).iterator();
+        when( shardedEdgeSerialization.getEdgesFromSource( same( edgeColumnFamilies ), same( scope ), any(),
+            any() ) ).thenReturn( edges );
+
+        when( shardedEdgeSerialization.writeEdgeFromSource( any(), any(), any(), any(), any(), any() ) )
+            .thenReturn( mock( MutationBatch.class ) );
+        when( shardedEdgeSerialization.deleteEdgeFromSource( any(), any(), any(), any(), any(), any() ) )
+            .thenReturn( mock( MutationBatch.class ) );
+
+        final MutationBatch writeBatch = mock( MutationBatch.class );
+        final MutationBatch deleteBatch = mock( MutationBatch.class );
+        when( writeBatch.withAtomicBatch( anyBoolean() ) ).thenReturn( writeBatch );
+        when( deleteBatch.withAtomicBatch( anyBoolean() ) ).thenReturn( deleteBatch );
+        when( keyspace.prepareMutationBatch() ).thenReturn( writeBatch, deleteBatch );
+
+        final MutationBatch shardEndBatch = mock( MutationBatch.class );
+        when( edgeShardSerialization.writeShardMeta( same( scope ), same( sourceShard ), same( directedEdgeMeta ) ) )
+            .thenReturn( shardEndBatch );
+
+        ShardGroupCompactionImpl compaction =
+            new ShardGroupCompactionImpl( timeService, graphFig, nodeShardAllocation, shardedEdgeSerialization,
+                edgeColumnFamilies, keyspace, edgeShardSerialization, asyncTaskExecutor, nodeShardCache,
+                cassandraConfig, metricsFactory );
+
+        final ShardGroupCompactionImpl.CompactionResult result = compaction.compact( this.scope, directedEdgeMeta, group );
+
+        assertEquals( 3, result.copiedEdges );
+
+        final InOrder inOrder = inOrder( writeBatch, deleteBatch, shardEndBatch );
+        inOrder.verify( writeBatch ).execute();
+        inOrder.verify( deleteBatch ).execute();
+        inOrder.verify( shardEndBatch ).execute();
+
+        assertTrue( sourceShard.getShardEnd().isPresent() );
+        assertEquals( edge3.getTimestamp(), sourceShard.getShardEnd().get().timestamp );
+
+        // edges were moved, so the source shard is not removed on this pass
+        verify( edgeShardSerialization, never() ).removeShardMeta( any(), any(), any() );
+    }
+
+
     //    /**
     //     * Tests that when we copy edges, we do not actually run the compaction,
     // we can only run it after we get nothing
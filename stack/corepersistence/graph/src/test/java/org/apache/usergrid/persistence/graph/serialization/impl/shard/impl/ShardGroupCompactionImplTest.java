@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one
+ *  * or more contributor license agreements.  See the NOTICE file
+ *  * distributed with this work for additional information
+ *  * regarding copyright ownership.  The ASF licenses this file
+ *  * to you under the Apache License, Version 2.0 (the
+ *  * "License"); you may not use this file except in compliance
+ *  * with the License.  You may obtain a copy of the License at
+ *  *
+ *  *    http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing,
+ *  * software distributed under the License is distributed on an
+ *  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  * KIND, either express or implied.  See the License for the
+ *  * specific language governing permissions and limitations
+ *  * under the License.
+ *
+ */
+
+package org.apache.usergrid.persistence.graph.serialization.impl.shard.impl;
+
+
+import org.junit.Test;
+
+import com.netflix.astyanax.model.ConsistencyLevel;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ShardGroupCompactionImplTest {
+
+
+    @Test
+    public void readYourWritesAcrossRegions() {
+
+        assertTrue( ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_QUORUM, ConsistencyLevel.CL_QUORUM ) );
+        assertTrue( ShardGroupCompactionImpl
+            .isReadYourWrites( ConsistencyLevel.CL_EACH_QUORUM, ConsistencyLevel.CL_QUORUM ) );
+        assertTrue( ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_ALL, ConsistencyLevel.CL_ONE ) );
+        assertTrue(
+            ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_LOCAL_QUORUM, ConsistencyLevel.CL_ALL ) );
+    }
+
+
+    @Test
+    public void localLevelsWaitForVisibility() {
+
+        // the repo default, only overlaps within one data center
+        assertFalse( ShardGroupCompactionImpl
+            .isReadYourWrites( ConsistencyLevel.CL_LOCAL_QUORUM, ConsistencyLevel.CL_LOCAL_QUORUM ) );
+        assertFalse(
+            ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_QUORUM, ConsistencyLevel.CL_LOCAL_QUORUM ) );
+        assertFalse(
+            ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_LOCAL_QUORUM, ConsistencyLevel.CL_QUORUM ) );
+        assertFalse( ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_ONE, ConsistencyLevel.CL_ONE ) );
+        assertFalse( ShardGroupCompactionImpl.isReadYourWrites( ConsistencyLevel.CL_QUORUM, ConsistencyLevel.CL_ONE ) );
+    }
+}
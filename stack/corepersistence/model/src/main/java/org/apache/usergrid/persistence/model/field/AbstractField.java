@@ -18,6 +18,13 @@
  */
 package org.apache.usergrid.persistence.model.field;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.usergrid.persistence.model.field.value.EntityObject;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
@@ -28,7 +35,7 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
  */
 @JsonTypeInfo( use=JsonTypeInfo.Id.CLASS, include=JsonTypeInfo.As.PROPERTY, property="@class" )
 
-public abstract class AbstractField<T> implements Field<T> {
+public abstract class AbstractField<T> implements Field<T>, Cloneable {
 
     /**
      * Set the object this field belongs to
@@ -93,6 +100,85 @@ public abstract class AbstractField<T> implements Field<T> {
         return value;
     }
 
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public AbstractField<T> copy( final String newName ) {
+        final AbstractField<T> copy;
+        try {
+            copy = ( AbstractField<T> ) clone();
+        }
+        catch ( CloneNotSupportedException e ) {
+            throw new IllegalStateException( "Unable to copy field " + name, e );
+        }
+        copy.name = newName;
+        return copy;
+    }
+
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public AbstractField<T> deepCopy() {
+        final AbstractField<T> copy = copy( name );
+        copy.value = ( T ) copyValue( value );
+        return copy;
+    }
+
+
+    /**
+     * Copy a value that can be changed, other values are immutable and returned as is
+     */
+    private static Object copyValue( final Object value ) {
+
+        if ( value instanceof EntityObject ) {
+            final EntityObject source = ( EntityObject ) value;
+            final EntityObject copy = new EntityObject();
+
+            for ( final Field field : source.getFields() ) {
+                copy.setField( field.deepCopy() );
+            }
+            copy.setSize( source.getSize() );
+
+            return copy;
+        }
+
+        if ( value instanceof List ) {
+            final List<Object> copy = new ArrayList<>( ( ( List<?> ) value ).size() );
+
+            for ( final Object element : ( List<?> ) value ) {
+                copy.add( copyValue( element ) );
+            }
+
+            return copy;
+        }
+
+        if ( value instanceof Set ) {
+            final Set<Object> copy = new LinkedHashSet<>();
+
+            for ( final Object element : ( Set<?> ) value ) {
+                copy.add( copyValue( element ) );
+            }
+
+            return copy;
+        }
+
+        if ( value instanceof Map ) {
+            final Map<Object, Object> copy = new LinkedHashMap<>();
+
+            for ( final Map.Entry<?, ?> entry : ( ( Map<?, ?> ) value ).entrySet() ) {
+                copy.put( entry.getKey(), copyValue( entry.getValue() ) );
+            }
+
+            return copy;
+        }
+
+        if ( value instanceof byte[] ) {
+            return ( ( byte[] ) value ).clone();
+        }
+
+        return value;
+    }
+
     @Override
     public boolean equals( Object o ) {
         if ( this == o ) {
@@ -52,6 +52,20 @@ public interface Field<T> extends Serializable {
     @JsonProperty
     public T getValue();
 
+    /**
+     * Copy the field under another name.  The value is shared with this field, the field itself is not.
+     * @param newName The name of the copy
+     * @return
+     */
+    public Field<T> copy( final String newName );
+
+    /**
+     * Copy the field and its value.  Nested objects, lists and sets are copied as well, so nothing that can be
+     * changed is shared with this field.
+     * @return
+     */
+    public Field<T> deepCopy();
+
     /**
      * True if field value must be unique within Entity Collection.
      * @return
@@ -124,6 +124,28 @@ public class EntityTest
     }
 
 
+    @Test
+    public void copyUnderNewName() {
+
+        StringField name = new StringField( "name", "test", true );
+        ByteArrayField bytes = new ByteArrayField( "bytes", new byte[] { 1 }, String.class );
+
+        Field<String> copy = name.copy( "alias" );
+
+        assertEquals( "name", name.getName() );
+        assertEquals( "alias", copy.getName() );
+        assertEquals( "test", copy.getValue() );
+        assertTrue( copy.isUnique() );
+        assertSame( StringField.class, copy.getClass() );
+
+        ByteArrayField bytesCopy = ( ByteArrayField ) bytes.copy( "alias" );
+
+        assertEquals( "bytes", bytes.getName() );
+        assertSame( bytes.getValue(), bytesCopy.getValue() );
+        assertSame( bytes.getClassinfo(), bytesCopy.getClassinfo() );
+    }
+
+
     @Test( expected = NullPointerException.class )
     public void idRequired()
     {
@@ -22,6 +22,8 @@ package org.apache.usergrid.persistence.index;
 
 import java.util.UUID;
 
+import com.google.common.base.Optional;
+
 import org.apache.usergrid.persistence.core.entity.EntityVersion;
 import org.apache.usergrid.persistence.model.entity.Id;
 
@@ -36,6 +38,7 @@ public class CandidateResult implements EntityVersion {
     private final String directEntityName;
     private final UUID directEntityUUID;
     private final String directEntityType;
+    private SortPosition sortPosition;
 
     public CandidateResult( Id entityId, UUID entityVersion, String docId ) {
         this.entityId = entityId;
@@ -53,6 +56,7 @@ public class CandidateResult implements EntityVersion {
         this.directEntityName = sourceResult.directEntityName;
         this.directEntityUUID = sourceResult.directEntityUUID;
         this.directEntityType = sourceResult.directEntityType;
+        this.sortPosition = sourceResult.sortPosition;
     }
 
     // direct query by name before resolution
@@ -116,6 +120,17 @@ public class CandidateResult implements EntityVersion {
         this.entityId = entityId;
     }
 
+    /**
+     * The position of this result in the search, present only when the search can be resumed by seeking past it
+     */
+    public Optional<SortPosition> getSortPosition() {
+        return Optional.fromNullable( sortPosition );
+    }
+
+    public void setSortPosition( final SortPosition sortPosition ) {
+        this.sortPosition = sortPosition;
+    }
+
 
     @Override
     public boolean equals( final Object o ) {
@@ -26,6 +26,8 @@ import org.apache.usergrid.persistence.index.query.ParsedQuery;
 import org.apache.usergrid.persistence.model.entity.Id;
 import rx.Observable;
 
+import com.google.common.base.Optional;
+
 import java.util.Map;
 
 
@@ -160,6 +162,30 @@ public interface EntityIndex extends CPManager {
                             final int limit, final int offset, final Map<String, Class> fieldsWithType,
                             final boolean analyzeOnly, final boolean returnQuery);
 
+    /**
+     * Search on every document in the specified search edge.  Also search by the types if specified.  When a sort
+     * position is given and the query uses the default sort, the search seeks to the first document after that
+     * position and the offset is ignored.  Otherwise the offset is used.  Results of a default sorted query carry
+     * their sort position, for the next page, even on the first page; the offset only overloads don't.
+     *
+     * @param searchEdge        The edge to search on
+     * @param searchTypes       The search types to search
+     * @param parsedQuery       The parsed query to execute
+     * @param limit             The limit of values to return
+     * @param offset            The offset to query on
+     * @param searchAfter       The position of the last document returned by the previous page, if any
+     * @param fieldsWithType    An optional param that allows the caller to provide schema related info which might
+     *                          relate to data in the query, such as sort predicate types
+     * @param analyzeOnly       This optional param will instruct the query processing to only analyze the query and
+     *                          provide info but not actually execute the query.
+     * @param returnQuery       This optional param will cause the index query to be returned instead of run.
+     * @return
+     */
+    CandidateResults search(final SearchEdge searchEdge, final SearchTypes searchTypes, final ParsedQuery parsedQuery,
+                            final int limit, final int offset, final Optional<SortPosition> searchAfter,
+                            final Map<String, Class> fieldsWithType, final boolean analyzeOnly,
+                            final boolean returnQuery);
+
 
     /**
      * Same as search, just iterates all documents that match the index edge exactly.
@@ -50,6 +50,14 @@ public interface IndexFig extends GuicyFig {
 
     String INDEX_BATCH_SIZE = "elasticsearch.batch_size";
 
+    String INDEX_BATCH_MAX_BYTES = "elasticsearch.batch_max_bytes";
+
+    String INDEX_BATCH_MAX_CONCURRENCY = "elasticsearch.batch_max_concurrency";
+
+    String INDEX_BATCH_RETRY_ATTEMPTS = "elasticsearch.batch_retry_attempts";
+
+    String INDEX_BATCH_RETRY_BACKOFF = "elasticsearch.batch_retry_backoff_ms";
+
     String INDEX_WRITE_CONSISTENCY_LEVEL = "elasticsearch.write_consistency_level";
 
     String INDEX_FLUSH_WORKER_COUNT = "index.flush.workers";
@@ -74,6 +82,10 @@ public interface IndexFig extends GuicyFig {
 
     String DIRECT_QUERY_MAX_ITEMS = "direct.query.max.items";
 
+    String QUERY_PLAN_CACHE_ENABLED = "usergrid.query.plan_cache.enabled";
+
+    String QUERY_PLAN_CACHE_SIZE = "usergrid.query.plan_cache.size";
+
 
 
 
@@ -177,6 +189,37 @@ public interface IndexFig extends GuicyFig {
     @Key( INDEX_BATCH_SIZE )
     int getIndexBatchSize();
 
+    /**
+     * The max estimated size in bytes of a batched index write request sent to Elasticsearch.
+     */
+    @Default( "5242880" )
+    @Key( INDEX_BATCH_MAX_BYTES )
+    long getIndexBatchMaxBytes();
+
+    /**
+     * The max number of batched index write requests in flight to Elasticsearch.  The actual limit is halved every
+     * time Elasticsearch rejects requests and recovers gradually afterwards.
+     */
+    @Default( "16" )
+    @Key( INDEX_BATCH_MAX_CONCURRENCY )
+    int getIndexBatchMaxConcurrency();
+
+    /**
+     * The number of times the failed items of a batched index write request are retried before the whole
+     * message is failed back to the queue.
+     */
+    @Default( "3" )
+    @Key( INDEX_BATCH_RETRY_ATTEMPTS )
+    int getIndexBatchRetryAttempts();
+
+    /**
+     * The initial wait before retrying failed items, doubled on each attempt up to the queue error sleep time.
+     * (in milliseconds)
+     */
+    @Default( "100" )
+    @Key( INDEX_BATCH_RETRY_BACKOFF )
+    long getIndexBatchRetryBackoff();
+
     /**
      * The write consistency level for writing into the Elasticsearch index.  The
      * default value is 'one', and you can configure 'all' and 'quorum'.
@@ -244,4 +287,18 @@ public interface IndexFig extends GuicyFig {
     @Default("1000")
     @Key( DIRECT_QUERY_MAX_ITEMS )
     int directQueryMaxItems();
+
+    /**
+     * Cache parsed queries by their shape, so queries that differ only in their literal values are parsed once
+     */
+    @Default("true")
+    @Key( QUERY_PLAN_CACHE_ENABLED )
+    boolean getQueryPlanCacheEnabled();
+
+    /**
+     * The max number of query shapes to keep parsed
+     */
+    @Default("1000")
+    @Key( QUERY_PLAN_CACHE_SIZE )
+    int getQueryPlanCacheSize();
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Limits the number of concurrent requests.  The limit is halved every time a request is rejected and grows by one
+ * with every request that is not, up to the max.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int maxLimit;
+
+    private int limit;
+    private int inFlight;
+
+
+    public AdaptiveConcurrencyLimit( final int maxLimit ) {
+        Preconditions.checkArgument( maxLimit > 0, "maxLimit must be greater than 0" );
+
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit;
+    }
+
+
+    /**
+     * Block until a request may be sent
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while ( inFlight >= limit ) {
+            wait();
+        }
+
+        inFlight++;
+    }
+
+
+    /**
+     * Signal a request acquired with {@link #acquire()} has completed
+     *
+     * @param rejected True if the request was rejected because the server is overloaded
+     */
+    public synchronized void release( final boolean rejected ) {
+        inFlight--;
+
+        if ( rejected ) {
+            limit = Math.max( 1, limit / 2 );
+        }
+        else if ( limit < maxLimit ) {
+            limit++;
+        }
+
+        notifyAll();
+    }
+
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.usergrid.persistence.index.impl;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.*;
+import com.google.common.base.Optional;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
@@ -40,7 +41,7 @@ import org.apache.usergrid.persistence.index.exceptions.*;
 import org.apache.usergrid.persistence.index.migration.IndexDataVersions;
 import org.apache.usergrid.persistence.index.query.Identifier;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
-import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
 import org.apache.usergrid.persistence.index.query.SortPredicate;
 import org.apache.usergrid.persistence.index.query.tree.QueryVisitor;
 import org.apache.usergrid.persistence.index.utils.IndexValidationUtils;
@@ -101,6 +102,7 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
     private final IndexAlias alias;
     private final IndexFig indexFig;
     private final IndexLocationStrategy indexLocationStrategy;
+    private final QueryPlanCache queryPlanCache;
     private final Timer addTimer;
     private final Timer updateAliasTimer;
     private final Timer searchTimer;
@@ -144,11 +146,13 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
                               final IndexCache indexCache,
                               final IndexFig indexFig,
                               final MetricsFactory metricsFactory,
+                              final QueryPlanCache queryPlanCache,
                               final IndexLocationStrategy indexLocationStrategy
     ) {
 
         this.indexFig = indexFig;
         this.indexLocationStrategy = indexLocationStrategy;
+        this.queryPlanCache = queryPlanCache;
         this.failureMonitor = new FailureMonitorImpl( indexFig, provider );
         this.esProvider = provider;
         this.alias = indexLocationStrategy.getAlias();
@@ -436,7 +440,7 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
                                     final int limit, final int offset, final Map<String, Class> fieldsWithType,
                                     final boolean analyzeOnly, final boolean returnQuery ) {
         Preconditions.checkNotNull( query, "query cannot be null" );
-        final ParsedQuery parsedQuery = ParsedQueryBuilder.build(query);
+        final ParsedQuery parsedQuery = queryPlanCache.getParsedQuery(query);
 
         return search(searchEdge, searchTypes, parsedQuery, limit, offset, fieldsWithType, analyzeOnly, returnQuery);
     }
@@ -444,6 +448,27 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
     public CandidateResults search( final SearchEdge searchEdge, final SearchTypes searchTypes, final ParsedQuery parsedQuery,
                                     final int limit, final int offset, final Map<String, Class> fieldsWithType,
                                     final boolean analyzeOnly, final boolean returnQuery ) {
+        return search( searchEdge, searchTypes, parsedQuery, limit, offset, Optional.absent(), false, fieldsWithType,
+            analyzeOnly, returnQuery );
+    }
+
+    public CandidateResults search( final SearchEdge searchEdge, final SearchTypes searchTypes, final ParsedQuery parsedQuery,
+                                    final int limit, final int offset, final Optional<SortPosition> searchAfter,
+                                    final Map<String, Class> fieldsWithType, final boolean analyzeOnly,
+                                    final boolean returnQuery ) {
+        return search( searchEdge, searchTypes, parsedQuery, limit, offset, searchAfter, true, fieldsWithType,
+            analyzeOnly, returnQuery );
+    }
+
+    /**
+     * Search paged by position when pageByPosition is set, the results then carry their sort positions.  Otherwise
+     * the search is paged by offset only and skips the tie breaking sorts a position needs
+     */
+    private CandidateResults search( final SearchEdge searchEdge, final SearchTypes searchTypes,
+                                     final ParsedQuery parsedQuery, final int limit, final int offset,
+                                     final Optional<SortPosition> searchAfter, final boolean pageByPosition,
+                                     final Map<String, Class> fieldsWithType, final boolean analyzeOnly,
+                                     final boolean returnQuery ) {
 
         IndexValidationUtils.validateSearchEdge(searchEdge);
         Preconditions.checkNotNull(searchTypes, "searchTypes cannot be null");
@@ -504,10 +529,16 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
             throw new QueryAnalyzerException(violations, parsedQuery.getOriginalQuery(), applicationScope.getApplication().getUuid());
         }
 
-        final SearchRequestBuilder srb = searchRequest
-            .getBuilder( searchEdge, searchTypes, visitor, limit, offset, parsedQuery.getSortPredicates(), fieldsWithType )
+        final SearchRequestBuilder srb = ( pageByPosition
+            ? searchRequest.getBuilder( searchEdge, searchTypes, visitor, limit, offset, searchAfter,
+                parsedQuery.getSortPredicates(), fieldsWithType )
+            : searchRequest.getBuilder( searchEdge, searchTypes, visitor, limit, offset,
+                parsedQuery.getSortPredicates(), fieldsWithType ) )
             .setTimeout(TimeValue.timeValueMillis(queryTimeout));
 
+        final boolean seekable = pageByPosition
+            && SearchRequestBuilderStrategy.isSeekable( parsedQuery.getSortPredicates(), visitor.getGeoSorts() );
+
         if ( logger.isDebugEnabled() ) {
             logger.debug( "Searching index (read alias): {}\n  nodeId: {}, edgeType: {},  \n type: {}\n   query: {} ",
                 this.alias.getReadAlias(), searchEdge.getNodeId(), searchEdge.getEdgeName(),
@@ -536,7 +567,7 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
         failureMonitor.success();
 
-        return parseResults( searchResponse, parsedQuery, limit, offset, hasGeoSortPredicates);
+        return parseResults( searchResponse, parsedQuery, limit, offset, hasGeoSortPredicates, seekable );
     }
 
 
@@ -661,7 +692,8 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
      * Parse the results and return the candidate results
      */
     private CandidateResults parseResults( final SearchResponse searchResponse, final ParsedQuery query,
-                                           final int limit, final int from, boolean hasGeoSortPredicates ) {
+                                           final int limit, final int from, boolean hasGeoSortPredicates,
+                                           final boolean seekable ) {
 
         final SearchHits searchHits = searchResponse.getHits();
         final SearchHit[] hits = searchHits.getHits();
@@ -676,6 +708,14 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
             CandidateResult candidateResult;
 
             candidateResult =  parseIndexDocId( hit, hasGeoSortPredicates );
+
+            //the first sort value is the edge timestamp, the id and version tie breakers are in the doc id
+            if ( seekable ) {
+                candidateResult.setSortPosition(
+                    new SortPosition( ( ( Number ) hit.sortValues()[0] ).longValue(),
+                        IndexingUtils.entityId( candidateResult.getId() ), candidateResult.getVersion().toString() ) );
+            }
+
             candidates.add( candidateResult );
         }
 
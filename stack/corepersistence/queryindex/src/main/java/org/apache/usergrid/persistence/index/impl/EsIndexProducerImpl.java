@@ -18,14 +18,18 @@
 package org.apache.usergrid.persistence.index.impl;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.Histogram;
 
 
 import org.apache.usergrid.persistence.index.EntityIndexBatch;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -41,6 +45,7 @@ import org.apache.usergrid.persistence.index.IndexFig;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -49,6 +54,10 @@ import rx.Observable;
 
 /**
  * Consumer for IndexOperationMessages
+ *
+ * Operations are sent in bulk requests bounded by both count and size.  When some items of a bulk request fail
+ * with a retryable status only those items are retried, with backoff.  The number of concurrent bulk requests
+ * adapts to how often Elasticsearch rejects them.
  */
 @Singleton
 public class EsIndexProducerImpl implements IndexProducer {
@@ -58,9 +67,16 @@ public class EsIndexProducerImpl implements IndexProducer {
     private final FailureMonitorImpl failureMonitor;
     private final Client client;
     private final IndexFig indexFig;
+    private final MetricsFactory metricsFactory;
     private final Counter indexSizeCounter;
     private final Histogram roundtripTimer;
     private final Timer indexTimer;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    /**
+     * Success, retry, reject and failure counters per index
+     */
+    private final Map<String, Counter> indexCounters = new ConcurrentHashMap<>();
 
 
     private AtomicLong inFlight = new AtomicLong();
@@ -82,9 +98,12 @@ public class EsIndexProducerImpl implements IndexProducer {
         this.failureMonitor = new FailureMonitorImpl(config, provider);
         this.client = provider.getClient();
         this.indexFig = indexFig;
+        this.metricsFactory = metricsFactory;
 
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit( indexFig.getIndexBatchMaxConcurrency() );
 
-        //batch up sets of some size and send them in batch
+        metricsFactory.addGauge( EsIndexProducerImpl.class, "index.bulk.concurrency_limit",
+            () -> concurrencyLimit.getLimit() );
 
     }
 
@@ -122,40 +141,43 @@ public class EsIndexProducerImpl implements IndexProducer {
         indexSizeCounter.dec(indexOperationSetSize);
         indexSizeCounter.dec(deIndexOperationSetSize);
 
-        final Observable<IndexOperation> index = Observable.from(batch.getIndexRequests());
-        final Observable<DeIndexOperation> deIndex = Observable.from(batch.getDeIndexRequests());
-
         //TODO: look at indexing ordering
-        final Observable<BatchOperation> batchOps = Observable.merge(index, deIndex);
-
-        //buffer into the max size we can send ES and fire them all off until we're completed
-        final Observable<BulkRequestBuilder> requests = batchOps
-            .buffer(250, TimeUnit.MILLISECONDS, indexFig.getIndexBatchSize())
-
-            //flatten the buffer into a single batch execution
-            .flatMap(individualOps -> Observable.from(individualOps)
-                //collect them
-                .collect(() -> initRequest(), (bulkRequestBuilder, batchOperation) -> {
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("adding operation {} to bulkRequestBuilder {}", batchOperation, bulkRequestBuilder);
-                    }
-                    batchOperation.doOperation(client, bulkRequestBuilder);
-                }))
-                //write them
-            .doOnNext(bulkRequestBuilder -> sendRequest(bulkRequestBuilder));
-
-
-        //now that we've processed them all, ack the futures after our last batch comes through
-        final Observable<IndexOperationMessage> processedIndexOperations =
-            requests.flatMap(lastRequest -> {
-                if (lastRequest != null) {
-                    return Observable.just(batch);
-                } else {
-                    return Observable.empty();
+        final Iterable<BatchOperation> batchOps = Iterables.concat( indexOperationSet, deIndexOperationSet );
+
+        final Observable<IndexOperationMessage> processedIndexOperations = Observable.defer( () -> {
+
+            final StringBuilder errors = new StringBuilder();
+
+            BulkRequestBuilder bulkRequest = initRequest();
+
+            //fill each request up to the max count or size we can send ES
+            for ( final BatchOperation batchOperation : batchOps ) {
+
+                if ( logger.isTraceEnabled() ) {
+                    logger.trace( "adding operation {} to bulkRequestBuilder {}", batchOperation, bulkRequest );
                 }
-            });
 
-        //subscribe to the operations that generate requests on a new thread so that we can execute them quickly
+                batchOperation.doOperation( client, bulkRequest );
+
+                if ( bulkRequest.numberOfActions() >= indexFig.getIndexBatchSize()
+                    || bulkRequest.request().estimatedSizeInBytes() >= indexFig.getIndexBatchMaxBytes() ) {
+
+                    sendRequest( bulkRequest, errors );
+                    bulkRequest = initRequest();
+                }
+            }
+
+            sendRequest( bulkRequest, errors );
+
+            // every request has been sent, the message is retried from the queue if anything could not be indexed
+            if ( errors.length() > 0 ) {
+                throw new RuntimeException(
+                    "Error during processing of bulk index operations one of the responses failed. \n" + errors );
+            }
+
+            return Observable.just( batch );
+        } );
+
         //mark this as done
         return processedIndexOperations.doOnNext(processedIndexOp -> {
             roundtripTimer.update(System.currentTimeMillis() - processedIndexOp.getCreationTime());
@@ -163,8 +185,6 @@ public class EsIndexProducerImpl implements IndexProducer {
     }
 
 
-    /*
-
     /**
      * initialize request
      */
@@ -177,64 +197,142 @@ public class EsIndexProducerImpl implements IndexProducer {
 
 
     /**
-     * send bulk request
+     * send bulk request, retrying only the items that failed with a retryable status
+     *
+     * @param errors Failures of items that could not be indexed are appended here
      */
-    private void sendRequest( BulkRequestBuilder bulkRequest ) {
+    private void sendRequest( BulkRequestBuilder bulkRequest, final StringBuilder errors ) {
         //nothing to do, we haven't added anything to the index
         if ( bulkRequest.numberOfActions() == 0 ) {
             return;
         }
 
-        final BulkResponse responses;
+        int attempt = 0;
+
+        while ( true ) {
+
+            final List<ActionRequest> requests = bulkRequest.request().requests();
+            final BulkResponse responses = execute( bulkRequest );
+
+            final List<ActionRequest> retries = new ArrayList<>();
+
+            for ( BulkItemResponse response : responses ) {
+
+                if ( !response.isFailed() ) {
+                    getIndexCounter( response.getIndex(), "success" ).inc();
+                    continue;
+                }
+
+                final RestStatus status = response.getFailure() == null ? null : response.getFailure().getStatus();
+
+                if ( status == RestStatus.TOO_MANY_REQUESTS ) {
+                    getIndexCounter( response.getIndex(), "reject" ).inc();
+                }
+
+                if ( isRetryable( status ) && attempt < indexFig.getIndexBatchRetryAttempts() ) {
+                    getIndexCounter( response.getIndex(), "retry" ).inc();
+                    retries.add( requests.get( response.getItemId() ) );
+                    continue;
+                }
+
+                // log error and continue processing
+                logger.error( "Unable to index id={}, type={}, index={}, failureMessage={} ", response.getId(),
+                    response.getType(), response.getIndex(),  response.getFailureMessage() );
+
+                getIndexCounter( response.getIndex(), "failure" ).inc();
+
+                errors.append( response.getFailureMessage() ).append( "\n" );
+            }
+
+            if ( retries.isEmpty() ) {
+                return;
+            }
+
+            attempt++;
+
+            final long backoff = Math.min( indexFig.getSleepTimeForQueueError(),
+                indexFig.getIndexBatchRetryBackoff() << Math.min( attempt - 1, 20 ) );
+
+            logger.warn( "Retrying {} failed bulk item(s) in {} ms, attempt {}", retries.size(), backoff, attempt );
+
+            try {
+                Thread.sleep( backoff );
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while retrying bulk index operations", e );
+            }
+
+            bulkRequest = initRequest();
+            bulkRequest.request().add( retries );
+        }
+    }
+
 
+    /**
+     * Execute the request within the concurrency limit
+     */
+    private BulkResponse execute( final BulkRequestBuilder bulkRequest ) {
+
+        try {
+            concurrencyLimit.acquire();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted waiting to send bulk index operations", e );
+        }
+
+        boolean rejected = true;
 
         final Timer.Context timer = indexTimer.time();
 
         try {
-            responses = bulkRequest.execute().actionGet( );
+            final BulkResponse responses = bulkRequest.execute().actionGet( );
+
+            rejected = hasRejections( responses );
+
+            failureMonitor.success();
+
+            return responses;
+
         } catch ( Throwable t ) {
             logger.error( "Unable to communicate with elasticsearch", t );
             failureMonitor.fail( "Unable to execute batch", t );
             throw t;
         }finally{
             timer.stop();
+            concurrencyLimit.release( rejected );
         }
+    }
 
-        failureMonitor.success();
 
-        boolean error = false;
+    private static boolean hasRejections( final BulkResponse responses ) {
 
-        final StringBuilder errorString = new StringBuilder(  );
+        if ( !responses.hasFailures() ) {
+            return false;
+        }
 
-        boolean hasTooManyRequests= false;
         for ( BulkItemResponse response : responses ) {
-
-            if ( response.isFailed() ) {
-                // log error and continue processing
-                logger.error( "Unable to index id={}, type={}, index={}, failureMessage={} ", response.getId(),
-                    response.getType(), response.getIndex(),  response.getFailureMessage() );
-                //if index is overloaded on the queue fail.
-                if(response.getFailure()!=null && response.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS){
-                    hasTooManyRequests =true;
-                }
-                error = true;
-
-                errorString.append( response.getFailureMessage() ).append( "\n" );
+            if ( response.isFailed() && response.getFailure() != null
+                && response.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS ) {
+                return true;
             }
         }
 
-        if ( error ) {
-            if(hasTooManyRequests){
-                try{
-                    logger.warn("Encountered Queue Capacity Exception from ElasticSearch slowing by {}",
-                        indexFig.getSleepTimeForQueueError() );
-                    Thread.sleep(indexFig.getSleepTimeForQueueError());
-                }catch (Exception e){
-                    //move on
-                }
-            }
-            throw new RuntimeException(
-                "Error during processing of bulk index operations one of the responses failed. \n" + errorString);
-        }
+        return false;
+    }
+
+
+    /**
+     * Overloaded or temporarily unavailable, the same item may succeed later
+     */
+    private static boolean isRetryable( final RestStatus status ) {
+        return status == RestStatus.TOO_MANY_REQUESTS || status == RestStatus.SERVICE_UNAVAILABLE;
+    }
+
+
+    private Counter getIndexCounter( final String index, final String outcome ) {
+        return indexCounters.computeIfAbsent( index + "." + outcome,
+            name -> metricsFactory.getCounter( EsIndexProducerImpl.class, "index." + name ) );
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.exceptions.QueryParseException;
+import org.apache.usergrid.persistence.index.query.ParsedQuery;
+import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
+import org.apache.usergrid.persistence.index.query.tree.CpQueryFilterLexer;
+import org.apache.usergrid.persistence.index.query.tree.Operand;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Caches parsed queries by shape.  The shape of a query is its token stream with the literal values replaced by their
+ * token type.  On a hit we only run the lexer, then copy the cached tree and bind the literals of the new query into
+ * the copy.
+ */
+@Singleton
+public class QueryPlanCacheImpl implements QueryPlanCache {
+
+
+    private static final Map<Class<?>, Constructor<?>> NODE_CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final Cache<String, QueryTemplate> templates;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Timer parseTimer;
+    private final Timer bindTimer;
+
+
+    @Inject
+    public QueryPlanCacheImpl( final IndexFig indexFig, final MetricsFactory metricsFactory ) {
+        this.enabled = indexFig.getQueryPlanCacheEnabled();
+        this.templates = CacheBuilder.newBuilder().maximumSize( indexFig.getQueryPlanCacheSize() ).build();
+
+        this.hitMeter = metricsFactory.getMeter( QueryPlanCacheImpl.class, "query.plan.cache.hit" );
+        this.missMeter = metricsFactory.getMeter( QueryPlanCacheImpl.class, "query.plan.cache.miss" );
+        this.parseTimer = metricsFactory.getTimer( QueryPlanCacheImpl.class, "query.plan.parse" );
+        this.bindTimer = metricsFactory.getTimer( QueryPlanCacheImpl.class, "query.plan.bind" );
+    }
+
+
+    @Override
+    public ParsedQuery getParsedQuery( final String ql ) throws QueryParseException {
+
+        if ( StringUtils.isEmpty( ql ) ) {
+            return null;
+        }
+
+        if ( !enabled ) {
+            return parse( ql );
+        }
+
+        final String outputQuery = ParsedQueryBuilder.normalize( ql );
+
+        //lex the query to get the shape and literals, lexer errors are thrown here as they are when parsing
+        final ANTLRStringStream in = new ANTLRStringStream( outputQuery );
+        final CommonTokenStream tokenStream = new CommonTokenStream( new CpQueryFilterLexer( in ) );
+        tokenStream.fill();
+
+        final StringBuilder shape = new StringBuilder();
+        final List<Token> literals = new ArrayList<>();
+        final Map<Integer, Integer> literalOrdinals = new HashMap<>();
+
+        for ( final Object element : tokenStream.getTokens() ) {
+            final Token token = ( Token ) element;
+
+            if ( token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF ) {
+                continue;
+            }
+
+            if ( isLiteral( token ) ) {
+                literalOrdinals.put( token.getTokenIndex(), literals.size() );
+                literals.add( token );
+                shape.append( '?' ).append( token.getType() );
+            }
+            else {
+                shape.append( token.getText() );
+            }
+
+            shape.append( ' ' );
+        }
+
+        final String key = shape.toString();
+
+        final QueryTemplate template = templates.getIfPresent( key );
+
+        if ( template != null ) {
+            hitMeter.mark();
+
+            final Timer.Context timer = bindTimer.time();
+
+            try {
+                return template.bind( literals, ql );
+            }
+            finally {
+                timer.stop();
+            }
+        }
+
+        missMeter.mark();
+
+        //the parser lexes the same output query, so the token indexes of the literals in the tree are the same
+        final ParsedQuery parsedQuery = parse( ql );
+
+        templates.put( key, new QueryTemplate( parsedQuery, literalOrdinals ) );
+
+        return parsedQuery;
+    }
+
+
+    private ParsedQuery parse( final String ql ) {
+        final Timer.Context timer = parseTimer.time();
+
+        try {
+            return ParsedQueryBuilder.build( ql );
+        }
+        finally {
+            timer.stop();
+        }
+    }
+
+
+    /**
+     * Return true if the token is a value in the query, and not part of its shape
+     */
+    private static boolean isLiteral( final Token token ) {
+        switch ( token.getType() ) {
+            case CpQueryFilterLexer.STRING:
+            case CpQueryFilterLexer.LONG:
+            case CpQueryFilterLexer.FLOAT:
+            case CpQueryFilterLexer.UUID:
+            case CpQueryFilterLexer.BOOLEAN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * A parsed query, with the position of each of its literals in the query
+     */
+    private static final class QueryTemplate {
+
+        private final ParsedQuery parsedQuery;
+        private final Map<Integer, Integer> literalOrdinals;
+
+
+        private QueryTemplate( final ParsedQuery parsedQuery, final Map<Integer, Integer> literalOrdinals ) {
+            this.parsedQuery = parsedQuery;
+            this.literalOrdinals = literalOrdinals;
+        }
+
+
+        /**
+         * Copy the parsed query with the literals of a query of the same shape
+         */
+        private ParsedQuery bind( final List<Token> literals, final String ql ) {
+
+            final Operand rootOperand = parsedQuery.getRootOperand();
+
+            final ParsedQuery bound =
+                parsedQuery.copy( rootOperand == null ? null : ( Operand ) copy( rootOperand, literals ) );
+
+            bound.setOriginalQuery( ql );
+
+            return bound;
+        }
+
+
+        /**
+         * Copy the node and its children.  Every node of our tree is created by the parser from a single token, so we
+         * create the copy the same way, from the token at the same position in the new query
+         */
+        private CommonTree copy( final CommonTree node, final List<Token> literals ) {
+
+            final Token token = node.getToken();
+            final Integer ordinal = literalOrdinals.get( token.getTokenIndex() );
+
+            final CommonTree copy = newNode( node.getClass(), ordinal == null ? token : literals.get( ordinal ) );
+
+            for ( int i = 0; i < node.getChildCount(); i++ ) {
+                copy.addChild( copy( ( CommonTree ) node.getChild( i ), literals ) );
+            }
+
+            return copy;
+        }
+
+
+        private static CommonTree newNode( final Class<?> nodeClass, final Token token ) {
+            try {
+                return ( CommonTree ) NODE_CONSTRUCTORS.computeIfAbsent( nodeClass, c -> {
+                    try {
+                        final Constructor<?> constructor = c.getDeclaredConstructor( Token.class );
+                        constructor.setAccessible( true );
+                        return constructor;
+                    }
+                    catch ( NoSuchMethodException e ) {
+                        throw new IllegalStateException( "Query node " + c + " cannot be created from a token", e );
+                    }
+                } ).newInstance( token );
+            }
+            catch ( ReflectiveOperationException e ) {
+                throw new IllegalStateException( "Unable to create query node " + nodeClass, e );
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.index.SearchEdge;
 import org.apache.usergrid.persistence.index.SearchTypes;
+import org.apache.usergrid.persistence.index.SortPosition;
 import org.apache.usergrid.persistence.index.exceptions.IndexException;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
 import org.apache.usergrid.persistence.index.query.SortPredicate;
@@ -79,12 +80,39 @@ public class SearchRequestBuilderStrategy {
 
 
     /**
-     * Get the search request builder
+     * Get the search request builder for a search paged by offset.  The default sort is by edge timestamp only, so
+     * documents with the same timestamp are in no particular order
      */
     public SearchRequestBuilder getBuilder( final SearchEdge searchEdge, final SearchTypes searchTypes,
                                             final QueryVisitor visitor, final int limit, final int from,
                                             final List<SortPredicate> sortPredicates,
                                             final Map<String, Class> fieldsWithType ) {
+        return getBuilder( searchEdge, searchTypes, visitor, limit, from, Optional.absent(), false, sortPredicates,
+            fieldsWithType );
+    }
+
+
+    /**
+     * Get the search request builder for a search paged by position.  If the search is sorted by the default sort
+     * and a position is present, we seek past the position with a filter on the sort values instead of skipping from
+     * documents on every shard.  The default sort breaks ties on the entity id and version even without a position,
+     * since the last document of the first page is the position of the second
+     */
+    public SearchRequestBuilder getBuilder( final SearchEdge searchEdge, final SearchTypes searchTypes,
+                                            final QueryVisitor visitor, final int limit, final int from,
+                                            final Optional<SortPosition> searchAfter,
+                                            final List<SortPredicate> sortPredicates,
+                                            final Map<String, Class> fieldsWithType ) {
+        return getBuilder( searchEdge, searchTypes, visitor, limit, from, searchAfter, true, sortPredicates,
+            fieldsWithType );
+    }
+
+
+    private SearchRequestBuilder getBuilder( final SearchEdge searchEdge, final SearchTypes searchTypes,
+                                             final QueryVisitor visitor, final int limit, final int from,
+                                             final Optional<SortPosition> searchAfter, final boolean pageByPosition,
+                                             final List<SortPredicate> sortPredicates,
+                                             final Map<String, Class> fieldsWithType ) {
 
         Preconditions
             .checkArgument( limit <= EntityIndex.MAX_LIMIT, "limit is greater than max " + EntityIndex.MAX_LIMIT );
@@ -102,19 +130,26 @@ public class SearchRequestBuilderStrategy {
             srb.setQuery( queryBuilder.get() );
         }
 
-        srb.setPostFilter( createFilterBuilder( searchEdge, visitor, searchTypes ) );
+        //if we have a geo field, sort by closest to farthest by default
+        final GeoSortFields geoFields = visitor.getGeoSorts();
 
+        final boolean seek = searchAfter.isPresent() && isSeekable( sortPredicates, geoFields );
 
-        srb = srb.setFrom( from ).setSize( limit );
+        final BoolFilterBuilder filterBuilder = createFilterBuilder( searchEdge, visitor, searchTypes );
 
+        if ( seek ) {
+            filterBuilder.must( createSearchAfterFilter( searchAfter.get() ) );
+        }
 
-        //if we have a geo field, sort by closest to farthest by default
-        final GeoSortFields geoFields = visitor.getGeoSorts();
+        srb.setPostFilter( filterBuilder );
+
+
+        srb = srb.setFrom( seek ? 0 : from ).setSize( limit );
 
 
         //no sort predicates, sort by edge time descending, entity id second
         if ( sortPredicates.size() == 0 ) {
-            applyDefaultSortPredicates( srb, geoFields );
+            applyDefaultSortPredicates( srb, geoFields, pageByPosition );
         }
         else {
             applySortPredicates( srb, sortPredicates, geoFields, fieldsWithType );
@@ -128,7 +163,8 @@ public class SearchRequestBuilderStrategy {
     /**
      * Apply our default sort predicate logic
      */
-    private void applyDefaultSortPredicates( final SearchRequestBuilder srb, final GeoSortFields geoFields ) {
+    private void applyDefaultSortPredicates( final SearchRequestBuilder srb, final GeoSortFields geoFields,
+                                             final boolean pageByPosition ) {
         //we have geo fields, sort through them in visit order
         for ( String geoField : geoFields.fields() ) {
 
@@ -141,11 +177,46 @@ public class SearchRequestBuilderStrategy {
         //sort by the edge timestamp
         srb.addSort( SortBuilders.fieldSort( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME ).order( SortOrder.DESC ) );
 
-        // removing secondary sort by entity ID -- takes ES resources and provides no benefit
-        //sort by the entity id if our times are equal
-        //srb.addSort( SortBuilders.fieldSort( IndexingUtils.ENTITY_ID_FIELDNAME ).order( SortOrder.ASC ) );
+        // offset and geo sorted results are paged by offset, so they don't need a unique order
+        if ( !pageByPosition || !geoFields.isEmpty() ) {
+            return;
+        }
+
+        //sort by the entity id and version if our times are equal.  Both are doc values, and a total order is
+        //required to seek past the last document of a page without skipping or repeating any
+        srb.addSort( SortBuilders.fieldSort( IndexingUtils.ENTITY_ID_FIELDNAME ).order( SortOrder.ASC ) );
+        srb.addSort( SortBuilders.fieldSort( IndexingUtils.ENTITY_VERSION_FIELDNAME ).order( SortOrder.ASC ) );
+    }
+
+
+    /**
+     * Return true if results of a search with the sort predicates can be seeked by {@link SortPosition}.  This is
+     * only possible when we apply the default sort of edge timestamp, entity id and version
+     */
+    public static boolean isSeekable( final List<SortPredicate> sortPredicates, final GeoSortFields geoFields ) {
+        return sortPredicates.size() == 0 && geoFields.isEmpty();
+    }
+
+
+    /**
+     * Create a filter matching only documents after the position in the default sort order.  This is
+     * edgeTimestamp < ts OR (edgeTimestamp == ts AND (entityId > id OR (entityId == id AND entityVersion > version)))
+     */
+    private FilterBuilder createSearchAfterFilter( final SortPosition position ) {
+
+        final FilterBuilder sameEntity = FilterBuilders.andFilter(
+            FilterBuilders.termFilter( IndexingUtils.ENTITY_ID_FIELDNAME, position.getEntityId() ),
+            FilterBuilders.rangeFilter( IndexingUtils.ENTITY_VERSION_FIELDNAME ).gt( position.getEntityVersion() ) );
+
+        final FilterBuilder sameTimestamp = FilterBuilders.andFilter(
+            FilterBuilders.termFilter( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME, position.getEdgeTimestamp() ),
+            FilterBuilders.orFilter(
+                FilterBuilders.rangeFilter( IndexingUtils.ENTITY_ID_FIELDNAME ).gt( position.getEntityId() ),
+                sameEntity ) );
 
-        return;
+        return FilterBuilders.orFilter(
+            FilterBuilders.rangeFilter( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME ).lt( position.getEdgeTimestamp() ),
+            sameTimestamp );
     }
 
 
@@ -205,7 +276,7 @@ public class SearchRequestBuilderStrategy {
      * Create our filter builder.  We need to restrict our results on edge search, as well as on types, and any filters
      * that came from the grammar.
      */
-    private FilterBuilder createFilterBuilder( final SearchEdge searchEdge, final QueryVisitor visitor,
+    private BoolFilterBuilder createFilterBuilder( final SearchEdge searchEdge, final QueryVisitor visitor,
                                                final SearchTypes searchTypes ) {
         String context = createContextName( applicationScope, searchEdge );
 
@@ -204,6 +204,24 @@ public class ParsedQuery {
         return rootOperand;
     }
 
+
+    /**
+     * Create a copy of this query with a different root operand.  The selects and sorts are shared with this query,
+     * the original query is set by the caller
+     * @param rootOperand
+     * @return
+     */
+    public ParsedQuery copy( final Operand rootOperand ) {
+        final ParsedQuery copy = new ParsedQuery();
+
+        copy.sortPropertyNames = sortPropertyNames;
+        copy.sortPredicateList = sortPredicateList;
+        copy.fieldMappings = fieldMappings;
+        copy.rootOperand = rootOperand;
+
+        return copy;
+    }
+
     public boolean isGeoQuery(){
         return getOriginalQuery().contains("location") && getOriginalQuery().contains("within");
     }
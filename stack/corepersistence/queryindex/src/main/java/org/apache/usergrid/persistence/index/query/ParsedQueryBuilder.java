@@ -57,30 +57,7 @@ public class ParsedQueryBuilder {
             logger.trace("Processing raw query: {}", ql);
         }
 
-        final String trimmedLowercaseQuery = ql.trim().toLowerCase();
-
-
-        //the output query after post processing
-        final String outputQuery;
-
-        //it doesn't start with select, rewrite it to be a correct query grammar
-        if ( !trimmedLowercaseQuery.startsWith( "select" ) ) {
-
-            //just an order by, add the select
-            //just starts with a where, add the select
-            if ( trimmedLowercaseQuery.startsWith( "order by" ) || trimmedLowercaseQuery.startsWith( "where" )) {
-                outputQuery = "select * " + trimmedLowercaseQuery;
-            }
-
-
-            //junk, bail
-            else {
-               outputQuery = "select * where " + trimmedLowercaseQuery;
-            }
-        }
-        else {
-            outputQuery = trimmedLowercaseQuery;
-        }
+        final String outputQuery = normalize( ql );
 
         ANTLRStringStream in = new ANTLRStringStream( outputQuery );
         CpQueryFilterLexer lexer = new CpQueryFilterLexer( in );
@@ -107,4 +84,37 @@ public class ParsedQueryBuilder {
             throw new QueryParseException( message, e );
         }
     }
+
+
+    /**
+     * Lower case the ql and rewrite it to a query that starts with select, which is what our grammar expects
+     */
+    public static String normalize( final String ql ) {
+        final String trimmedLowercaseQuery = ql.trim().toLowerCase();
+
+
+        //the output query after post processing
+        final String outputQuery;
+
+        //it doesn't start with select, rewrite it to be a correct query grammar
+        if ( !trimmedLowercaseQuery.startsWith( "select" ) ) {
+
+            //just an order by, add the select
+            //just starts with a where, add the select
+            if ( trimmedLowercaseQuery.startsWith( "order by" ) || trimmedLowercaseQuery.startsWith( "where" )) {
+                outputQuery = "select * " + trimmedLowercaseQuery;
+            }
+
+
+            //junk, bail
+            else {
+               outputQuery = "select * where " + trimmedLowercaseQuery;
+            }
+        }
+        else {
+            outputQuery = trimmedLowercaseQuery;
+        }
+
+        return outputQuery;
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.index.query;
+
+
+import org.apache.usergrid.persistence.index.exceptions.QueryParseException;
+
+
+/**
+ * Parses queries, re-using the parse of previous queries with the same shape.  Two queries have the same shape when
+ * they only differ in their literal values
+ */
+public interface QueryPlanCache {
+
+    /**
+     * Get the parsed query for the ql.  Returns null if the ql is empty
+     */
+    ParsedQuery getParsedQuery( final String ql ) throws QueryParseException;
+}
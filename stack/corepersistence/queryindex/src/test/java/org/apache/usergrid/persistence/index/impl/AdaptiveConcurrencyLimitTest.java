@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AdaptiveConcurrencyLimitTest {
+
+
+    @Test
+    public void rejectionsHalveTheLimit() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 8 );
+
+        limit.acquire();
+        limit.release( true );
+        assertEquals( 4, limit.getLimit() );
+
+        limit.acquire();
+        limit.release( true );
+        limit.acquire();
+        limit.release( true );
+        limit.acquire();
+        limit.release( true );
+
+        // never goes below one
+        assertEquals( 1, limit.getLimit() );
+    }
+
+
+    @Test
+    public void successesRecoverUpToTheMax() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 4 );
+
+        limit.acquire();
+        limit.release( true );
+        assertEquals( 2, limit.getLimit() );
+
+        for ( int i = 0; i < 10; i++ ) {
+            limit.acquire();
+            limit.release( false );
+        }
+
+        assertEquals( 4, limit.getLimit() );
+    }
+
+
+    @Test
+    public void acquireBlocksAtTheLimit() throws InterruptedException {
+
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 1 );
+
+        limit.acquire();
+
+        final CountDownLatch acquired = new CountDownLatch( 1 );
+
+        final Thread waiter = new Thread( () -> {
+            try {
+                limit.acquire();
+                acquired.countDown();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        } );
+
+        waiter.start();
+
+        assertFalse( acquired.await( 100, TimeUnit.MILLISECONDS ) );
+
+        limit.release( false );
+
+        assertTrue( acquired.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, limit.getInFlight() );
+    }
+}
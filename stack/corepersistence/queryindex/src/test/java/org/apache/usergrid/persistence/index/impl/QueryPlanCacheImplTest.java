@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import org.antlr.runtime.tree.Tree;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.query.ParsedQuery;
+import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.tree.Equal;
+import org.apache.usergrid.persistence.index.query.tree.LongLiteral;
+import org.apache.usergrid.persistence.index.query.tree.StringLiteral;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class QueryPlanCacheImplTest {
+
+    private Meter hitMeter;
+    private Meter missMeter;
+    private QueryPlanCacheImpl queryPlanCache;
+
+
+    @Before
+    public void setup() {
+        final IndexFig indexFig = mock( IndexFig.class );
+        when( indexFig.getQueryPlanCacheEnabled() ).thenReturn( true );
+        when( indexFig.getQueryPlanCacheSize() ).thenReturn( 100 );
+
+        hitMeter = new Meter();
+        missMeter = new Meter();
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), eq( "query.plan.cache.hit" ) ) ).thenReturn( hitMeter );
+        when( metricsFactory.getMeter( any( Class.class ), eq( "query.plan.cache.miss" ) ) ).thenReturn( missMeter );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+
+        queryPlanCache = new QueryPlanCacheImpl( indexFig, metricsFactory );
+    }
+
+
+    @Test
+    public void sameShapeBindsNewLiterals() {
+
+        queryPlanCache.getParsedQuery( "select * where name = 'fred' and age > 10 order by created desc" );
+
+        final String ql = "select * where name = 'wilma' and age > 35 order by created desc";
+
+        final ParsedQuery parsedQuery = queryPlanCache.getParsedQuery( ql );
+
+        assertEquals( 1, missMeter.getCount() );
+        assertEquals( 1, hitMeter.getCount() );
+
+        assertEquals( ql, parsedQuery.getOriginalQuery() );
+        assertEquals( 1, parsedQuery.getSortPredicates().size() );
+
+        final Tree and = parsedQuery.getRootOperand();
+
+        final Equal equal = ( Equal ) and.getChild( 0 );
+        assertEquals( "name", equal.getProperty().getValue() );
+        assertEquals( "wilma", ( ( StringLiteral ) equal.getLiteral() ).getValue() );
+
+        final Tree greaterThan = and.getChild( 1 );
+        assertEquals( 35L, ( ( LongLiteral ) greaterThan.getChild( 1 ) ).getValue().longValue() );
+
+        assertTreesEqual( ParsedQueryBuilder.build( ql ).getRootOperand(), parsedQuery.getRootOperand() );
+    }
+
+
+    @Test
+    public void whitespaceAndCaseShareShape() {
+
+        queryPlanCache.getParsedQuery( "where  name='fred'" );
+
+        final ParsedQuery parsedQuery = queryPlanCache.getParsedQuery( "WHERE name = 'barney'" );
+
+        assertEquals( 1, hitMeter.getCount() );
+        assertEquals( "barney", ( ( Equal ) parsedQuery.getRootOperand() ).getLiteral().getValue() );
+    }
+
+
+    @Test
+    public void differentLiteralTypesDoNotShareShape() {
+
+        queryPlanCache.getParsedQuery( "where age = 10" );
+        queryPlanCache.getParsedQuery( "where age = 10.5" );
+        queryPlanCache.getParsedQuery( "where age = '10'" );
+        queryPlanCache.getParsedQuery( "where size = 10" );
+
+        assertEquals( 4, missMeter.getCount() );
+        assertEquals( 0, hitMeter.getCount() );
+    }
+
+
+    @Test
+    public void locationQueryBindsNewLiterals() {
+
+        queryPlanCache.getParsedQuery( "select * where location within 100 of 37.776753, -122.407846" );
+
+        final String ql = "select * where location within 50 of 40.7, -74.0";
+
+        final ParsedQuery parsedQuery = queryPlanCache.getParsedQuery( ql );
+
+        assertEquals( 1, hitMeter.getCount() );
+        assertTreesEqual( ParsedQueryBuilder.build( ql ).getRootOperand(), parsedQuery.getRootOperand() );
+    }
+
+
+    @Test
+    public void emptyQueryIsNull() {
+        assertNull( queryPlanCache.getParsedQuery( "" ) );
+        assertNull( queryPlanCache.getParsedQuery( null ) );
+    }
+
+
+    /**
+     * Both trees must have the same node types and text
+     */
+    private void assertTreesEqual( final Tree expected, final Tree actual ) {
+        assertSame( expected.getClass(), actual.getClass() );
+        assertEquals( expected.getText(), actual.getText() );
+        assertEquals( expected.getChildCount(), actual.getChildCount() );
+
+        for ( int i = 0; i < expected.getChildCount(); i++ ) {
+            assertTrue( actual.getChild( i ).getParent() == actual );
+            assertTreesEqual( expected.getChild( i ), actual.getChild( i ) );
+        }
+    }
+}
@@ -34,6 +34,11 @@ public interface MetricsService {
     String TIMEOUT_TIME     = "qakka.timeout.time";
     String REFRESH_TIME     = "qakka.refresh.time";
     String ALLOCATE_TIME    = "qakka.allocate.time";
+    String AUDIT_FLUSH_TIME = "qakka.audit.flush.time";
+    String AUDIT_WRITTEN    = "qakka.audit.written";
+    String AUDIT_SAMPLED    = "qakka.audit.sampled";
+    String AUDIT_DROPPED    = "qakka.audit.dropped";
+    String AUDIT_FAILED     = "qakka.audit.failed";
 
     MetricRegistry getMetricRegistry();
 }
@@ -48,6 +48,8 @@ public interface QakkaFig extends GuicyFig, Serializable {
 
     String QUEUE_IN_MEMORY_REFRESH_ASYNC          = "queue.inmemory.cache.async";
 
+    String QUEUE_IN_MEMORY_LEASE_SECONDS          = "queue.inmemory.lease.seconds";
+
     String QUEUE_SEND_MAX_RETRIES                 = "queue.send.max.retries";
 
     String QUEUE_SEND_TIMEOUT                     = "queue.send.timeout.seconds";
@@ -74,6 +76,30 @@ public interface QakkaFig extends GuicyFig, Serializable {
 
     String QUEUE_MAX_TTL                          = "queue.max.ttl";
 
+    String QUEUE_INFLIGHT_BUCKET_MILLIS           = "queue.inflight.bucket.millis";
+
+    String QUEUE_TIMEOUT_BATCH_SIZE               = "queue.timeout.batch.size";
+
+    String QUEUE_MESSAGE_BODY_CACHE_SECONDS       = "queue.message.body.cache.seconds";
+
+    String QUEUE_MESSAGE_BODY_CACHE_MAX_BYTES     = "queue.message.body.cache.max.bytes";
+
+    String QUEUE_AUDIT_ASYNC                      = "queue.audit.async";
+
+    String QUEUE_AUDIT_BUFFER_SIZE                = "queue.audit.buffer.size";
+
+    String QUEUE_AUDIT_BATCH_SIZE                 = "queue.audit.batch.size";
+
+    String QUEUE_AUDIT_FLUSH_MILLIS               = "queue.audit.flush.millis";
+
+    String QUEUE_AUDIT_SAMPLE_SEND                = "queue.audit.sample.send";
+
+    String QUEUE_AUDIT_SAMPLE_GET                 = "queue.audit.sample.get";
+
+    String QUEUE_AUDIT_SAMPLE_ACK                 = "queue.audit.sample.ack";
+
+    String QUEUE_AUDIT_SAMPLE_REQUEUE             = "queue.audit.sample.requeue";
+
 
 
     /** True if Qakka is running standlone */
@@ -173,11 +199,77 @@ public interface QakkaFig extends GuicyFig, Serializable {
     @Default("1209600") // default is two weeks
     int getMaxTtlSeconds();
 
+    /** Buffer available messages in memory, only on the node that holds the lease on the queue */
     @Key(QUEUE_IN_MEMORY)
-    @Default("false") // in memory not ready yet; leave this to false else msgs could be processed more than once
+    @Default("false")
     boolean getInMemoryCache();
 
     @Key(QUEUE_IN_MEMORY_REFRESH_ASYNC)
     @Default("true")
     boolean getInMemoryRefreshAsync();
+
+    /** True to write audit logs from a background thread, false to write them on the calling thread */
+    @Key(QUEUE_AUDIT_ASYNC)
+    @Default("true")
+    boolean getAuditAsync();
+
+    /** Max number of audit logs waiting to be written, logs recorded while the buffer is full are dropped */
+    @Key(QUEUE_AUDIT_BUFFER_SIZE)
+    @Default("10000")
+    int getAuditBufferSize();
+
+    /** Max number of audit logs written per flush */
+    @Key(QUEUE_AUDIT_BATCH_SIZE)
+    @Default("500")
+    int getAuditBatchSize();
+
+    /** Max time to wait for more audit logs before flushing a partial batch */
+    @Key(QUEUE_AUDIT_FLUSH_MILLIS)
+    @Default("100")
+    long getAuditFlushMillis();
+
+    /** Fraction of messages, 0.0 to 1.0, for which successful SEND actions are audited */
+    @Key(QUEUE_AUDIT_SAMPLE_SEND)
+    @Default("1.0")
+    double getAuditSampleSend();
+
+    /** Fraction of messages, 0.0 to 1.0, for which successful GET actions are audited */
+    @Key(QUEUE_AUDIT_SAMPLE_GET)
+    @Default("1.0")
+    double getAuditSampleGet();
+
+    /** Fraction of messages, 0.0 to 1.0, for which successful ACK actions are audited */
+    @Key(QUEUE_AUDIT_SAMPLE_ACK)
+    @Default("1.0")
+    double getAuditSampleAck();
+
+    /** Fraction of messages, 0.0 to 1.0, for which successful REQUEUE actions are audited */
+    @Key(QUEUE_AUDIT_SAMPLE_REQUEUE)
+    @Default("1.0")
+    double getAuditSampleRequeue();
+
+    /** Width of the time buckets used to index inflight messages by the time they went inflight */
+    @Key(QUEUE_INFLIGHT_BUCKET_MILLIS)
+    @Default("10000")
+    long getInflightBucketMillis();
+
+    /** Max number of expired inflight messages read and timed out at once */
+    @Key(QUEUE_TIMEOUT_BATCH_SIZE)
+    @Default("100")
+    int getTimeoutBatchSize();
+
+    /** Time after which a node's lease on a queue expires if not renewed, renewed on every in-memory refresh */
+    @Key(QUEUE_IN_MEMORY_LEASE_SECONDS)
+    @Default("30")
+    int getInMemoryLeaseSeconds();
+
+    /** Time message data stays in the cache after it is sent or read, zero to disable the cache */
+    @Key(QUEUE_MESSAGE_BODY_CACHE_SECONDS)
+    @Default("30")
+    int getMessageBodyCacheSeconds();
+
+    /** Max total size of the message data in the cache */
+    @Key(QUEUE_MESSAGE_BODY_CACHE_MAX_BYTES)
+    @Default("33554432")
+    long getMessageBodyCacheMaxBytes();
 }
@@ -37,6 +37,8 @@ import org.apache.usergrid.persistence.qakka.distributed.impl.QueueSenderRouterP
 import org.apache.usergrid.persistence.qakka.distributed.impl.QueueWriterRouterProducer;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLogSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.impl.AuditLogSerializationImpl;
+import org.apache.usergrid.persistence.qakka.serialization.leases.QueueLeaseSerialization;
+import org.apache.usergrid.persistence.qakka.serialization.leases.impl.QueueLeaseSerializationImpl;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.MessageCounterSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.QueueMessageSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.impl.MessageCounterSerializationImpl;
@@ -95,6 +97,7 @@ public class QakkaModule extends AbstractModule {
 
         bind( TransferLogSerialization.class ).to(    TransferLogSerializationImpl.class );
         bind( AuditLogSerialization.class ).to(       AuditLogSerializationImpl.class );
+        bind( QueueLeaseSerialization.class ).to(     QueueLeaseSerializationImpl.class );
         bind( DistributedQueueService.class ).to(     DistributedQueueServiceImpl.class );
 
         bind( QueueActorRouterProducer.class );
@@ -114,5 +117,6 @@ public class QakkaModule extends AbstractModule {
         migrationBinder.addBinding().to( Key.get( ShardSerialization.class ) );
         migrationBinder.addBinding().to( Key.get( TransferLogSerialization.class ) );
         migrationBinder.addBinding().to( Key.get( MessageCounterSerialization.class ) );
+        migrationBinder.addBinding().to( Key.get( QueueLeaseSerialization.class ) );
     }
 }
@@ -24,6 +24,7 @@ import org.apache.usergrid.persistence.qakka.core.QueueMessage;
 
 import javax.xml.bind.annotation.XmlRootElement;
 import java.util.Collection;
+import java.util.UUID;
 
 
 @XmlRootElement
@@ -33,6 +34,7 @@ public class ApiResponse {
     private Integer count;
     private Collection<Queue> queues;
     private Collection<QueueMessage> queueMessages;
+    private Collection<UUID> failedQueueMessageIds;
 
     public Collection<Queue> getQueues() {
         return queues;
@@ -50,6 +52,14 @@ public class ApiResponse {
         this.queueMessages = queueMessages;
     }
 
+    public Collection<UUID> getFailedQueueMessageIds() {
+        return failedQueueMessageIds;
+    }
+
+    public void setFailedQueueMessageIds(Collection<UUID> failedQueueMessageIds) {
+        this.failedQueueMessageIds = failedQueueMessageIds;
+    }
+
     public Integer getCount() {
         return count;
     }
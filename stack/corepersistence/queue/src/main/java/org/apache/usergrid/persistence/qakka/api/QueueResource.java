@@ -34,6 +34,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -340,6 +341,45 @@ public class QueueResource {
     }
 
 
+    /**
+     * Acknowledge many queue messages in one request.
+     *
+     * @param queueName         Name of queue
+     * @param queueMessageIds   JSON array of queue message IDs to acknowledge
+     * @return Response with the count of acknowledged messages and the IDs of any messages that could not be
+     *         acknowledged, because they are not inflight or because of an error
+     */
+    @POST
+    @Path( "{queueName}/acks" )
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON})
+    public Response ackMessages( @PathParam("queueName") String queueName,
+                                 List<String> queueMessageIds) throws Exception {
+
+        Preconditions.checkArgument( !QakkaUtils.isNullOrEmpty( queueName ), "Queue name is required" );
+
+        if ( queueMessageIds == null || queueMessageIds.isEmpty() ) {
+            throw new IllegalArgumentException( "Queue message UUIDs are required" );
+        }
+
+        List<UUID> messageUuids = new ArrayList<>( queueMessageIds.size() );
+        for ( String queueMessageId : queueMessageIds ) {
+            try {
+                messageUuids.add( UUID.fromString( queueMessageId ) );
+            } catch (Exception e) {
+                throw new IllegalArgumentException( "Invalid queue message UUID " + queueMessageId );
+            }
+        }
+
+        List<UUID> failed = queueMessageManager.ackMessages( queueName, messageUuids );
+
+        ApiResponse apiResponse = new ApiResponse();
+        apiResponse.setCount( messageUuids.size() - failed.size() );
+        apiResponse.setFailedQueueMessageIds( failed );
+        return Response.ok().entity( apiResponse ).build();
+    }
+
+
     @GET
     @Path( "{queueName}/data/{queueMessageId}" )
     public Response getMessageData(
@@ -57,6 +57,15 @@ public interface QueueMessageManager {
      */
     void ackMessage(String queueName, UUID queueMessageId);
 
+    /**
+     * Acknowledge that messages have been received and are no longer inflight, in a single request.
+     *
+     * @param queueName Name of queue
+     * @param queueMessageIds IDs of queue messages
+     * @return IDs of the queue messages that could not be acknowledged, empty if all were acknowledged
+     */
+    List<UUID> ackMessages(String queueName, List<UUID> queueMessageIds);
+
     /**
      * Put message back in the queue.
      *
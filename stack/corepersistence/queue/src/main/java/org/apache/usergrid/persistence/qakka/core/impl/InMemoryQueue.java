@@ -26,76 +26,97 @@ import org.apache.usergrid.persistence.qakka.serialization.queuemessages.Databas
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
+/**
+ * Messages buffered in memory by the node that holds the lease on their queue. Polling is lock-free: actors polling a
+ * queue do not wait on each other, on the refresher adding to the queue or on other queues. Adding a message and
+ * reading the newest id lock only that queue's buffer.
+ */
 @Singleton
 public class InMemoryQueue {
     private static final Logger logger = LoggerFactory.getLogger( InMemoryQueue.class );
 
     /** In-memory queues by name */
-    private final Map<String, Queue<DatabaseQueueMessage>> queuesByName;
+    private final Map<String, QueueBuffer> queuesByName;
+
 
-    /** Newest message seen by in-memory queue */
-    private final Map<String, UUID> newestByQueueName;
+    private static class QueueBuffer {
+
+        final Queue<DatabaseQueueMessage> messages = new ConcurrentLinkedQueue<>();
+
+        /** Kept apart because the size of a ConcurrentLinkedQueue is computed by traversing it */
+        final AtomicInteger size = new AtomicInteger( 0 );
+
+        /** Newest message seen by in-memory queue, guarded by the buffer's lock */
+        UUID newest;
+    }
 
 
     @Inject
     InMemoryQueue(QakkaFig qakkaFig) {
-        queuesByName      = new HashMap<>( qakkaFig.getQueueInMemorySize() );
-        newestByQueueName = new HashMap<>( qakkaFig.getQueueInMemorySize() );
+        queuesByName = new ConcurrentHashMap<>( qakkaFig.getQueueInMemorySize() );
     }
 
-    private Queue<DatabaseQueueMessage> getQueue( String queueName ) {
-        synchronized ( queuesByName ) {
-            if ( !queuesByName.containsKey( queueName )) {
-                queuesByName.put( queueName, new ConcurrentLinkedQueue<>() );
-            }
-            return queuesByName.get( queueName );
-        }
+    private QueueBuffer getQueue( String queueName ) {
+        return queuesByName.computeIfAbsent( queueName, k -> new QueueBuffer() );
     }
 
-    synchronized public void add( String queueName, DatabaseQueueMessage databaseQueueMessage ) {
+    public void add( String queueName, DatabaseQueueMessage databaseQueueMessage ) {
+
+        QueueBuffer queue = getQueue( queueName );
 
-        UUID newest = newestByQueueName.get( queueName );
-        if ( newest == null ) {
-            newest = databaseQueueMessage.getQueueMessageId();
+        UUID queueMessageId = databaseQueueMessage.getQueueMessageId();
 
-        } else {
-            if ( databaseQueueMessage.getQueueMessageId().timestamp() > newest.timestamp() ) {
-                newest = databaseQueueMessage.getQueueMessageId();
-                //logger.debug("New newest for queue {} is {}", queueName, newest.timestamp());
+        synchronized ( queue ) {
+            if ( queue.newest == null || queueMessageId.timestamp() > queue.newest.timestamp() ) {
+                queue.newest = queueMessageId;
             }
+            queue.messages.add( databaseQueueMessage );
+            queue.size.incrementAndGet();
         }
-
-        newestByQueueName.put( queueName, newest );
-        getQueue( queueName ).add( databaseQueueMessage );
     }
 
-    synchronized public UUID getNewest( String queueName ) {
-        if ( getQueue( queueName ).isEmpty() ) {
-            newestByQueueName.remove( queueName );
+    /**
+     * Get the newest message id added to the queue, or null if the queue is empty. Checking for empty and clearing
+     * the newest id is done under the buffer's lock, so a message added meanwhile cannot lose its newest id.
+     */
+    public UUID getNewest( String queueName ) {
+        QueueBuffer queue = getQueue( queueName );
+        synchronized ( queue ) {
+            if ( queue.size.get() == 0 ) {
+                queue.newest = null;
+            }
+            return queue.newest;
         }
-        return newestByQueueName.get( queueName );
     }
 
     public DatabaseQueueMessage poll( String queueName ) {
-        return getQueue( queueName ).poll();
+        QueueBuffer queue = getQueue( queueName );
+        DatabaseQueueMessage message = queue.messages.poll();
+        if ( message != null ) {
+            queue.size.decrementAndGet();
+        }
+        return message;
     }
 
     public DatabaseQueueMessage peek( String queueName ) {
-        return getQueue( queueName ).peek();
+        return getQueue( queueName ).messages.peek();
     }
 
     public int size( String queueName ) {
-        return getQueue( queueName ).size();
+        return getQueue( queueName ).size.get();
     }
 
     public void clear( String queueName ) {
-        getQueue( queueName ).clear();
+        while ( poll( queueName ) != null ) {
+            // size is decremented by poll
+        }
     }
 }
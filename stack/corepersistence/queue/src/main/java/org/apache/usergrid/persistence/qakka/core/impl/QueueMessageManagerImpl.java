@@ -19,9 +19,12 @@
 
 package org.apache.usergrid.persistence.qakka.core.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemFig;
+import org.apache.usergrid.persistence.qakka.QakkaFig;
 import org.apache.usergrid.persistence.qakka.api.URIStrategy;
 import org.apache.usergrid.persistence.qakka.core.*;
 import org.apache.usergrid.persistence.qakka.distributed.DistributedQueueService;
@@ -42,7 +45,10 @@ import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -62,6 +68,9 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
     private final ShardSerialization          shardSerialization;
     private final CassandraClient             cassandraClient;
 
+    /** Message data recently sent or read, consumers usually get messages within seconds of them being sent */
+    private final Cache<UUID, DatabaseQueueMessageBody> bodyCache;
+
     @Inject
     public QueueMessageManagerImpl(
         ActorSystemFig              actorSystemFig,
@@ -72,7 +81,8 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
         URIStrategy                 uriStrategy,
         MessageCounterSerialization messageCounterSerialization,
         ShardSerialization          shardSerialization,
-        CassandraClient             cassandraClient ) {
+        CassandraClient             cassandraClient,
+        QakkaFig                    qakkaFig ) {
 
         this.actorSystemFig              = actorSystemFig;
         this.queueManager                = queueManager;
@@ -83,6 +93,12 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
         this.messageCounterSerialization = messageCounterSerialization;
         this.shardSerialization          = shardSerialization;
         this.cassandraClient             = cassandraClient;
+
+        this.bodyCache = CacheBuilder.newBuilder()
+            .expireAfterWrite( qakkaFig.getMessageBodyCacheSeconds(), TimeUnit.SECONDS )
+            .maximumWeight( qakkaFig.getMessageBodyCacheMaxBytes() )
+            .weigher( ( UUID messageId, DatabaseQueueMessageBody body ) -> body.getBlob().remaining() )
+            .build();
     }
 
 
@@ -113,8 +129,9 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
         Long expirationTime = expirationSecs != null ? currentTimeMs + (1000 * expirationSecs) : null;
 
         // write message data to C*
-        queueMessageSerialization.writeMessageData(
-                messageId, new DatabaseQueueMessageBody(messageData, contentType));
+        DatabaseQueueMessageBody messageBody = new DatabaseQueueMessageBody(messageData, contentType);
+        queueMessageSerialization.writeMessageData( messageId, messageBody );
+        bodyCache.put( messageId, messageBody );
 
         for (String region : destinationRegions) {
 
@@ -164,9 +181,12 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
 
         List<QueueMessage> queueMessages = new ArrayList<>();
 
+        Map<UUID, DatabaseQueueMessageBody> bodies = loadMessageData( dbMessages.stream()
+            .map( DatabaseQueueMessage::getMessageId ).collect( Collectors.toList() ) );
+
         for (DatabaseQueueMessage dbMessage : dbMessages) {
 
-            DatabaseQueueMessageBody data = queueMessageSerialization.loadMessageData( dbMessage.getMessageId() );
+            DatabaseQueueMessageBody data = bodies.get( dbMessage.getMessageId() );
 
             if ( data != null ) {
 
@@ -232,6 +252,22 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
     }
 
 
+    @Override
+    public List<UUID> ackMessages(String queueName, List<UUID> queueMessageIds) {
+
+        Map<UUID, DistributedQueueService.Status> statuses =
+            distributedQueueService.ackMessages( queueName, queueMessageIds );
+
+        List<UUID> failed = new ArrayList<>();
+        for ( UUID queueMessageId : queueMessageIds ) {
+            if ( !DistributedQueueService.Status.SUCCESS.equals( statuses.get( queueMessageId ) ) ) {
+                failed.add( queueMessageId );
+            }
+        }
+        return failed;
+    }
+
+
     @Override
     public void requeueMessage(String queueName, UUID messageId, Long delayMs) {
 
@@ -256,8 +292,35 @@ public class QueueMessageManagerImpl implements QueueMessageManager {
 
     @Override
     public ByteBuffer getMessageData( UUID messageId ) {
-        DatabaseQueueMessageBody body = queueMessageSerialization.loadMessageData( messageId );
-        return body != null ? body.getBlob() : null;
+
+        DatabaseQueueMessageBody body = bodyCache.getIfPresent( messageId );
+        if ( body == null ) {
+            body = queueMessageSerialization.loadMessageData( messageId );
+            if ( body != null ) {
+                bodyCache.put( messageId, body );
+            }
+        }
+
+        // callers may read the buffer, don't let them move the position of the cached one
+        return body != null ? body.getBlob().duplicate() : null;
+    }
+
+
+    /**
+     * Get message data from the cache, reading all messages not in the cache from storage at once.
+     */
+    private Map<UUID, DatabaseQueueMessageBody> loadMessageData( Collection<UUID> messageIds ) {
+
+        Map<UUID, DatabaseQueueMessageBody> bodies = new HashMap<>( bodyCache.getAllPresent( messageIds ) );
+
+        List<UUID> missing = messageIds.stream()
+            .filter( messageId -> !bodies.containsKey( messageId ) ).collect( Collectors.toList() );
+
+        Map<UUID, DatabaseQueueMessageBody> loaded = queueMessageSerialization.loadMessageData( missing );
+        bodyCache.putAll( loaded );
+        bodies.putAll( loaded );
+
+        return bodies;
     }
 
 
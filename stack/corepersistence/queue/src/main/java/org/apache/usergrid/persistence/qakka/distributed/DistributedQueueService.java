@@ -22,6 +22,7 @@ package org.apache.usergrid.persistence.qakka.distributed;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.DatabaseQueueMessage;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -54,5 +55,11 @@ public interface DistributedQueueService {
 
     Status ackMessage(String queueName, UUID messageId);
 
+    /**
+     * Ack many queue messages of one queue in a single request.
+     * @return Status of each queue message
+     */
+    Map<UUID, Status> ackMessages(String queueName, Collection<UUID> queueMessageIds);
+
     Status requeueMessage(String queueName, UUID messageId);
 }
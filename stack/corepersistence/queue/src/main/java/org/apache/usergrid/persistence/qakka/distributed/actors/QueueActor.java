@@ -52,6 +52,9 @@ public class QueueActor extends UntypedActor {
     private final Map<String, ActorRef> queueTimeoutersByQueueName = new HashMap<>();
     private final Map<String, ActorRef> shardAllocatorsByQueueName = new HashMap<>();
 
+    /** Queues this actor has refreshed, for which this node may hold a lease */
+    private final Set<String> refreshedQueueNames = new HashSet<>();
+
 
     @Inject
     public QueueActor(
@@ -72,6 +75,7 @@ public class QueueActor extends UntypedActor {
 
         if ( message instanceof QueueRefreshRequest ) {
             QueueRefreshRequest request = (QueueRefreshRequest) message;
+            refreshedQueueNames.add( request.getQueueName() );
 
             // NOT asynchronous because we want this to happen locally in this JVM
 
@@ -133,6 +137,13 @@ public class QueueActor extends UntypedActor {
 
                 Collection<DatabaseQueueMessage> messages = queueActorHelper.getMessages( queueName, numRequested);
 
+                if ( qakkaFig.getInMemoryCache() && !messages.isEmpty()
+                    && inMemoryQueue.size( queueName ) < qakkaFig.getQueueInMemorySize() / 2 ) {
+
+                    // queue is being consumed, read ahead of demand instead of waiting for the next refresh
+                    self().tell( new QueueRefreshRequest( queueName, false ), self() );
+                }
+
                 if ( !messages.isEmpty() ) {
                     logger.trace("{}: Returning queue {} messages {}", name, queueName, messages.size() );
                 }
@@ -151,5 +162,17 @@ public class QueueActor extends UntypedActor {
     }
 
 
+    @Override
+    public void postStop() {
+
+        // let another node take over our queues right away instead of when our leases expire
+        if ( qakkaFig.getInMemoryCache() ) {
+            for ( String queueName : refreshedQueueNames ) {
+                queueActorHelper.releaseLease( queueName );
+            }
+        }
+    }
+
+
 
 }
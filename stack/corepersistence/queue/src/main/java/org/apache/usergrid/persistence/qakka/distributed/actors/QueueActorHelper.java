@@ -34,6 +34,7 @@ import org.apache.usergrid.persistence.qakka.distributed.DistributedQueueService
 import org.apache.usergrid.persistence.qakka.serialization.MultiShardMessageIterator;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLog;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLogSerialization;
+import org.apache.usergrid.persistence.qakka.serialization.leases.QueueLeaseSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.DatabaseQueueMessage;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.QueueMessageSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.sharding.Shard;
@@ -42,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Singleton
@@ -57,6 +59,13 @@ public class QueueActorHelper {
     private final QakkaFig                  qakkaFig;
     private final MetricsService            metricsService;
     private final CassandraClient           cassandraClient;
+    private final QueueLeaseSerialization   queueLeaseSerialization;
+
+    /** Identifies this node as the owner of queue leases */
+    private final String leaseOwner;
+
+    /** Time until which this node may serve each queue from memory, before its lease expires in Cassandra */
+    private final Map<String, Long> leaseValidUntil = new ConcurrentHashMap<>();
 
     private Map<String, Long> startingShards = new HashMap<>();
     private Map<String, Long> lastRefreshTimeMillis = new HashMap<>();
@@ -71,7 +80,8 @@ public class QueueActorHelper {
             AuditLogSerialization     auditLogSerialization,
             InMemoryQueue             inMemoryQueue,
             MetricsService            metricsService,
-            CassandraClient           cassandraClient
+            CassandraClient           cassandraClient,
+            QueueLeaseSerialization   queueLeaseSerialization
             ) {
 
         this.actorSystemFig        = actorSystemFig;
@@ -81,6 +91,9 @@ public class QueueActorHelper {
         this.qakkaFig              = qakkaFig;
         this.metricsService        = metricsService;
         this.cassandraClient       = cassandraClient;
+        this.queueLeaseSerialization = queueLeaseSerialization;
+
+        this.leaseOwner = actorSystemFig.getHostname() + "_" + UUID.randomUUID();
     }
 
 
@@ -115,17 +128,19 @@ public class QueueActorHelper {
 
     private Collection<DatabaseQueueMessage> getMessagesFromMemory(String queueName, int numRequested ) {
 
-        Collection<DatabaseQueueMessage> queueMessages = new ArrayList<>();
+        if ( !holdsLease( queueName ) ) {
+            // another node may hold the lease and have the same messages in memory
+            return Collections.emptyList();
+        }
+
+        Collection<DatabaseQueueMessage> polled = new ArrayList<>();
 
-        while (queueMessages.size() < numRequested) {
+        while (polled.size() < numRequested) {
 
             DatabaseQueueMessage queueMessage = inMemoryQueue.poll( queueName );
 
             if (queueMessage != null) {
-
-                if (putInflight( queueMessage )) {
-                    queueMessages.add( queueMessage );
-                }
+                polled.add( queueMessage );
 
             } else {
                 //logger.debug("in-memory queue for {} is empty, object is: {}", queueName, inMemoryQueue );
@@ -133,6 +148,9 @@ public class QueueActorHelper {
             }
         }
 
+        // move all of the polled messages to inflight together
+        Collection<DatabaseQueueMessage> queueMessages = putInflight( polled );
+
         //logger.debug("{} returning {} for queue {}", this, queueMessages.size(), queueName);
         return queueMessages;
     }
@@ -140,8 +158,6 @@ public class QueueActorHelper {
 
     private Collection<DatabaseQueueMessage> getMessagesFromStorage(String queueName, int numRequested ) {
 
-        Collection<DatabaseQueueMessage> queueMessages = new ArrayList<>();
-
 //        final Optional shardIdOptional;
 //        final String shardKey =
 //            createShardKey( queueName, Shard.Type.DEFAULT, actorSystemFig.getRegionLocal() );
@@ -163,18 +179,23 @@ public class QueueActorHelper {
         MultiShardMessageIterator multiShardIterator = new MultiShardMessageIterator(
             cassandraClient, queueName, region, DatabaseQueueMessage.Type.DEFAULT, shardIterator, since);
 
-        int count = 0;
+        Collection<DatabaseQueueMessage> available = new ArrayList<>();
 
-        while ( multiShardIterator.hasNext() && count < numRequested ) {
+        while ( multiShardIterator.hasNext() && available.size() < numRequested ) {
             DatabaseQueueMessage queueMessage = multiShardIterator.next();
 
-            if ( queueMessage != null && putInflight( queueMessage ) ) {
-                long timestamp = queueMessage.getQueueMessageId().timestamp();
-                if ( since != null && timestamp > since.timestamp() ) {
-                    since = queueMessage.getQueueMessageId();
-                }
-                queueMessages.add( queueMessage );
-                count++;
+            if ( queueMessage != null ) {
+                available.add( queueMessage );
+            }
+        }
+
+        // move all of the messages to inflight together
+        Collection<DatabaseQueueMessage> queueMessages = putInflight( available );
+
+        for ( DatabaseQueueMessage queueMessage : queueMessages ) {
+            long timestamp = queueMessage.getQueueMessageId().timestamp();
+            if ( since != null && timestamp > since.timestamp() ) {
+                since = queueMessage.getQueueMessageId();
             }
         }
 
@@ -192,91 +213,108 @@ public class QueueActorHelper {
 
 
     boolean putInflight( DatabaseQueueMessage queueMessage ) {
+        return !putInflight( Collections.singletonList( queueMessage ) ).isEmpty();
+    }
 
-        UUID qmid = queueMessage.getQueueMessageId();
-        try {
 
-            messageSerialization.putInflight( queueMessage );
+    /**
+     * Move the messages to inflight with one batch per shard.
+     * @return The messages that are now inflight
+     */
+    Collection<DatabaseQueueMessage> putInflight( Collection<DatabaseQueueMessage> queueMessages ) {
+
+        if ( queueMessages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        Collection<DatabaseQueueMessage> inflight;
+        try {
+            inflight = messageSerialization.putInflight( queueMessages );
 
         } catch ( Throwable t ) {
-            logger.error("Error putting inflight queue message "
-                + qmid + " queue name: " + queueMessage.getQueueName(), t);
+            logger.error("Error putting " + queueMessages.size() + " queue messages inflight", t);
+            inflight = Collections.emptyList();
+        }
+
+        Set<UUID> inflightIds = new HashSet<>( inflight.size() );
+        for ( DatabaseQueueMessage queueMessage : inflight ) {
+            inflightIds.add( queueMessage.getQueueMessageId() );
+        }
+
+        for ( DatabaseQueueMessage queueMessage : queueMessages ) {
+
+            boolean success = inflightIds.contains( queueMessage.getQueueMessageId() );
 
             auditLogSerialization.recordAuditLog(
                 AuditLog.Action.GET,
-                AuditLog.Status.ERROR,
+                success ? AuditLog.Status.SUCCESS : AuditLog.Status.ERROR,
                 queueMessage.getQueueName(),
                 actorSystemFig.getRegionLocal(),
                 queueMessage.getMessageId(),
-                qmid);
-
-            return false;
+                queueMessage.getQueueMessageId() );
         }
 
-        auditLogSerialization.recordAuditLog(
-            AuditLog.Action.GET,
-            AuditLog.Status.SUCCESS,
-            queueMessage.getQueueName(),
-            actorSystemFig.getRegionLocal(),
-            queueMessage.getMessageId(),
-            qmid);
-
-        return true;
+        return inflight;
     }
 
 
     DistributedQueueService.Status ackQueueMessage(String queueName, UUID queueMessageId ) {
+        return ackQueueMessages( queueName, Collections.singletonList( queueMessageId ) ).get( queueMessageId );
+    }
+
+
+    /**
+     * Ack the messages with one read and one batch of deletes per shard.
+     * @return Status of each queue message
+     */
+    Map<UUID, DistributedQueueService.Status> ackQueueMessages(
+        String queueName, Collection<UUID> queueMessageIds ) {
 
-        DatabaseQueueMessage queueMessage = messageSerialization.loadMessage(
+        Map<UUID, DistributedQueueService.Status> statuses = new HashMap<>( queueMessageIds.size() );
+
+        Collection<DatabaseQueueMessage> queueMessages = messageSerialization.loadMessages(
             queueName,
             actorSystemFig.getRegionLocal(),
-            null,
             DatabaseQueueMessage.Type.INFLIGHT,
-            queueMessageId );
-
-        if ( queueMessage == null ) {
-            logger.error("Queue {} queue message id {} not found in inflight table", queueName, queueMessageId);
-            return DistributedQueueService.Status.NOT_INFLIGHT;
-        }
+            queueMessageIds );
 
-        boolean error = false;
+        Collection<DatabaseQueueMessage> deleted;
         try {
-            messageSerialization.deleteMessage(
-                    queueName,
-                    actorSystemFig.getRegionLocal(),
-                    null,
-                    DatabaseQueueMessage.Type.INFLIGHT,
-                    queueMessageId );
+            deleted = messageSerialization.deleteMessages( queueMessages );
 
         } catch (Throwable t) {
-            logger.error( "Error deleting queueMessage for ack", t );
-            error = true;
+            logger.error( "Error deleting queueMessages for ack", t );
+            deleted = Collections.emptyList();
         }
 
-        if ( !error ) {
-
-            auditLogSerialization.recordAuditLog(
-                    AuditLog.Action.ACK,
-                    AuditLog.Status.SUCCESS,
-                    queueName,
-                    actorSystemFig.getRegionLocal(),
-                    queueMessage.getMessageId(),
-                    queueMessageId );
+        for ( DatabaseQueueMessage queueMessage : queueMessages ) {
+            statuses.put( queueMessage.getQueueMessageId(), DistributedQueueService.Status.ERROR );
+        }
 
-            return DistributedQueueService.Status.SUCCESS;
+        for ( DatabaseQueueMessage queueMessage : deleted ) {
+            statuses.put( queueMessage.getQueueMessageId(), DistributedQueueService.Status.SUCCESS );
+        }
 
-        } else {
+        for ( DatabaseQueueMessage queueMessage : queueMessages ) {
 
             auditLogSerialization.recordAuditLog(
                     AuditLog.Action.ACK,
-                    AuditLog.Status.ERROR,
+                    DistributedQueueService.Status.SUCCESS.equals( statuses.get( queueMessage.getQueueMessageId() ) )
+                        ? AuditLog.Status.SUCCESS : AuditLog.Status.ERROR,
                     queueName,
                     actorSystemFig.getRegionLocal(),
                     queueMessage.getMessageId(),
-                    queueMessageId );
+                    queueMessage.getQueueMessageId() );
+        }
 
-            return DistributedQueueService.Status.ERROR;
+        for ( UUID queueMessageId : queueMessageIds ) {
+            if ( !statuses.containsKey( queueMessageId ) ) {
+                logger.error("Queue {} queue message id {} not found in inflight table", queueName, queueMessageId);
+                statuses.put( queueMessageId, DistributedQueueService.Status.NOT_INFLIGHT );
+            }
         }
+
+        return statuses;
     }
 
 
@@ -286,7 +324,11 @@ public class QueueActorHelper {
 
         try {
 
-            if (inMemoryQueue.size( queueName ) < qakkaFig.getQueueInMemorySize()) {
+            if ( !renewLease( queueName ) ) {
+                // only the node holding the lease may buffer messages, drop anything buffered before losing it
+                inMemoryQueue.clear( queueName );
+
+            } else if (inMemoryQueue.size( queueName ) < qakkaFig.getQueueInMemorySize()) {
 
                 // if queue has not been refreshed in 5 x queue refresh time, then consider it stale
                 long now = System.currentTimeMillis();
@@ -343,6 +385,67 @@ public class QueueActorHelper {
 
     }
 
+    boolean holdsLease( String queueName ) {
+        Long validUntil = leaseValidUntil.get( queueName );
+        return validUntil != null && validUntil > System.currentTimeMillis();
+    }
+
+
+    /**
+     * Acquire the lease on the queue, or renew it once half of its time has passed.
+     * @return True if this node holds the lease.
+     */
+    private boolean renewLease( String queueName ) {
+
+        long now = System.currentTimeMillis();
+        long leaseMillis = qakkaFig.getInMemoryLeaseSeconds() * 1000L;
+
+        Long validUntil = leaseValidUntil.get( queueName );
+        if ( validUntil != null && validUntil - now > leaseMillis / 2 ) {
+            return true;
+        }
+
+        boolean acquired;
+        try {
+            acquired = queueLeaseSerialization.acquireLease(
+                queueName, actorSystemFig.getRegionLocal(), leaseOwner, qakkaFig.getInMemoryLeaseSeconds() );
+
+        } catch ( Throwable t ) {
+            logger.error( "Error acquiring lease on queue " + queueName, t );
+            acquired = false;
+        }
+
+        if ( acquired ) {
+            // stop serving from memory a little before the lease expires in Cassandra
+            leaseValidUntil.put( queueName, now + leaseMillis * 4 / 5 );
+        } else {
+            leaseValidUntil.remove( queueName );
+        }
+
+        return acquired;
+    }
+
+
+    /**
+     * Give up the lease on the queue and drop its buffered messages, so that another node can take it over
+     * without waiting for the lease to expire.
+     */
+    void releaseLease( String queueName ) {
+
+        if ( leaseValidUntil.remove( queueName ) == null ) {
+            return;
+        }
+        inMemoryQueue.clear( queueName );
+
+        try {
+            queueLeaseSerialization.releaseLease( queueName, actorSystemFig.getRegionLocal(), leaseOwner );
+
+        } catch ( Throwable t ) {
+            logger.error( "Error releasing lease on queue " + queueName, t );
+        }
+    }
+
+
     private String createShardKey(String queueName, Shard.Type type, String region ) {
         return queueName + "_" + type + region;
     }
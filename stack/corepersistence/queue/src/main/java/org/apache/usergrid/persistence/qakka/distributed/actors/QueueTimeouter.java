@@ -37,8 +37,15 @@ import org.apache.usergrid.persistence.qakka.serialization.sharding.ShardIterato
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 
 public class QueueTimeouter extends UntypedActor {
@@ -52,6 +59,12 @@ public class QueueTimeouter extends UntypedActor {
     private final QakkaFig                  qakkaFig;
     private final CassandraClient           cassandraClient;
 
+    /** Per queue, the oldest inflight index bucket that may still hold messages to time out */
+    private final Map<String, Long> nextBuckets = new HashMap<>();
+
+    /** Per queue, time of the next full scan, for queues that may still have messages without index entries */
+    private final Map<String, Long> nextFullScans = new HashMap<>();
+
 
     @Inject
     public QueueTimeouter(
@@ -84,27 +97,16 @@ public class QueueTimeouter extends UntypedActor {
 
                 //logger.debug("Processing timeouts for queue {} ", queueName );
 
-                int count = 0;
                 String region = actorSystemFig.getRegionLocal();
 
-                ShardIterator shardIterator = new ShardIterator(
-                        cassandraClient, queueName, region, Shard.Type.INFLIGHT, Optional.empty());
-
-                MultiShardMessageIterator multiShardIteratorInflight = new MultiShardMessageIterator(
-                        cassandraClient, queueName, region, DatabaseQueueMessage.Type.INFLIGHT, shardIterator, null);
-
-                while ( multiShardIteratorInflight.hasNext() ) {
+                Long nextFullScan = nextFullScans.get( queueName );
 
-                    DatabaseQueueMessage queueMessage = multiShardIteratorInflight.next();
-
-                    long currentTime = System.currentTimeMillis();
-
-                    if ((currentTime - queueMessage.getInflightAt()) > qakkaFig.getQueueTimeoutSeconds() * 1000) {
-
-                        // put message back in messages_available table as new queue message with new UUID
-                        messageSerialization.timeoutInflight( queueMessage );
-                        count++;
-                    }
+                int count;
+                if ( !nextBuckets.containsKey( queueName )
+                    || ( nextFullScan != null && nextFullScan <= System.currentTimeMillis() ) ) {
+                    count = timeoutAll( queueName, region );
+                } else {
+                    count = timeoutIndexed( queueName, region );
                 }
 
                 if (count > 0) {
@@ -119,4 +121,140 @@ public class QueueTimeouter extends UntypedActor {
             unhandled( message );
         }
     }
+
+
+    /**
+     * Time out messages from the inflight index, reading only the buckets of messages that went inflight
+     * before the timeout and that have not been fully processed yet.
+     */
+    private int timeoutIndexed( String queueName, String region ) {
+
+        int count = 0;
+
+        long inflightBefore = System.currentTimeMillis() - qakkaFig.getQueueTimeoutSeconds() * 1000L;
+        long lastBucket = inflightBefore / qakkaFig.getInflightBucketMillis();
+        int batchSize = qakkaFig.getTimeoutBatchSize();
+
+        long bucket = nextBuckets.get( queueName );
+
+        for ( ; bucket <= lastBucket; bucket++ ) {
+
+            boolean drained = false;
+
+            while ( true ) {
+
+                List<DatabaseQueueMessage> indexed = messageSerialization.loadInflightIndex(
+                    queueName, region, bucket, inflightBefore, batchSize );
+
+                if ( indexed.isEmpty() ) {
+                    drained = true;
+                    break;
+                }
+
+                // skip messages that were acked since they went inflight
+
+                List<UUID> queueMessageIds = indexed.stream()
+                    .map( DatabaseQueueMessage::getQueueMessageId ).collect( Collectors.toList() );
+
+                Collection<DatabaseQueueMessage> inflight = messageSerialization.loadMessages(
+                    queueName, region, DatabaseQueueMessage.Type.INFLIGHT, queueMessageIds );
+
+                Collection<DatabaseQueueMessage> timedOut = messageSerialization.timeoutInflight( inflight );
+                count += timedOut.size();
+
+                // remove index entries of acked messages, timed out messages have had theirs removed
+
+                Set<UUID> inflightIds = inflight.stream()
+                    .map( DatabaseQueueMessage::getQueueMessageId ).collect( Collectors.toSet() );
+
+                List<DatabaseQueueMessage> stale = indexed.stream()
+                    .filter( m -> !inflightIds.contains( m.getQueueMessageId() ) ).collect( Collectors.toList() );
+
+                Collection<DatabaseQueueMessage> removed = messageSerialization.deleteInflightIndex( stale );
+
+                if ( timedOut.size() < inflight.size() || removed.size() < stale.size() ) {
+                    // try again on the next request rather than reading the same entries again
+                    break;
+                }
+            }
+
+            if ( !drained || bucket == lastBucket ) {
+                // the last bucket may still get messages that go inflight before the timeout
+                break;
+            }
+        }
+
+        nextBuckets.put( queueName, bucket );
+
+        return count;
+    }
+
+
+    /**
+     * Time out messages by iterating over all inflight shards of the queue, and index the messages that have not
+     * timed out yet and went inflight without an index entry, so that the indexed timeouts find them once they
+     * expire. Done when the timeouter first sees a queue, then once per timeout period until a scan finds no
+     * message without an index entry: nodes that are not upgraded yet keep putting messages inflight without one.
+     */
+    private int timeoutAll( String queueName, String region ) {
+
+        int count = 0;
+
+        long startTime = System.currentTimeMillis();
+        long timeoutMillis = qakkaFig.getQueueTimeoutSeconds() * 1000L;
+
+        Map<Long, Set<UUID>> indexedByBucket = new HashMap<>();
+        List<DatabaseQueueMessage> unindexed = new ArrayList<>();
+
+        ShardIterator shardIterator = new ShardIterator(
+                cassandraClient, queueName, region, Shard.Type.INFLIGHT, Optional.empty());
+
+        MultiShardMessageIterator multiShardIteratorInflight = new MultiShardMessageIterator(
+                cassandraClient, queueName, region, DatabaseQueueMessage.Type.INFLIGHT, shardIterator, null);
+
+        while ( multiShardIteratorInflight.hasNext() ) {
+
+            DatabaseQueueMessage queueMessage = multiShardIteratorInflight.next();
+
+            long currentTime = System.currentTimeMillis();
+
+            if ((currentTime - queueMessage.getInflightAt()) > qakkaFig.getQueueTimeoutSeconds() * 1000) {
+
+                // put message back in messages_available table as new queue message with new UUID
+                messageSerialization.timeoutInflight( queueMessage );
+                count++;
+
+            } else {
+
+                long bucket = queueMessage.getInflightAt() / qakkaFig.getInflightBucketMillis();
+
+                Set<UUID> indexed = indexedByBucket.computeIfAbsent( bucket, b -> messageSerialization
+                    .loadInflightIndex( queueName, region, b, Long.MAX_VALUE, Integer.MAX_VALUE ).stream()
+                    .map( DatabaseQueueMessage::getQueueMessageId ).collect( Collectors.toSet() ) );
+
+                if ( !indexed.contains( queueMessage.getQueueMessageId() ) ) {
+                    unindexed.add( queueMessage );
+                }
+            }
+        }
+
+        if ( !unindexed.isEmpty() ) {
+            Collection<DatabaseQueueMessage> indexed = messageSerialization.indexInflight( unindexed );
+            logger.debug( "{}: Indexed {} of {} inflight messages without index entry for queue {}",
+                name, indexed.size(), unindexed.size(), queueName );
+        }
+
+        // the first scan cannot tell whether other nodes still put messages inflight without index entries
+        if ( unindexed.isEmpty() && nextFullScans.containsKey( queueName ) ) {
+            nextFullScans.remove( queueName );
+        } else {
+            nextFullScans.put( queueName, startTime + timeoutMillis );
+        }
+
+        // every message that went inflight before the scan started and that was not timed out is newer than this
+        long inflightBefore = startTime - timeoutMillis;
+        nextBuckets.merge( queueName, inflightBefore / qakkaFig.getInflightBucketMillis(), Math::max );
+
+        return count;
+    }
 }
@@ -28,6 +28,8 @@ import org.apache.usergrid.persistence.qakka.core.QakkaUtils;
 import org.apache.usergrid.persistence.qakka.distributed.DistributedQueueService;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueAckRequest;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueAckResponse;
+import org.apache.usergrid.persistence.qakka.distributed.messages.QueueBatchAckRequest;
+import org.apache.usergrid.persistence.qakka.distributed.messages.QueueBatchAckResponse;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueWriteRequest;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueWriteResponse;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLog;
@@ -38,6 +40,7 @@ import org.apache.usergrid.persistence.qakka.serialization.transferlog.TransferL
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -178,6 +181,29 @@ public class QueueWriter extends UntypedActor {
                 timer.close();
             }
 
+        } else if ( message instanceof QueueBatchAckRequest ){
+
+            Timer.Context timer = metricsService.getMetricRegistry().timer( MetricsService.ACK_TIME_ACK ).time();
+            try {
+
+                QueueBatchAckRequest queueAckRequest = (QueueBatchAckRequest) message;
+
+                if ( logger.isTraceEnabled() ){
+                    logger.trace("Receive QueueBatchAckRequest for {} messages",
+                        queueAckRequest.getQueueMessageIds().size() );
+                }
+
+                Map<UUID, DistributedQueueService.Status> statuses = queueActorHelper.ackQueueMessages(
+                    queueAckRequest.getQueueName(),
+                    queueAckRequest.getQueueMessageIds() );
+
+                getSender().tell( new QueueBatchAckResponse(
+                    queueAckRequest.getQueueName(), statuses ), getSender() );
+
+            } finally {
+                timer.close();
+            }
+
         } else {
             unhandled( message );
         }
@@ -26,6 +26,7 @@ import akka.routing.FromConfig;
 import com.google.inject.Inject;
 import org.apache.usergrid.persistence.actorsystem.GuiceActorProducer;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueAckRequest;
+import org.apache.usergrid.persistence.qakka.distributed.messages.QueueBatchAckRequest;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueWriteRequest;
 
 
@@ -48,7 +49,9 @@ public class QueueWriterRouter extends UntypedActor {
     @Override
     public void onReceive(Object message) {
 
-        if ( message instanceof QueueWriteRequest || message instanceof QueueAckRequest ) {
+        if ( message instanceof QueueWriteRequest
+            || message instanceof QueueAckRequest
+            || message instanceof QueueBatchAckRequest ) {
             router.tell( message, getSender() );
 
         } else {
@@ -40,6 +40,7 @@ import org.apache.usergrid.persistence.qakka.distributed.DistributedQueueService
 import org.apache.usergrid.persistence.qakka.distributed.messages.*;
 import org.apache.usergrid.persistence.qakka.exceptions.NotFoundException;
 import org.apache.usergrid.persistence.qakka.exceptions.QakkaRuntimeException;
+import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLogSerialization;
 import org.apache.usergrid.persistence.qakka.serialization.queuemessages.DatabaseQueueMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,6 +64,7 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
     private final QueueManager queueManager;
     private final QakkaFig qakkaFig;
     private final MetricsService metricsService;
+    private final AuditLogSerialization auditLogSerialization;
 
     @Inject
     public DistributedQueueServiceImpl(
@@ -70,13 +72,15 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
             ActorSystemManager actorSystemManager,
             QueueManager queueManager,
             QakkaFig qakkaFig,
-            MetricsService metricsService
+            MetricsService metricsService,
+            AuditLogSerialization auditLogSerialization
             ) {
 
         this.actorSystemManager = actorSystemManager;
         this.queueManager = queueManager;
         this.qakkaFig = qakkaFig;
         this.metricsService = metricsService;
+        this.auditLogSerialization = auditLogSerialization;
 
         GuiceActorProducer.INJECTOR = injector;
     }
@@ -324,6 +328,29 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
     }
 
 
+    @Override
+    public Map<UUID, Status> ackMessages( String queueName, Collection<UUID> queueMessageIds ) {
+
+        if( logger.isTraceEnabled() ){
+            logger.trace("Acking {} messages for queue {}", queueMessageIds.size(), queueName);
+        }
+
+        if ( queueMessageIds.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+
+        Timer.Context timer = metricsService.getMetricRegistry().timer( MetricsService.ACK_TIME_TOTAL ).time();
+        try {
+
+            QueueBatchAckRequest message = new QueueBatchAckRequest( queueName, queueMessageIds );
+            return askLocalRouters( message, QueueBatchAckResponse.class ).getStatuses();
+
+        } finally {
+            timer.close();
+        }
+    }
+
+
     @Override
     public Status requeueMessage(String queueName, UUID messageId) {
 
@@ -333,6 +360,11 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
 
 
     private Status sendMessageToLocalRouters( QakkaMessage message ) {
+        return askLocalRouters( message, QueueAckResponse.class ).getStatus();
+    }
+
+
+    private <T extends QakkaMessage> T askLocalRouters( QakkaMessage message, Class<T> responseType ) {
 
         int maxRetries = 5;
         int retries = 0;
@@ -346,9 +378,8 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
                 Future<Object> fut = Patterns.ask( actorSystemManager.getClientActor(), message, t );
                 final QakkaMessage response = (QakkaMessage)Await.result( fut, t.duration() );
 
-                if ( response != null && response instanceof QueueAckResponse) {
-                    QueueAckResponse qprm = (QueueAckResponse)response;
-                    return qprm.getStatus();
+                if ( responseType.isInstance( response ) ) {
+                    return responseType.cast( response );
 
                 } else if ( response != null  ) {
                     logger.debug("UNKNOWN RESPONSE sending message, retrying {}", retries );
@@ -370,6 +401,6 @@ public class DistributedQueueServiceImpl implements DistributedQueueService {
     }
 
     public void shutdown() {
-        // no op
+        auditLogSerialization.shutdown();
     }
 }
@@ -35,6 +35,7 @@ import org.apache.usergrid.persistence.actorsystem.RouterProducer;
 import org.apache.usergrid.persistence.qakka.QakkaFig;
 import org.apache.usergrid.persistence.qakka.distributed.actors.QueueWriterRouter;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueAckRequest;
+import org.apache.usergrid.persistence.qakka.distributed.messages.QueueBatchAckRequest;
 import org.apache.usergrid.persistence.qakka.distributed.messages.QueueWriteRequest;
 
 import java.util.ArrayList;
@@ -133,6 +134,7 @@ public class QueueWriterRouterProducer implements RouterProducer {
     public Collection<Class> getMessageTypes() {
         return new ArrayList() {{
             add( QueueAckRequest.class );
+            add( QueueBatchAckRequest.class );
             add( QueueWriteRequest.class );
         }};
 
@@ -42,4 +42,10 @@ public interface AuditLogSerialization extends Migration {
      * Get all audit logs for a specific queue message.
      */
     Result<AuditLog> getAuditLogs(UUID messageId);
+
+    /**
+     * Stop the background writer and write the audit logs still buffered. Logs recorded after this are written
+     * on the calling thread.
+     */
+    void shutdown();
 }
@@ -19,15 +19,22 @@
 
 package org.apache.usergrid.persistence.qakka.serialization.auditlog.impl;
 
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.PagingState;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
 import org.apache.usergrid.persistence.core.CassandraConfig;
 import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
 import org.apache.usergrid.persistence.core.datastax.TableDefinition;
 import org.apache.usergrid.persistence.core.datastax.impl.TableDefinitionStringImpl;
+import org.apache.usergrid.persistence.qakka.MetricsService;
+import org.apache.usergrid.persistence.qakka.QakkaFig;
 import org.apache.usergrid.persistence.qakka.core.CassandraClient;
 import org.apache.usergrid.persistence.qakka.serialization.Result;
 import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLog;
@@ -35,19 +42,43 @@ import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLogSeri
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
+/**
+ * Writes audit logs to Cassandra. Successful actions are sampled per message using the rates configured for each
+ * action in {@link QakkaFig}, errors are always recorded. When async audit logging is enabled logs are put in a
+ * bounded buffer and written in batches by a background thread, logs that do not fit in the buffer are dropped.
+ * Call {@link #shutdown()} to write the logs still buffered before the application stops.
+ */
+@Singleton
 public class AuditLogSerializationImpl implements AuditLogSerialization {
 
     private static final Logger logger = LoggerFactory.getLogger( AuditLogSerializationImpl.class );
 
     private final CassandraClient cassandraClient;
     private final CassandraConfig cassandraConfig;
+    private final Provider<MetricsService> metricsServiceProvider;
+
+    private final Map<AuditLog.Action, Double> sampleRates = new EnumMap<>( AuditLog.Action.class );
+
+    private final BlockingQueue<AuditLog> buffer;
+    private final Thread writer;
+    private final int batchSize;
+    private final long flushMillis;
+
+    private volatile boolean stopped = false;
 
     public final static String TABLE_AUDIT_LOG   = "audit_log";
 
@@ -77,9 +108,37 @@ public class AuditLogSerializationImpl implements AuditLogSerialization {
 
 
     @Inject
-    public AuditLogSerializationImpl( CassandraConfig cassandraConfig, CassandraClient cassandraClient ) {
+    public AuditLogSerializationImpl(
+        CassandraConfig cassandraConfig,
+        CassandraClient cassandraClient,
+        QakkaFig qakkaFig,
+        Provider<MetricsService> metricsServiceProvider ) {
+
         this.cassandraConfig = cassandraConfig;
         this.cassandraClient = cassandraClient;
+
+        // metrics service depends on migrations, which depend on us, so look it up when first needed
+        this.metricsServiceProvider = metricsServiceProvider;
+
+        sampleRates.put( AuditLog.Action.SEND,    qakkaFig.getAuditSampleSend() );
+        sampleRates.put( AuditLog.Action.GET,     qakkaFig.getAuditSampleGet() );
+        sampleRates.put( AuditLog.Action.ACK,     qakkaFig.getAuditSampleAck() );
+        sampleRates.put( AuditLog.Action.REQUEUE, qakkaFig.getAuditSampleRequeue() );
+
+        this.batchSize = qakkaFig.getAuditBatchSize();
+        this.flushMillis = qakkaFig.getAuditFlushMillis();
+
+        if ( qakkaFig.getAuditAsync() ) {
+            this.buffer = new ArrayBlockingQueue<>( qakkaFig.getAuditBufferSize() );
+
+            this.writer = new Thread( this::writeBufferedLogs, "qakka-audit-log-writer" );
+            writer.setDaemon( true );
+            writer.start();
+
+        } else {
+            this.buffer = null;
+            this.writer = null;
+        }
     }
 
 
@@ -92,15 +151,159 @@ public class AuditLogSerializationImpl implements AuditLogSerialization {
             UUID messageId,
             UUID queueMessageId ) {
 
-        Statement insert = QueryBuilder.insertInto(TABLE_AUDIT_LOG)
-                .value(COLUMN_ACTION, action.toString() )
-                .value(COLUMN_STATUS, status.toString() )
-                .value(COLUMN_QUEUE_NAME, queueName )
-                .value(COLUMN_REGION, region )
-                .value(COLUMN_MESSAGE_ID, messageId )
-                .value(COLUMN_QUEUE_MESSAGE_ID, queueMessageId )
-                .value(COLUMN_TRANSFER_TIME, System.currentTimeMillis() );
-        cassandraClient.getApplicationSession().execute(insert);
+        if ( status == AuditLog.Status.SUCCESS && !isSampled( messageId, sampleRates.get( action ) ) ) {
+            metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_SAMPLED ).mark();
+            return;
+        }
+
+        AuditLog auditLog = new AuditLog(
+            action, status, queueName, region, messageId, queueMessageId, System.currentTimeMillis() );
+
+        if ( buffer == null || stopped ) {
+            cassandraClient.getApplicationSession().execute( createInsert( auditLog ) );
+            metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_WRITTEN ).mark();
+
+        } else if ( !buffer.offer( auditLog ) ) {
+            metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_DROPPED ).mark();
+        }
+    }
+
+
+    /**
+     * Decide if a message is audited for an action. The decision is made from the message id so that all actions
+     * on a sampled message are audited when their rates are the same.
+     */
+    public static boolean isSampled( UUID messageId, double sampleRate ) {
+
+        if ( sampleRate >= 1.0 ) {
+            return true;
+        }
+        if ( sampleRate <= 0.0 ) {
+            return false;
+        }
+
+        // time uuids from one node differ mostly in their timestamp bits, so mix all bits before bucketing
+        long hash = messageId.getMostSignificantBits() * 31 + messageId.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return ( hash & 0xFFFF ) < (long)( sampleRate * 0x10000 );
+    }
+
+
+    private Statement createInsert( AuditLog auditLog ) {
+        return QueryBuilder.insertInto(TABLE_AUDIT_LOG)
+                .value(COLUMN_ACTION, auditLog.getAction().toString() )
+                .value(COLUMN_STATUS, auditLog.getStatus().toString() )
+                .value(COLUMN_QUEUE_NAME, auditLog.getQueueName() )
+                .value(COLUMN_REGION, auditLog.getRegion() )
+                .value(COLUMN_MESSAGE_ID, auditLog.getMessageId() )
+                .value(COLUMN_QUEUE_MESSAGE_ID, auditLog.getQueueMessageId() )
+                .value(COLUMN_TRANSFER_TIME, auditLog.getTransfer_time() );
+    }
+
+
+    /**
+     * Loop of the background writer: wait for a log, take whatever else is buffered up to the batch size and write
+     * it all with one unlogged batch per message_id partition. Runs until {@link #shutdown()} is called.
+     */
+    private void writeBufferedLogs() {
+
+        List<AuditLog> auditLogs = new ArrayList<>( batchSize );
+
+        while ( !stopped ) {
+            try {
+                AuditLog first = buffer.poll( flushMillis, TimeUnit.MILLISECONDS );
+                if ( first == null ) {
+                    continue;
+                }
+
+                auditLogs.add( first );
+                buffer.drainTo( auditLogs, batchSize - 1 );
+
+                writeAuditLogs( auditLogs );
+
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+
+            } catch ( Throwable t ) {
+                metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_FAILED )
+                    .mark( auditLogs.size() );
+                logger.error( "Error writing {} audit logs", auditLogs.size(), t );
+
+            } finally {
+                auditLogs.clear();
+            }
+        }
+    }
+
+
+    @Override
+    public void shutdown() {
+
+        if ( buffer == null || stopped ) {
+            return;
+        }
+        stopped = true;
+        writer.interrupt();
+
+        try {
+            writer.join( flushMillis * 10 );
+            if ( writer.isAlive() ) {
+                logger.warn( "Audit log writer did not stop, flushing anyway" );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        // logs recorded while we stopped are still buffered
+        List<AuditLog> auditLogs = new ArrayList<>( batchSize );
+        while ( buffer.drainTo( auditLogs, batchSize ) > 0 ) {
+            try {
+                writeAuditLogs( auditLogs );
+            } catch ( Throwable t ) {
+                metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_FAILED )
+                    .mark( auditLogs.size() );
+                logger.error( "Error writing {} audit logs", auditLogs.size(), t );
+            } finally {
+                auditLogs.clear();
+            }
+        }
+    }
+
+
+    private void writeAuditLogs( List<AuditLog> auditLogs ) {
+
+        Timer.Context timer = metricsServiceProvider.get().getMetricRegistry()
+            .timer( MetricsService.AUDIT_FLUSH_TIME ).time();
+
+        try {
+            Map<UUID, BatchStatement> batches = new LinkedHashMap<>();
+            for ( AuditLog auditLog : auditLogs ) {
+                batches.computeIfAbsent( auditLog.getMessageId(),
+                    messageId -> new BatchStatement( BatchStatement.Type.UNLOGGED ) )
+                    .add( createInsert( auditLog ) );
+            }
+
+            List<ResultSetFuture> futures = new ArrayList<>( batches.size() );
+            for ( BatchStatement batch : batches.values() ) {
+                futures.add( cassandraClient.getApplicationSession().executeAsync( batch ) );
+            }
+
+            for ( ResultSetFuture future : futures ) {
+                future.getUninterruptibly();
+            }
+
+            metricsServiceProvider.get().getMetricRegistry().meter( MetricsService.AUDIT_WRITTEN )
+                .mark( auditLogs.size() );
+
+        } finally {
+            timer.stop();
+        }
     }
 
 
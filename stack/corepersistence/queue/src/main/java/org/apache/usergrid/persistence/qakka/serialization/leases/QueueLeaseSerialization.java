@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.qakka.serialization.leases;
+
+import org.apache.usergrid.persistence.core.migration.schema.Migration;
+
+
+/**
+ * Leases give one node at a time ownership of a queue in a region. The owner may buffer the queue's available
+ * messages in memory without another node delivering the same messages.
+ */
+public interface QueueLeaseSerialization extends Migration {
+
+    /**
+     * Acquire the lease on a queue, or renew it if already held by the owner.
+     *
+     * @param queueName Name of queue.
+     * @param region Region of queue.
+     * @param owner Unique id of the node that wants the lease.
+     * @param ttlSeconds Time after which the lease expires unless renewed.
+     * @return True if the owner holds the lease.
+     */
+    boolean acquireLease( String queueName, String region, String owner, int ttlSeconds );
+
+    /**
+     * Release the lease on a queue if held by the owner.
+     */
+    void releaseLease( String queueName, String region, String owner );
+
+    /**
+     * Get the owner of the lease on a queue, or null if there is no lease.
+     */
+    String getLeaseOwner( String queueName, String region );
+}
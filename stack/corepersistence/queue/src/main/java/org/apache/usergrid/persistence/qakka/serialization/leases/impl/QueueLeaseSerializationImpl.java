@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.qakka.serialization.leases.impl;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.Clause;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.inject.Inject;
+import org.apache.usergrid.persistence.core.CassandraConfig;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+import org.apache.usergrid.persistence.core.datastax.TableDefinition;
+import org.apache.usergrid.persistence.core.datastax.impl.TableDefinitionStringImpl;
+import org.apache.usergrid.persistence.qakka.core.CassandraClient;
+import org.apache.usergrid.persistence.qakka.serialization.leases.QueueLeaseSerialization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+
+
+public class QueueLeaseSerializationImpl implements QueueLeaseSerialization {
+
+    private static final Logger logger = LoggerFactory.getLogger( QueueLeaseSerializationImpl.class );
+
+    private final CassandraClient cassandraClient;
+    private final CassandraConfig cassandraConfig;
+
+    public final static String COLUMN_QUEUE_NAME = "queue_name";
+    public final static String COLUMN_REGION     = "region";
+    public final static String COLUMN_OWNER      = "owner";
+
+    public final static String TABLE_QUEUE_LEASES = "queue_leases";
+
+    // Leases are written with lightweight transactions and expire by TTL, so a node that dies
+    // or loses contact with Cassandra gives up its leases.
+
+    static final String CQL =
+        "CREATE TABLE IF NOT EXISTS queue_leases ( " +
+                "queue_name text, " +
+                "region     text, " +
+                "owner      text, " +
+                "PRIMARY KEY ((queue_name, region)) " +
+                "); ";
+
+
+    @Inject
+    public QueueLeaseSerializationImpl( CassandraConfig cassandraConfig, CassandraClient cassandraClient ) {
+        this.cassandraConfig = cassandraConfig;
+        this.cassandraClient = cassandraClient;
+    }
+
+
+    @Override
+    public boolean acquireLease( String queueName, String region, String owner, int ttlSeconds ) {
+
+        Statement insert = QueryBuilder.insertInto( TABLE_QUEUE_LEASES )
+                .value( COLUMN_QUEUE_NAME, queueName )
+                .value( COLUMN_REGION, region )
+                .value( COLUMN_OWNER, owner )
+                .ifNotExists()
+                .using( QueryBuilder.ttl( ttlSeconds ) );
+
+        ResultSet rs = cassandraClient.getQueueMessageSession().execute( insert );
+        if ( rs.wasApplied() ) {
+            logger.debug( "{} acquired lease on queue {} region {}", owner, queueName, region );
+            return true;
+        }
+
+        if ( !owner.equals( rs.one().getString( COLUMN_OWNER ) ) ) {
+            return false;
+        }
+
+        // already the owner, extend the lease
+
+        Statement renew = QueryBuilder.update( TABLE_QUEUE_LEASES )
+                .using( QueryBuilder.ttl( ttlSeconds ) )
+                .with( QueryBuilder.set( COLUMN_OWNER, owner ) )
+                .where( QueryBuilder.eq( COLUMN_QUEUE_NAME, queueName ) )
+                .and( QueryBuilder.eq( COLUMN_REGION, region ) )
+                .onlyIf( QueryBuilder.eq( COLUMN_OWNER, owner ) );
+
+        return cassandraClient.getQueueMessageSession().execute( renew ).wasApplied();
+    }
+
+
+    @Override
+    public void releaseLease( String queueName, String region, String owner ) {
+
+        Statement delete = QueryBuilder.delete().from( TABLE_QUEUE_LEASES )
+                .where( QueryBuilder.eq( COLUMN_QUEUE_NAME, queueName ) )
+                .and( QueryBuilder.eq( COLUMN_REGION, region ) )
+                .onlyIf( QueryBuilder.eq( COLUMN_OWNER, owner ) );
+
+        cassandraClient.getQueueMessageSession().execute( delete );
+    }
+
+
+    @Override
+    public String getLeaseOwner( String queueName, String region ) {
+
+        Clause queueNameClause = QueryBuilder.eq( COLUMN_QUEUE_NAME, queueName );
+        Clause regionClause = QueryBuilder.eq(    COLUMN_REGION, region );
+
+        Statement query = QueryBuilder.select().from( TABLE_QUEUE_LEASES )
+                .where( queueNameClause )
+                .and( regionClause );
+
+        Row row = cassandraClient.getQueueMessageSession().execute( query ).one();
+        return row == null ? null : row.getString( COLUMN_OWNER );
+    }
+
+
+    @Override
+    public Collection<MultiTenantColumnFamilyDefinition> getColumnFamilies() {
+        return Collections.EMPTY_LIST;
+    }
+
+    @Override
+    public Collection<TableDefinition> getTables() {
+        return Collections.singletonList( new TableDefinitionStringImpl(
+            cassandraConfig.getApplicationLocalKeyspace(), TABLE_QUEUE_LEASES, CQL ) );
+    }
+}
@@ -21,6 +21,9 @@ package org.apache.usergrid.persistence.qakka.serialization.queuemessages;
 
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -46,10 +49,32 @@ public interface QueueMessageSerialization extends Migration {
         final DatabaseQueueMessage.Type type,
         final UUID queueMessageId);
 
+    /**
+     * Load many messages of one queue, with one read per shard instead of one read per message.
+     * Messages that are not found are not returned.
+     */
+    Collection<DatabaseQueueMessage> loadMessages(
+        final String queueName,
+        final String region,
+        final DatabaseQueueMessage.Type type,
+        final Collection<UUID> queueMessageIds);
+
+    /**
+     * Delete many messages, grouped into one unlogged batch per shard.
+     * @return The messages that were deleted, messages in a shard batch that failed are not returned.
+     */
+    Collection<DatabaseQueueMessage> deleteMessages( final Collection<DatabaseQueueMessage> messages );
+
     void writeMessageData(final UUID messageId, final DatabaseQueueMessageBody messageBody);
 
     DatabaseQueueMessageBody loadMessageData(final UUID messageId);
 
+    /**
+     * Load the data of many messages, reading every message's partition concurrently.
+     * @return Message data by message id, messages without data are not included.
+     */
+    Map<UUID, DatabaseQueueMessageBody> loadMessageData(final Collection<UUID> messageIds);
+
     void deleteMessageData(final UUID messageId);
 
     /**
@@ -57,6 +82,13 @@ public interface QueueMessageSerialization extends Migration {
      */
     void putInflight( DatabaseQueueMessage queueMessage );
 
+    /**
+     * Write messages to inflight table and remove from available table, grouped into one unlogged batch per shard.
+     * Inflight writes complete before available messages are removed, so a failure never loses a message.
+     * @return The messages that were moved to inflight, messages in a shard batch that failed are not returned.
+     */
+    Collection<DatabaseQueueMessage> putInflight( Collection<DatabaseQueueMessage> queueMessages );
+
     /**
      * Delete all queue messages in the specified queue and in the current "local" region.
      * Impacts messages available and messages inflight.
@@ -68,4 +100,39 @@ public interface QueueMessageSerialization extends Migration {
      * Remove message from inflight table, write message to available table.
      */
     void timeoutInflight( DatabaseQueueMessage queueMessage );
+
+    /**
+     * Remove messages from inflight table and write them to available table with new queue message ids,
+     * grouped into one unlogged batch per shard. Available writes complete before inflight messages are removed.
+     * @return The inflight messages that were timed out.
+     */
+    Collection<DatabaseQueueMessage> timeoutInflight( Collection<DatabaseQueueMessage> queueMessages );
+
+    /**
+     * Read one bucket of the inflight index, which records the time each message was put inflight.
+     * Entries are not removed when a message is acked by id only, so callers must check that the returned
+     * messages are still inflight.
+     * @param bucket Time the messages were put inflight divided by the bucket width.
+     * @param inflightBefore Only return messages put inflight before this time.
+     * @param limit Max number of messages to return, oldest first.
+     */
+    List<DatabaseQueueMessage> loadInflightIndex(
+        final String queueName,
+        final String region,
+        final long bucket,
+        final long inflightBefore,
+        final int limit);
+
+    /**
+     * Remove messages from the inflight index, grouped into one unlogged batch per bucket.
+     * @return The messages that were removed.
+     */
+    Collection<DatabaseQueueMessage> deleteInflightIndex( Collection<DatabaseQueueMessage> queueMessages );
+
+    /**
+     * Write inflight index entries for messages that went inflight without one, grouped into one unlogged batch
+     * per bucket.
+     * @return The messages that were indexed.
+     */
+    Collection<DatabaseQueueMessage> indexInflight( Collection<DatabaseQueueMessage> queueMessages );
 }
@@ -20,6 +20,7 @@
 package org.apache.usergrid.persistence.qakka.serialization.queuemessages.impl;
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Clause;
@@ -57,6 +58,7 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     private final CassandraConfig cassandraConfig;
 
     private final int maxTtl;
+    private final long inflightBucketMillis;
 
     private final ActorSystemFig            actorSystemFig;
     private final ShardStrategy             shardStrategy;
@@ -72,6 +74,7 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     public final static String COLUMN_MESSAGE_ID       = "message_id";
     public final static String COLUMN_CONTENT_TYPE     = "content_type";
     public final static String COLUMN_MESSAGE_DATA     = "data";
+    public final static String COLUMN_BUCKET           = "bucket";
 
     public final static String TABLE_MESSAGES_AVAILABLE = "messages_available";
 
@@ -79,6 +82,8 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
 
     public final static String TABLE_MESSAGE_DATA = "message_data";
 
+    public final static String TABLE_MESSAGES_INFLIGHT_INDEX = "messages_inflight_index";
+
     static final String MESSAGES_AVAILABLE =
         "CREATE TABLE IF NOT EXISTS messages_available ( " +
                 "queue_name       text, " +
@@ -117,6 +122,29 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
                         "'unchecked_tombstone_compaction': true" +
                     "};";
 
+    // Inflight messages are indexed by the time they went inflight. Timing out messages then only
+    // reads the buckets that have expired instead of every inflight shard.
+
+    static final String MESSAGES_INFLIGHT_INDEX =
+        "CREATE TABLE IF NOT EXISTS messages_inflight_index ( " +
+                "queue_name       text, " +
+                "region           text, " +
+                "bucket           bigint, " +
+                "inflight_at      bigint, " +
+                "queue_message_id timeuuid, " +
+                "shard_id         bigint, " +
+                "message_id       uuid, " +
+                "queued_at        bigint, " +
+                "PRIMARY KEY ((queue_name, region, bucket), inflight_at, queue_message_id ) " +
+                ") WITH CLUSTERING ORDER BY (inflight_at ASC, queue_message_id ASC) AND " +
+                    "gc_grace_seconds = 60 AND " +
+                        "compaction = {'class': " + "'LeveledCompactionStrategy', " +
+                        "'sstable_size_in_mb': 5, " +
+                        "'tombstone_compaction_interval': 60, " +
+                        "'tombstone_threshold': 0.05, " +
+                        "'unchecked_tombstone_compaction': true" +
+                    "};";
+
     static final String MESSAGE_DATA =
         "CREATE TABLE IF NOT EXISTS message_data ( " +
                 "message_id uuid, " +
@@ -143,6 +171,7 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
         this.cassandraClient             = cassandraClient;
 
         this.maxTtl = qakkaFig.getMaxTtlSeconds();
+        this.inflightBucketMillis = qakkaFig.getInflightBucketMillis();
     }
 
 
@@ -219,6 +248,67 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
             return null;
         }
 
+        return createMessage( row, type );
+    }
+
+
+    @Override
+    public Collection<DatabaseQueueMessage> loadMessages(
+            final String queueName,
+            final String region,
+            final DatabaseQueueMessage.Type type,
+            final Collection<UUID> queueMessageIds ) {
+
+        if ( queueMessageIds.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        logger.trace("loadMessages {}", queueMessageIds.size());
+
+        Shard.Type shardType = DatabaseQueueMessage.Type.DEFAULT.equals( type ) ?
+                Shard.Type.DEFAULT : Shard.Type.INFLIGHT;
+
+        Map<UUID, Shard> shards = shardStrategy.selectShards( queueName, region, shardType, queueMessageIds );
+
+        // one read per shard
+
+        Map<Long, List<UUID>> idsByShard = new HashMap<>();
+        for ( UUID queueMessageId : queueMessageIds ) {
+            idsByShard.computeIfAbsent( shards.get( queueMessageId ).getShardId(), k -> new ArrayList<>() )
+                .add( queueMessageId );
+        }
+
+        List<ResultSetFuture> futures = new ArrayList<>( idsByShard.size() );
+
+        for ( Map.Entry<Long, List<UUID>> entry : idsByShard.entrySet() ) {
+
+            Clause queueNameClause = QueryBuilder.eq(      COLUMN_QUEUE_NAME, queueName );
+            Clause regionClause = QueryBuilder.eq(         COLUMN_REGION, region );
+            Clause shardIdClause = QueryBuilder.eq(        COLUMN_SHARD_ID, entry.getKey() );
+            Clause queueMessageIdClause = QueryBuilder.in( COLUMN_QUEUE_MESSAGE_ID, entry.getValue().toArray() );
+
+            Statement select = QueryBuilder.select().from(getTableName( type ))
+                    .where(queueNameClause)
+                    .and(regionClause)
+                    .and(shardIdClause)
+                    .and(queueMessageIdClause);
+
+            futures.add( cassandraClient.getQueueMessageSession().executeAsync( select ) );
+        }
+
+        List<DatabaseQueueMessage> messages = new ArrayList<>( queueMessageIds.size() );
+        for ( ResultSetFuture future : futures ) {
+            for ( Row row : future.getUninterruptibly() ) {
+                messages.add( createMessage( row, type ) );
+            }
+        }
+
+        return messages;
+    }
+
+
+    private DatabaseQueueMessage createMessage( Row row, DatabaseQueueMessage.Type type ) {
+
         return new DatabaseQueueMessage(
             row.getUUID(   COLUMN_MESSAGE_ID),
             type,
@@ -250,6 +340,57 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     }
 
 
+    @Override
+    public Collection<DatabaseQueueMessage> deleteMessages( final Collection<DatabaseQueueMessage> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        logger.trace("deleteMessages {}", messages.size());
+
+        Map<UUID, Long> shardIds = getShardIds( messages );
+
+        Map<List<Object>, PartitionBatch> batches = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+
+            long shardId = shardIds.get( message.getQueueMessageId() );
+
+            Statement delete = createDeleteMessageStatement(
+                message.getQueueName(),
+                message.getRegion(),
+                shardId,
+                message.getType(),
+                message.getQueueMessageId() );
+
+            addToBatch( batches, message, shardId, message.getType(), delete );
+        }
+
+        // index entries are removed along with inflight messages, a missed entry is only skipped by the timeouter
+
+        Map<List<Object>, PartitionBatch> indexDeletes = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+            if ( DatabaseQueueMessage.Type.INFLIGHT.equals( message.getType() )
+                && message.getInflightAt() != null && message.getInflightAt() > 0 ) {
+                addToIndexBatch( indexDeletes, message, createDeleteIndexStatement( message ) );
+            }
+        }
+
+        List<ResultSetFuture> indexFutures = executeAsync( indexDeletes.values() );
+
+        Collection<DatabaseQueueMessage> deleted = executeBatches( batches.values() );
+
+        getSucceeded( indexDeletes.values(), indexFutures );
+
+        for ( Map.Entry<List<Object>, Long> count : countByQueueAndType( deleted ).entrySet() ) {
+            messageCounterSerialization.decrementCounter( (String)count.getKey().get( 0 ),
+                (DatabaseQueueMessage.Type)count.getKey().get( 1 ), count.getValue() );
+        }
+
+        return deleted;
+    }
+
+
     @Override
     public DatabaseQueueMessageBody loadMessageData(final UUID messageId ){
 
@@ -270,6 +411,38 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     }
 
 
+    @Override
+    public Map<UUID, DatabaseQueueMessageBody> loadMessageData( final Collection<UUID> messageIds ) {
+
+        if ( messageIds.isEmpty() ) {
+            return Collections.emptyMap();
+        }
+
+        logger.trace("loadMessageData {}", messageIds.size());
+
+        // message data is partitioned by message id, so read all partitions at once rather than one by one
+
+        Map<UUID, ResultSetFuture> futures = new HashMap<>( messageIds.size() );
+        for ( UUID messageId : messageIds ) {
+            Statement select = QueryBuilder.select().from( TABLE_MESSAGE_DATA )
+                .where( QueryBuilder.eq( COLUMN_MESSAGE_ID, messageId ) );
+            futures.put( messageId, cassandraClient.getApplicationSession().executeAsync( select ) );
+        }
+
+        Map<UUID, DatabaseQueueMessageBody> bodies = new HashMap<>( messageIds.size() );
+        for ( Map.Entry<UUID, ResultSetFuture> future : futures.entrySet() ) {
+            Row row = future.getValue().getUninterruptibly().one();
+            if ( row != null ) {
+                bodies.put( future.getKey(), new DatabaseQueueMessageBody(
+                    row.getBytes( COLUMN_MESSAGE_DATA),
+                    row.getString( COLUMN_CONTENT_TYPE)) );
+            }
+        }
+
+        return bodies;
+    }
+
+
     @Override
     public void writeMessageData( final UUID messageId, final DatabaseQueueMessageBody messageBody ) {
         Preconditions.checkArgument(QakkaUtils.isTimeUuid(messageId), "MessageId is not a type 1 UUID");
@@ -305,12 +478,15 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
 
         // create statement to write queue message to inflight table
 
+        Shard inflightShard = shardStrategy.selectShard(
+            message.getQueueName(), message.getRegion(), Shard.Type.INFLIGHT, message.getQueueMessageId() );
+
         DatabaseQueueMessage inflightMessage = new DatabaseQueueMessage(
             message.getMessageId(),
             DatabaseQueueMessage.Type.INFLIGHT,
             message.getQueueName(),
             message.getRegion(),
-            null,
+            inflightShard.getShardId(),
             message.getQueuedAt(),
             System.currentTimeMillis(),
             message.getQueueMessageId() );
@@ -330,6 +506,7 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
 
         BatchStatement batchStatement = new BatchStatement();
         batchStatement.add( insert );
+        batchStatement.add( createWriteIndexStatement( inflightMessage ) );
         batchStatement.add( delete );
         cassandraClient.getQueueMessageSession().execute( batchStatement );
 
@@ -346,6 +523,249 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     }
 
 
+    @Override
+    public Collection<DatabaseQueueMessage> putInflight( Collection<DatabaseQueueMessage> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        logger.trace("putInflight {}", messages.size());
+
+        long inflightAt = System.currentTimeMillis();
+
+        // write queue messages to inflight table, one batch per inflight shard
+
+        Map<UUID, Long> inflightShardIds = getShardIds( messages, DatabaseQueueMessage.Type.INFLIGHT );
+        Map<UUID, DatabaseQueueMessage> availableByInflight = new HashMap<>( messages.size() );
+
+        Map<List<Object>, PartitionBatch> inserts = new HashMap<>();
+        Map<List<Object>, PartitionBatch> indexInserts = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+
+            DatabaseQueueMessage inflightMessage = new DatabaseQueueMessage(
+                message.getMessageId(),
+                DatabaseQueueMessage.Type.INFLIGHT,
+                message.getQueueName(),
+                message.getRegion(),
+                inflightShardIds.get( message.getQueueMessageId() ),
+                message.getQueuedAt(),
+                inflightAt,
+                message.getQueueMessageId() );
+
+            availableByInflight.put( message.getQueueMessageId(), message );
+
+            addToBatch( inserts, inflightMessage, inflightMessage.getShardId(), DatabaseQueueMessage.Type.INFLIGHT,
+                createWriteMessageStatement( inflightMessage ) );
+
+            addToIndexBatch( indexInserts, inflightMessage, createWriteIndexStatement( inflightMessage ) );
+        }
+
+        // a message that misses its index entry is found and indexed by the timeouter's full scans
+
+        List<ResultSetFuture> indexFutures = executeAsync( indexInserts.values() );
+
+        Collection<DatabaseQueueMessage> inflight = executeBatches( inserts.values() );
+
+        getSucceeded( indexInserts.values(), indexFutures );
+
+        // only remove messages from the available table once they are inflight, one batch per available shard
+
+        List<DatabaseQueueMessage> available = new ArrayList<>( inflight.size() );
+        for ( DatabaseQueueMessage inflightMessage : inflight ) {
+            available.add( availableByInflight.get( inflightMessage.getQueueMessageId() ) );
+        }
+
+        Map<UUID, Long> availableShardIds = getShardIds( available );
+
+        Map<List<Object>, PartitionBatch> deletes = new HashMap<>();
+        for ( DatabaseQueueMessage message : available ) {
+
+            long shardId = availableShardIds.get( message.getQueueMessageId() );
+
+            Statement delete = createDeleteMessageStatement(
+                message.getQueueName(),
+                message.getRegion(),
+                shardId,
+                DatabaseQueueMessage.Type.DEFAULT,
+                message.getQueueMessageId() );
+
+            addToBatch( deletes, message, shardId, DatabaseQueueMessage.Type.DEFAULT, delete );
+        }
+
+        Collection<DatabaseQueueMessage> moved = executeBatches( deletes.values() );
+
+        // bump counters
+
+        Map<List<Object>, Long> countByShard = new HashMap<>();
+        for ( DatabaseQueueMessage message : moved ) {
+            countByShard.merge( Arrays.asList( message.getQueueName(),
+                inflightShardIds.get( message.getQueueMessageId() ) ), 1L, Long::sum );
+        }
+
+        for ( Map.Entry<List<Object>, Long> count : countByShard.entrySet() ) {
+            shardCounterSerialization.incrementCounter( (String)count.getKey().get( 0 ), Shard.Type.INFLIGHT,
+                (Long)count.getKey().get( 1 ), count.getValue() );
+        }
+
+        for ( Map.Entry<List<Object>, Long> count : countByQueueAndType( moved ).entrySet() ) {
+            String queueName = (String)count.getKey().get( 0 );
+            messageCounterSerialization.incrementCounter(
+                queueName, DatabaseQueueMessage.Type.INFLIGHT, count.getValue() );
+            messageCounterSerialization.decrementCounter(
+                queueName, DatabaseQueueMessage.Type.DEFAULT, count.getValue() );
+        }
+
+        return moved;
+    }
+
+
+    /**
+     * Get the shard id of each message, selecting shards for messages that do not have one.
+     */
+    private Map<UUID, Long> getShardIds( Collection<DatabaseQueueMessage> messages ) {
+
+        Map<UUID, Long> shardIds = new HashMap<>( messages.size() );
+        List<DatabaseQueueMessage> unsharded = new ArrayList<>();
+
+        for ( DatabaseQueueMessage message : messages ) {
+            if ( message.getShardId() != null ) {
+                shardIds.put( message.getQueueMessageId(), message.getShardId() );
+            } else {
+                unsharded.add( message );
+            }
+        }
+
+        Map<DatabaseQueueMessage.Type, List<DatabaseQueueMessage>> unshardedByType = new HashMap<>();
+        for ( DatabaseQueueMessage message : unsharded ) {
+            unshardedByType.computeIfAbsent( message.getType(), k -> new ArrayList<>() ).add( message );
+        }
+
+        for ( Map.Entry<DatabaseQueueMessage.Type, List<DatabaseQueueMessage>> entry : unshardedByType.entrySet() ) {
+            shardIds.putAll( getShardIds( entry.getValue(), entry.getKey() ) );
+        }
+
+        return shardIds;
+    }
+
+
+    /**
+     * Select the shard of the specified type for each message, reading the shards of each queue only once.
+     */
+    private Map<UUID, Long> getShardIds( Collection<DatabaseQueueMessage> messages, DatabaseQueueMessage.Type type ) {
+
+        Shard.Type shardType = DatabaseQueueMessage.Type.DEFAULT.equals( type ) ?
+            Shard.Type.DEFAULT : Shard.Type.INFLIGHT;
+
+        Map<List<String>, List<UUID>> idsByQueue = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+            idsByQueue.computeIfAbsent( Arrays.asList( message.getQueueName(), message.getRegion() ),
+                k -> new ArrayList<>() ).add( message.getQueueMessageId() );
+        }
+
+        Map<UUID, Long> shardIds = new HashMap<>( messages.size() );
+        for ( Map.Entry<List<String>, List<UUID>> entry : idsByQueue.entrySet() ) {
+
+            Map<UUID, Shard> shards = shardStrategy.selectShards(
+                entry.getKey().get( 0 ), entry.getKey().get( 1 ), shardType, entry.getValue() );
+
+            for ( Map.Entry<UUID, Shard> shard : shards.entrySet() ) {
+                shardIds.put( shard.getKey(), shard.getValue().getShardId() );
+            }
+        }
+
+        return shardIds;
+    }
+
+
+    private Map<List<Object>, Long> countByQueueAndType( Collection<DatabaseQueueMessage> messages ) {
+
+        Map<List<Object>, Long> counts = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+            counts.merge( Arrays.asList( message.getQueueName(), message.getType() ), 1L, Long::sum );
+        }
+        return counts;
+    }
+
+
+    private void addToBatch( Map<List<Object>, PartitionBatch> batches, DatabaseQueueMessage message,
+                             long shardId, DatabaseQueueMessage.Type type, Statement statement ) {
+
+        addToBatch( batches, message, Arrays.asList(
+            getTableName( type ), message.getQueueName(), message.getRegion(), shardId ), statement );
+    }
+
+
+    private void addToIndexBatch( Map<List<Object>, PartitionBatch> batches, DatabaseQueueMessage message,
+                                  Statement statement ) {
+
+        addToBatch( batches, message, Arrays.asList( TABLE_MESSAGES_INFLIGHT_INDEX, message.getQueueName(),
+            message.getRegion(), getInflightBucket( message.getInflightAt() ) ), statement );
+    }
+
+
+    private void addToBatch( Map<List<Object>, PartitionBatch> batches, DatabaseQueueMessage message,
+                             List<Object> partitionKey, Statement statement ) {
+
+        PartitionBatch batch = batches.computeIfAbsent( partitionKey, k -> new PartitionBatch() );
+        batch.statements.add( statement );
+        batch.messages.add( message );
+    }
+
+
+    /**
+     * Execute all batches concurrently.
+     * @return Messages of the batches that succeeded
+     */
+    private Collection<DatabaseQueueMessage> executeBatches( Collection<PartitionBatch> batches ) {
+        return getSucceeded( batches, executeAsync( batches ) );
+    }
+
+
+    private List<ResultSetFuture> executeAsync( Collection<PartitionBatch> batches ) {
+
+        List<ResultSetFuture> futures = new ArrayList<>( batches.size() );
+        for ( PartitionBatch batch : batches ) {
+            futures.add( cassandraClient.getQueueMessageSession().executeAsync( batch.statements ) );
+        }
+        return futures;
+    }
+
+
+    /**
+     * Wait for batches started with {@link #executeAsync(Collection)}.
+     * @return Messages of the batches that succeeded
+     */
+    private Collection<DatabaseQueueMessage> getSucceeded(
+        Collection<PartitionBatch> batches, List<ResultSetFuture> futures ) {
+
+        List<DatabaseQueueMessage> succeeded = new ArrayList<>();
+
+        Iterator<PartitionBatch> batchIterator = batches.iterator();
+        for ( ResultSetFuture future : futures ) {
+            PartitionBatch batch = batchIterator.next();
+            try {
+                future.getUninterruptibly();
+                succeeded.addAll( batch.messages );
+
+            } catch ( Throwable t ) {
+                logger.error( "Error executing batch of " + batch.messages.size() + " queue messages", t );
+            }
+        }
+
+        return succeeded;
+    }
+
+
+    /**
+     * Statements for a single partition, executed together as an unlogged batch.
+     */
+    private static class PartitionBatch {
+        final BatchStatement statements = new BatchStatement( BatchStatement.Type.UNLOGGED );
+        final List<DatabaseQueueMessage> messages = new ArrayList<>();
+    }
+
+
     @Override
     public void deleteAllMessages( String queueName ) {
 
@@ -448,6 +868,9 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
         BatchStatement batchStatement = new BatchStatement();
         batchStatement.add( write );
         batchStatement.add( delete );
+        if ( message.getInflightAt() != null && message.getInflightAt() > 0 ) {
+            batchStatement.add( createDeleteIndexStatement( message ) );
+        }
         cassandraClient.getQueueMessageSession().execute( batchStatement );
 
         // bump counters
@@ -463,6 +886,201 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
     }
 
 
+    @Override
+    public Collection<DatabaseQueueMessage> timeoutInflight( Collection<DatabaseQueueMessage> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        logger.trace("timeoutInflight {}", messages.size());
+
+        long queuedAt = System.currentTimeMillis();
+
+        // write queue messages back to available table with new UUIDs, one batch per available shard
+
+        List<DatabaseQueueMessage> newMessages = new ArrayList<>( messages.size() );
+        Map<UUID, DatabaseQueueMessage> inflightByNew = new HashMap<>( messages.size() );
+
+        for ( DatabaseQueueMessage message : messages ) {
+
+            DatabaseQueueMessage newMessage = new DatabaseQueueMessage(
+                message.getMessageId(),
+                DatabaseQueueMessage.Type.DEFAULT,
+                message.getQueueName(),
+                message.getRegion(),
+                null,
+                queuedAt,
+                -1L,
+                QakkaUtils.getTimeUuid() );
+
+            newMessages.add( newMessage );
+            inflightByNew.put( newMessage.getQueueMessageId(), message );
+        }
+
+        Map<UUID, Long> availableShardIds = getShardIds( newMessages, DatabaseQueueMessage.Type.DEFAULT );
+
+        Map<List<Object>, PartitionBatch> writes = new HashMap<>();
+        for ( DatabaseQueueMessage newMessage : newMessages ) {
+            newMessage.setShardId( availableShardIds.get( newMessage.getQueueMessageId() ) );
+            addToBatch( writes, newMessage, newMessage.getShardId(), DatabaseQueueMessage.Type.DEFAULT,
+                createWriteMessageStatement( newMessage ) );
+        }
+
+        Collection<DatabaseQueueMessage> available = executeBatches( writes.values() );
+
+        // only remove messages from the inflight table and index once they are available again
+
+        List<DatabaseQueueMessage> inflight = new ArrayList<>( available.size() );
+        for ( DatabaseQueueMessage newMessage : available ) {
+            inflight.add( inflightByNew.get( newMessage.getQueueMessageId() ) );
+        }
+
+        Map<UUID, Long> inflightShardIds = getShardIds( inflight );
+
+        Map<List<Object>, PartitionBatch> deletes = new HashMap<>();
+        for ( DatabaseQueueMessage message : inflight ) {
+
+            long shardId = inflightShardIds.get( message.getQueueMessageId() );
+
+            Statement delete = createDeleteMessageStatement(
+                message.getQueueName(),
+                message.getRegion(),
+                shardId,
+                DatabaseQueueMessage.Type.INFLIGHT,
+                message.getQueueMessageId() );
+
+            addToBatch( deletes, message, shardId, DatabaseQueueMessage.Type.INFLIGHT, delete );
+        }
+
+        Collection<DatabaseQueueMessage> timedOut = executeBatches( deletes.values() );
+
+        deleteInflightIndex( timedOut );
+
+        // bump counters
+
+        Map<List<Object>, Long> countByShard = new HashMap<>();
+        for ( DatabaseQueueMessage newMessage : available ) {
+            countByShard.merge( Arrays.asList( newMessage.getQueueName(), newMessage.getShardId() ), 1L, Long::sum );
+        }
+
+        for ( Map.Entry<List<Object>, Long> count : countByShard.entrySet() ) {
+            shardCounterSerialization.incrementCounter( (String)count.getKey().get( 0 ), Shard.Type.DEFAULT,
+                (Long)count.getKey().get( 1 ), count.getValue() );
+        }
+
+        for ( Map.Entry<List<Object>, Long> count : countByQueueAndType( available ).entrySet() ) {
+            messageCounterSerialization.incrementCounter(
+                (String)count.getKey().get( 0 ), DatabaseQueueMessage.Type.DEFAULT, count.getValue() );
+        }
+
+        for ( Map.Entry<List<Object>, Long> count : countByQueueAndType( timedOut ).entrySet() ) {
+            messageCounterSerialization.decrementCounter(
+                (String)count.getKey().get( 0 ), DatabaseQueueMessage.Type.INFLIGHT, count.getValue() );
+        }
+
+        return timedOut;
+    }
+
+
+    @Override
+    public List<DatabaseQueueMessage> loadInflightIndex(
+            final String queueName,
+            final String region,
+            final long bucket,
+            final long inflightBefore,
+            final int limit ) {
+
+        Clause queueNameClause = QueryBuilder.eq(  COLUMN_QUEUE_NAME, queueName );
+        Clause regionClause = QueryBuilder.eq(     COLUMN_REGION, region );
+        Clause bucketClause = QueryBuilder.eq(     COLUMN_BUCKET, bucket );
+        Clause inflightAtClause = QueryBuilder.lt( COLUMN_INFLIGHT_AT, inflightBefore );
+
+        Statement select = QueryBuilder.select().from( TABLE_MESSAGES_INFLIGHT_INDEX )
+            .where(queueNameClause)
+            .and(regionClause)
+            .and(bucketClause)
+            .and(inflightAtClause)
+            .limit( limit );
+
+        List<DatabaseQueueMessage> messages = new ArrayList<>();
+        for ( Row row : cassandraClient.getQueueMessageSession().execute( select ) ) {
+            messages.add( createMessage( row, DatabaseQueueMessage.Type.INFLIGHT ) );
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public Collection<DatabaseQueueMessage> deleteInflightIndex( Collection<DatabaseQueueMessage> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        Map<List<Object>, PartitionBatch> batches = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+            addToIndexBatch( batches, message, createDeleteIndexStatement( message ) );
+        }
+
+        return executeBatches( batches.values() );
+    }
+
+
+    @Override
+    public Collection<DatabaseQueueMessage> indexInflight( Collection<DatabaseQueueMessage> messages ) {
+
+        if ( messages.isEmpty() ) {
+            return Collections.emptyList();
+        }
+
+        Map<List<Object>, PartitionBatch> batches = new HashMap<>();
+        for ( DatabaseQueueMessage message : messages ) {
+            addToIndexBatch( batches, message, createWriteIndexStatement( message ) );
+        }
+
+        return executeBatches( batches.values() );
+    }
+
+
+    private long getInflightBucket( long inflightAt ) {
+        return inflightAt / inflightBucketMillis;
+    }
+
+
+    private Statement createWriteIndexStatement( DatabaseQueueMessage message ) {
+
+        return QueryBuilder.insertInto( TABLE_MESSAGES_INFLIGHT_INDEX )
+            .value( COLUMN_QUEUE_NAME,       message.getQueueName())
+            .value( COLUMN_REGION,           message.getRegion())
+            .value( COLUMN_BUCKET,           getInflightBucket( message.getInflightAt() ))
+            .value( COLUMN_INFLIGHT_AT,      message.getInflightAt())
+            .value( COLUMN_QUEUE_MESSAGE_ID, message.getQueueMessageId())
+            .value( COLUMN_SHARD_ID,         message.getShardId())
+            .value( COLUMN_MESSAGE_ID,       message.getMessageId())
+            .value( COLUMN_QUEUED_AT,        message.getQueuedAt())
+            .using( QueryBuilder.ttl( maxTtl ) );
+    }
+
+
+    private Statement createDeleteIndexStatement( DatabaseQueueMessage message ) {
+
+        Clause queueNameClause = QueryBuilder.eq(      COLUMN_QUEUE_NAME, message.getQueueName() );
+        Clause regionClause = QueryBuilder.eq(         COLUMN_REGION, message.getRegion() );
+        Clause bucketClause = QueryBuilder.eq(         COLUMN_BUCKET, getInflightBucket( message.getInflightAt() ) );
+        Clause inflightAtClause = QueryBuilder.eq(     COLUMN_INFLIGHT_AT, message.getInflightAt() );
+        Clause queueMessageIdClause = QueryBuilder.eq( COLUMN_QUEUE_MESSAGE_ID, message.getQueueMessageId() );
+
+        return QueryBuilder.delete().from( TABLE_MESSAGES_INFLIGHT_INDEX )
+            .where(queueNameClause)
+            .and(regionClause)
+            .and(bucketClause)
+            .and(inflightAtClause)
+            .and(queueMessageIdClause);
+    }
+
+
     private Statement createDeleteMessageStatement( final String queueName,
                                                     final String region,
                                                     final Long shardIdOrNull,
@@ -558,6 +1176,9 @@ public class QueueMessageSerializationImpl implements QueueMessageSerialization
             new TableDefinitionStringImpl( cassandraConfig.getApplicationLocalKeyspace(),
                 TABLE_MESSAGES_INFLIGHT, MESSAGES_INFLIGHT ),
 
+            new TableDefinitionStringImpl( cassandraConfig.getApplicationLocalKeyspace(),
+                TABLE_MESSAGES_INFLIGHT_INDEX, MESSAGES_INFLIGHT_INDEX ),
+
             new TableDefinitionStringImpl( cassandraConfig.getApplicationKeyspace(),
                 TABLE_MESSAGE_DATA, MESSAGE_DATA )
         );
@@ -19,6 +19,8 @@
 
 package org.apache.usergrid.persistence.qakka.serialization.sharding;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -32,4 +34,14 @@ public interface ShardStrategy {
      * @param pointer   Queue Message ID (must be Time-based)
      */
     Shard selectShard(String queueName, String region, Shard.Type type, UUID pointer);
+
+    /**
+     * Select shards for many Queue Messages of the same queue, reading the list of shards only once.
+     * @param queueName Name of queue
+     * @param region    Region
+     * @param type      Indicates whether messages are inflight or available
+     * @param pointers  Queue Message IDs (must be Time-based)
+     * @return Map of Queue Message ID to the shard that should be used for it
+     */
+    Map<UUID, Shard> selectShards(String queueName, String region, Shard.Type type, Collection<UUID> pointers);
 }
@@ -23,6 +23,7 @@ package org.apache.usergrid.persistence.qakka.serialization.sharding.impl;
 import org.apache.usergrid.persistence.qakka.serialization.sharding.Shard;
 import org.apache.usergrid.persistence.qakka.serialization.sharding.ShardStrategy;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -41,4 +42,16 @@ public class PlaceholderShardStrategy implements ShardStrategy {
         shardMap.putIfAbsent( key, new Shard( queueName, region, type, 0L, pointer ) );
         return shardMap.get( key );
     }
+
+
+    @Override
+    public Map<UUID, Shard> selectShards(
+        String queueName, String region, Shard.Type type, Collection<UUID> pointers) {
+
+        Map<UUID, Shard> shards = new HashMap<>();
+        for ( UUID pointer : pointers ) {
+            shards.put( pointer, selectShard( queueName, region, type, pointer ) );
+        }
+        return shards;
+    }
 }
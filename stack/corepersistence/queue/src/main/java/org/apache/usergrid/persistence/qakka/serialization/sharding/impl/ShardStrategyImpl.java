@@ -27,6 +27,11 @@ import org.apache.usergrid.persistence.qakka.serialization.sharding.ShardIterato
 import org.apache.usergrid.persistence.qakka.serialization.sharding.ShardStrategy;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -42,8 +47,27 @@ public class ShardStrategyImpl implements ShardStrategy {
 
     @Override
     public Shard selectShard(String queueName, String region, Shard.Type shardType, UUID pointer) {
+        return selectShard( loadShards( queueName, region, shardType ), pointer );
+    }
+
+
+    @Override
+    public Map<UUID, Shard> selectShards(
+        String queueName, String region, Shard.Type shardType, Collection<UUID> pointers) {
+
+        List<Shard> shards = loadShards( queueName, region, shardType );
+
+        Map<UUID, Shard> selected = new HashMap<>( pointers.size() );
+        for ( UUID pointer : pointers ) {
+            selected.put( pointer, selectShard( shards, pointer ) );
+        }
+        return selected;
+    }
+
 
-        // use shard iterator to walk through shards until shard can be found
+    private List<Shard> loadShards(String queueName, String region, Shard.Type shardType) {
+
+        // use shard iterator to walk through shards from oldest to newest
 
         ShardIterator shardIterator = new ShardIterator(
                 cassandraClient, queueName, region, shardType, Optional.empty() );
@@ -54,11 +78,21 @@ public class ShardStrategyImpl implements ShardStrategy {
             throw new NotFoundException( msg );
         }
 
+        List<Shard> shards = new ArrayList<>();
+        while ( shardIterator.hasNext() ) {
+            shards.add( shardIterator.next() );
+        }
+        return shards;
+    }
+
+
+    private Shard selectShard(List<Shard> shards, UUID pointer) {
+
         // walk through shards from oldest to newest
 
-        Shard prev = shardIterator.next();
-        while ( shardIterator.hasNext() ) {
-            Shard next = shardIterator.next();
+        Shard prev = shards.get( 0 );
+        for ( int i = 1; i < shards.size(); i++ ) {
+            Shard next = shards.get( i );
 
             // if item is older than the next shard, the use prev shard
             if ( pointer.timestamp() < next.getPointer().timestamp() ) {
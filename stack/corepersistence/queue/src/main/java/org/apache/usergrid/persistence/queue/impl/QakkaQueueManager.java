@@ -178,8 +178,19 @@ public class QakkaQueueManager implements LegacyQueueManager {
     @Override
     public void commitMessages(List<LegacyQueueMessage> queueMessages) {
 
+        createQueueIfNecessary();
+
+        List<UUID> queueMessageIds = new ArrayList<>( queueMessages.size() );
         for ( LegacyQueueMessage message : queueMessages ) {
-            commitMessage( message );
+            queueMessageIds.add( UUID.fromString( message.getMessageId() ) );
+        }
+
+        // ack all messages in one request, messages that can not be acked will time out and be redelivered
+        List<UUID> failed = queueMessageManager.ackMessages( scope.getName(), queueMessageIds );
+
+        if ( !failed.isEmpty() ) {
+            logger.error( "Unable to commit {} of {} messages in queue {}: {}",
+                failed.size(), queueMessages.size(), scope.getName(), failed );
         }
     }
 
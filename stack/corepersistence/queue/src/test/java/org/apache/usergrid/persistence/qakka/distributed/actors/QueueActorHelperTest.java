@@ -39,6 +39,9 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -315,4 +318,80 @@ public class QueueActorHelperTest extends AbstractAkkaTest {
             queueManager.deleteQueue( queueName );
         }
     }
+
+
+    @Test
+    public void putInflightAndAckBatch() throws Exception {
+
+        Injector injector = getInjector();
+
+        injector.getInstance( App.class ); // init the INJECTOR
+
+        ActorSystemFig actorSystemFig = injector.getInstance( ActorSystemFig.class );
+        QueueMessageSerialization qms = injector.getInstance( QueueMessageSerialization.class );
+        QueueManager queueManager     = injector.getInstance( QueueManager.class );
+
+        String queueName = "qat_queue_" + RandomStringUtils.randomAlphanumeric( 10 );
+        queueManager.createQueue( new Queue( queueName ) );
+
+        try {
+
+            // write messages to messages_available table
+
+            List<DatabaseQueueMessage> messages = new ArrayList<>();
+            for ( int i = 0; i < 5; i++ ) {
+                DatabaseQueueMessage message = new DatabaseQueueMessage(
+                    QakkaUtils.getTimeUuid(),
+                    DatabaseQueueMessage.Type.DEFAULT,
+                    queueName,
+                    actorSystemFig.getRegionLocal(),
+                    null,
+                    System.currentTimeMillis(),
+                    null,
+                    QakkaUtils.getTimeUuid() );
+                qms.writeMessage( message );
+                messages.add( message );
+            }
+
+            // put all messages inflight together
+
+            QueueActorHelper helper = injector.getInstance( QueueActorHelper.class );
+            Assert.assertEquals( messages.size(), helper.putInflight( messages ).size() );
+
+            List<UUID> queueMessageIds = new ArrayList<>();
+            for ( DatabaseQueueMessage message : messages ) {
+
+                Assert.assertNull( qms.loadMessage( queueName, actorSystemFig.getRegionLocal(), null,
+                    DatabaseQueueMessage.Type.DEFAULT, message.getQueueMessageId() ) );
+
+                Assert.assertNotNull( qms.loadMessage( queueName, actorSystemFig.getRegionLocal(), null,
+                    DatabaseQueueMessage.Type.INFLIGHT, message.getQueueMessageId() ) );
+
+                queueMessageIds.add( message.getQueueMessageId() );
+            }
+
+            // ack all messages plus one that does not exist
+
+            UUID bogusId = QakkaUtils.getTimeUuid();
+            queueMessageIds.add( bogusId );
+
+            Map<UUID, DistributedQueueService.Status> statuses = helper.ackQueueMessages( queueName, queueMessageIds );
+
+            Assert.assertEquals( DistributedQueueService.Status.NOT_INFLIGHT, statuses.get( bogusId ) );
+
+            for ( DatabaseQueueMessage message : messages ) {
+                Assert.assertEquals( DistributedQueueService.Status.SUCCESS,
+                    statuses.get( message.getQueueMessageId() ) );
+
+                Assert.assertNull( qms.loadMessage( queueName, actorSystemFig.getRegionLocal(), null,
+                    DatabaseQueueMessage.Type.INFLIGHT, message.getQueueMessageId() ) );
+            }
+
+            DistributedQueueService distributedQueueService = injector.getInstance( DistributedQueueService.class );
+            distributedQueueService.shutdown();
+
+        } finally {
+            queueManager.deleteQueue( queueName );
+        }
+    }
 }
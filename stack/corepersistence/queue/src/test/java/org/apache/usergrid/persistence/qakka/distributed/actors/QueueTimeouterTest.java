@@ -135,6 +135,70 @@ public class QueueTimeouterTest extends AbstractTest {
 
     }
 
+    @Test
+    public void testUnindexedInflight() throws Exception {
+
+        Injector injector = getInjector();
+
+        injector.getInstance( DistributedQueueService.class ); // init the INJECTOR
+
+        CassandraClient cassandraClient = injector.getInstance( CassandraClientImpl.class );
+        QakkaFig qakkaFig             = injector.getInstance( QakkaFig.class );
+        ActorSystemFig actorSystemFig = injector.getInstance( ActorSystemFig.class );
+        QueueMessageSerialization qms = injector.getInstance( QueueMessageSerialization.class );
+        ShardSerialization shardSerialization = injector.getInstance( ShardSerialization.class );
+
+        long timeoutMs = qakkaFig.getQueueTimeoutSeconds()*1000;
+        String region = actorSystemFig.getRegionLocal();
+
+        String queueName = "qtt_queue_" + RandomStringUtils.randomAlphanumeric( 20 );
+
+        shardSerialization.createShard( new Shard( queueName, region, Shard.Type.INFLIGHT, 1L, QakkaUtils.getTimeUuid()));
+        shardSerialization.createShard( new Shard( queueName, region, Shard.Type.DEFAULT, 1L, QakkaUtils.getTimeUuid()));
+
+        // message put inflight without an index entry, as done by nodes that are not upgraded, and not expired yet
+
+        long inflightAt = System.currentTimeMillis() - timeoutMs + 5000;
+        UUID queueMessageId = QakkaUtils.getTimeUuid();
+
+        qms.writeMessage( new DatabaseQueueMessage(
+            QakkaUtils.getTimeUuid(),
+            DatabaseQueueMessage.Type.INFLIGHT,
+            queueName,
+            region,
+            null,
+            inflightAt,
+            inflightAt,
+            queueMessageId ) );
+
+        long bucket = inflightAt / qakkaFig.getInflightBucketMillis();
+        Assert.assertEquals( 0, qms.loadInflightIndex( queueName, region, bucket, Long.MAX_VALUE, 10 ).size() );
+
+        ActorSystem system = ActorSystem.create("Test-" + queueName);
+        ActorRef timeouterRef = system.actorOf( Props.create(
+            GuiceActorProducer.class, QueueTimeouter.class), "timeouter");
+
+        // first request does a full scan, which leaves the message inflight but indexes it
+
+        timeouterRef.tell( new QueueTimeoutRequest( queueName ), null );
+        Thread.sleep( 2000 );
+
+        Assert.assertEquals( 1, getDatabaseQueueMessages(
+            cassandraClient, queueName, region, Shard.Type.INFLIGHT ).size() );
+        Assert.assertEquals( 1, qms.loadInflightIndex( queueName, region, bucket, Long.MAX_VALUE, 10 ).size() );
+
+        // once expired, the message is timed out from the index without waiting for another full scan
+
+        Thread.sleep( 5000 );
+        timeouterRef.tell( new QueueTimeoutRequest( queueName ), null );
+        Thread.sleep( 2000 );
+
+        Assert.assertEquals( 1, getDatabaseQueueMessages(
+            cassandraClient, queueName, region, Shard.Type.DEFAULT ).size() );
+        Assert.assertEquals( 0, getDatabaseQueueMessages(
+            cassandraClient, queueName, region, Shard.Type.INFLIGHT ).size() );
+    }
+
     private List<DatabaseQueueMessage> getDatabaseQueueMessages(
             CassandraClient cassandraClient, String queueName, String region, Shard.Type type ) {
 
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.qakka.serialization.auditlogs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.usergrid.persistence.core.CassandraConfig;
+import org.apache.usergrid.persistence.qakka.MetricsService;
+import org.apache.usergrid.persistence.qakka.QakkaFig;
+import org.apache.usergrid.persistence.qakka.core.CassandraClient;
+import org.apache.usergrid.persistence.qakka.serialization.auditlog.AuditLog;
+import org.apache.usergrid.persistence.qakka.serialization.auditlog.impl.AuditLogSerializationImpl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.UUID;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class AuditLogBufferTest {
+
+    @Test
+    public void testShutdownFlushesBuffer() {
+
+        Session session = mock( Session.class );
+        when( session.executeAsync( any( Statement.class ) ) ).thenReturn( mock( ResultSetFuture.class ) );
+
+        CassandraClient cassandraClient = mock( CassandraClient.class );
+        when( cassandraClient.getApplicationSession() ).thenReturn( session );
+
+        QakkaFig qakkaFig = mock( QakkaFig.class );
+        when( qakkaFig.getAuditAsync() ).thenReturn( true );
+        when( qakkaFig.getAuditBufferSize() ).thenReturn( 100 );
+        when( qakkaFig.getAuditBatchSize() ).thenReturn( 2 );
+        when( qakkaFig.getAuditFlushMillis() ).thenReturn( 60000L );
+        when( qakkaFig.getAuditSampleSend() ).thenReturn( 1.0 );
+        when( qakkaFig.getAuditSampleGet() ).thenReturn( 1.0 );
+        when( qakkaFig.getAuditSampleAck() ).thenReturn( 1.0 );
+        when( qakkaFig.getAuditSampleRequeue() ).thenReturn( 1.0 );
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        MetricsService metricsService = mock( MetricsService.class );
+        when( metricsService.getMetricRegistry() ).thenReturn( metricRegistry );
+
+        AuditLogSerializationImpl logSerialization = new AuditLogSerializationImpl(
+            mock( CassandraConfig.class ), cassandraClient, qakkaFig, () -> metricsService );
+
+        // record logs for a few messages, they go to the buffer and not straight to Cassandra
+        int numLogs = 0;
+        for ( int i=0; i<5; i++ ) {
+            UUID messageId = UUIDGen.getTimeUUID();
+            for ( AuditLog.Action action : AuditLog.Action.values() ) {
+                logSerialization.recordAuditLog( action, AuditLog.Status.SUCCESS,
+                    "albt_queue", "us-east", messageId, UUIDGen.getTimeUUID() );
+                numLogs++;
+            }
+        }
+        verify( session, never() ).execute( any( Statement.class ) );
+
+        logSerialization.shutdown();
+
+        // every buffered log was written, in batches grouped by message
+        ArgumentCaptor<Statement> captor = ArgumentCaptor.forClass( Statement.class );
+        verify( session, atLeastOnce() ).executeAsync( captor.capture() );
+
+        int written = 0;
+        for ( Statement statement : captor.getAllValues() ) {
+            Assert.assertTrue( statement instanceof BatchStatement );
+            written += ( (BatchStatement) statement ).size();
+        }
+        Assert.assertEquals( numLogs, written );
+        Assert.assertEquals( numLogs, metricRegistry.meter( MetricsService.AUDIT_WRITTEN ).getCount() );
+        Assert.assertEquals( 0, metricRegistry.meter( MetricsService.AUDIT_DROPPED ).getCount() );
+
+        // once shut down logs are written on the calling thread
+        logSerialization.recordAuditLog( AuditLog.Action.SEND, AuditLog.Status.SUCCESS,
+            "albt_queue", "us-east", UUIDGen.getTimeUUID(), UUIDGen.getTimeUUID() );
+        verify( session, times( 1 ) ).execute( any( Statement.class ) );
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.qakka.serialization.auditlogs;
+
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.usergrid.persistence.qakka.serialization.auditlog.impl.AuditLogSerializationImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.UUID;
+
+
+public class AuditLogSamplingTest {
+
+    @Test
+    public void testSampleRate() {
+
+        int numMessages = 10000;
+        int sampled = 0;
+
+        for ( int i=0; i<numMessages; i++ ) {
+            UUID messageId = UUIDGen.getTimeUUID();
+
+            Assert.assertTrue( AuditLogSerializationImpl.isSampled( messageId, 1.0 ) );
+            Assert.assertFalse( AuditLogSerializationImpl.isSampled( messageId, 0.0 ) );
+
+            if ( AuditLogSerializationImpl.isSampled( messageId, 0.25 ) ) {
+                sampled++;
+
+                // a message sampled at a low rate is also sampled at any higher rate
+                Assert.assertTrue( AuditLogSerializationImpl.isSampled( messageId, 0.5 ) );
+            }
+        }
+
+        Assert.assertTrue( "sampled " + sampled, sampled > numMessages * 0.2 && sampled < numMessages * 0.3 );
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.qakka.serialization.leases;
+
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.usergrid.persistence.qakka.AbstractTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class QueueLeaseSerializationTest extends AbstractTest {
+
+    @Test
+    public void acquireAndRelease() throws Exception {
+
+        QueueLeaseSerialization leaseSerialization = getInjector().getInstance( QueueLeaseSerialization.class );
+
+        String queueName = "qlst_queue_" + RandomStringUtils.randomAlphanumeric( 15 );
+        String region = RandomStringUtils.randomAlphanumeric( 15 );
+
+        // first owner gets the lease and can renew it, second owner cannot take it
+
+        Assert.assertTrue( leaseSerialization.acquireLease( queueName, region, "owner1", 30 ) );
+        Assert.assertTrue( leaseSerialization.acquireLease( queueName, region, "owner1", 30 ) );
+        Assert.assertFalse( leaseSerialization.acquireLease( queueName, region, "owner2", 30 ) );
+        Assert.assertEquals( "owner1", leaseSerialization.getLeaseOwner( queueName, region ) );
+
+        // only the owner can release the lease
+
+        leaseSerialization.releaseLease( queueName, region, "owner2" );
+        Assert.assertEquals( "owner1", leaseSerialization.getLeaseOwner( queueName, region ) );
+
+        leaseSerialization.releaseLease( queueName, region, "owner1" );
+        Assert.assertNull( leaseSerialization.getLeaseOwner( queueName, region ) );
+
+        Assert.assertTrue( leaseSerialization.acquireLease( queueName, region, "owner2", 30 ) );
+    }
+
+    @Test
+    public void leaseExpires() throws Exception {
+
+        QueueLeaseSerialization leaseSerialization = getInjector().getInstance( QueueLeaseSerialization.class );
+
+        String queueName = "qlst_queue_" + RandomStringUtils.randomAlphanumeric( 15 );
+        String region = RandomStringUtils.randomAlphanumeric( 15 );
+
+        Assert.assertTrue( leaseSerialization.acquireLease( queueName, region, "owner1", 1 ) );
+        Assert.assertFalse( leaseSerialization.acquireLease( queueName, region, "owner2", 1 ) );
+
+        Thread.sleep( 2000 );
+
+        Assert.assertTrue( leaseSerialization.acquireLease( queueName, region, "owner2", 1 ) );
+    }
+}
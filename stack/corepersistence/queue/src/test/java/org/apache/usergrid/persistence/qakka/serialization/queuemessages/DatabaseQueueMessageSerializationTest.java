@@ -24,6 +24,7 @@ import com.datastax.driver.core.ProtocolVersion;
 import com.google.inject.Injector;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.usergrid.persistence.qakka.AbstractTest;
+import org.apache.usergrid.persistence.qakka.QakkaFig;
 import org.apache.usergrid.persistence.qakka.core.QakkaUtils;
 import org.apache.usergrid.persistence.qakka.serialization.sharding.Shard;
 import org.apache.usergrid.persistence.qakka.serialization.sharding.ShardSerialization;
@@ -31,6 +32,10 @@ import org.junit.Test;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
@@ -107,6 +112,74 @@ public class DatabaseQueueMessageSerializationTest extends AbstractTest {
     }
 
 
+    @Test
+    public void timeoutIndexedInflight(){
+
+        Injector injector = getInjector();
+
+        QueueMessageSerialization queueMessageSerialization =
+            injector.getInstance( QueueMessageSerialization.class );
+
+        ShardSerialization shardSerialization =
+            injector.getInstance( ShardSerialization.class );
+
+        QakkaFig qakkaFig = injector.getInstance( QakkaFig.class );
+
+        String queueName = "dqmst_queue_" + RandomStringUtils.randomAlphanumeric( 20 );
+        String region = "dummy_region";
+
+        shardSerialization.createShard( new Shard(queueName, region, Shard.Type.DEFAULT, 1L, null) );
+        shardSerialization.createShard( new Shard(queueName, region, Shard.Type.INFLIGHT, 1L, null) );
+
+        int numMessages = 10;
+
+        List<DatabaseQueueMessage> available = new ArrayList<>();
+        for ( int i=0; i<numMessages; i++ ) {
+            DatabaseQueueMessage message = new DatabaseQueueMessage(
+                QakkaUtils.getTimeUuid(),
+                DatabaseQueueMessage.Type.DEFAULT,
+                queueName,
+                region,
+                1L,
+                System.currentTimeMillis(),
+                null,
+                QakkaUtils.getTimeUuid() );
+            queueMessageSerialization.writeMessage( message );
+            available.add( message );
+        }
+
+        Collection<DatabaseQueueMessage> inflight = queueMessageSerialization.putInflight( available );
+        assertEquals( numMessages, inflight.size() );
+
+        // messages went inflight at the same time, so they are all in one bucket of the index
+
+        long inflightAt = inflight.iterator().next().getInflightAt();
+        long bucket = inflightAt / qakkaFig.getInflightBucketMillis();
+        long after = inflightAt + 1;
+
+        assertEquals( numMessages, queueMessageSerialization.loadInflightIndex(
+            queueName, region, bucket, after, 100 ).size() );
+
+        assertEquals( 0, queueMessageSerialization.loadInflightIndex(
+            queueName, region, bucket, inflightAt, 100 ).size() );
+
+        // timing out removes messages from inflight and index and makes them available again
+
+        Collection<DatabaseQueueMessage> timedOut = queueMessageSerialization.timeoutInflight( inflight );
+        assertEquals( numMessages, timedOut.size() );
+
+        assertEquals( 0, queueMessageSerialization.loadInflightIndex(
+            queueName, region, bucket, after, 100 ).size() );
+
+        List<UUID> queueMessageIds = new ArrayList<>();
+        for ( DatabaseQueueMessage message : inflight ) {
+            queueMessageIds.add( message.getQueueMessageId() );
+        }
+        assertEquals( 0, queueMessageSerialization.loadMessages(
+            queueName, region, DatabaseQueueMessage.Type.INFLIGHT, queueMessageIds ).size() );
+    }
+
+
     @Test
     public void loadNullMessage(){
 
@@ -170,6 +243,33 @@ public class DatabaseQueueMessageSerializationTest extends AbstractTest {
     }
 
 
+    @Test
+    public void loadManyMessageData() throws Exception {
+
+        QueueMessageSerialization queueMessageSerialization =
+                getInjector().getInstance( QueueMessageSerialization.class );
+
+        List<UUID> messageIds = new ArrayList<>();
+        for ( int i=0; i<10; i++ ) {
+            UUID messageId = QakkaUtils.getTimeUuid();
+            queueMessageSerialization.writeMessageData( messageId, new DatabaseQueueMessageBody(
+                DataType.serializeValue( "my test data " + i, ProtocolVersion.NEWEST_SUPPORTED ), "text/plain" ) );
+            messageIds.add( messageId );
+        }
+
+        // message without data is left out
+        messageIds.add( QakkaUtils.getTimeUuid() );
+
+        Map<UUID, DatabaseQueueMessageBody> bodies = queueMessageSerialization.loadMessageData( messageIds );
+        assertEquals( 10, bodies.size() );
+
+        for ( int i=0; i<10; i++ ) {
+            String returnedData = new String( bodies.get( messageIds.get( i ) ).getBlob().array(), "UTF-8");
+            assertEquals( "my test data " + i, returnedData );
+        }
+    }
+
+
     @Test
     public void loadMessageObjectData() throws Exception {
 
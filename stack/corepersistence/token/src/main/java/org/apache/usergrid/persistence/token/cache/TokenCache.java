@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.token.cache;
+
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.actorsystem.RouterProducer;
+
+
+/**
+ * Short lived cache of token details as returned by
+ * {@link org.apache.usergrid.persistence.token.TokenSerialization#getTokenInfo(UUID)}.  Implements RouterProducer
+ * so it can subscribe to cluster invalidations once the actor system is started.
+ */
+public interface TokenCache extends RouterProducer {
+
+    /**
+     * Get the cached token details, or null if they are not cached
+     */
+    Map<String, Object> get( UUID tokenId );
+
+    /**
+     * Cache the token details.  Ignored if the token has been invalidated.
+     */
+    void put( UUID tokenId, Map<String, Object> tokenDetails );
+
+    /**
+     * Invalidate the token on this node and publish the invalidation to the rest of the cluster
+     */
+    void invalidate( UUID tokenId );
+
+    /**
+     * Invalidate the token on this node only
+     */
+    void invalidateLocal( UUID tokenId );
+}
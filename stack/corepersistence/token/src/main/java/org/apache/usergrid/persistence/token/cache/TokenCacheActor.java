@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.token.cache;
+
+
+import akka.actor.ActorRef;
+import akka.actor.UntypedActor;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Subscribes to token cache invalidations published by other nodes and applies them to the local cache
+ */
+public class TokenCacheActor extends UntypedActor {
+    private static final Logger logger = LoggerFactory.getLogger( TokenCacheActor.class );
+
+    private final TokenCache tokenCache;
+
+
+    public TokenCacheActor( final TokenCache tokenCache ) {
+
+        this.tokenCache = tokenCache;
+
+        ActorRef mediator = DistributedPubSub.get( getContext().system() ).mediator();
+        mediator.tell( new DistributedPubSubMediator.Subscribe( TokenCacheImpl.TOPIC, getSelf() ), getSelf() );
+    }
+
+
+    @Override
+    public void onReceive( Object msg ) {
+
+        if ( msg instanceof TokenCacheInvalidation ) {
+            TokenCacheInvalidation invalidation = ( TokenCacheInvalidation ) msg;
+
+            tokenCache.invalidateLocal( invalidation.getTokenId() );
+
+            if ( logger.isTraceEnabled() ) {
+                logger.trace( "Received {}", invalidation );
+            }
+
+        } else if ( msg instanceof DistributedPubSubMediator.SubscribeAck ) {
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "subscribed to {}", TokenCacheImpl.TOPIC );
+            }
+
+        } else {
+            unhandled( msg );
+        }
+    }
+}
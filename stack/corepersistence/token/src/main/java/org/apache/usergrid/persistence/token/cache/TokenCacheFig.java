@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.token.cache;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * The config for the token cache and token access time updates
+ */
+@FigSingleton
+public interface TokenCacheFig extends GuicyFig {
+
+
+    /**
+     * When false, every validation reads the token from cassandra
+     */
+    @Key( "usergrid.auth.token.cache.enabled" )
+    @Default( "true" )
+    boolean getCacheEnabled();
+
+    @Key( "usergrid.auth.token.cache.size" )
+    @Default( "10000" )
+    int getCacheSize();
+
+    @Key( "usergrid.auth.token.cache.timeout_ms" )
+    @Default( "5000" )
+    int getCacheTimeout();
+
+    /**
+     * Publish invalidations to the other nodes in the cluster (all regions) when a token is revoked
+     */
+    @Key( "usergrid.auth.token.cache.cluster_invalidation" )
+    @Default( "true" )
+    boolean getClusterInvalidationEnabled();
+
+    /**
+     * Token access times are written at most once per token per interval.  0 writes them on every access.
+     */
+    @Key( "usergrid.auth.token.access_time.flush_interval_ms" )
+    @Default( "10000" )
+    long getAccessTimeFlushInterval();
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.token.cache;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.codahale.metrics.Counter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+
+
+/**
+ * Guava backed token cache.  Entries expire after the configured timeout.  Invalidated tokens are remembered for the
+ * same timeout so a read that raced with a revoke can never put the revoked token back into the cache.
+ *
+ * Token details are copied on the way in and on the way out, callers are free to mutate what they get back.
+ */
+@Singleton
+public class TokenCacheImpl implements TokenCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( TokenCacheImpl.class );
+
+    /**
+     * Pub/sub topic for cluster invalidations
+     */
+    public static final String TOPIC = "tokenCache";
+
+
+    private final TokenCacheFig tokenCacheFig;
+    private final ActorSystemManager actorSystemManager;
+
+    private final Cache<UUID, Map<String, Object>> tokens;
+
+    /**
+     * Tokens invalidated within the cache timeout
+     */
+    private final Cache<UUID, Boolean> tombstones;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+
+
+    @Inject
+    public TokenCacheImpl( final TokenCacheFig tokenCacheFig, final ActorSystemManager actorSystemManager,
+                           final MetricsFactory metricsFactory ) {
+
+        this.tokenCacheFig = tokenCacheFig;
+        this.actorSystemManager = actorSystemManager;
+
+        this.hitCounter = metricsFactory.getCounter( TokenCacheImpl.class, "token.cache.hit" );
+        this.missCounter = metricsFactory.getCounter( TokenCacheImpl.class, "token.cache.miss" );
+        this.invalidationCounter = metricsFactory.getCounter( TokenCacheImpl.class, "token.cache.invalidation" );
+
+        this.tokens = CacheBuilder.newBuilder()
+            .maximumSize( tokenCacheFig.getCacheSize() )
+            .expireAfterWrite( tokenCacheFig.getCacheTimeout(), TimeUnit.MILLISECONDS )
+            .build();
+
+        this.tombstones = CacheBuilder.newBuilder()
+            .maximumSize( tokenCacheFig.getCacheSize() )
+            .expireAfterWrite( tokenCacheFig.getCacheTimeout(), TimeUnit.MILLISECONDS )
+            .build();
+    }
+
+
+    @Override
+    public Map<String, Object> get( final UUID tokenId ) {
+
+        if ( !tokenCacheFig.getCacheEnabled() ) {
+            return null;
+        }
+
+        final Map<String, Object> cached = tokens.getIfPresent( tokenId );
+
+        if ( cached == null ) {
+            missCounter.inc();
+            return null;
+        }
+
+        hitCounter.inc();
+        return new HashMap<>( cached );
+    }
+
+
+    @Override
+    public void put( final UUID tokenId, final Map<String, Object> tokenDetails ) {
+
+        if ( !tokenCacheFig.getCacheEnabled() ) {
+            return;
+        }
+
+        // asMap().compute is atomic per key, so concurrent puts and invalidations for the same token serialize
+        tokens.asMap().compute( tokenId, ( k, existing ) -> {
+
+            // revoked since this read started, don't cache it
+            if ( tombstones.getIfPresent( k ) != null ) {
+                return null;
+            }
+
+            return new HashMap<>( tokenDetails );
+        } );
+    }
+
+
+    @Override
+    public void invalidate( final UUID tokenId ) {
+
+        invalidateLocal( tokenId );
+
+        if ( !tokenCacheFig.getCacheEnabled() || !tokenCacheFig.getClusterInvalidationEnabled() ) {
+            return;
+        }
+
+        if ( !actorSystemManager.isReady() ) {
+            return;
+        }
+
+        try {
+            actorSystemManager.publishToAllRegions( TOPIC, new TokenCacheInvalidation( tokenId ), null );
+        }
+        catch ( Exception e ) {
+            // the entry will still expire after the cache timeout
+            logger.warn( "Unable to publish token cache invalidation for {}", tokenId, e );
+        }
+    }
+
+
+    @Override
+    public void invalidateLocal( final UUID tokenId ) {
+
+        tokens.asMap().compute( tokenId, ( k, existing ) -> {
+            tombstones.put( k, Boolean.TRUE );
+            return null;
+        } );
+
+        invalidationCounter.inc();
+    }
+
+
+    @Override
+    public String getRouterPath() {
+        return "/user/tokenCacheSubscriber";
+    }
+
+
+    @Override
+    public Collection<Class> getMessageTypes() {
+        // nothing is routed, invalidations are published to all subscribers
+        return Collections.emptyList();
+    }
+
+
+    @Override
+    public void addConfiguration( final Map<String, Object> configMap ) {
+        // no router configuration needed
+    }
+
+
+    @Override
+    public void produceRouter( final ActorSystem system, final String role ) {
+        logger.info( "Starting TokenCacheActor" );
+        system.actorOf( Props.create( TokenCacheActor.class, this ), "tokenCacheSubscriber" );
+    }
+}
@@ -22,7 +22,11 @@ import com.google.inject.Key;
 import com.google.inject.multibindings.Multibinder;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
 import org.apache.usergrid.persistence.token.TokenSerialization;
+import org.apache.usergrid.persistence.token.cache.TokenCache;
+import org.apache.usergrid.persistence.token.cache.TokenCacheFig;
+import org.apache.usergrid.persistence.token.cache.TokenCacheImpl;
 import org.apache.usergrid.persistence.token.impl.TokenSerializationImpl;
+import org.safehaus.guicyfig.GuicyFigModule;
 
 
 /**
@@ -35,6 +39,10 @@ public class TokenModule extends AbstractModule {
 
         bind( TokenSerialization.class ).to( TokenSerializationImpl.class );
 
+        install( new GuicyFigModule( TokenCacheFig.class ) );
+
+        bind( TokenCache.class ).to( TokenCacheImpl.class );
+
         Multibinder<Migration> migrationBinding = Multibinder.newSetBinder( binder(), Migration.class );
         migrationBinding.addBinding().to(  Key.get( TokenSerialization.class ) );
 
@@ -20,6 +20,7 @@
 package org.apache.usergrid.persistence.token;
 
 
+import org.apache.usergrid.persistence.actorsystem.ActorSystemModule;
 import org.apache.usergrid.persistence.token.guice.TokenModule;
 import org.apache.usergrid.persistence.token.impl.TokenSerializationImpl;
 import org.apache.usergrid.persistence.core.guice.CommonModule;
@@ -34,5 +35,8 @@ public class TestTokenModule extends org.apache.usergrid.persistence.core.guice.
         install( new CommonModule() );
         install( new TokenModule() );
 
+        // the token cache publishes invalidations through the actor system
+        install( new ActorSystemModule() );
+
     }
 }
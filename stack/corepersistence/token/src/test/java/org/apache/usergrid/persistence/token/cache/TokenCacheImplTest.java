@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.token.cache;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.codahale.metrics.Counter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class TokenCacheImplTest {
+
+    private ActorSystemManager actorSystemManager;
+    private TokenCache tokenCache;
+
+
+    @Before
+    public void setup() {
+
+        final TokenCacheFig fig = mock( TokenCacheFig.class );
+        when( fig.getCacheEnabled() ).thenReturn( true );
+        when( fig.getClusterInvalidationEnabled() ).thenReturn( true );
+        when( fig.getCacheSize() ).thenReturn( 100 );
+        when( fig.getCacheTimeout() ).thenReturn( 60000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+
+        actorSystemManager = mock( ActorSystemManager.class );
+        when( actorSystemManager.isReady() ).thenReturn( true );
+
+        tokenCache = new TokenCacheImpl( fig, actorSystemManager, metricsFactory );
+    }
+
+
+    @Test
+    public void putAndGetReturnsCopy() {
+
+        final UUID tokenId = UUID.randomUUID();
+
+        tokenCache.put( tokenId, details( 1L ) );
+
+        final Map<String, Object> cached = tokenCache.get( tokenId );
+        assertEquals( 1L, cached.get( "accessed" ) );
+
+        // mutating what we got back must not change the cache
+        cached.put( "accessed", 2L );
+
+        assertEquals( 1L, tokenCache.get( tokenId ).get( "accessed" ) );
+    }
+
+
+    @Test
+    public void revokedTokenIsNotCachedAgain() {
+
+        final UUID tokenId = UUID.randomUUID();
+
+        tokenCache.put( tokenId, details( 1L ) );
+
+        tokenCache.invalidate( tokenId );
+
+        assertNull( tokenCache.get( tokenId ) );
+
+        // a read that started before the revoke completes after it
+        tokenCache.put( tokenId, details( 1L ) );
+
+        assertNull( tokenCache.get( tokenId ) );
+
+        verify( actorSystemManager )
+            .publishToAllRegions( eq( TokenCacheImpl.TOPIC ), any( TokenCacheInvalidation.class ), any() );
+    }
+
+
+    private Map<String, Object> details( final long accessed ) {
+        final Map<String, Object> details = new HashMap<>();
+        details.put( "accessed", accessed );
+        return details;
+    }
+}
@@ -56,6 +56,7 @@ public class ImportServiceImpl implements ImportService {
     public static final String FILE_IMPORT_ID = "fileImportId";
     public static final String FILE_IMPORT_JOB_NAME = "fileImportJob";
     public static final int HEARTBEAT_COUNT = 50;
+    public static final int ENTITY_BATCH_SIZE = 100;
 
     public static final String APP_IMPORT_CONNECTION = "imports";
     public static final String IMPORT_FILE_INCLUDES_CONNECTION = "files";
@@ -960,10 +961,11 @@ public class ImportServiceImpl implements ImportService {
         final int entityNumSkip = (int) tracker.getTotalEntityCount();
 
 
+        // entities are created in batches, each batch is written and indexed together
         entityEventObservable.takeWhile(writeEvent -> !tracker.shouldStopProcessingEntities()).skip(entityNumSkip)
-            .flatMap(writeEvent -> {
-                return Observable.just(writeEvent).doOnNext(doWork);
-            }, 10).reduce(0, heartbeatReducer).toBlocking().last();
+            .buffer(ENTITY_BATCH_SIZE)
+            .doOnNext(writeEvents -> writeEntities(em, fileImport, tracker, writeEvents))
+            .flatMap(Observable::from).reduce(0, heartbeatReducer).toBlocking().last();
 
 
         jp.close();
@@ -1035,6 +1037,62 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    /**
+     * Creates the entities of a batch of write events together per type.  When the entities of a type can't be
+     * created together they are created one at a time, so each of them is tracked on its own.
+     */
+    private void writeEntities(EntityManager em, FileImport fileImport, FileImportTracker tracker,
+                               List<WriteEvent> writeEvents) {
+
+        final Map<String, Map<UUID, Map<String, Object>>> propertiesByType = new LinkedHashMap<>();
+        final Map<String, List<WriteEvent>> eventsByType = new LinkedHashMap<>();
+        final List<WriteEvent> remaining = new ArrayList<>();
+
+        for (WriteEvent writeEvent : writeEvents) {
+            if (!(writeEvent instanceof EntityEvent)) {
+                remaining.add(writeEvent);
+                continue;
+            }
+
+            final EntityEvent entityEvent = (EntityEvent) writeEvent;
+            final Map<UUID, Map<String, Object>> typeProperties =
+                propertiesByType.computeIfAbsent(entityEvent.entityType, type -> new LinkedHashMap<>());
+
+            // an entity that is in the batch twice is written after the others, as it would be one at a time
+            if (entityEvent.entityUuid == null || typeProperties.containsKey(entityEvent.entityUuid)) {
+                remaining.add(writeEvent);
+                continue;
+            }
+
+            typeProperties.put(entityEvent.entityUuid, entityEvent.properties);
+            eventsByType.computeIfAbsent(entityEvent.entityType, type -> new ArrayList<>()).add(writeEvent);
+        }
+
+        for (Map.Entry<String, List<WriteEvent>> typeEvents : eventsByType.entrySet()) {
+            try {
+                em.createAll(typeEvents.getKey(), propertiesByType.get(typeEvents.getKey()));
+
+                for (int i = 0; i < typeEvents.getValue().size(); i++) {
+                    tracker.entityWritten();
+                }
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Unable to create {} imported entities of type {} together, creating them one at a time",
+                        typeEvents.getValue().size(), typeEvents.getKey(), e);
+                }
+                remaining.addAll(0, typeEvents.getValue());
+            }
+        }
+
+        for (WriteEvent writeEvent : remaining) {
+            if (tracker.shouldStopProcessingEntities()) {
+                return;
+            }
+            writeEvent.doWrite(em, fileImport, tracker);
+        }
+    }
+
+
     private interface WriteEvent {
         public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker);
     }
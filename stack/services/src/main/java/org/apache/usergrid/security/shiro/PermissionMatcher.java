@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.usergrid.management.UserInfo;
+
+import org.apache.shiro.authz.Permission;
+
+import static org.apache.usergrid.security.shiro.CustomPermission.isPath;
+import static org.apache.usergrid.security.shiro.CustomPermission.makePath;
+import static org.apache.usergrid.security.shiro.CustomPermission.matcher;
+import static org.apache.usergrid.security.shiro.CustomPermission.normalizeIfPath;
+
+
+/**
+ * The permissions of a single subject compiled into a trie over their parts, so a permission check walks only the
+ * branches that can match instead of calling {@link CustomPermission#implies(Permission)} on every permission.
+ * <p>
+ * The <code>${user}</code> and <code>/me/</code> templates are bound to the user the matcher was compiled for, so a
+ * matcher must only be used for that user.  Checks give the same answer as {@link CustomPermission#implies(Permission)}
+ * on each permission in turn.
+ */
+public class PermissionMatcher {
+
+    /**
+     * Permissions whose parts expand to more than this many terms are not compiled and are checked one by one
+     */
+    static final int MAX_TERMS = 256;
+
+    private static final String WILDCARD = "*";
+
+    private static final String USER = "${user}";
+
+    private static final String ME = "/me/";
+
+    private static final String APPLICATIONS = "applications";
+
+    private final UUID userId;
+    private final String username;
+
+    private final Node root = new Node();
+
+    private final List<Permission> permissions;
+
+    private final List<Permission> uncompiled = new ArrayList<>();
+
+
+    public PermissionMatcher( final Collection<Permission> permissions, final UserInfo user ) {
+        this.userId = user != null ? user.getUuid() : null;
+        this.username = user != null ? user.getUsername() : null;
+        this.permissions = new ArrayList<>( permissions );
+
+        for ( Permission permission : permissions ) {
+            if ( permission instanceof CustomPermission && isCompilable( ( CustomPermission ) permission ) ) {
+                insert( root, ( ( CustomPermission ) permission ).getParts(), 0 );
+            }
+            else {
+                uncompiled.add( permission );
+            }
+        }
+    }
+
+
+    /**
+     * True if the templates in this matcher were bound to the given user
+     */
+    public boolean isBoundTo( final UserInfo user ) {
+        if ( user == null ) {
+            return userId == null && username == null;
+        }
+        return equal( userId, user.getUuid() ) && equal( username, user.getUsername() );
+    }
+
+
+    /**
+     * True if any of the compiled permissions implies the given permission
+     */
+    public boolean implies( final Permission permission ) {
+
+        if ( permission instanceof CustomPermission ) {
+            final Value[] values = Value.of( ( ( CustomPermission ) permission ).getParts() );
+
+            // only permissions with a single value in each part can walk the trie
+            if ( values != null ) {
+                final boolean isApp = APPLICATIONS.equals( values[0].raw );
+                return matches( root, values, 0, isApp ) || impliedByAny( uncompiled, permission );
+            }
+        }
+
+        return impliedByAny( permissions, permission );
+    }
+
+
+    private static boolean impliedByAny( final List<Permission> permissions, final Permission permission ) {
+        for ( Permission candidate : permissions ) {
+            if ( candidate.implies( permission ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean isCompilable( final CustomPermission permission ) {
+        int terms = 1;
+        for ( Set<String> part : permission.getParts() ) {
+            terms *= part.size();
+            if ( terms > MAX_TERMS ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void insert( final Node node, final List<Set<String>> parts, final int depth ) {
+
+        if ( allWildcards( parts, depth ) ) {
+            node.wildcardTail = true;
+        }
+
+        if ( depth == parts.size() ) {
+            node.end = true;
+            return;
+        }
+
+        for ( String value : parts.get( depth ) ) {
+            insert( child( node, value ), parts, depth + 1 );
+        }
+    }
+
+
+    private static boolean allWildcards( final List<Set<String>> parts, final int depth ) {
+        for ( int i = depth; i < parts.size(); i++ ) {
+            if ( !parts.get( i ).contains( WILDCARD ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private Node child( final Node node, final String value ) {
+        Node child = node.children.get( value );
+        if ( child != null ) {
+            return child;
+        }
+
+        child = new Node();
+        node.children.put( value, child );
+
+        // application paths are compared as paths, where a wildcard becomes /**
+        for ( String variant : bind( makePath( value ) ) ) {
+            node.appPaths.add( variant, child );
+        }
+
+        // everywhere else a wildcard matches anything
+        if ( WILDCARD.equals( value ) ) {
+            node.wildcard = child;
+            return child;
+        }
+
+        for ( String variant : bind( value ) ) {
+            node.paths.add( makePath( variant ), child );
+            if ( isPath( variant ) ) {
+                node.plainPaths.add( makePath( variant ), child );
+            }
+            else {
+                node.plain.add( variant, child );
+            }
+        }
+
+        return child;
+    }
+
+
+    /**
+     * Every value the given permission value can compare as once its templates are bound to our user, including
+     * itself
+     */
+    private Set<String> bind( final String value ) {
+        final Set<String> variants = new LinkedHashSet<>();
+        bind( value, variants );
+        return variants;
+    }
+
+
+    private void bind( final String value, final Set<String> variants ) {
+        if ( userId != null && username != null ) {
+            if ( value.contains( USER ) ) {
+                bind( value.replace( USER, username ), variants );
+                bind( value.replace( USER, userId.toString() ), variants );
+            }
+            else if ( value.contains( ME ) ) {
+                bind( value.replace( ME, String.format( "/%s/", username ) ), variants );
+                bind( value.replace( ME, String.format( "/%s/", userId.toString() ) ), variants );
+            }
+        }
+        variants.add( value );
+    }
+
+
+    private static boolean matches( final Node node, final Value[] values, final int depth, final boolean isApp ) {
+
+        // this permission has fewer parts, everything after it is implied
+        if ( node.end ) {
+            return true;
+        }
+
+        // the other permission has fewer parts, only implied if the rest of ours are wildcards
+        if ( depth == values.length ) {
+            return node.wildcardTail;
+        }
+
+        final Value value = values[depth];
+        final int next = depth + 1;
+
+        if ( isApp && depth > 2 ) {
+            return matches( node.appPaths, value.path, value.normalizedPath, values, next, isApp );
+        }
+
+        if ( node.wildcard != null && matches( node.wildcard, values, next, isApp ) ) {
+            return true;
+        }
+
+        if ( value.isPath ) {
+            return matches( node.paths, value.path, value.normalizedPath, values, next, isApp );
+        }
+
+        return matches( node.plain, value.raw, value.normalizedRaw, values, next, isApp ) || matches( node.plainPaths,
+            value.path, value.normalizedPath, values, next, isApp );
+    }
+
+
+    private static boolean matches( final Index index, final String value, final String normalized,
+                                    final Value[] values, final int depth, final boolean isApp ) {
+
+        final List<Node> literals = index.literals.get( key( value ) );
+        if ( literals != null ) {
+            for ( Node node : literals ) {
+                if ( matches( node, values, depth, isApp ) ) {
+                    return true;
+                }
+            }
+        }
+
+        for ( Pattern pattern : index.patterns ) {
+            if ( pattern.matches( value, normalized ) && matches( pattern.node, values, depth, isApp ) ) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * A key under which strings that are {@link String#equalsIgnoreCase(String)} are equal
+     */
+    static String key( final String value ) {
+        final char[] chars = value.toCharArray();
+        for ( int i = 0; i < chars.length; i++ ) {
+            chars[i] = Character.toLowerCase( Character.toUpperCase( chars[i] ) );
+        }
+        return new String( chars );
+    }
+
+
+    private static boolean equal( final Object a, final Object b ) {
+        return a == null ? b == null : a.equals( b );
+    }
+
+
+    /**
+     * A single permission value with the children that follow it
+     */
+    private static final class Node {
+
+        private boolean end;
+        private boolean wildcardTail;
+
+        private Node wildcard;
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private final Index appPaths = new Index();
+        private final Index paths = new Index();
+        private final Index plain = new Index();
+        private final Index plainPaths = new Index();
+    }
+
+
+    /**
+     * Children indexed by the form they are compared in, literals by their case insensitive key
+     */
+    private static final class Index {
+
+        private final Map<String, List<Node>> literals = new HashMap<>();
+        private final List<Pattern> patterns = new ArrayList<>();
+
+
+        private void add( final String value, final Node node ) {
+            if ( matcher.isPattern( value ) ) {
+                patterns.add( new Pattern( value, node ) );
+                return;
+            }
+
+            List<Node> nodes = literals.get( key( value ) );
+            if ( nodes == null ) {
+                nodes = new ArrayList<>( 1 );
+                literals.put( key( value ), nodes );
+            }
+            if ( !nodes.contains( node ) ) {
+                nodes.add( node );
+            }
+        }
+    }
+
+
+    private static final class Pattern {
+
+        private final String pattern;
+        private final String normalized;
+        private final Node node;
+
+
+        private Pattern( final String pattern, final Node node ) {
+            this.pattern = pattern;
+            this.normalized = normalizeIfPath( pattern );
+            this.node = node;
+        }
+
+
+        private boolean matches( final String value, final String normalizedValue ) {
+            return matcher.match( pattern, value ) || matcher.match( normalized, normalizedValue );
+        }
+    }
+
+
+    /**
+     * A value of the permission being checked in each form it may be compared in
+     */
+    private static final class Value {
+
+        private final String raw;
+        private final String normalizedRaw;
+        private final boolean isPath;
+        private final String path;
+        private final String normalizedPath;
+
+
+        private Value( final String raw ) {
+            this.raw = raw;
+            this.normalizedRaw = normalizeIfPath( raw );
+            this.isPath = isPath( raw );
+            this.path = makePath( raw );
+            this.normalizedPath = normalizeIfPath( path );
+        }
+
+
+        /**
+         * The values of each part, or null if any part does not have exactly one value
+         */
+        private static Value[] of( final List<Set<String>> parts ) {
+            final Value[] values = new Value[parts.size()];
+            int i = 0;
+            for ( Set<String> part : parts ) {
+                if ( part.size() != 1 ) {
+                    return null;
+                }
+                values[i++] = new Value( part.iterator().next() );
+            }
+            return values.length > 0 ? values : null;
+        }
+    }
+}
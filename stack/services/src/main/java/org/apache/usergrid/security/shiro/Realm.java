@@ -22,6 +22,7 @@ import org.apache.shiro.authc.*;
 import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.permission.PermissionResolver;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.realm.AuthorizingRealm;
@@ -30,9 +31,11 @@ import org.apache.shiro.subject.PrincipalCollection;
 import org.apache.shiro.subject.Subject;
 import org.apache.usergrid.management.AccountCreationProps;
 import org.apache.usergrid.management.ManagementService;
+import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.security.shiro.credentials.*;
 import org.apache.usergrid.security.shiro.principals.*;
+import org.apache.usergrid.security.shiro.utils.SubjectUtils;
 import org.apache.usergrid.security.tokens.TokenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -154,6 +157,29 @@ public class Realm extends AuthorizingRealm {
     }
 
 
+    /**
+     * Checks against the subject's permissions compiled into a {@link PermissionMatcher}, which is kept with the
+     * cached authorization info and recompiled when the permissions or the current user change.
+     */
+    @Override
+    protected boolean isPermitted( Permission permission, AuthorizationInfo info ) {
+        if ( !( info instanceof UsergridAuthorizationInfo ) ) {
+            return super.isPermitted( permission, info );
+        }
+
+        UsergridAuthorizationInfo usergridInfo = ( UsergridAuthorizationInfo ) info;
+        UserInfo user = SubjectUtils.getUser();
+
+        PermissionMatcher permissionMatcher = usergridInfo.permissionMatcher();
+        if ( permissionMatcher == null || !permissionMatcher.isBoundTo( user ) ) {
+            permissionMatcher = new PermissionMatcher( getPermissions( info ), user );
+            usergridInfo.permissionMatcher( permissionMatcher );
+        }
+
+        return permissionMatcher.implies( permission );
+    }
+
+
     @Override
     protected AuthenticationInfo doGetAuthenticationInfo( AuthenticationToken token ) throws AuthenticationException {
         PrincipalCredentialsToken pcToken = ( PrincipalCredentialsToken ) token;
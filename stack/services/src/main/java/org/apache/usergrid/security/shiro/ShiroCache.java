@@ -18,6 +18,8 @@ package org.apache.usergrid.security.shiro;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
 
@@ -54,6 +56,9 @@ public class ShiroCache<K, V> implements Cache<K,V> {
     private final Integer cacheTtl;
     private final LocalShiroCache localShiroCache;
 
+    /** Cache for the other info type of the same principal (authc vs authz), loaded in the same round trip */
+    private ShiroCache companion;
+
     public ShiroCache(TypeReference typeRef, CacheFactory<String, V> cacheFactory, Integer cacheTtl, LocalShiroCache<K,V> localShiroCache) {
         this.typeRef = typeRef;
         this.cacheFactory = cacheFactory;
@@ -80,7 +85,20 @@ public class ShiroCache<K, V> implements Cache<K,V> {
         ScopedCache<String, V> scopedCache = getCacheScope(key);
         if ( scopedCache != null ) {
 
-            value = scopedCache.get(ks, typeRef);
+            Map<String, TypeReference> keys = new HashMap<>( 2 );
+            keys.put( ks, typeRef );
+
+            String companionKs = getCompanionKeyString( key );
+            if ( companionKs != null ) {
+                keys.put( companionKs, companion.typeRef );
+            }
+
+            Map<String, V> values = scopedCache.getAll( keys );
+            value = values.get( ks );
+
+            if ( companionKs != null && values.get( companionKs ) != null ) {
+                localShiroCache.put( companionKs, values.get( companionKs ) );
+            }
 
             if(value != null) {
 
@@ -172,6 +190,30 @@ public class ShiroCache<K, V> implements Cache<K,V> {
     }
 
 
+    void setCompanion( ShiroCache companion ) {
+        this.companion = companion;
+    }
+
+
+    /** key string of the companion cache, or null if there is nothing to prefetch */
+    private String getCompanionKeyString( K key ) {
+
+        if ( companion == null ) {
+            return null;
+        }
+
+        try {
+            String companionKs = companion.getKeyString( key );
+
+            // already served locally, don't overwrite it with what may be an older copy
+            return localShiroCache.get( companionKs ) == null ? companionKs : null;
+
+        } catch ( CacheException e ) {
+            return null;
+        }
+    }
+
+
     /** get cache for application scope */
     private ScopedCache<String, V> getCacheScope( K key ) {
 
@@ -191,7 +233,7 @@ public class ShiroCache<K, V> implements Cache<K,V> {
 
 
     /** key is the user UUID in string form + class name of key */
-    private String getKeyString( K key ) {
+    private String getKeyString( Object key ) {
 
         String ret = null;
         Throwable throwable = null;
@@ -53,6 +53,10 @@ public class ShiroCacheManager implements CacheManager {
 
     private static final String CACHE_TTL_PROPERTY_NAME = "usergrid.auth.cache.time-to-live";
 
+    private static final String AUTHORIZATION_CACHE = "realm.authorizationCache";
+
+    private static final String AUTHENTICATION_CACHE = "realm.authenticationCache";
+
     private LocalShiroCache localShiroCache;
 
     public ShiroCacheManager(Injector injector, Properties properties) {
@@ -69,7 +73,7 @@ public class ShiroCacheManager implements CacheManager {
 
         if (shiroCache == null) {
 
-            if ("realm.authorizationCache".equals(name)) {
+            if (AUTHORIZATION_CACHE.equals(name)) {
 
                 TypeLiteral typeLit = new TypeLiteral<CacheFactory<String, UsergridAuthorizationInfo>>() {};
 
@@ -78,7 +82,7 @@ public class ShiroCacheManager implements CacheManager {
                     (CacheFactory)injector.getInstance( Key.get(typeLit) ),
                     getCacheTtl(), localShiroCache);
 
-            } else if ("realm.authenticationCache".equals(name)) {
+            } else if (AUTHENTICATION_CACHE.equals(name)) {
 
                 TypeLiteral typeLit = new TypeLiteral<CacheFactory<String, UsergridAuthenticationInfo>>() {};
 
@@ -93,6 +97,14 @@ public class ShiroCacheManager implements CacheManager {
             }
 
             caches.put(name, shiroCache);
+
+            // authc and authz info for a principal are usually needed together, read both in one round trip
+            ShiroCache authzCache = caches.get(AUTHORIZATION_CACHE);
+            ShiroCache authcCache = caches.get(AUTHENTICATION_CACHE);
+            if ( authzCache != null && authcCache != null ) {
+                authzCache.setCompanion(authcCache);
+                authcCache.setCompanion(authzCache);
+            }
         }
         return shiroCache;
     }
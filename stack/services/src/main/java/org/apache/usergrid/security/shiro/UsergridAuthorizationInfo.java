@@ -17,10 +17,12 @@
 
 package org.apache.usergrid.security.shiro;
 
+import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.usergrid.management.ApplicationInfo;
 import org.apache.usergrid.management.OrganizationInfo;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +39,11 @@ public class UsergridAuthorizationInfo extends SimpleAuthorizationInfo {
     OrganizationInfo organization = null;
     ApplicationInfo application = null;
 
+    /**
+     * Our permissions compiled for the subject they were last checked for, never serialized with the rest of the info
+     */
+    private transient volatile PermissionMatcher permissionMatcher;
+
 
     /**
      * Default no-argument constructor.
@@ -88,6 +95,53 @@ public class UsergridAuthorizationInfo extends SimpleAuthorizationInfo {
         this.organizationSet.putAll( organizationSet );
     }
 
+    /**
+     * The compiled permissions, or null if they have not been compiled since they last changed
+     */
+    PermissionMatcher permissionMatcher() {
+        return permissionMatcher;
+    }
+
+    void permissionMatcher( PermissionMatcher permissionMatcher ) {
+        this.permissionMatcher = permissionMatcher;
+    }
+
+    @Override
+    public void setStringPermissions(Set<String> stringPermissions) {
+        super.setStringPermissions( stringPermissions );
+        permissionMatcher = null;
+    }
+
+    @Override
+    public void addStringPermission(String permission) {
+        super.addStringPermission( permission );
+        permissionMatcher = null;
+    }
+
+    @Override
+    public void addStringPermissions(Collection<String> permissions) {
+        super.addStringPermissions( permissions );
+        permissionMatcher = null;
+    }
+
+    @Override
+    public void setObjectPermissions(Set<Permission> objectPermissions) {
+        super.setObjectPermissions( objectPermissions );
+        permissionMatcher = null;
+    }
+
+    @Override
+    public void addObjectPermission(Permission permission) {
+        super.addObjectPermission( permission );
+        permissionMatcher = null;
+    }
+
+    @Override
+    public void addObjectPermissions(Collection<Permission> permissions) {
+        super.addObjectPermissions( permissions );
+        permissionMatcher = null;
+    }
+
     @Override
     public String toString() {
         String orgName = null;
@@ -27,6 +27,8 @@ import org.apache.usergrid.persistence.EntityManagerFactory;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.entities.Application;
 import org.apache.usergrid.persistence.token.TokenSerialization;
+import org.apache.usergrid.persistence.token.cache.TokenCache;
+import org.apache.usergrid.persistence.token.cache.TokenCacheFig;
 import org.apache.usergrid.security.AuthPrincipalInfo;
 import org.apache.usergrid.security.AuthPrincipalType;
 import org.apache.usergrid.security.sso.SSOProviderFactory;
@@ -43,9 +45,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 
+import com.codahale.metrics.Meter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import javax.ws.rs.client.Client;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.System.currentTimeMillis;
 import static org.apache.commons.codec.binary.Base64.decodeBase64;
@@ -95,6 +104,19 @@ public class TokenServiceImpl implements TokenService {
 
     private TokenSerialization tokenSerialization;
 
+    private TokenCache tokenCache;
+
+    private TokenCacheFig tokenCacheFig;
+
+    /**
+     * Access times waiting to be written, at most one per token.  Null when access times are written synchronously
+     */
+    private ConcurrentHashMap<UUID, PendingAccess> pendingAccess;
+
+    private ScheduledExecutorService accessTimeWriter;
+
+    private Meter accessTimeWriteMeter;
+
 
     public TokenServiceImpl() {
     }
@@ -307,8 +329,6 @@ public class TokenServiceImpl implements TokenService {
             //update the token
             long now = currentTimeMillis();
 
-            long maxTokenTtl = getMaxTtl(TokenCategory.getFromBase64String(token), tokenInfo.getPrincipal());
-
             long inactive = now - tokenInfo.getAccessed();
             if (inactive > tokenInfo.getInactive()) {
                 tokenInfo.setInactive(inactive);
@@ -318,13 +338,85 @@ public class TokenServiceImpl implements TokenService {
                 inactive = Long.MIN_VALUE;
             }
 
-            tokenSerialization.updateTokenAccessTime(uuid, now, inactive, calcTokenTime(tokenInfo.getExpiration(maxTokenTtl)));
+            cacheAccessTime( uuid, now, inactive );
+
+            if ( pendingAccess == null ) {
+                writeAccessTime( new PendingAccess( token, tokenInfo, now, inactive ) );
+            }
+            else {
+                // coalesce, only the latest access time and the longest inactivity are written
+                pendingAccess.merge( uuid, new PendingAccess( token, tokenInfo, now, inactive ),
+                    ( previous, latest ) -> latest.withInactive( Math.max( previous.inactive, latest.inactive ) ) );
+            }
         }
 
         return tokenInfo;
     }
 
 
+    /**
+     * Update the cached copy of the token so the next validation on this node computes inactivity from this access
+     */
+    private void cacheAccessTime( UUID uuid, long accessed, long inactive ) {
+
+        Map<String, Object> cached = tokenCache.get( uuid );
+
+        if ( cached == null ) {
+            return;
+        }
+
+        cached.put( TOKEN_ACCESSED, accessed );
+        if ( inactive != Long.MIN_VALUE ) {
+            cached.put( TOKEN_INACTIVE, inactive );
+        }
+
+        tokenCache.put( uuid, cached );
+    }
+
+
+    private void writeAccessTime( PendingAccess access ) throws Exception {
+
+        long maxTokenTtl = getMaxTtl( TokenCategory.getFromBase64String( access.token ),
+            access.tokenInfo.getPrincipal() );
+
+        tokenSerialization.updateTokenAccessTime( access.tokenInfo.getUuid(), access.accessed, access.inactive,
+            calcTokenTime( access.tokenInfo.getExpiration( maxTokenTtl ) ) );
+
+        accessTimeWriteMeter.mark();
+    }
+
+
+    /** Write every pending access time, runs once per flush interval */
+    private void flushAccessTimes() {
+
+        for ( Map.Entry<UUID, PendingAccess> entry : pendingAccess.entrySet() ) {
+
+            // a newer access may have replaced this one since we started iterating, it'll be written next time
+            if ( !pendingAccess.remove( entry.getKey(), entry.getValue() ) ) {
+                continue;
+            }
+
+            try {
+                writeAccessTime( entry.getValue() );
+            }
+            catch ( Exception e ) {
+                logger.error( "Unable to update access time for token {}", entry.getKey(), e );
+            }
+        }
+    }
+
+
+    /** Drop anything we know about the token on this node and the rest of the cluster */
+    private void invalidateToken( UUID tokenId ) {
+
+        if ( pendingAccess != null ) {
+            pendingAccess.remove( tokenId );
+        }
+
+        tokenCache.invalidate( tokenId );
+    }
+
+
     /** Get the max ttl per app. This is null safe,and will return the default in the case of missing data */
     private long getMaxTtl( TokenCategory tokenCategory, AuthPrincipalInfo principal ) throws Exception {
 
@@ -371,6 +463,10 @@ public class TokenServiceImpl implements TokenService {
         final List<UUID> tokenIds = getTokenUUIDS( principal );
         tokenSerialization.deleteTokens(tokenIds, principalKey( principal ));
 
+        for ( UUID tokenId : tokenIds ) {
+            invalidateToken( tokenId );
+        }
+
     }
 
 
@@ -403,6 +499,8 @@ public class TokenServiceImpl implements TokenService {
             tokenSerialization.revokeToken(tokenId, null);
         }
 
+        invalidateToken( tokenId );
+
     }
 
 
@@ -411,10 +509,17 @@ public class TokenServiceImpl implements TokenService {
             throw new InvalidTokenException( "No token specified" );
         }
 
-        Map<String, Object> tokenDetails = tokenSerialization.getTokenInfo(uuid);
+        Map<String, Object> tokenDetails = tokenCache.get( uuid );
+
+        if ( tokenDetails == null ) {
+
+            tokenDetails = tokenSerialization.getTokenInfo( uuid );
 
-        if ( !hasKeys( tokenDetails, REQUIRED_TOKEN_PROPERTIES ) ) {
-            throw new InvalidTokenException( "Token not found in database" );
+            if ( !hasKeys( tokenDetails, REQUIRED_TOKEN_PROPERTIES ) ) {
+                throw new InvalidTokenException( "Token not found in database" );
+            }
+
+            tokenCache.put( uuid, tokenDetails );
         }
 
         String type;
@@ -601,6 +706,26 @@ public class TokenServiceImpl implements TokenService {
         final Injector injector = ((CpEntityManagerFactory)emf).getApplicationContext().getBean( Injector.class );
         this.metricsFactory = injector.getInstance(MetricsFactory.class);
         this.tokenSerialization = injector.getInstance(TokenSerialization.class);
+        this.tokenCache = injector.getInstance(TokenCache.class);
+        this.tokenCacheFig = injector.getInstance(TokenCacheFig.class);
+        this.accessTimeWriteMeter = metricsFactory.getMeter(TokenServiceImpl.class, "token.access_time.write");
+
+        final long flushInterval = tokenCacheFig.getAccessTimeFlushInterval();
+
+        if ( flushInterval > 0 && accessTimeWriter == null ) {
+            this.pendingAccess = new ConcurrentHashMap<>();
+            this.accessTimeWriter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "token-access-time-writer-%d" ).build() );
+
+            accessTimeWriter.scheduleWithFixedDelay( () -> {
+                try {
+                    flushAccessTimes();
+                }
+                catch ( Throwable t ) {
+                    logger.error( "Unable to flush token access times", t );
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS );
+        }
     }
 
 
@@ -659,6 +784,28 @@ public class TokenServiceImpl implements TokenService {
     private static final int MAX_TTL = 20 * 365 * 24 * 60 * 60;
 
 
+    /** The latest access of a token that has not been written yet */
+    private static final class PendingAccess {
+        private final String token;
+        private final TokenInfo tokenInfo;
+        private final long accessed;
+        private final long inactive;
+
+
+        private PendingAccess( String token, TokenInfo tokenInfo, long accessed, long inactive ) {
+            this.token = token;
+            this.tokenInfo = tokenInfo;
+            this.accessed = accessed;
+            this.inactive = inactive;
+        }
+
+
+        private PendingAccess withInactive( long inactive ) {
+            return inactive == this.inactive ? this : new PendingAccess( token, tokenInfo, accessed, inactive );
+        }
+    }
+
+
     //-------------------------------------------------------------------------------------------------------
     //
     // Central SSO implementation
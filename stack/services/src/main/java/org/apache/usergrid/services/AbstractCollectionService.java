@@ -19,12 +19,16 @@ package org.apache.usergrid.services;
 
 import java.util.*;
 
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
 import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.shiro.subject.Subject;
 
+import com.google.common.collect.Lists;
+import com.google.inject.Injector;
+
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityRef;
 import org.apache.usergrid.persistence.Query;
@@ -44,12 +48,15 @@ import org.apache.usergrid.services.exceptions.ServiceResourceNotFoundException;
 
 import static org.apache.usergrid.persistence.Schema.TYPE_APPLICATION;
 import static org.apache.usergrid.utils.ClassUtils.cast;
+import static org.apache.usergrid.utils.InflectionUtils.singularize;
 
 
 public class AbstractCollectionService extends AbstractService {
 
     private static final Logger logger = LoggerFactory.getLogger( AbstractCollectionService.class );
 
+    private SerializationFig serializationFig;
+
 
     public AbstractCollectionService() {
         declareMetadataType( "indexes" );
@@ -60,6 +67,13 @@ public class AbstractCollectionService extends AbstractService {
     }
 
 
+    @Override
+    public void setServiceManager( ServiceManager sm ) {
+        super.setServiceManager( sm );
+        serializationFig = sm.getApplicationContext().getBean( Injector.class ).getInstance( SerializationFig.class );
+    }
+
+
     @Override
     public Entity getEntity( ServiceRequest request, UUID uuid ) throws Exception {
         if ( !isRootService() ) {
@@ -419,56 +433,68 @@ public class AbstractCollectionService extends AbstractService {
                         batch.size(), context.getCollectionName());
             }
 
-
             final Map<String, Boolean> nameValues = new HashMap<>(batch.size());
 
-            for ( Map<String, Object> p : batch ) {
+            // create one write batch at a time, so a failure only creates the entities of its batch one at a time
+            for ( List<Map<String, Object>> writeBatch : Lists.partition( batch, serializationFig.getWriteBatchSize() ) ) {
 
-                // track unique name value in the batch to identify if duplicates are trying to be created
-                String name = (String) p.get("name");
-                if( name !=null && nameValues.get(name) !=null ){
-                    logger.warn("Batch contains more than 1 entity with the same name: {}", name);
-                }else{
-                    nameValues.put(name, true);
+                List<Entity> created = createAllInCollection( context, writeBatch );
+
+                if ( created != null ) {
+                    for ( Entity item : created ) {
+                        entities.add( importEntity( context, item ) );
+                    }
+                    continue;
                 }
 
+                for ( Map<String, Object> p : writeBatch ) {
 
-                if (logger.isTraceEnabled()) {
-                    logger.trace("Creating entity [{}] in collection [{}]", p, context.getCollectionName());
-                }
+                    // track unique name value in the batch to identify if duplicates are trying to be created
+                    String name = (String) p.get("name");
+                    if( name !=null && nameValues.get(name) !=null ){
+                        logger.warn("Batch contains more than 1 entity with the same name: {}", name);
+                    }else{
+                        nameValues.put(name, true);
+                    }
 
 
-                Entity item = null;
-                try {
-                    item = em.createItemInCollection( context.getOwner(), context.getCollectionName(), getEntityType(),
-                            p );
-                }
-                catch (DuplicateUniquePropertyExistsException e) {
-                    // this is not an error (caller tried to create entity with a duplicate unique value)
-                    logger.info("Entity [{}] unable to be created in collection [{}] due to [{} - {}]", p, context.getCollectionName(),
-                        e.getClass().getSimpleName(), e.getMessage());
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Creating entity [{}] in collection [{}]", p, context.getCollectionName());
+                    }
 
-                    // would be nice if status for each batch entry was returned...
-                    continue;
-                }
-                catch ( Exception e ) {
 
-                    logger.error("Entity [{}] unable to be created in collection [{}] due to [{} - {}]", p, context.getCollectionName(),
+                    Entity item = null;
+                    try {
+                        item = em.createItemInCollection( context.getOwner(), context.getCollectionName(), getEntityType(),
+                                p );
+                    }
+                    catch (DuplicateUniquePropertyExistsException e) {
+                        // this is not an error (caller tried to create entity with a duplicate unique value)
+                        logger.info("Entity [{}] unable to be created in collection [{}] due to [{} - {}]", p, context.getCollectionName(),
                             e.getClass().getSimpleName(), e.getMessage());
 
-                    // move on as we can't block the whole batch if only 1 failed
-                    continue;
-                }
+                        // would be nice if status for each batch entry was returned...
+                        continue;
+                    }
+                    catch ( Exception e ) {
 
+                        logger.error("Entity [{}] unable to be created in collection [{}] due to [{} - {}]", p, context.getCollectionName(),
+                                e.getClass().getSimpleName(), e.getMessage());
 
-                if (logger.isTraceEnabled()) {
-                    logger.trace("Successfully created entity [{}] in collection [{}]", p, context.getCollectionName());
-                }
+                        // move on as we can't block the whole batch if only 1 failed
+                        continue;
+                    }
+
+
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Successfully created entity [{}] in collection [{}]", p, context.getCollectionName());
+                    }
 
 
-                item = importEntity( context, item );
-                entities.add( item );
+                    item = importEntity( context, item );
+                    entities.add( item );
 
+                }
             }
             return new ServiceResults( this, context, Type.COLLECTION, Results.fromEntities( entities ), null, null );
         }
@@ -482,6 +508,39 @@ public class AbstractCollectionService extends AbstractService {
     }
 
 
+    /**
+     * Create the entities of a batch in a collection of the application together.  Returns null when they must be
+     * created one at a time instead, so each of them succeeds or fails on its own.
+     */
+    private List<Entity> createAllInCollection( ServiceContext context, List<Map<String, Object>> batch ) {
+
+        if ( !context.getOwner().getUuid().equals( em.getApplicationRef().getUuid() ) ) {
+            return null;
+        }
+
+        String itemType = getEntityType();
+        if ( Schema.TYPE_ENTITY.equals( itemType ) ) {
+            itemType = singularize( context.getCollectionName() );
+        }
+
+        // roles are created with their permissions, see createItemInCollection
+        if ( Schema.TYPE_ROLE.equals( itemType ) ) {
+            return null;
+        }
+
+        try {
+            return em.createAll( itemType, batch );
+        }
+        catch ( Exception e ) {
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Unable to create {} entities in collection {} together, creating them one at a time",
+                        batch.size(), context.getCollectionName(), e );
+            }
+            return null;
+        }
+    }
+
+
     @Override
     public ServiceResults putCollection( ServiceContext context ) throws Exception {
         return postCollection( context );
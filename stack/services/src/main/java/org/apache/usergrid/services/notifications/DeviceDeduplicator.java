@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.notifications;
+
+
+import java.util.UUID;
+
+
+/**
+ * Remembers the devices a notification has been queued for, so a device reached more than once during the fan-out
+ * is only sent one message.  Implementations are not thread safe, the fan-out adds devices one at a time.
+ */
+public interface DeviceDeduplicator {
+
+    /**
+     * Which implementation to use, "exact" or "bloom"
+     */
+    String STRATEGY_PROPERTY = "usergrid.push.dedup.strategy";
+
+    String STRATEGY_EXACT = "exact";
+
+    String STRATEGY_BLOOM = "bloom";
+
+    /**
+     * The number of devices to size for before growing
+     */
+    String INITIAL_CAPACITY_PROPERTY = "usergrid.push.dedup.initial.capacity";
+
+    /**
+     * The false positive rate of the bloom strategy, the fraction of devices that may be skipped as duplicates
+     */
+    String BLOOM_FPP_PROPERTY = "usergrid.push.dedup.bloom.fpp";
+
+
+    /**
+     * Add a device
+     *
+     * @return true if the device has not been added before, false if it has (or, for a probabilistic
+     * implementation, may have been)
+     */
+    boolean add( UUID deviceId );
+
+    /**
+     * The approximate number of bytes used to remember devices
+     */
+    long getMemoryBytes();
+}
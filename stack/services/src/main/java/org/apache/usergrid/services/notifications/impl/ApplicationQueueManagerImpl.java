@@ -19,12 +19,15 @@ package org.apache.usergrid.services.notifications.impl;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -46,11 +49,11 @@ import org.apache.usergrid.persistence.entities.Notification;
 import org.apache.usergrid.persistence.entities.Notifier;
 import org.apache.usergrid.persistence.entities.Receipt;
 import org.apache.usergrid.persistence.entities.User;
-import org.apache.usergrid.persistence.index.utils.UUIDUtils;
 import org.apache.usergrid.persistence.queue.LegacyQueueManager;
 import org.apache.usergrid.persistence.queue.LegacyQueueMessage;
 import org.apache.usergrid.services.notifications.ApplicationQueueManager;
 import org.apache.usergrid.services.notifications.ApplicationQueueMessage;
+import org.apache.usergrid.services.notifications.DeviceDeduplicator;
 import org.apache.usergrid.services.notifications.JobScheduler;
 import org.apache.usergrid.services.notifications.NotificationsService;
 import org.apache.usergrid.services.notifications.ProviderAdapter;
@@ -58,7 +61,9 @@ import org.apache.usergrid.services.notifications.ProviderAdapterFactory;
 import org.apache.usergrid.services.notifications.TaskManager;
 import org.apache.usergrid.services.notifications.TaskTracker;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.google.common.collect.Lists;
 
 import rx.Observable;
 import rx.Subscriber;
@@ -78,11 +83,25 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
     private final String queueName;
     private final Meter queueMeter;
     private final Meter sendMeter;
+    private final Meter duplicateMeter;
+    private final Histogram dedupMemoryHistogram;
+    private final Histogram duplicatePercentHistogram;
+    private final Meter graphDeviceMeter;
+    private final Meter loadDeviceMeter;
     private int concurrencyFactor;
+    private final int deviceBatchSize;
+    private final int deviceBatchConcurrency;
+    private final int deviceLoadBatchSize;
+
+    private final String dedupStrategy;
+    private final int dedupInitialCapacity;
+    private final double dedupBloomFpp;
 
     private final static String PUSH_PROCESSING_MAXTHREADS_PROP = "usergrid.push.async.processing.threads";
     private final static String PUSH_PROCESSING_QUEUESIZE_PROP = "usergrid.push.async.processing.queue.size";
     private final static String PUSH_PROCESSING_CONCURRENCY_PROP = "usergrid.push.async.processing.concurrency";
+    private final static String PUSH_DEVICE_BATCH_SIZE_PROP = "usergrid.push.device.batch.size";
+    private final static String PUSH_DEVICE_LOAD_BATCH_SIZE_PROP = "usergrid.push.device.load.batch.size";
 
     HashMap<Object, ProviderAdapter> notifierHashMap; // only retrieve notifiers once
 
@@ -103,7 +122,25 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
         this.queueName = getQueueNames(properties);
         this.queueMeter = metricsFactory.getMeter(ApplicationQueueManagerImpl.class, "notification.queue");
         this.sendMeter = metricsFactory.getMeter(NotificationsService.class, "queue.send");
+        this.duplicateMeter = metricsFactory.getMeter(ApplicationQueueManagerImpl.class, "notification.dedup.duplicates");
+        this.dedupMemoryHistogram = metricsFactory.getHistogram(ApplicationQueueManagerImpl.class, "notification.dedup.memory");
+        this.duplicatePercentHistogram = metricsFactory.getHistogram(ApplicationQueueManagerImpl.class, "notification.dedup.duplicate.percent");
         this.concurrencyFactor = Integer.valueOf(System.getProperty(PUSH_PROCESSING_CONCURRENCY_PROP, "50"));
+        this.graphDeviceMeter = metricsFactory.getMeter(ApplicationQueueManagerImpl.class, "notification.devices.graph");
+        this.loadDeviceMeter = metricsFactory.getMeter(ApplicationQueueManagerImpl.class, "notification.devices.load");
+
+        // the users of a batch are read from the graph concurrently, so the concurrency factor still bounds the
+        // number of users and devices being resolved at once
+        this.deviceBatchSize = Integer.valueOf(properties.getProperty(PUSH_DEVICE_BATCH_SIZE_PROP, "10"));
+        this.deviceBatchConcurrency = Math.max(1, concurrencyFactor / deviceBatchSize);
+
+        // users can own many devices, so a batch's devices are loaded in bounded chunks
+        this.deviceLoadBatchSize =
+            Math.max(1, Integer.valueOf(properties.getProperty(PUSH_DEVICE_LOAD_BATCH_SIZE_PROP, "100")));
+
+        this.dedupStrategy = properties.getProperty(DeviceDeduplicator.STRATEGY_PROPERTY, DeviceDeduplicator.STRATEGY_EXACT);
+        this.dedupInitialCapacity = Integer.valueOf(properties.getProperty(DeviceDeduplicator.INITIAL_CAPACITY_PROPERTY, "10000"));
+        this.dedupBloomFpp = Double.valueOf(properties.getProperty(DeviceDeduplicator.BLOOM_FPP_PROPERTY, "0.0001"));
 
 
         /**
@@ -258,48 +295,18 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
 
             final Map<String, Object> filters = notification.getFilters();
 
-            Observable processMessagesObservable = Observable.create(new IteratorObservable<EntityRef>(iterator))
-
-                .flatMap( entityRef -> {
-
-                    return Observable.just(entityRef).flatMap(ref->{
-
-                        List<Entity> entities = new ArrayList<>();
-
-                            if( ref.getType().equals(User.ENTITY_TYPE)){
-
-                                Query devicesQuery = new Query();
-                                devicesQuery.setCollection("devices");
-                                devicesQuery.setResultsLevel(Query.Level.CORE_PROPERTIES);
-                                devicesQuery.setLimit(50); // for now, assume a user has no more than 50 devices
-
-                                try {
-
-                                   entities = em.searchCollection(new SimpleEntityRef("user", ref.getUuid()), devicesQuery.getCollection(), devicesQuery).getEntities();
-
-                                }catch (Exception e){
-
-                                    logger.error("Unable to load devices for user: {}", ref.getUuid());
-                                    return Observable.empty();
-                                }
-
-
-                            }else if ( ref.getType().equals(Device.ENTITY_TYPE)){
-
-                                try{
-                                    entities.add(em.get(ref));
+            // a device can be reached more than once, e.g. through several users, only queue it once
+            final DeviceDeduplicator deduplicator = newDeviceDeduplicator();
+            final AtomicInteger duplicateCount = new AtomicInteger();
 
-                                }catch(Exception e){
-
-                                    logger.error("Unable to load device: {}", ref.getUuid());
-                                    return Observable.empty();
-
-                                }
+            // users and devices are resolved to devices in batches, the devices of the users are read from the
+            // graph and the devices of a batch are loaded together
+            Observable processMessagesObservable = Observable.create(new IteratorObservable<EntityRef>(iterator))
 
-                            }
-                        return Observable.from(entities);
+                .buffer(deviceBatchSize)
+                .flatMap( entityRefs -> {
 
-                        })
+                    return Observable.just(entityRefs).flatMap(refs -> Observable.from(resolveDevices(refs)))
                         .filter( device -> {
 
                             if(logger.isTraceEnabled()) {
@@ -338,14 +345,16 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
                         .map(sendMessageFunction)
                         .subscribeOn(Schedulers.io());
 
-                }, concurrencyFactor)
-                .distinct( queueMessage -> {
+                }, deviceBatchConcurrency)
+                .filter( queueMessage -> {
 
-                    if(queueMessage.isPresent()) {
-                        return queueMessage.get().getDeviceId();
+                    if(!queueMessage.isPresent() || deduplicator.add(queueMessage.get().getDeviceId())) {
+                        return true;
                     }
 
-                    return UUIDUtils.newTimeUUID(); // this should be distinct, default handling for the Optional.empty() case
+                    duplicateMeter.mark();
+                    duplicateCount.incrementAndGet();
+                    return false;
 
                 } )
                 .doOnNext( message -> {
@@ -387,6 +396,23 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
                         logger.error("Error updating negative processing status when processing failed.");
                     }
 
+                })
+                .doOnTerminate( () -> {
+
+                    final long memoryBytes = deduplicator.getMemoryBytes();
+                    final int duplicates = duplicateCount.get();
+                    final int devices = deviceCount.get();
+
+                    dedupMemoryHistogram.update(memoryBytes);
+                    if (devices > 0) {
+                        duplicatePercentHistogram.update(duplicates * 100L / devices);
+                    }
+
+                    if(logger.isTraceEnabled()) {
+                        logger.trace("Notification {} skipped {} duplicate device(s) of {} using {} bytes",
+                            notification.getUuid(), duplicates, devices, memoryBytes);
+                    }
+
                 })
                 .doOnCompleted( () -> {
 
@@ -431,6 +457,13 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
 
     }
 
+    private DeviceDeduplicator newDeviceDeduplicator() {
+        if (DeviceDeduplicator.STRATEGY_BLOOM.equalsIgnoreCase(dedupStrategy)) {
+            return new DeviceBloomFilter(dedupInitialCapacity, dedupBloomFpp);
+        }
+        return new DeviceIdSet(dedupInitialCapacity);
+    }
+
     /**
      * only need to get notifiers once. will reset on next batch
      *
@@ -733,11 +766,81 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
     }
 
 
+    /**
+     * Resolve a batch of users and devices to their devices.  The devices of the users are read from the graph, one
+     * concurrent edge load per user, then the devices of the batch are loaded in chunks of at most
+     * usergrid.push.device.load.batch.size.
+     */
+    private List<Entity> resolveDevices(final List<EntityRef> refs) {
+
+        final List<EntityRef> users = new ArrayList<>();
+        final Set<UUID> deviceIds = new LinkedHashSet<>();
+
+        for (EntityRef ref : refs) {
+            if (ref.getType().equals(User.ENTITY_TYPE)) {
+                users.add(ref);
+            } else if (ref.getType().equals(Device.ENTITY_TYPE)) {
+                deviceIds.add(ref.getUuid());
+            }
+        }
+
+        if (!users.isEmpty()) {
+            try {
+
+                final List<EntityRef> userDevices = em.getCollectionRefs(users, "devices");
+
+                for (EntityRef deviceRef : userDevices) {
+                    deviceIds.add(deviceRef.getUuid());
+                }
+                graphDeviceMeter.mark(userDevices.size());
+
+            } catch (Exception e) {
+                logger.error("Unable to load devices for {} users", users.size(), e);
+            }
+        }
+
+        if (deviceIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Entity> devices = new ArrayList<>(deviceIds.size());
+
+        for (List<UUID> chunk : Lists.partition(new ArrayList<>(deviceIds), deviceLoadBatchSize)) {
+            try {
+
+                for (Entity device : em.getEntities(chunk, Device.ENTITY_TYPE).getEntities()) {
+                    if (device != null) {
+                        devices.add(device);
+                    }
+                }
+
+            } catch (Exception e) {
+                // the other chunks can still be delivered
+                logger.error("Unable to load {} devices", chunk.size(), e);
+            }
+        }
+        loadDeviceMeter.mark(devices.size());
+
+        return devices;
+    }
+
+
+    /**
+     * Read a property of a device, from the device itself when it is already loaded
+     */
+    private Object getProperty(EntityRef device, String propertyName) throws Exception {
+        if (device instanceof Entity) {
+            return ((Entity) device).getProperty(propertyName);
+        }
+        return em.getProperty(device, propertyName);
+    }
+
+
     private String getProviderId(EntityRef device, Notifier notifier) throws Exception {
         try {
-            Object value = em.getProperty(device, notifier.getName() + NOTIFIER_ID_POSTFIX);
+            Object value = getProperty(device, notifier.getName() + NOTIFIER_ID_POSTFIX);
             if (value == null) {
-                value = em.getProperty(device, notifier.getUuid() + NOTIFIER_ID_POSTFIX);
+                value = getProperty(device, notifier.getUuid() + NOTIFIER_ID_POSTFIX);
             }
             return value != null ? value.toString() : null;
         } catch (Exception e) {
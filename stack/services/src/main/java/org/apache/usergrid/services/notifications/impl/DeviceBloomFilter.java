@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.notifications.impl;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.usergrid.services.notifications.DeviceDeduplicator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+
+/**
+ * Probabilistic de-duplication in a scalable bloom filter.  When a filter reaches the number of devices it was sized
+ * for, a new filter with twice the capacity and half the false positive rate is added, so memory grows with the
+ * fan-out while the overall false positive rate stays under the configured one.  A false positive means a device is
+ * skipped as a duplicate.
+ */
+public class DeviceBloomFilter implements DeviceDeduplicator {
+
+    private static final Funnel<UUID> UUID_FUNNEL = new Funnel<UUID>() {
+        @Override
+        public void funnel( final UUID from, final PrimitiveSink into ) {
+            into.putLong( from.getMostSignificantBits() ).putLong( from.getLeastSignificantBits() );
+        }
+    };
+
+    private final List<BloomFilter<UUID>> filters = new ArrayList<>();
+
+    private BloomFilter<UUID> current;
+    private long capacity;
+    private double fpp;
+    private long count;
+    private long memoryBytes;
+
+
+    public DeviceBloomFilter( final int expectedDevices, final double fpp ) {
+        Preconditions.checkArgument( expectedDevices > 0, "expectedDevices must be greater than 0" );
+        Preconditions.checkArgument( fpp > 0 && fpp < 1, "fpp must be between 0 and 1" );
+
+        // the rates of the filters halve, so they add up to at most the configured rate
+        this.capacity = expectedDevices;
+        this.fpp = fpp / 2;
+
+        addFilter();
+    }
+
+
+    @Override
+    public boolean add( final UUID deviceId ) {
+        for ( BloomFilter<UUID> filter : filters ) {
+            if ( filter.mightContain( deviceId ) ) {
+                return false;
+            }
+        }
+
+        if ( count == capacity ) {
+            capacity *= 2;
+            fpp /= 2;
+            addFilter();
+        }
+
+        current.put( deviceId );
+        count++;
+
+        return true;
+    }
+
+
+    @Override
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+
+    private void addFilter() {
+        current = BloomFilter.create( UUID_FUNNEL, ( int ) Math.min( capacity, Integer.MAX_VALUE ), fpp );
+        filters.add( current );
+        count = 0;
+
+        // the size guava picks for the filter, it does not expose it
+        memoryBytes += ( long ) ( -capacity * Math.log( fpp ) / ( Math.log( 2 ) * Math.log( 2 ) ) ) / 8;
+    }
+}
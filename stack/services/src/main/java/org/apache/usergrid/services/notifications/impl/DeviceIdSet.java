@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.notifications.impl;
+
+
+import java.util.UUID;
+
+import org.apache.usergrid.services.notifications.DeviceDeduplicator;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * Exact de-duplication in an open addressing hash set of the two longs of each device id.  Uses 16 bytes per slot,
+ * at most twice as many slots as devices, instead of the ~100 bytes per device of a HashSet of UUIDs.
+ */
+public class DeviceIdSet implements DeviceDeduplicator {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+
+    private int size;
+
+    // the all zero id marks an empty slot, so it is tracked on its own
+    private boolean containsZero;
+
+
+    public DeviceIdSet( final int expectedDevices ) {
+        Preconditions.checkArgument( expectedDevices > 0, "expectedDevices must be greater than 0" );
+
+        final int capacity = tableSizeFor( expectedDevices * 2L );
+        this.mostSigBits = new long[capacity];
+        this.leastSigBits = new long[capacity];
+    }
+
+
+    @Override
+    public boolean add( final UUID deviceId ) {
+        final long msb = deviceId.getMostSignificantBits();
+        final long lsb = deviceId.getLeastSignificantBits();
+
+        if ( msb == 0 && lsb == 0 ) {
+            if ( containsZero ) {
+                return false;
+            }
+            containsZero = true;
+            return true;
+        }
+
+        if ( size == mostSigBits.length - 1 ) {
+            throw new IllegalStateException( "Unable to track more than " + size + " devices" );
+        }
+
+        if ( !insert( mostSigBits, leastSigBits, msb, lsb ) ) {
+            return false;
+        }
+
+        size++;
+
+        if ( size * 2L > mostSigBits.length && mostSigBits.length < MAX_CAPACITY ) {
+            grow();
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public long getMemoryBytes() {
+        return mostSigBits.length * 16L;
+    }
+
+
+    public int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+
+    /**
+     * Insert with linear probing, false if the id is already in the table
+     */
+    private static boolean insert( final long[] msbs, final long[] lsbs, final long msb, final long lsb ) {
+        final int mask = msbs.length - 1;
+
+        int slot = hash( msb, lsb ) & mask;
+        while ( msbs[slot] != 0 || lsbs[slot] != 0 ) {
+            if ( msbs[slot] == msb && lsbs[slot] == lsb ) {
+                return false;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        return true;
+    }
+
+
+    private void grow() {
+        final long[] msbs = new long[mostSigBits.length * 2];
+        final long[] lsbs = new long[leastSigBits.length * 2];
+
+        for ( int i = 0; i < mostSigBits.length; i++ ) {
+            if ( mostSigBits[i] != 0 || leastSigBits[i] != 0 ) {
+                insert( msbs, lsbs, mostSigBits[i], leastSigBits[i] );
+            }
+        }
+
+        mostSigBits = msbs;
+        leastSigBits = lsbs;
+    }
+
+
+    /**
+     * Time uuids share most of their bits, so mix all of them before taking the low bits for a slot
+     */
+    private static int hash( final long msb, final long lsb ) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return ( int ) h;
+    }
+
+
+    private static int tableSizeFor( final long slots ) {
+        int capacity = 16;
+        while ( capacity < slots && capacity < MAX_CAPACITY ) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -77,6 +77,7 @@ import com.google.inject.Module;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 
@@ -311,6 +312,62 @@ public class ImportCollectionIT {
     }
 
 
+    /**
+     * Test that the entities of an import are still imported one at a time when one of them can't be
+     * imported, because its unique name is taken by another entity of the target application.
+     */
+    @Test
+    public void testImportWithDuplicateName() throws Exception {
+
+        final UUID sourceAppId = setup.getMgmtSvc().createApplication(
+            organization.getUuid(), "source" + RandomStringUtils.randomAlphanumeric(10)).getId();
+
+        final EntityManager emSource = setup.getEmf().getEntityManager( sourceAppId );
+
+        Map<UUID, Entity> thingsMap = new HashMap<>();
+        List<Entity> things = new ArrayList<>();
+        createTestEntities(emSource, thingsMap, things, "thing");
+
+        // the target application has another thing with the name of the last thing
+        final UUID targetAppId = setup.getMgmtSvc().createApplication(
+            organization.getUuid(), "target" + RandomStringUtils.randomAlphanumeric(10)).getId();
+
+        final EntityManager emTarget = setup.getEmf().getEntityManager( targetAppId );
+
+        final Entity duplicate = things.get( things.size() - 1 );
+        final Entity existing = emTarget.create( "thing", new HashMap<String, Object>() {{
+            put( "name", duplicate.getName() );
+        }});
+
+        deleteBucket();
+
+        try {
+            exportCollection( emSource, "things" );
+            importCollections( emTarget );
+
+            for ( Entity thing : things ) {
+                if ( thing.getUuid().equals( duplicate.getUuid() ) ) {
+                    assertNull( emTarget.get( new SimpleEntityRef( "thing", thing.getUuid() ) ) );
+                }
+                else {
+                    assertNotNull( emTarget.get( new SimpleEntityRef( "thing", thing.getUuid() ) ) );
+                }
+            }
+
+            Query query = Query.fromQL( "select *" ).withLimit( 101 );
+
+            List<Entity> targetThings = emTarget.getCollection(
+                emTarget.getApplicationId(), "things", query, Level.ALL_PROPERTIES ).getEntities();
+
+            assertEquals( "the existing thing and all but one imported thing", things.size(), targetThings.size() );
+            assertNotNull( emTarget.get( new SimpleEntityRef( "thing", existing.getUuid() ) ) );
+
+        } finally {
+            deleteBucket();
+        }
+    }
+
+
    /**
      * Simple import test but with multiple files.
      */
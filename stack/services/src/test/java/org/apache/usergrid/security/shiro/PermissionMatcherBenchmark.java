@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.StressTest;
+
+import org.apache.shiro.authz.Permission;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Compares checking a large permission set with {@link PermissionMatcher} against calling
+ * {@link CustomPermission#implies(Permission)} on every permission, the way shiro does.
+ */
+@Category( StressTest.class )
+public class PermissionMatcherBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger( PermissionMatcherBenchmark.class );
+
+    private static final int APPLICATIONS = 20;
+    private static final int COLLECTIONS = 25;
+    private static final int WARMUP = 2;
+    private static final int ROUNDS = 5;
+    private static final int CHECKS = 20000;
+
+
+    @Test
+    public void compareWithLinearScan() {
+
+        final List<Permission> permissions = new ArrayList<>();
+        final List<CustomPermission> requests = new ArrayList<>();
+
+        for ( int a = 0; a < APPLICATIONS; a++ ) {
+            final UUID app = new UUID( 0, a );
+            for ( int c = 0; c < COLLECTIONS; c++ ) {
+                permissions.add( new CustomPermission( "applications:get,put:" + app + ":/collection" + c + "/*" ) );
+                permissions.add( new CustomPermission( "applications:post:" + app + ":/collection" + c + "/**" ) );
+                requests.add( new CustomPermission( "applications:put:" + app + ":/collection" + c + "/item" ) );
+                requests.add( new CustomPermission( "applications:delete:" + app + ":/collection" + c + "/item" ) );
+            }
+        }
+
+        final PermissionMatcher matcher = new PermissionMatcher( permissions, null );
+
+        for ( int round = 0; round < WARMUP + ROUNDS; round++ ) {
+
+            long start = System.nanoTime();
+            final int linearGranted = checkLinear( permissions, requests );
+            final long linear = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final int compiledGranted = checkCompiled( matcher, requests );
+            final long compiled = System.nanoTime() - start;
+
+            assertEquals( linearGranted, compiledGranted );
+
+            if ( round >= WARMUP ) {
+                logger.info( "{} permissions, {} checks: linear {} ns/check, compiled {} ns/check", permissions.size(),
+                    CHECKS, linear / CHECKS, compiled / CHECKS );
+            }
+        }
+    }
+
+
+    private static int checkLinear( final List<Permission> permissions, final List<CustomPermission> requests ) {
+        int granted = 0;
+        for ( int i = 0; i < CHECKS; i++ ) {
+            final Permission request = requests.get( i % requests.size() );
+            for ( Permission permission : permissions ) {
+                if ( permission.implies( request ) ) {
+                    granted++;
+                    break;
+                }
+            }
+        }
+        return granted;
+    }
+
+
+    private static int checkCompiled( final PermissionMatcher matcher, final List<CustomPermission> requests ) {
+        int granted = 0;
+        for ( int i = 0; i < CHECKS; i++ ) {
+            if ( matcher.implies( requests.get( i % requests.size() ) ) ) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+}
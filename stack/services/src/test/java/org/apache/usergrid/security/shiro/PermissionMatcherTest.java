@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.shiro;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.usergrid.management.UserInfo;
+import org.apache.usergrid.persistence.entities.User;
+import org.apache.usergrid.security.shiro.principals.ApplicationUserPrincipal;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.SubjectThreadState;
+import org.apache.shiro.util.ThreadState;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class PermissionMatcherTest {
+
+    private static final String APP = "00000000-0000-0000-0000-000000000001";
+
+    private static final String[] PERMISSIONS = {
+        "applications:get:" + APP + ":/foo",
+        "applications:get,put:" + APP + ":/foo/bar/*",
+        "applications:get:" + APP + ":/foo/bar/*/boz/*",
+        "applications:post:" + APP + ":/bar/**",
+        "applications:get:" + APP + ":/users/me/**",
+        "applications:put:" + APP + ":/users/${user}",
+        "applications:get:" + APP + ":*",
+        "applications:delete:*:/things/*,/stuff",
+        "applications:access:" + APP,
+        "organizations:admin:*",
+        "users:${user}:*",
+        "access:*:*",
+        "/users/me/**",
+        "/devices/*",
+        "assets:GET:Mixed/Case",
+    };
+
+    private static final String[] REQUESTS = {
+        "applications:get:" + APP + ":/foo",
+        "applications:get:" + APP + ":/FOO",
+        "applications:get:" + APP + ":foo",
+        "applications:put:" + APP + ":/foo/bar",
+        "applications:put:" + APP + ":/foo/bar/baz",
+        "applications:put:" + APP + ":/foo/bar/baz/",
+        "applications:put:" + APP + ":/foo/bar/baz/boz",
+        "applications:get:" + APP + ":/foo/bar/baz/boz/biz",
+        "applications:get:" + APP + ":/foo/bar/baz/boz/biz/box",
+        "applications:post:" + APP + ":/bar",
+        "applications:post:" + APP + ":/bar/a/b/c",
+        "applications:post:00000000-0000-0000-0000-000000000002:/bar",
+        "applications:get:" + APP + ":/users/testusername/permissions",
+        "applications:get:" + APP + ":/users/otheruser/permissions",
+        "applications:put:" + APP + ":/users/testusername",
+        "applications:put:" + APP + ":/users/testusername/devices",
+        "applications:get:" + APP + ":/anything/at/all",
+        "applications:get:" + APP,
+        "applications:delete:" + APP + ":/things/one",
+        "applications:delete:" + APP + ":/stuff",
+        "applications:delete:" + APP + ":/stuff/more",
+        "applications:delete:" + APP + ":/other",
+        "applications:access:" + APP,
+        "applications:access:" + APP + ":/users",
+        "applications:get,put:" + APP + ":/foo",
+        "organizations:admin:" + APP,
+        "organizations:admin",
+        "organizations",
+        "users:testusername:get",
+        "users:otheruser:get",
+        "access:read",
+        "/users/testusername/activities",
+        "/users/me/activities",
+        "/devices/1234",
+        "/devices/1234/more",
+        "assets:get:mixed/case",
+        "assets:get:/mixed/case/",
+    };
+
+
+    private static ThreadState subjectThreadState;
+
+
+    @BeforeClass
+    public static void setSecurityManager() {
+        SecurityUtils.setSecurityManager( new DefaultSecurityManager() );
+    }
+
+
+    @AfterClass
+    public static void tearDownShiro() {
+        SecurityUtils.setSecurityManager( null );
+    }
+
+
+    @After
+    public void clearSubject() {
+        if ( subjectThreadState != null ) {
+            subjectThreadState.clear();
+            subjectThreadState = null;
+        }
+    }
+
+
+    @Test
+    public void matchesImpliesWithoutUser() {
+        assertMatchesImplies( null );
+    }
+
+
+    @Test
+    public void matchesImpliesWithUser() {
+        assertMatchesImplies( bindUser( "testusername" ) );
+    }
+
+
+    @Test
+    public void eachPermissionMatchesImplies() {
+        final UserInfo user = bindUser( "testusername" );
+
+        for ( String permission : PERMISSIONS ) {
+            final CustomPermission granted = new CustomPermission( permission );
+            final PermissionMatcher matcher =
+                new PermissionMatcher( Collections.<Permission>singletonList( granted ), user );
+
+            for ( String request : REQUESTS ) {
+                final CustomPermission requested = new CustomPermission( request );
+                assertEquals( permission + " implies " + request, granted.implies( requested ),
+                    matcher.implies( requested ) );
+            }
+        }
+    }
+
+
+    @Test
+    public void templatesBoundToUser() {
+        final UserInfo user = bindUser( "testusername" );
+
+        final PermissionMatcher matcher = new PermissionMatcher(
+            Collections.<Permission>singletonList( new CustomPermission( "/users/me/**" ) ), user );
+
+        assertTrue( matcher.isBoundTo( user ) );
+        assertFalse( matcher.isBoundTo( null ) );
+
+        assertTrue( matcher.implies( new CustomPermission( "/users/testusername/permissions" ) ) );
+        assertTrue( matcher.implies( new CustomPermission( "/users/" + user.getUuid() + "/permissions" ) ) );
+        assertFalse( matcher.implies( new CustomPermission( "/users/otheruser/permissions" ) ) );
+    }
+
+
+    private void assertMatchesImplies( final UserInfo user ) {
+        final List<Permission> permissions = new ArrayList<>();
+        for ( String permission : PERMISSIONS ) {
+            permissions.add( new CustomPermission( permission ) );
+        }
+
+        final PermissionMatcher matcher = new PermissionMatcher( permissions, user );
+
+        for ( String request : REQUESTS ) {
+            final CustomPermission requested = new CustomPermission( request );
+
+            boolean expected = false;
+            for ( Permission permission : permissions ) {
+                expected |= permission.implies( requested );
+            }
+
+            assertEquals( request, expected, matcher.implies( requested ) );
+        }
+    }
+
+
+    private static UserInfo bindUser( final String username ) {
+        final User fakeUser = new User();
+        fakeUser.setUuid( UUIDUtils.newTimeUUID() );
+        fakeUser.setUsername( username );
+
+        final UUID appId = UUID.fromString( APP );
+        final UserInfo info = new UserInfo( appId, fakeUser.getProperties() );
+
+        final Subject subject = new Subject.Builder( SecurityUtils.getSecurityManager() )
+            .principals( new SimplePrincipalCollection( new ApplicationUserPrincipal( appId, info ), "usergrid" ) )
+            .buildSubject();
+
+        subjectThreadState = new SubjectThreadState( subject );
+        subjectThreadState.bind();
+
+        return info;
+    }
+}
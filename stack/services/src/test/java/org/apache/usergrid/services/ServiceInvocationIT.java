@@ -162,6 +162,56 @@ public class ServiceInvocationIT extends AbstractServiceIT {
         assertNotNull( user );
     }
 
+    @Test
+    public void testBatchCreateWithDuplicate() throws Exception {
+
+        app.doCreate( "thing", "existing_thing" );
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "batch_thing_1" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "existing_thing" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "batch_thing_2" );
+        batch.add( properties );
+
+        // the batch can't be created together, the other entities are still created one at a time
+        app.testBatchRequest( ServiceAction.POST, 2, batch, "things" );
+
+        app.testRequest( ServiceAction.GET, 3, "things" );
+        app.testRequest( ServiceAction.GET, 1, "things", "batch_thing_1" );
+        app.testRequest( ServiceAction.GET, 1, "things", "batch_thing_2" );
+    }
+
+
+    @Test
+    public void testBatchCreateWithDuplicateInBatch() throws Exception {
+
+        List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "batch_thing_1" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "batch_thing_2" );
+        batch.add( properties );
+
+        properties = new LinkedHashMap<String, Object>();
+        properties.put( "name", "batch_thing_1" );
+        batch.add( properties );
+
+        app.testBatchRequest( ServiceAction.POST, 2, batch, "things" );
+
+        app.testRequest( ServiceAction.GET, 2, "things" );
+    }
+
     /* Written to test fix for https://issues.apache.org/jira/browse/USERGRID-94
      * (Null pointer was returned when querying names with spaces.)
      * e.x.: http://localhost:8080/test-organization/test-app/contributors/Malaka Mahanama
@@ -738,6 +738,37 @@ public class NotificationsServiceIT extends AbstractServiceNotificationIT {
 
     }
 
+    @Test
+    public void multipleUsersSharedDevice() throws Exception{
+
+        // user1 and user2 are resolved in one batch, device2 belongs to both of them
+        app.testRequest(ServiceAction.POST, 1, "users",user1.getUuid(),"devices",device1.getUuid()).getEntity();
+        app.testRequest(ServiceAction.POST, 1, "users",user1.getUuid(),"devices",device2.getUuid()).getEntity();
+        app.testRequest(ServiceAction.POST, 1, "users",user2.getUuid(),"devices",device2.getUuid()).getEntity();
+
+        app.clear();
+        // create a "hello world" notification
+        String payload = getPayload();
+        Map<String, String> payloads = new HashMap<String, String>(1);
+        payloads.put(notifier.getName(), payload);
+        app.put("payloads", payloads);
+        app.put("debug",true);
+
+        // post notification to all users
+        Entity e = app.testRequest(ServiceAction.POST, 1,"users", "notifications").getEntity();
+        app.testRequest(ServiceAction.GET, 1, "notifications", e.getUuid());
+
+        Notification notification = app.getEntityManager().get(e.getUuid(), Notification.class);
+
+        // perform push //
+        notification = notificationWaitForComplete(notification);
+
+        app.waitForQueueDrainAndRefreshIndex(250);
+
+        // each device gets the notification once
+        checkReceipts(notification, 2);
+    }
+
     @Test
     @Ignore("This is creating 51 instead of 50 currently with new queue implementation")
     public void batchTest() throws Exception {
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.services.notifications.impl;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.services.notifications.DeviceDeduplicator;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class DeviceDeduplicatorTest {
+
+    private static final int DEVICES = 100000;
+
+
+    @Test
+    public void exactSetGrowsAndRejectsDuplicates() {
+        final DeviceIdSet set = new DeviceIdSet( 16 );
+        final long initialMemory = set.getMemoryBytes();
+
+        final List<UUID> devices = timeUuids( DEVICES );
+        for ( UUID device : devices ) {
+            assertTrue( set.add( device ) );
+        }
+        for ( UUID device : devices ) {
+            assertFalse( set.add( device ) );
+        }
+
+        assertEquals( DEVICES, set.size() );
+        assertTrue( set.getMemoryBytes() > initialMemory );
+        assertTrue( set.getMemoryBytes() <= DEVICES * 64L );
+    }
+
+
+    @Test
+    public void exactSetHandlesZeroId() {
+        final DeviceIdSet set = new DeviceIdSet( 1 );
+
+        assertTrue( set.add( new UUID( 0, 0 ) ) );
+        assertFalse( set.add( new UUID( 0, 0 ) ) );
+        assertTrue( set.add( new UUID( 0, 1 ) ) );
+        assertEquals( 2, set.size() );
+    }
+
+
+    @Test
+    public void bloomFilterStaysUnderFalsePositiveRate() {
+        final double fpp = 0.001;
+        final DeviceDeduplicator filter = new DeviceBloomFilter( 1000, fpp );
+
+        final List<UUID> devices = timeUuids( DEVICES );
+        int skipped = 0;
+        for ( UUID device : devices ) {
+            if ( !filter.add( device ) ) {
+                skipped++;
+            }
+        }
+
+        // every device that was added is remembered
+        for ( UUID device : devices ) {
+            assertFalse( filter.add( device ) );
+        }
+
+        assertTrue( "skipped " + skipped, skipped <= DEVICES * fpp * 2 );
+        assertTrue( filter.getMemoryBytes() < new DeviceIdSet( DEVICES ).getMemoryBytes() );
+    }
+
+
+    private static List<UUID> timeUuids( final int count ) {
+        final List<UUID> uuids = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ ) {
+            uuids.add( UUIDUtils.newTimeUUID() );
+        }
+        return uuids;
+    }
+}